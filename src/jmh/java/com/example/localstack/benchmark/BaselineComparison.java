@@ -0,0 +1,77 @@
+package com.example.localstack.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against the checked-in baseline. Prints the score and normalised allocation
+ * per operation side by side and exits with status 1 if any benchmark lost more throughput, or took more time per
+ * operation for the time based modes, or allocates more per operation, than the tolerance allows. The change
+ * column is positive for improvements in either case. Benchmarks missing from either file are listed but not
+ * judged.
+ *
+ * <p>Usage: {@code BaselineComparison <baseline.json> <result.json> [tolerance, default 0.10]}
+ */
+public class BaselineComparison {
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private record Score(double score, boolean higherIsBetter, Double allocatedBytes) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> [tolerance]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(Path.of(args[0]));
+        Map<String, Score> current = read(Path.of(args[1]));
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        boolean regressed = false;
+        Map<String, Score> all = new TreeMap<>(baseline);
+        current.forEach(all::putIfAbsent);
+        System.out.printf("%-90s %16s %16s %8s %14s %14s%n", "Benchmark", "Baseline", "Current", "Change", "Base B/op", "Current B/op");
+        for (String benchmark : all.keySet()) {
+            Score before = baseline.get(benchmark);
+            Score after = current.get(benchmark);
+            if (before == null || after == null) {
+                System.out.printf("%-90s %s%n", benchmark, before == null ? "new, not in baseline" : "missing from result");
+                continue;
+            }
+            double change = after.higherIsBetter() ? after.score() / before.score() - 1 : before.score() / after.score() - 1;
+            boolean slower = change < -tolerance;
+            boolean allocatesMore = before.allocatedBytes() != null && after.allocatedBytes() != null
+                    && after.allocatedBytes() > before.allocatedBytes() * (1 + tolerance) + 16;
+            regressed |= slower || allocatesMore;
+            System.out.printf("%-90s %16.3f %16.3f %+7.1f%% %14s %14s%s%n", benchmark, before.score(), after.score(), change * 100,
+                    format(before.allocatedBytes()), format(after.allocatedBytes()), slower || allocatesMore ? "  REGRESSION" : "");
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            StringBuilder name = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").properties().forEach(param -> name.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            JsonNode primary = run.path("primaryMetric");
+            JsonNode allocation = run.path("secondaryMetrics").path(ALLOCATION_METRIC);
+            // Every mode but throughput measures time per operation
+            boolean higherIsBetter = "thrpt".equals(run.path("mode").asText());
+            scores.put(name.toString(), new Score(primary.path("score").asDouble(), higherIsBetter,
+                    allocation.isMissingNode() ? null : allocation.path("score").asDouble()));
+        }
+        return scores;
+    }
+
+    private static String format(Double bytes) {
+        return bytes == null ? "-" : String.format("%.1f", bytes);
+    }
+}
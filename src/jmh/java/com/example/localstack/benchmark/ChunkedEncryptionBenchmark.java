@@ -0,0 +1,70 @@
+package com.example.localstack.benchmark;
+
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.encryption.DecryptingInputStream;
+import com.example.localstack.service.encryption.EncryptingInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming chunked encryption and decryption of document content, the CPU-bound part of every upload and
+ * download, over payloads from a single partial chunk to many chunks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChunkedEncryptionBenchmark {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    private int payloadSize;
+
+    private SecretKey key;
+    private byte[] noncePrefix;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        key = keyGenerator.generateKey();
+        // A fixed nonce prefix is fine here, nothing encrypted by the benchmark is ever stored
+        noncePrefix = new byte[ChunkedCipher.NONCE_PREFIX_LENGTH];
+        plaintext = new byte[payloadSize];
+        new Random(42).nextBytes(plaintext);
+        ciphertext = new EncryptingInputStream(new ByteArrayInputStream(plaintext), new ChunkedCipher(key, noncePrefix), CHUNK_SIZE).readAllBytes();
+    }
+
+    @Benchmark
+    public long encrypt() throws IOException {
+        return new EncryptingInputStream(new ByteArrayInputStream(plaintext), new ChunkedCipher(key, noncePrefix), CHUNK_SIZE)
+                .transferTo(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long decrypt() throws IOException {
+        return new DecryptingInputStream(new ByteArrayInputStream(ciphertext), new ChunkedCipher(key, noncePrefix), CHUNK_SIZE)
+                .transferTo(OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.localstack.benchmark;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of {@link DocumentMetadata} to and from DynamoDB items through the bean table schema, done for
+ * every metadata read and write, and the cost of building the schema itself.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentMetadataSchemaBenchmark {
+    private TableSchema<DocumentMetadata> schema;
+    private DocumentMetadata document;
+    private Map<String, AttributeValue> item;
+
+    @Setup
+    public void setUp() {
+        schema = TableSchema.fromBean(DocumentMetadata.class);
+        document = DocumentMetadata.builder()
+                .documentId("5f0c6a1e-8a3b-4c55-9d1e-2b7f3c4d5e6f")
+                .fileName("quarterly-report.pdf")
+                .filePath("documents/reports/2024")
+                .pathRoot("documents")
+                .contentType("application/pdf")
+                .fileSize(1_048_576L)
+                .version("1.0")
+                .createdAt(Instant.parse("2024-04-01T10:15:30Z"))
+                .updatedAt(Instant.parse("2024-04-01T10:15:30Z"))
+                .createdBy("user-123")
+                .lastModifiedBy("user-123")
+                .s3Key("documents/reports/2024/5f0c6a1e-8a3b-4c55-9d1e-2b7f3c4d5e6f/quarterly-report.pdf")
+                .s3Bucket("local-testbucket")
+                .metadata(Map.of("department", "finance", "quarter", "Q1", "confidential", "true"))
+                .isEncrypted(true)
+                .kmsKeyId("testkey")
+                .encryptedDataKey("AQIDAHhZ0c2fJtY4p1k3Zm9vYmFyYmF6cXV4cXV1eA==")
+                .encryptionScheme(ChunkedCipher.ENCRYPTION_SCHEME)
+                .encryptionNoncePrefix("AAECAwQFBg==")
+                .encryptionChunkSize(65536)
+                .build();
+        item = schema.itemToMap(document, true);
+    }
+
+    @Benchmark
+    public TableSchema<DocumentMetadata> createSchema() {
+        return TableSchema.fromBean(DocumentMetadata.class);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> itemToMap() {
+        return schema.itemToMap(document, true);
+    }
+
+    @Benchmark
+    public DocumentMetadata mapToItem() {
+        return schema.mapToItem(item);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.localstack.benchmark;
+
+import com.example.localstack.data.DocumentPage;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.inmemory.InMemoryAws;
+import com.example.localstack.inmemory.InMemoryDocumentService;
+import com.example.localstack.inmemory.SimulatedConditions;
+import com.example.localstack.service.impl.S3ServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * The document service end to end, over in-memory AWS services and therefore without Docker: upload, download and
+ * a user scoped metadata search, from concurrent callers. With {@code conditions=cloud} every AWS request takes a
+ * latency typical of the service in-region, so the results show how the service overlaps and hides remote calls;
+ * sample time mode reports the tail percentiles along with the mean.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class DocumentServiceBenchmark {
+    private static final String PATH = "documents/benchmark";
+    private static final String USER_ID = "benchmark-user";
+    private static final int DOCUMENTS = 100;
+
+    @Param({"none", "cloud"})
+    private String conditions;
+
+    @Param({"65536"})
+    private int payloadSize;
+
+    private S3ServiceImpl s3Service;
+    private MockMultipartFile file;
+    private List<DocumentMetadata> documents;
+
+    @Setup
+    public void setUp() {
+        InMemoryAws.Builder aws = InMemoryAws.builder();
+        if ("cloud".equals(conditions)) {
+            aws.s3(SimulatedConditions.latency(Duration.ofMillis(15), Duration.ofMillis(80)))
+                    .kms(SimulatedConditions.latency(Duration.ofMillis(5), Duration.ofMillis(25)))
+                    .dynamoDb(SimulatedConditions.latency(Duration.ofMillis(4), Duration.ofMillis(20)))
+                    .sqs(SimulatedConditions.latency(Duration.ofMillis(10), Duration.ofMillis(40)));
+        }
+        s3Service = InMemoryDocumentService.create(aws.build());
+        // Compressible text, the common case for documents
+        byte[] content = "benchmark document content line\n".repeat(payloadSize / 32 + 1).substring(0, payloadSize)
+                .getBytes(StandardCharsets.UTF_8);
+        file = new MockMultipartFile("file", "document.txt", "text/plain", content);
+        documents = IntStream.range(0, DOCUMENTS)
+                .mapToObj(i -> s3Service.upload(PATH, file, Map.of("batch", Integer.toString(i % 10)), USER_ID).join())
+                .toList();
+    }
+
+    @Benchmark
+    public DocumentMetadata upload() {
+        return s3Service.upload(PATH, file, Map.of("batch", "new"), USER_ID).join();
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        DocumentMetadata document = documents.get(ThreadLocalRandom.current().nextInt(documents.size()));
+        try (InputStream content = s3Service.downloadDocument(document)) {
+            return content.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public DocumentPage search() {
+        return s3Service.searchByMetadata(Map.of("batch", Integer.toString(ThreadLocalRandom.current().nextInt(10))), USER_ID, 20, null);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.localstack.benchmark;
+
+import com.example.localstack.config.security.SecurityConfig;
+import com.example.localstack.config.security.UserContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request security work: converting the Keycloak JWT into an authentication with its realm roles, and
+ * resolving the current user from the security context, which every controller method does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SecurityBenchmark {
+    private JwtAuthenticationConverter jwtAuthenticationConverter;
+    private UserContext userContext;
+    private Jwt jwt;
+
+    @Setup
+    public void setUp() {
+        jwtAuthenticationConverter = new SecurityConfig(null).jwtAuthenticationConverter();
+        userContext = new UserContext();
+        jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("5f0c6a1e-8a3b-4c55-9d1e-2b7f3c4d5e6f")
+                .claim("preferred_username", "jdoe")
+                .claim("email", "jdoe@example.com")
+                .claim("scope", "openid profile email")
+                .claim("realm_access", Map.of("roles", List.of("USER", "offline_access", "uma_authorization")))
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+        // Thread scoped state is set up on the benchmark thread, which owns this security context
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convertJwt() {
+        return jwtAuthenticationConverter.convert(jwt);
+    }
+
+    @Benchmark
+    public String currentUserId() {
+        return userContext.getCurrentUserId();
+    }
+}
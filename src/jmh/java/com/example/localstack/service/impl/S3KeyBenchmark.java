@@ -0,0 +1,37 @@
+package com.example.localstack.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * S3 key generation, run for every stored document. Lives in the package of {@link S3ServiceImpl} to reach the
+ * package-private {@link S3ServiceImpl#generateS3Key(String, String, String)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class S3KeyBenchmark {
+    @Param({"/", "documents/reports/2024", "///imports/batch"})
+    private String path;
+
+    private final String documentId = "5f0c6a1e-8a3b-4c55-9d1e-2b7f3c4d5e6f";
+    private final String fileName = "quarterly-report.pdf";
+
+    @Benchmark
+    public String generateS3Key() {
+        return S3ServiceImpl.generateS3Key(path, documentId, fileName);
+    }
+}
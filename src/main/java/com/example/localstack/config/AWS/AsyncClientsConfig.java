@@ -0,0 +1,53 @@
+package com.example.localstack.config.AWS;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbServiceClientConfiguration;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ServiceClientConfiguration;
+
+/**
+ * Non-blocking clients for the async document API. They take region, endpoint and credentials from the
+ * auto-configured synchronous clients so that both talk to the same services.
+ */
+@Configuration
+public class AsyncClientsConfig {
+
+    /**
+     * S3 client on the AWS Common Runtime, which splits large transfers into parallel part requests by itself and
+     * runs them on a small native event loop.
+     */
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient(S3Client s3Client,
+                                       @Value("${spring.cloud.aws.s3.path-style-access-enabled:false}") boolean pathStyleAccess) {
+        S3ServiceClientConfiguration configuration = s3Client.serviceClientConfiguration();
+        return S3AsyncClient.crtBuilder()
+                .region(configuration.region())
+                .credentialsProvider(configuration.credentialsProvider())
+                .endpointOverride(configuration.endpointOverride().orElse(null))
+                .forcePathStyle(pathStyleAccess)
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public DynamoDbAsyncClient dynamoDbAsyncClient(DynamoDbClient dynamoDbClient) {
+        DynamoDbServiceClientConfiguration configuration = dynamoDbClient.serviceClientConfiguration();
+        return DynamoDbAsyncClient.builder()
+                .region(configuration.region())
+                .credentialsProvider(configuration.credentialsProvider())
+                .endpointOverride(configuration.endpointOverride().orElse(null))
+                .build();
+    }
+
+    @Bean
+    public DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient(DynamoDbAsyncClient dynamoDbAsyncClient) {
+        return DynamoDbEnhancedAsyncClient.builder()
+                .dynamoDbClient(dynamoDbAsyncClient)
+                .build();
+    }
+}
@@ -1,38 +1,205 @@
 package com.example.localstack.config.AWS;
 
+import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.dbEntities.ContentBlob;
 import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.dbEntities.MetadataIndexEntry;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.EnhancedGlobalSecondaryIndex;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.CreateGlobalSecondaryIndexAction;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexUpdate;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.Projection;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughput;
 import software.amazon.awssdk.services.dynamodb.model.ResourceInUseException;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
 @Slf4j
 public class DynamoDbConfig {
+    private static final List<String> DOCUMENT_INDEXES = List.of(DocumentMetadata.CREATED_BY_INDEX, DocumentMetadata.PATH_INDEX);
+
     @Value("${app.dynamodb.table-name}")
     private String tableName;
 
+    @Value("${app.dynamodb.metadata-index-table-name}")
+    private String metadataIndexTableName;
+
+    @Value("${app.dynamodb.content-index-table-name}")
+    private String contentIndexTableName;
+
     private final DynamoDbEnhancedClient dynamoDbEnhancedClient;
+    private final DynamoDbClient dynamoDbClient;
+    private final DocumentMetadataRepository documentMetadataRepository;
 
-    public DynamoDbConfig(DynamoDbEnhancedClient dynamoDbEnhancedClient) {
+    public DynamoDbConfig(DynamoDbEnhancedClient dynamoDbEnhancedClient, DynamoDbClient dynamoDbClient, DocumentMetadataRepository documentMetadataRepository) {
         this.dynamoDbEnhancedClient = dynamoDbEnhancedClient;
+        this.dynamoDbClient = dynamoDbClient;
+        this.documentMetadataRepository = documentMetadataRepository;
     }
 
     @PostConstruct
     public void createTableIfNotExist() {
+        DynamoDbTable<DocumentMetadata> table = dynamoDbEnhancedClient.table(tableName, TableSchema.fromBean(DocumentMetadata.class));
         try {
-            DynamoDbTable<DocumentMetadata> table = dynamoDbEnhancedClient.table(tableName, TableSchema.fromBean(DocumentMetadata.class));
-            table.createTable(CreateTableEnhancedRequest.builder().build());
+            table.createTable(CreateTableEnhancedRequest.builder()
+                    .globalSecondaryIndices(DOCUMENT_INDEXES.stream()
+                            .map(indexName -> EnhancedGlobalSecondaryIndex.builder()
+                                    .indexName(indexName)
+                                    .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
+                                    .build())
+                            .toList())
+                    .build());
             log.info("Created dynamoDb table {}", tableName);
         } catch (ResourceInUseException e) {
             log.info("DynamoDb table {} already exists", tableName);
+            createMissingIndexes(table);
         } catch (Exception e) {
             log.error("Error creating dynamoDb table {} \n {}", tableName, e.getMessage());
         }
+        createMetadataIndexTableIfNotExist();
+        createContentIndexTableIfNotExist();
+    }
+
+    /**
+     * Creates the content index used by deduplicated uploads. Documents stored before it existed own their
+     * objects, so there is nothing to backfill.
+     */
+    private void createContentIndexTableIfNotExist() {
+        try {
+            dynamoDbEnhancedClient.table(contentIndexTableName, TableSchema.fromBean(ContentBlob.class)).createTable();
+            log.info("Created dynamoDb table {}", contentIndexTableName);
+        } catch (ResourceInUseException e) {
+            log.info("DynamoDb table {} already exists", contentIndexTableName);
+        } catch (Exception e) {
+            log.error("Error creating dynamoDb table {} \n {}", contentIndexTableName, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the inverted metadata index and indexes the documents already stored until the index is marked as
+     * complete, so an indexing run that fails, e.g. when throttled, is resumed on the next start.
+     */
+    private void createMetadataIndexTableIfNotExist() {
+        try {
+            dynamoDbEnhancedClient.table(metadataIndexTableName, TableSchema.fromBean(MetadataIndexEntry.class)).createTable();
+            log.info("Created dynamoDb table {}", metadataIndexTableName);
+        } catch (ResourceInUseException e) {
+            log.info("DynamoDb table {} already exists", metadataIndexTableName);
+        } catch (Exception e) {
+            log.error("Error creating dynamoDb table {} \n {}", metadataIndexTableName, e.getMessage());
+            return;
+        }
+        try {
+            dynamoDbClient.waiter().waitUntilTableExists(r -> r.tableName(metadataIndexTableName));
+            if (!documentMetadataRepository.isMetadataIndexComplete()) {
+                long indexed = documentMetadataRepository.indexAllMetadata();
+                log.info("Indexed metadata of {} documents into dynamoDb table {}", indexed, metadataIndexTableName);
+            }
+        } catch (Exception e) {
+            log.error("Error indexing document metadata into dynamoDb table {}, retrying on the next start \n {}", metadataIndexTableName, e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the secondary indexes to a table created before they were introduced. DynamoDB accepts one index
+     * creation per table update, so an index that cannot be added yet is picked up on a later start.
+     */
+    private void createMissingIndexes(DynamoDbTable<DocumentMetadata> table) {
+        try {
+            TableDescription description = dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build()).table();
+            Set<String> existingIndexes = description.globalSecondaryIndexes().stream()
+                    .map(GlobalSecondaryIndexDescription::indexName)
+                    .collect(Collectors.toSet());
+            for (String indexName : DOCUMENT_INDEXES) {
+                if (!existingIndexes.contains(indexName)) {
+                    dynamoDbClient.updateTable(createIndexRequest(table.tableSchema().tableMetadata(), description, indexName));
+                    log.info("Creating index {} on dynamoDb table {}", indexName, tableName);
+                    if (DocumentMetadata.PATH_INDEX.equals(indexName)) {
+                        backfillPathRoot(table);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error creating indexes on dynamoDb table {} \n {}", tableName, e.getMessage());
+        }
+    }
+
+    private UpdateTableRequest createIndexRequest(TableMetadata tableMetadata, TableDescription description, String indexName) {
+        List<KeySchemaElement> keySchema = new ArrayList<>();
+        List<AttributeDefinition> attributeDefinitions = new ArrayList<>();
+        String partitionKey = tableMetadata.indexPartitionKey(indexName);
+        keySchema.add(KeySchemaElement.builder().attributeName(partitionKey).keyType(KeyType.HASH).build());
+        attributeDefinitions.add(attributeDefinition(tableMetadata, partitionKey));
+        tableMetadata.indexSortKey(indexName).ifPresent(sortKey -> {
+            keySchema.add(KeySchemaElement.builder().attributeName(sortKey).keyType(KeyType.RANGE).build());
+            attributeDefinitions.add(attributeDefinition(tableMetadata, sortKey));
+        });
+
+        CreateGlobalSecondaryIndexAction.Builder createIndex = CreateGlobalSecondaryIndexAction.builder()
+                .indexName(indexName)
+                .keySchema(keySchema)
+                .projection(Projection.builder().projectionType(ProjectionType.ALL).build());
+        boolean onDemand = description.billingModeSummary() != null
+                && description.billingModeSummary().billingMode() == BillingMode.PAY_PER_REQUEST;
+        if (!onDemand) {
+            createIndex.provisionedThroughput(ProvisionedThroughput.builder()
+                    .readCapacityUnits(description.provisionedThroughput().readCapacityUnits())
+                    .writeCapacityUnits(description.provisionedThroughput().writeCapacityUnits())
+                    .build());
+        }
+        return UpdateTableRequest.builder()
+                .tableName(tableName)
+                .attributeDefinitions(attributeDefinitions)
+                .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder().create(createIndex.build()).build())
+                .build();
+    }
+
+    private AttributeDefinition attributeDefinition(TableMetadata tableMetadata, String attributeName) {
+        ScalarAttributeType type = tableMetadata.scalarAttributeType(attributeName).orElse(ScalarAttributeType.S);
+        return AttributeDefinition.builder().attributeName(attributeName).attributeType(type).build();
+    }
+
+    /**
+     * Items written before the path index existed have no pathRoot and would be invisible to path listings.
+     */
+    private void backfillPathRoot(DynamoDbTable<DocumentMetadata> table) {
+        ScanEnhancedRequest scanRequest = ScanEnhancedRequest.builder()
+                .filterExpression(Expression.builder()
+                        .expression("attribute_not_exists(pathRoot) AND attribute_exists(filePath)")
+                        .build())
+                .build();
+        long updated = 0;
+        for (DocumentMetadata document : table.scan(scanRequest).items()) {
+            document.setFilePath(DocumentMetadata.normalizePath(document.getFilePath()));
+            document.setPathRoot(DocumentMetadata.pathRootOf(document.getFilePath()));
+            table.putItem(document);
+            updated++;
+        }
+        log.info("Backfilled pathRoot on {} documents in dynamoDb table {}", updated, tableName);
     }
 }
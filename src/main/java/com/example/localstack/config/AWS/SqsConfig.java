@@ -0,0 +1,32 @@
+package com.example.localstack.config.AWS;
+
+import com.example.localstack.config.AwsConfig;
+import io.awspring.cloud.sqs.config.SqsMessageListenerContainerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+
+@Configuration
+@Slf4j
+public class SqsConfig {
+
+    /**
+     * Listener container factory used by {@code @SqsListener}, with the concurrency and polling settings of
+     * {@link AwsConfig#listener()}. Listener methods run on the container's own {@code MessageExecutionThread}
+     * pool, as the container rejects other executors even with {@code spring.threads.virtual.enabled}. They hand
+     * the messages to the persistence pipeline, which encrypts and stores them on virtual threads.
+     */
+    @Bean
+    public SqsMessageListenerContainerFactory<Object> defaultSqsListenerContainerFactory(SqsAsyncClient sqsAsyncClient, AwsConfig awsConfig) {
+        AwsConfig.Listener listener = awsConfig.listener();
+        log.info("SQS listeners run with up to {} messages in flight and {} messages per poll",
+                listener.resolvedMaxConcurrentMessages(), listener.resolvedMaxMessagesPerPoll());
+        return SqsMessageListenerContainerFactory.builder()
+                .sqsAsyncClient(sqsAsyncClient)
+                .configure(options -> options.maxConcurrentMessages(listener.resolvedMaxConcurrentMessages())
+                        .maxMessagesPerPoll(listener.resolvedMaxMessagesPerPoll())
+                        .pollTimeout(listener.pollTimeout()))
+                .build();
+    }
+}
@@ -3,8 +3,35 @@ package com.example.localstack.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "app")
 public record AwsConfig(
         @DefaultValue("testqueue") String queueName,
         @DefaultValue("testbucket") String bucketName,
-        @DefaultValue("testkey") String kmsKeyId) {}
+        @DefaultValue("testkey") String kmsKeyId,
+        @DefaultValue Listener listener) {
+
+    /**
+     * Settings of the SQS listener container.
+     *
+     * @param maxConcurrentMessages Upper bound on the messages in flight per queue, 0 for ten per available
+     *                              processor.
+     * @param maxMessagesPerPoll    Upper bound on the messages received, and handed to the listener as one batch,
+     *                              per poll. Capped at {@code maxConcurrentMessages}.
+     * @param pollTimeout           How long a poll waits for messages to arrive, at most 20 seconds.
+     */
+    public record Listener(
+            @DefaultValue("0") int maxConcurrentMessages,
+            @DefaultValue("10") int maxMessagesPerPoll,
+            @DefaultValue("10s") Duration pollTimeout) {
+
+        public int resolvedMaxConcurrentMessages() {
+            return maxConcurrentMessages > 0 ? maxConcurrentMessages : 10 * Runtime.getRuntime().availableProcessors();
+        }
+
+        public int resolvedMaxMessagesPerPoll() {
+            return Math.clamp(maxMessagesPerPoll, 1, resolvedMaxConcurrentMessages());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for offloading large message content to S3.
+ *
+ * @param enabled   Whether content above {@code threshold} is stored in S3 and replaced by a reference.
+ * @param threshold Content size above which a message is offloaded. SQS accepts at most 256KB per message,
+ *                  including the JSON envelope and message attributes.
+ * @param keyPrefix Prefix of the S3 keys offloaded content is stored under.
+ */
+@ConfigurationProperties(prefix = "app.claim-check")
+public record ClaimCheckConfig(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("192KB") DataSize threshold,
+        @DefaultValue("claim-checks/") String keyPrefix) {}
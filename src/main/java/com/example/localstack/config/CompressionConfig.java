@@ -0,0 +1,24 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * Settings for compressing document content before it is encrypted.
+ *
+ * @param enabled      Whether uploads of compressible content are compressed.
+ * @param codec        The codec new uploads are compressed with, see
+ *                     {@link com.example.localstack.service.storage.CompressionCodec}.
+ * @param minSize      Content smaller than this is stored as is, as it gains little from compression.
+ * @param contentTypes Media types worth compressing, wildcards allowed. Already compressed formats such as
+ *                     images, archives and PDFs are left out.
+ */
+@ConfigurationProperties(prefix = "app.compression")
+public record CompressionConfig(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("deflate") String codec,
+        @DefaultValue("1KB") DataSize minSize,
+        @DefaultValue({"text/*", "application/json", "application/xml", "application/javascript", "application/x-ndjson", "image/svg+xml"}) List<String> contentTypes) {}
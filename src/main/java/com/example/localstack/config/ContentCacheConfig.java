@@ -0,0 +1,23 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for the local disk cache of downloaded document content.
+ *
+ * @param enabled      Whether downloads are served from and fill the cache.
+ * @param directory    Where cached content is kept. A fresh temporary directory when not set. Emptied on startup and
+ *                     shutdown, as its content cannot be decrypted by another process.
+ * @param maxSize      Upper bound on the disk space used by cached content.
+ * @param maxEntrySize Documents larger than this are never cached.
+ */
+@ConfigurationProperties(prefix = "app.content-cache")
+public record ContentCacheConfig(
+        @DefaultValue("false") boolean enabled,
+        Path directory,
+        @DefaultValue("1GB") DataSize maxSize,
+        @DefaultValue("64MB") DataSize maxEntrySize) {}
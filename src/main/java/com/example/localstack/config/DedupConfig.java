@@ -0,0 +1,14 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for content-addressed deduplication of uploaded documents.
+ *
+ * @param enabled Whether uploads are hashed and content a user has stored before is referenced instead of being
+ *                encrypted and uploaded again.
+ */
+@ConfigurationProperties(prefix = "app.dedup")
+public record DedupConfig(
+        @DefaultValue("false") boolean enabled) {}
@@ -0,0 +1,19 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Envelope encryption settings.
+ *
+ * @param dataKeyTtl        How long a generated or decrypted data key may be reused before KMS is consulted again.
+ * @param maxDataKeyUses    How many documents may be encrypted under a single data key before a new one is generated.
+ * @param maxCachedDataKeys Upper bound on the number of decrypted data keys kept in memory for downloads.
+ */
+@ConfigurationProperties(prefix = "app.encryption")
+public record EncryptionConfig(
+        @DefaultValue("5m") Duration dataKeyTtl,
+        @DefaultValue("1000") long maxDataKeyUses,
+        @DefaultValue("1000") long maxCachedDataKeys) {}
@@ -0,0 +1,18 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the in-process document metadata cache.
+ *
+ * @param maxSize    Upper bound on the number of documents kept in the cache.
+ * @param timeToLive How long a cached document is served before it is read from DynamoDB again. Bounds how long
+ *                   a change made by another instance can go unnoticed.
+ */
+@ConfigurationProperties(prefix = "app.metadata-cache")
+public record MetadataCacheConfig(
+        @DefaultValue("10000") long maxSize,
+        @DefaultValue("30s") Duration timeToLive) {}
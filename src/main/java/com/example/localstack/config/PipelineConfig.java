@@ -0,0 +1,29 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the pipeline persisting SQS messages.
+ *
+ * @param queueCapacity     Upper bound on the messages waiting in front of each stage. A full queue blocks the
+ *                          stage before it and, at the front, the listener.
+ * @param encryptWorkers    Messages encrypted concurrently, 0 for one per available processor.
+ * @param uploadWorkers     Messages uploaded to S3 concurrently.
+ * @param metadataBatchSize Upper bound on the documents whose metadata is written together, at most 25.
+ * @param metadataMaxLinger How long the first document waits for others to share its metadata batch.
+ */
+@ConfigurationProperties(prefix = "app.pipeline")
+public record PipelineConfig(
+        @DefaultValue("100") int queueCapacity,
+        @DefaultValue("0") int encryptWorkers,
+        @DefaultValue("16") int uploadWorkers,
+        @DefaultValue("25") int metadataBatchSize,
+        @DefaultValue("20ms") Duration metadataMaxLinger) {
+
+    public int resolvedEncryptWorkers() {
+        return encryptWorkers > 0 ? encryptWorkers : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for documents that clients transfer directly to and from S3 through presigned URLs.
+ *
+ * @param uploadUrlTtl    How long a presigned upload URL can be used.
+ * @param downloadUrlTtl  How long a presigned download URL can be used. Keep it short, as anyone holding the URL
+ *                        can read the document until it expires.
+ * @param maxUploadSize   Largest object a completed upload may have. A presigned PUT cannot limit the size itself,
+ *                        so larger objects are deleted when the upload is completed. S3 accepts at most 5GB per PUT.
+ */
+@ConfigurationProperties(prefix = "app.presign")
+public record PresignConfig(
+        @DefaultValue("15m") Duration uploadUrlTtl,
+        @DefaultValue("5m") Duration downloadUrlTtl,
+        @DefaultValue("5GB") DataSize maxUploadSize) {}
@@ -0,0 +1,21 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for auto-batching of individually published SQS messages.
+ *
+ * @param enabled      Whether single messages are buffered and sent in batches instead of one request per message.
+ * @param maxBatchSize Upper bound on the messages sent together. SQS accepts at most 10 messages per batch.
+ * @param maxLinger    How long the first buffered message waits for others to share its batch.
+ * @param maxPending   Upper bound on the buffered messages. Messages beyond it are sent directly.
+ */
+@ConfigurationProperties(prefix = "app.publish-batching")
+public record PublishBatchingConfig(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10") int maxBatchSize,
+        @DefaultValue("5ms") Duration maxLinger,
+        @DefaultValue("10000") int maxPending) {}
@@ -0,0 +1,24 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for full-table scans of the document table.
+ *
+ * @param segments          Number of segments scanned in parallel, each on its own virtual thread. 0 uses one
+ *                          segment per available processor.
+ * @param maxItemsPerSecond Upper bound on the items read per second by all running scans together, to keep scans
+ *                          from using up the table's read capacity. 0 for no limit.
+ * @param bufferSize        Number of scanned items buffered ahead of a slow consumer before the segments pause.
+ */
+@ConfigurationProperties(prefix = "app.scan")
+public record ScanConfig(
+        @DefaultValue("0") int segments,
+        @DefaultValue("0") int maxItemsPerSecond,
+        @DefaultValue("1000") int bufferSize) {
+
+    public int resolvedSegments() {
+        return segments > 0 ? segments : Runtime.getRuntime().availableProcessors();
+    }
+}
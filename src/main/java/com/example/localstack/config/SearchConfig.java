@@ -0,0 +1,26 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Paging limits for document listings.
+ *
+ * @param defaultPageSize Number of documents returned per page when the client does not ask for a page size.
+ * @param maxPageSize     Upper bound on the page size a client may ask for.
+ */
+@ConfigurationProperties(prefix = "app.search")
+public record SearchConfig(
+        @DefaultValue("50") int defaultPageSize,
+        @DefaultValue("500") int maxPageSize) {
+
+    /**
+     * Clamps a requested page size to {@code [1, maxPageSize]}, falling back to the default if none was requested.
+     */
+    public int resolvePageSize(Integer requestedPageSize) {
+        if (requestedPageSize == null) {
+            return defaultPageSize;
+        }
+        return Math.clamp(requestedPageSize, 1, maxPageSize);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for the streaming document transfer path.
+ *
+ * @param chunkSize             Plaintext size of each independently authenticated encryption chunk.
+ * @param partSize              Minimum size of each S3 multipart upload part but the last, rounded up to whole encrypted
+ *                              chunks. S3 requires at least 5MB for all but the last part.
+ * @param maxTransferBuffers    Number of part buffers shared by all in-flight uploads. Bounds upload heap usage to roughly
+ *                              {@code maxTransferBuffers * partSize}.
+ * @param bufferAcquireTimeout  How long an upload waits for a free buffer before it is rejected.
+ */
+@ConfigurationProperties(prefix = "app.storage")
+public record StorageConfig(
+        @DefaultValue("64KB") DataSize chunkSize,
+        @DefaultValue("5MB") DataSize partSize,
+        @DefaultValue("32") int maxTransferBuffers,
+        @DefaultValue("30s") Duration bufferAcquireTimeout) {}
@@ -0,0 +1,16 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for bulk uploads.
+ *
+ * @param maxConcurrentUploads Number of files of all bulk uploads together that are encrypted and stored at the
+ *                             same time. Further files wait for a slot.
+ * @param maxFilesPerRequest   Upper bound on the number of files in a single bulk upload.
+ */
+@ConfigurationProperties(prefix = "app.upload")
+public record UploadConfig(
+        @DefaultValue("16") int maxConcurrentUploads,
+        @DefaultValue("1000") int maxFilesPerRequest) {}
@@ -0,0 +1,21 @@
+package com.example.localstack.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for write-behind of document metadata.
+ *
+ * @param enabled      Whether new document metadata is queued and written in batches instead of one item per request.
+ * @param maxBatchSize Upper bound on the documents written together. DynamoDB accepts at most 25 items per batch write.
+ * @param maxLinger    How long the first queued document waits for others to share its batch.
+ * @param maxPending   Upper bound on the queued documents. Saves beyond it are written directly.
+ */
+@ConfigurationProperties(prefix = "app.write-behind")
+public record WriteBehindConfig(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("25") int maxBatchSize,
+        @DefaultValue("20ms") Duration maxLinger,
+        @DefaultValue("10000") int maxPending) {}
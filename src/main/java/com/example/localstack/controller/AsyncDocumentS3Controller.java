@@ -0,0 +1,111 @@
+package com.example.localstack.controller;
+
+import com.example.localstack.config.security.UserContext;
+import com.example.localstack.controller.DocumentS3Controller.DocumentUploadResponse;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.AsyncS3Services;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.security.SecurityRequirements;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The non-blocking variant of the upload and download endpoints. The request thread is released as soon as the
+ * AWS calls are issued and the response is written once they complete.
+ */
+@RestController
+@RequestMapping("/api/v1/async/documents")
+@Tag(name = "Document Management API")
+@SecurityRequirements({@SecurityRequirement(name = "bearerAuth")})
+@Slf4j
+public class AsyncDocumentS3Controller {
+    private final AsyncS3Services asyncS3Service;
+    private final UserContext userContext;
+
+    public AsyncDocumentS3Controller(AsyncS3Services asyncS3Service, UserContext userContext) {
+        this.asyncS3Service = asyncS3Service;
+        this.userContext = userContext;
+    }
+
+    @PostMapping(path = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Upload document to S3 bucket without blocking a request thread")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<DocumentUploadResponse>> uploadDocument(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("path") String path,
+            @RequestParam Map<String, String> metadata
+    ) {
+        String userId = userContext.getCurrentUserId();
+        log.info("Uploading file to S3 bucket asynchronously: {} for user: {}", path, userId);
+        return asyncS3Service.upload(path, file, metadata, userId)
+                .thenApply(saved -> ResponseEntity.ok(new DocumentUploadResponse(HttpStatus.CREATED, "File uploaded successfully")));
+    }
+
+    @GetMapping("/{documentId}")
+    @Operation(summary = "Download document by ID without blocking a request thread")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadDocument(@PathVariable String documentId) {
+        // The security context is bound to the request thread, so it is read before the futures complete elsewhere
+        String userId = userContext.getCurrentUserId();
+        boolean admin = hasAdminRole();
+        log.info("User {} downloading document asynchronously: {}", userId, documentId);
+
+        return asyncS3Service.getDocumentMetadata(documentId).<ResponseEntity<StreamingResponseBody>>thenCompose(metadata -> {
+            if (metadata.isEmpty()) {
+                return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+            }
+            DocumentMetadata doc = metadata.get();
+            if (!admin && !doc.getCreatedBy().equals(userId)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+            }
+            if (DocumentMetadata.STATUS_PENDING.equals(doc.getStatus())) {
+                return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+            }
+            if (DocumentMetadata.STORAGE_MODE_SSE_KMS.equals(doc.getStorageMode())) {
+                // The client fetches the content from S3 itself
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                        .location(URI.create(asyncS3Service.presignDownload(doc).url().toString()))
+                        .build());
+            }
+            return asyncS3Service.downloadDocument(doc).thenApply(documentStream -> ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + doc.getFileName() + "\"")
+                    .contentType(MediaType.parseMediaType(doc.getContentType()))
+                    .contentLength(doc.getFileSize())
+                    .body(streamBody(documentStream)));
+        });
+    }
+
+    private StreamingResponseBody streamBody(InputStream documentStream) {
+        return outputStream -> {
+            try (documentStream) {
+                documentStream.transferTo(outputStream);
+            }
+        };
+    }
+
+    private boolean hasAdminRole() {
+        return SecurityContextHolder.getContext().getAuthentication().getAuthorities()
+                .stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+    }
+}
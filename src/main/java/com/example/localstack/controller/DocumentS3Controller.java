@@ -1,35 +1,54 @@
 package com.example.localstack.controller;
 
+import com.example.localstack.config.UploadConfig;
 import com.example.localstack.config.security.UserContext;
+import com.example.localstack.data.DocumentPage;
 import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.PresignedUpload;
 import com.example.localstack.service.S3Services;
+import com.example.localstack.service.UploadResult;
 import com.example.localstack.service.impl.S3ServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.security.SecurityRequirements;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -37,11 +56,20 @@ import java.util.Optional;
 @SecurityRequirements({@SecurityRequirement(name = "bearerAuth")})
 @Slf4j
 public class DocumentS3Controller {
+    private static final String PAGE_SIZE_PARAM = "pageSize";
+    private static final String PAGE_TOKEN_PARAM = "pageToken";
+    private static final String DURABLE_PARAM = "durable";
+    private static final Set<String> PAGING_PARAMS = Set.of(PAGE_SIZE_PARAM, PAGE_TOKEN_PARAM);
+
     private final S3Services s3ServiceImpl;
     private final UserContext userContext;
-    public DocumentS3Controller(S3ServiceImpl s3ServiceImpl, UserContext userContext) {
+    private final ObjectMapper objectMapper;
+    private final UploadConfig uploadConfig;
+    public DocumentS3Controller(S3ServiceImpl s3ServiceImpl, UserContext userContext, ObjectMapper objectMapper, UploadConfig uploadConfig) {
         this.s3ServiceImpl = s3ServiceImpl;
         this.userContext = userContext;
+        this.objectMapper = objectMapper;
+        this.uploadConfig = uploadConfig;
     }
 
     @PostMapping(path = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -50,18 +78,88 @@ public class DocumentS3Controller {
     public ResponseEntity<DocumentUploadResponse> uploadDocument(
             @RequestParam("file") MultipartFile file,
             @RequestParam("path") String path,
+            @RequestParam(value = DURABLE_PARAM, defaultValue = "false") boolean durable,
             @RequestParam Map<String, String> metadata
     ) {
         String userId = userContext.getCurrentUserId();
         log.info("Uploading file to S3 bucket: {} for user: {}", path, userId);
-        s3ServiceImpl.upload(path, file, metadata, userId);
+        Map<String, String> documentMetadata = new HashMap<>(metadata);
+        documentMetadata.remove(DURABLE_PARAM);
+        CompletableFuture<DocumentMetadata> saved = s3ServiceImpl.upload(path, file, documentMetadata, userId);
+        if (durable) {
+            // The caller asked not to be answered before the metadata is stored, even with write-behind enabled
+            saved.join();
+        }
         return ResponseEntity.ok(new DocumentUploadResponse(HttpStatus.CREATED, "File uploaded successfully"));
     }
 
+    @PostMapping(path = "/upload/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Upload several documents to S3 bucket concurrently")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<BulkUploadResponse> uploadDocuments(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("path") String path,
+            @RequestParam Map<String, String> metadata
+    ) {
+        if (files.size() > uploadConfig.maxFilesPerRequest()) {
+            return ResponseEntity.badRequest().body(new BulkUploadResponse(0, files.size(),
+                    "At most " + uploadConfig.maxFilesPerRequest() + " files can be uploaded at once", List.of()));
+        }
+        String userId = userContext.getCurrentUserId();
+        log.info("Uploading {} files to S3 bucket: {} for user: {}", files.size(), path, userId);
+        List<UploadResult> results = s3ServiceImpl.uploadAll(path, files, metadata, userId);
+        int successCount = (int) results.stream().filter(UploadResult::success).count();
+        int failureCount = results.size() - successCount;
+        BulkUploadResponse response = new BulkUploadResponse(successCount, failureCount,
+                failureCount == 0 ? "Files uploaded successfully" : failureCount + " of " + results.size() + " files failed to upload", results);
+        return ResponseEntity.status(failureCount == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(response);
+    }
+
+    @PostMapping(path = "/upload/presigned", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Create a document whose content is uploaded directly to S3 through a presigned URL")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<PresignedUpload> createPresignedUpload(@RequestBody PresignedUploadRequest request) {
+        if (request.fileName() == null || request.fileName().isBlank() || request.path() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        String userId = userContext.getCurrentUserId();
+        log.info("Creating presigned upload to path: {} for user: {}", request.path(), userId);
+        PresignedUpload upload = s3ServiceImpl.createPresignedUpload(request.path(), request.fileName(), request.contentType(),
+                request.metadata() == null ? Map.of() : request.metadata(), userId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(upload);
+    }
+
+    @PostMapping("/{documentId}/complete")
+    @Operation(summary = "Complete a presigned upload once the content has been uploaded to S3")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<DocumentMetadata> completePresignedUpload(@PathVariable String documentId) {
+        String userId = userContext.getCurrentUserId();
+        log.info("User {} completing presigned upload of document: {}", userId, documentId);
+
+        Optional<DocumentMetadata> metadata = s3ServiceImpl.getDocumentMetadata(documentId);
+        if (metadata.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!hasAccessToDocument(metadata.get(), userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(s3ServiceImpl.completePresignedUpload(metadata.get()));
+        } catch (IllegalStateException e) {
+            log.info("Rejecting completion of document {}: {}", documentId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
     @GetMapping("/{documentId}")
-    @Operation(summary = "Download document by ID")
+    @Operation(summary = "Download document by ID, optionally a single byte range of it")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Resource> downloadDocument(@PathVariable String documentId) throws IOException {
+    public ResponseEntity<StreamingResponseBody> downloadDocument(
+            @PathVariable String documentId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) throws IOException {
         String userId = userContext.getCurrentUserId();
         log.info("User {} downloading document: {}", userId, documentId);
 
@@ -76,30 +174,205 @@ public class DocumentS3Controller {
         if (!hasAccessToDocument(doc, userId)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
+        if (DocumentMetadata.STATUS_PENDING.equals(doc.getStatus())) {
+            return ResponseEntity.notFound().build();
+        }
+        if (DocumentMetadata.STORAGE_MODE_SSE_KMS.equals(doc.getStorageMode())) {
+            // The client fetches the content from S3 itself, sending its Range header there
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(URI.create(s3ServiceImpl.presignDownload(doc).url().toString()))
+                    .build();
+        }
+
+        String eTag = documentETag(doc);
+        long contentLength = doc.getFileSize();
+        List<HttpRange> ranges = rangeHeader != null && ifRangeMatches(ifRange, eTag, doc) ? parseRanges(rangeHeader) : List.of();
+        if (!ranges.isEmpty()) {
+            long[] range = coveringRange(ranges, contentLength);
+            if (range == null) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + contentLength)
+                        .build();
+            }
+            InputStream rangeStream = s3ServiceImpl.downloadDocumentRange(doc, range[0], range[1]);
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + doc.getFileName() + "\"")
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + contentLength)
+                    .eTag(eTag)
+                    .lastModified(doc.getUpdatedAt())
+                    .contentType(MediaType.parseMediaType(doc.getContentType()))
+                    .contentLength(range[1] - range[0] + 1)
+                    .body(streamBody(rangeStream));
+        }
+
+        if (doc.getCompressionCodec() != null && doc.getCompressedSize() != null && acceptsEncoding(acceptEncoding, doc.getCompressionCodec())) {
+            // The stored representation is what the client asked for, so it is sent without decompressing it
+            InputStream encodedStream = s3ServiceImpl.downloadEncodedDocument(doc);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + doc.getFileName() + "\"")
+                    .header(HttpHeaders.CONTENT_ENCODING, doc.getCompressionCodec())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .eTag("\"" + doc.getDocumentId() + "-" + doc.getVersion() + "-" + doc.getCompressionCodec() + "\"")
+                    .lastModified(doc.getUpdatedAt())
+                    .contentType(MediaType.parseMediaType(doc.getContentType()))
+                    .contentLength(doc.getCompressedSize())
+                    .body(streamBody(encodedStream));
+        }
 
-        InputStream documentStream = s3ServiceImpl.downloadDocument(documentId);
+        InputStream documentStream = s3ServiceImpl.downloadDocument(doc);
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + doc.getFileName() + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(eTag)
+                .lastModified(doc.getUpdatedAt())
                 .contentType(MediaType.parseMediaType(doc.getContentType()))
-                .body(new InputStreamResource(documentStream));
+                .contentLength(contentLength)
+                .body(streamBody(documentStream));
+    }
+
+    @DeleteMapping("/{documentId}")
+    @Operation(summary = "Delete document by ID")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<Void> deleteDocument(@PathVariable String documentId) {
+        String userId = userContext.getCurrentUserId();
+        log.info("User {} deleting document: {}", userId, documentId);
+
+        Optional<DocumentMetadata> metadata = s3ServiceImpl.getDocumentMetadata(documentId);
+        if (metadata.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!hasAccessToDocument(metadata.get(), userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        s3ServiceImpl.deleteDocument(metadata.get());
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Search documents by metadata")
+    @Operation(summary = "Search documents by metadata, one page at a time")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<List<DocumentMetadata>> searchDocuments(@RequestParam Map<String, String> searchCriteria) {
+    public ResponseEntity<DocumentPage> searchDocuments(
+            @RequestParam Map<String, String> searchCriteria,
+            @RequestParam(value = PAGE_SIZE_PARAM, required = false) Integer pageSize,
+            @RequestParam(value = PAGE_TOKEN_PARAM, required = false) String pageToken
+    ) {
         String userId = userContext.getCurrentUserId();
-        log.info("User {} searching documents with criteria: {}", userId, searchCriteria);
+        Map<String, String> metadataCriteria = new HashMap<>(searchCriteria);
+        metadataCriteria.keySet().removeAll(PAGING_PARAMS);
+        log.info("User {} searching documents with criteria: {}", userId, metadataCriteria);
 
-        List<DocumentMetadata> results = s3ServiceImpl.searchByMetadata(searchCriteria);
+        // Users only see their own documents, so their search is scoped to them up front; admins search everything
+        String createdBy = hasAdminRole() ? null : userId;
+        try {
+            return ResponseEntity.ok(s3ServiceImpl.searchByMetadata(metadataCriteria, createdBy, pageSize, pageToken));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejecting search with invalid page token: {}", pageToken);
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
-        // Filter results based on user access
-        List<DocumentMetadata> filteredResults = results.stream()
-                .filter(doc -> hasAccessToDocument(doc, userId))
-                .toList();
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export the metadata of all documents as newline-delimited JSON")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportDocuments() {
+        log.info("User {} exporting all document metadata", userContext.getCurrentUserId());
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<DocumentMetadata> documents = s3ServiceImpl.streamAllDocuments()) {
+                Iterator<DocumentMetadata> iterator = documents.iterator();
+                while (iterator.hasNext()) {
+                    outputStream.write(objectMapper.writeValueAsBytes(iterator.next()));
+                    outputStream.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
-        return ResponseEntity.ok(filteredResults);
+    private StreamingResponseBody streamBody(InputStream documentStream) {
+        return outputStream -> {
+            try (documentStream) {
+                documentStream.transferTo(outputStream);
+            }
+        };
+    }
+
+    /**
+     * Returns whether an Accept-Encoding header accepts the content coding, ignoring codings with a zero quality.
+     */
+    private boolean acceptsEncoding(String acceptEncoding, String contentCoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(contentCoding)) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.matches("q=0(\\.0{0,3})?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String documentETag(DocumentMetadata doc) {
+        return "\"" + doc.getDocumentId() + "-" + doc.getVersion() + "\"";
+    }
+
+    /**
+     * A range request is only honoured if the If-Range validator still matches the stored document,
+     * otherwise the whole document is returned.
+     */
+    private boolean ifRangeMatches(String ifRange, String eTag, DocumentMetadata doc) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            Instant validator = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return doc.getUpdatedAt() != null && validator.equals(doc.getUpdatedAt().truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // Malformed Range headers are ignored and the whole document is returned
+            log.debug("Ignoring invalid Range header: {}", rangeHeader);
+            return List.of();
+        }
+    }
+
+    /**
+     * Resolves the requested ranges against the document length. Multiple ranges are coalesced into the single
+     * range spanning all satisfiable ones, which is served as one part.
+     *
+     * @return The first and last byte of the range, inclusive, or null if no range is satisfiable.
+     */
+    private long[] coveringRange(List<HttpRange> ranges, long contentLength) {
+        long start = Long.MAX_VALUE;
+        long end = -1;
+        for (HttpRange range : ranges) {
+            try {
+                start = Math.min(start, range.getRangeStart(contentLength));
+                end = Math.max(end, range.getRangeEnd(contentLength));
+            } catch (IllegalArgumentException e) {
+                log.debug("Skipping unsatisfiable range {} for length {}", range, contentLength);
+            }
+        }
+        return end < 0 || start > end ? null : new long[]{start, end};
     }
 
     private boolean hasAccessToDocument(DocumentMetadata doc, String userId) {
@@ -115,6 +388,7 @@ public class DocumentS3Controller {
     }
 
     // Response DTOs
-    public record BulkUploadResponse(int successCount, int failureCount, String message) {}
+    public record BulkUploadResponse(int successCount, int failureCount, String message, List<UploadResult> results) {}
     public record DocumentUploadResponse(HttpStatus status, String message){}
+    public record PresignedUploadRequest(String fileName, String path, String contentType, Map<String, String> metadata) {}
 }
@@ -0,0 +1,97 @@
+package com.example.localstack.controller;
+
+import com.example.localstack.service.metrics.ServerTiming;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Adds a {@value ServerTiming#HEADER} header to the responses of the document endpoints, with the time spent in
+ * each stage of the request. The header is written when the response body is first opened, so for streamed
+ * downloads it covers everything up to the first byte.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+    private static final String DOCUMENTS_PATH = "/api/v1/documents";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + DOCUMENTS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        ServerTimingResponse timedResponse = new ServerTimingResponse(response, ServerTiming.start());
+        try {
+            filterChain.doFilter(request, timedResponse);
+            timedResponse.writeHeader();
+        } finally {
+            ServerTiming.stop();
+        }
+    }
+
+    private static class ServerTimingResponse extends HttpServletResponseWrapper {
+        private final ServerTiming serverTiming;
+        private boolean headerWritten;
+
+        ServerTimingResponse(HttpServletResponse response, ServerTiming serverTiming) {
+            super(response);
+            this.serverTiming = serverTiming;
+        }
+
+        void writeHeader() {
+            if (headerWritten || isCommitted()) {
+                return;
+            }
+            headerWritten = true;
+            String value = serverTiming.headerValue();
+            if (value != null) {
+                setHeader(ServerTiming.HEADER, value);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.localstack.data;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.dbEntities.MetadataIndexEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link DocumentMetadataRepository} for the operations of the async document API.
+ * It works on the same tables and the same metadata cache, so documents written through either repository are
+ * visible to both.
+ */
+@Repository
+@Slf4j
+public class AsyncDocumentMetadataRepository {
+    private final DynamoDbAsyncTable<DocumentMetadata> table;
+    private final DynamoDbAsyncTable<MetadataIndexEntry> metadataIndexTable;
+    private final DocumentMetadataCache documentMetadataCache;
+
+    public AsyncDocumentMetadataRepository(DynamoDbEnhancedAsyncClient client,
+                                           @Value("${app.dynamodb.table-name}") String tableName,
+                                           @Value("${app.dynamodb.metadata-index-table-name}") String metadataIndexTableName,
+                                           DocumentMetadataCache documentMetadataCache) {
+        table = client.table(tableName, TableSchema.fromBean(DocumentMetadata.class));
+        metadataIndexTable = client.table(metadataIndexTableName, TableSchema.fromBean(MetadataIndexEntry.class));
+        this.documentMetadataCache = documentMetadataCache;
+    }
+
+    /**
+     * Saves a new document. As in {@link DocumentMetadataRepository#save(DocumentMetadata)} the metadata postings
+     * are written first, here concurrently, so a failure before the document is written leaves extra postings at
+     * worst.
+     *
+     * @return A future completed with the saved document once both the postings and the document are stored.
+     */
+    public CompletableFuture<DocumentMetadata> saveNew(DocumentMetadata documentMetadata) {
+        log.info("Saving document metadata: {}", documentMetadata);
+        documentMetadata.setPathRoot(documentMetadata.getFilePath() == null ? null : DocumentMetadata.pathRootOf(documentMetadata.getFilePath()));
+        CompletableFuture<?>[] postings = MetadataIndexEntry.entriesFor(documentMetadata).stream()
+                .map(metadataIndexTable::putItem)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(postings)
+                .thenCompose(ignored -> table.putItem(documentMetadata))
+                .thenApply(ignored -> {
+                    documentMetadataCache.invalidate(documentMetadata.getDocumentId());
+                    return documentMetadata;
+                });
+    }
+
+    /**
+     * Finds a document by ID, served from the metadata cache when possible.
+     */
+    public CompletableFuture<Optional<DocumentMetadata>> findById(String documentId) {
+        Optional<DocumentMetadata> cached = documentMetadataCache.getIfPresent(documentId);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        log.info("Finding document by ID : {}", documentId);
+        return table.getItem(Key.builder().partitionValue(documentId).build())
+                .thenApply(document -> {
+                    if (document != null) {
+                        documentMetadataCache.put(document);
+                    }
+                    return Optional.ofNullable(document);
+                });
+    }
+}
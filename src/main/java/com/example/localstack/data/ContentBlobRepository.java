@@ -0,0 +1,128 @@
+package com.example.localstack.data;
+
+import com.example.localstack.data.dbEntities.ContentBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reference counted index of deduplicated content. Counts are changed with atomic conditional updates, so
+ * concurrent uploads and deletes of the same content never lose a reference; an entry is only removed, and its
+ * object only deleted, while no document references it.
+ */
+@Repository
+@Slf4j
+public class ContentBlobRepository {
+    private static final Map<String, String> COUNT_NAME = Map.of("#count", ContentBlob.REFERENCE_COUNT);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbTable<ContentBlob> table;
+
+    public ContentBlobRepository(DynamoDbEnhancedClient client,
+                                 DynamoDbClient dynamoDbClient,
+                                 @Value("${app.dynamodb.content-index-table-name}") String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.table = client.table(tableName, TableSchema.fromBean(ContentBlob.class));
+    }
+
+    /**
+     * Adds a reference to stored content.
+     *
+     * @param contentKey The key of the content, see {@link ContentBlob#contentKeyOf(String, String)}.
+     * @return The content with the new reference counted, or empty if no content with that key is stored.
+     */
+    public Optional<ContentBlob> acquire(String contentKey) {
+        try {
+            return Optional.of(updateCount(contentKey, "SET #count = #count + :one"));
+        } catch (ConditionalCheckFailedException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Registers newly stored content with a single reference.
+     *
+     * @return False if content with the same key was registered concurrently; the caller then keeps its object
+     * to itself.
+     */
+    public boolean register(ContentBlob contentBlob) {
+        contentBlob.setReferenceCount(1L);
+        try {
+            table.putItem(PutItemEnhancedRequest.builder(ContentBlob.class)
+                    .item(contentBlob)
+                    .conditionExpression(Expression.builder()
+                            .expression("attribute_not_exists(#key)")
+                            .putExpressionName("#key", ContentBlob.CONTENT_KEY)
+                            .build())
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.info("Content {} was registered concurrently", contentBlob.getContentKey());
+            return false;
+        }
+    }
+
+    /**
+     * Removes a reference to stored content, and the index entry with it if it was the last one.
+     *
+     * @param contentKey The key of the content, see {@link ContentBlob#contentKeyOf(String, String)}.
+     * @return The removed entry if no references are left, whose object the caller deletes; empty otherwise.
+     */
+    public Optional<ContentBlob> release(String contentKey) {
+        ContentBlob contentBlob;
+        try {
+            contentBlob = updateCount(contentKey, "SET #count = #count - :one");
+        } catch (ConditionalCheckFailedException e) {
+            log.warn("Content {} to release is not in the content index", contentKey);
+            return Optional.empty();
+        }
+        if (contentBlob.getReferenceCount() > 0) {
+            return Optional.empty();
+        }
+        try {
+            // An upload may have acquired the content again since the decrement
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(table.tableName())
+                    .key(keyOf(contentKey))
+                    .conditionExpression("#count <= :zero")
+                    .expressionAttributeNames(COUNT_NAME)
+                    .expressionAttributeValues(Map.of(":zero", AttributeValue.fromN("0")))
+                    .build());
+            return Optional.of(contentBlob);
+        } catch (ConditionalCheckFailedException e) {
+            return Optional.empty();
+        }
+    }
+
+    private ContentBlob updateCount(String contentKey, String updateExpression) {
+        Map<String, AttributeValue> attributes = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(table.tableName())
+                        .key(keyOf(contentKey))
+                        .updateExpression(updateExpression)
+                        .conditionExpression("attribute_exists(#count)")
+                        .expressionAttributeNames(COUNT_NAME)
+                        .expressionAttributeValues(Map.of(":one", AttributeValue.fromN("1")))
+                        .returnValues(ReturnValue.ALL_NEW)
+                        .build())
+                .attributes();
+        return table.tableSchema().mapToItem(attributes);
+    }
+
+    private static Map<String, AttributeValue> keyOf(String contentKey) {
+        return Map.of(ContentBlob.CONTENT_KEY, AttributeValue.fromS(contentKey));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.localstack.data;
+
+import com.example.localstack.config.MetadataCacheConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Size-bounded, time-limited cache of document metadata by document ID. Hit, miss and eviction counts are
+ * published as the {@code cache.*} meters of the {@value #CACHE_NAME} cache.
+ */
+@Component
+public class DocumentMetadataCache {
+    static final String CACHE_NAME = "documentMetadata";
+
+    private final Cache<String, DocumentMetadata> cache;
+
+    public DocumentMetadataCache(MetadataCacheConfig metadataCacheConfig, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(metadataCacheConfig.maxSize())
+                .expireAfterWrite(metadataCacheConfig.timeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached document, loading it on a miss. Documents that do not exist are not cached.
+     */
+    public Optional<DocumentMetadata> get(String documentId, Function<String, Optional<DocumentMetadata>> loader) {
+        return Optional.ofNullable(cache.get(documentId, id -> loader.apply(id).orElse(null)));
+    }
+
+    /**
+     * Returns the cached document without loading it on a miss.
+     */
+    public Optional<DocumentMetadata> getIfPresent(String documentId) {
+        return Optional.ofNullable(cache.getIfPresent(documentId));
+    }
+
+    public void put(DocumentMetadata documentMetadata) {
+        cache.put(documentMetadata.getDocumentId(), documentMetadata);
+    }
+
+    public void invalidate(String documentId) {
+        cache.invalidate(documentId);
+    }
+}
@@ -1,99 +1,376 @@
 package com.example.localstack.data;
 
+import com.example.localstack.config.ScanConfig;
 import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.dbEntities.MetadataIndexEntry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
 import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @Slf4j
 public class DocumentMetadataRepository {
+    private static final int MAX_REQUESTS_PER_PAGE = 5;
+    private static final int MAX_BATCH_GET_ITEMS = 100;
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_BATCH_WRITE_ATTEMPTS = 5;
+    /** Leaves out documents whose content has not been uploaded yet. */
+    private static final Expression AVAILABLE_DOCUMENTS = Expression.builder()
+            .expression("attribute_not_exists(#status) OR #status <> :pending")
+            .putExpressionName("#status", "status")
+            .putExpressionValue(":pending", AttributeValue.builder().s(DocumentMetadata.STATUS_PENDING).build())
+            .build();
+
+    private final DynamoDbEnhancedClient client;
     private final DynamoDbTable<DocumentMetadata> table;
+    private final DynamoDbTable<MetadataIndexEntry> metadataIndexTable;
+    private final ScanConfig scanConfig;
+    private final ThroughputLimiter scanThroughputLimiter;
+    private final DocumentMetadataCache documentMetadataCache;
 
-    public DocumentMetadataRepository(DynamoDbEnhancedClient client, @Value("${app.dynamodb.table-name}") String tableName) {
+    public DocumentMetadataRepository(DynamoDbEnhancedClient client,
+                                      @Value("${app.dynamodb.table-name}") String tableName,
+                                      @Value("${app.dynamodb.metadata-index-table-name}") String metadataIndexTableName,
+                                      ScanConfig scanConfig,
+                                      DocumentMetadataCache documentMetadataCache) {
+        this.client = client;
         table = client.table(tableName, TableSchema.fromBean(DocumentMetadata.class));
+        metadataIndexTable = client.table(metadataIndexTableName, TableSchema.fromBean(MetadataIndexEntry.class));
+        this.scanConfig = scanConfig;
+        this.scanThroughputLimiter = new ThroughputLimiter(scanConfig.maxItemsPerSecond());
+        this.documentMetadataCache = documentMetadataCache;
     }
 
+    /**
+     * Saves the document and keeps the inverted metadata index in step with it. Postings for the new metadata are
+     * written before the document and postings the document no longer has are removed after it, so a failure in
+     * between leaves extra postings at worst; searches re-check every document they load against the criteria.
+     */
     public DocumentMetadata save(DocumentMetadata documentMetadata) {
         log.info("Saving document metadata: {}", documentMetadata);
-        table.putItem(documentMetadata);
+        documentMetadata.setPathRoot(documentMetadata.getFilePath() == null ? null : DocumentMetadata.pathRootOf(documentMetadata.getFilePath()));
+        List<MetadataIndexEntry> postings = MetadataIndexEntry.entriesFor(documentMetadata);
+        writeIndexEntries(postings, List.of());
+
+        DocumentMetadata previous = table.putItemWithResponse(PutItemEnhancedRequest.builder(DocumentMetadata.class)
+                        .item(documentMetadata)
+                        .returnValues(ReturnValue.ALL_OLD)
+                        .build())
+                .attributes();
+        documentMetadataCache.invalidate(documentMetadata.getDocumentId());
+        if (previous != null) {
+            Set<String> current = postings.stream().map(MetadataIndexEntry::getIndexKey).collect(Collectors.toSet());
+            writeIndexEntries(List.of(), MetadataIndexEntry.entriesFor(previous).stream()
+                    .filter(posting -> !current.contains(posting.getIndexKey()))
+                    .toList());
+        }
         return documentMetadata;
     }
 
+    /**
+     * Saves new documents with batch writes, 25 items per request, together with their metadata postings. Unlike
+     * {@link #save(DocumentMetadata)} it does not look at earlier versions, so it must only be used for documents
+     * that do not exist yet.
+     */
+    public List<DocumentMetadata> saveAll(List<DocumentMetadata> documents) {
+        log.info("Saving {} new documents", documents.size());
+        documents.forEach(document -> document.setPathRoot(document.getFilePath() == null ? null : DocumentMetadata.pathRootOf(document.getFilePath())));
+        writeIndexEntries(documents.stream().flatMap(document -> MetadataIndexEntry.entriesFor(document).stream()).toList(), List.of());
+        batchWrite(table, DocumentMetadata.class, documents, List.of());
+        documents.forEach(document -> documentMetadataCache.invalidate(document.getDocumentId()));
+        return documents;
+    }
+
+    /**
+     * Returns whether the inverted metadata index holds the postings of the documents stored before it existed.
+     */
+    public boolean isMetadataIndexComplete() {
+        return metadataIndexTable.getItem(MetadataIndexEntry.completionMarker()) != null;
+    }
+
+    /**
+     * Writes the postings of every stored document to the inverted metadata index, one scanned page at a time
+     * with batch writes, and then marks the index as complete. Postings are written as puts, so a run that failed
+     * part way is simply started again.
+     *
+     * @return The number of documents scanned.
+     */
+    public long indexAllMetadata() {
+        long scanned = 0;
+        for (Page<DocumentMetadata> page : table.scan()) {
+            writeIndexEntries(page.items().stream().flatMap(document -> MetadataIndexEntry.entriesFor(document).stream()).toList(), List.of());
+            scanned += page.items().size();
+        }
+        metadataIndexTable.putItem(MetadataIndexEntry.completionMarker());
+        return scanned;
+    }
+
+    /**
+     * Finds a document by ID, served from the metadata cache when possible.
+     */
     public Optional<DocumentMetadata> findById(String documentId) {
-        log.info("Finding document by ID : {}", documentId);
-        DocumentMetadata search = table.getItem(r -> r.key(k -> k.partitionValue(documentId)));
-        return Optional.ofNullable(search);
+        return documentMetadataCache.get(documentId, id -> {
+            log.info("Finding document by ID : {}", id);
+            DocumentMetadata search = table.getItem(r -> r.key(k -> k.partitionValue(id)));
+            return Optional.ofNullable(search);
+        });
     }
 
-    public List<DocumentMetadata> searchByMetadata(Map<String, String> searchData) {
+    /**
+     * Returns one page of documents whose metadata holds all the given entries. Keys and values are matched
+     * exactly, ignoring case and surrounding whitespace, through the inverted metadata index; without criteria the
+     * table is scanned. Like every listing it leaves out documents whose content has not been uploaded yet.
+     *
+     * @param searchData The metadata entries to match, all documents if empty.
+     * @param pageSize   The maximum number of documents to return.
+     * @param pageToken  The token of the page to read, null for the first page.
+     */
+    public DocumentPage searchByMetadata(Map<String, String> searchData, int pageSize, String pageToken) {
         log.info("Searching documents by metadata: {}", searchData);
-        if (searchData.isEmpty()) {
-            return table.scan().items().stream().toList();
+        if (!searchData.isEmpty()) {
+            return searchMetadataIndex(null, searchData, pageSize, pageToken);
         }
+        ScanEnhancedRequest.Builder scanRequest = ScanEnhancedRequest.builder().filterExpression(AVAILABLE_DOCUMENTS);
+        return readPage(pageSize, pageToken, PageToken.Query.of(table.tableSchema().tableMetadata(), null), (limit, startKey) ->
+                table.scan(scanRequest.limit(limit).exclusiveStartKey(startKey).build()).iterator().next());
+    }
 
-        StringBuilder filterExp = new StringBuilder();
-        Map<String, AttributeValue> attributeValueMap = new HashMap<>();
-        int index = 0;
-        for (Map.Entry<String, String> entry : searchData.entrySet()) {
-            if (index > 0) {
-                filterExp.append(" AND ");
-            }
-            String valuePlaceHolder = ":metadataValue".concat(Integer.toString(index));
-            filterExp.append("contains(metadata. ").append(entry.getKey()).append(", ").append(valuePlaceHolder).append(")");
-            attributeValueMap.put(valuePlaceHolder, AttributeValue.builder().s(entry.getValue()).build());
-            index++;
+    /**
+     * Returns one page of a user's documents whose metadata holds all the given entries. Only the user's postings
+     * are considered, and without criteria only the user's partition of the createdBy index is read, newest first,
+     * so the cost follows the number of documents the user owns rather than the size of the table.
+     *
+     * @param userId     The owner of the documents.
+     * @param searchData The metadata entries to match, all of the user's documents if empty.
+     * @param pageSize   The maximum number of documents to return.
+     * @param pageToken  The token of the page to read, null for the first page.
+     */
+    public DocumentPage searchByCreatedByAndMetadata(String userId, Map<String, String> searchData, int pageSize, String pageToken) {
+        log.info("Searching documents of user {} by metadata: {}", userId, searchData);
+        if (!searchData.isEmpty()) {
+            return searchMetadataIndex(userId, searchData, pageSize, pageToken);
         }
+        return findByCreatedBy(userId, pageSize, pageToken);
+    }
 
-        Expression expression = Expression.builder()
-                .expression(filterExp.toString())
-                .expressionValues(attributeValueMap)
-                .build();
-        ScanEnhancedRequest scanRequest = ScanEnhancedRequest.builder()
-                .filterExpression(expression)
-                .build();
-
-        return table.scan(scanRequest).items().stream().toList();
+    /**
+     * Streams every document in the table using a parallel scan on virtual threads. The segments together read no
+     * more than the configured number of items per second, shared by all running scans. Documents arrive in no
+     * particular order.
+     *
+     * @return The documents. The stream must be closed to stop the scan if it is not read to the end.
+     */
+    public Stream<DocumentMetadata> scanAll() {
+        log.info("Scanning all documents in {} segments", scanConfig.resolvedSegments());
+        return SegmentedScan.stream(table, scanConfig.resolvedSegments(), scanThroughputLimiter, scanConfig.bufferSize())
+                .filter(document -> !DocumentMetadata.STATUS_PENDING.equals(document.getStatus()));
     }
 
-    public List<DocumentMetadata> findByPath(String path) {
+    /**
+     * Finds documents whose path starts with the given prefix by querying the path index. The prefix is matched
+     * within the partition of its first path segment, so it has to contain that segment in full.
+     */
+    public DocumentPage findByPath(String path, int pageSize, String pageToken) {
         log.info("Searching documents by path prefix : {}", path);
-        Expression expression = Expression.builder()
-                .expression("begins_with(path, :path)")
-                .expressionValues(Map.of(":path", AttributeValue.builder().s(path).build()))
-                .build();
-        ScanEnhancedRequest scanRequest = ScanEnhancedRequest.builder()
-                .filterExpression(expression)
-                .build();
-        return table.scan(scanRequest).items().stream().toList();
+        String prefix = DocumentMetadata.normalizePath(path);
+        QueryEnhancedRequest.Builder queryRequest = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.sortBeginsWith(Key.builder()
+                        .partitionValue(DocumentMetadata.pathRootOf(prefix))
+                        .sortValue(prefix)
+                        .build()))
+                .filterExpression(AVAILABLE_DOCUMENTS);
+        PageToken.Query query = PageToken.Query.of(table.tableSchema().tableMetadata(), DocumentMetadata.PATH_INDEX, prefix);
+        return readPage(pageSize, pageToken, query, (limit, startKey) ->
+                table.index(DocumentMetadata.PATH_INDEX).query(queryRequest.limit(limit).exclusiveStartKey(startKey).build()).iterator().next());
     }
 
-    public List<DocumentMetadata> findByCreatedBy(String userId) {
+    /**
+     * Finds the documents created by a user, newest first, by querying the createdBy index.
+     */
+    public DocumentPage findByCreatedBy(String userId, int pageSize, String pageToken) {
         log.info("Searching documents created by user: {}", userId);
-
-        Expression expression = Expression.builder()
-                .expression("createdBy = :userId")
-                .expressionValues(Map.of(":userId", AttributeValue.builder().s(userId).build()))
-                .build();
-        ScanEnhancedRequest scanRequest = ScanEnhancedRequest.builder()
-                .filterExpression(expression)
-                .build();
-        return table.scan(scanRequest).items().stream().toList();
+        QueryEnhancedRequest.Builder queryRequest = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(userId).build()))
+                .filterExpression(AVAILABLE_DOCUMENTS)
+                .scanIndexForward(false);
+        PageToken.Query query = PageToken.Query.of(table.tableSchema().tableMetadata(), DocumentMetadata.CREATED_BY_INDEX, userId);
+        return readPage(pageSize, pageToken, query, (limit, startKey) ->
+                table.index(DocumentMetadata.CREATED_BY_INDEX).query(queryRequest.limit(limit).exclusiveStartKey(startKey).build()).iterator().next());
     }
 
     public void deleteById(String documentId) {
         log.info("Deleting document by ID : {}", documentId);
-        table.deleteItem(r -> r.key(k -> k.partitionValue(documentId)));
+        DocumentMetadata deleted = table.deleteItem(r -> r.key(k -> k.partitionValue(documentId)));
+        documentMetadataCache.invalidate(documentId);
+        if (deleted != null) {
+            writeIndexEntries(List.of(), MetadataIndexEntry.entriesFor(deleted));
+        }
+    }
+
+    /**
+     * Pages through the postings of one criterion, the driver, and intersects each page with the other criteria by
+     * looking up the (criterion, document) postings directly. Only documents present under every criterion are
+     * loaded, so the work follows the number of matches of the driver rather than the size of the table. A search
+     * for one user reads only the postings under the user's prefix of the driver partition. The driver is chosen
+     * deterministically so that page tokens stay valid across requests.
+     */
+    private DocumentPage searchMetadataIndex(String userId, Map<String, String> searchData, int pageSize, String pageToken) {
+        List<String> indexKeys = searchData.entrySet().stream()
+                .map(entry -> MetadataIndexEntry.indexKeyOf(entry.getKey(), entry.getValue()))
+                .distinct()
+                .sorted()
+                .toList();
+        String driver = indexKeys.getFirst();
+        List<String> others = indexKeys.subList(1, indexKeys.size());
+
+        QueryConditional driverPostings = userId == null
+                ? QueryConditional.keyEqualTo(Key.builder().partitionValue(driver).build())
+                : QueryConditional.sortBeginsWith(Key.builder().partitionValue(driver).sortValue(MetadataIndexEntry.ownerPrefixOf(userId)).build());
+        QueryEnhancedRequest.Builder queryRequest = QueryEnhancedRequest.builder().queryConditional(driverPostings);
+        PageToken.Query query = PageToken.Query.of(metadataIndexTable.tableSchema().tableMetadata(), null, userId, indexKeys);
+        return readPage(pageSize, pageToken, query, (limit, startKey) -> {
+            Page<MetadataIndexEntry> postings = metadataIndexTable.query(queryRequest.limit(limit).exclusiveStartKey(startKey).build()).iterator().next();
+            List<MetadataIndexEntry> matches = postings.items();
+            for (String other : others) {
+                matches = retainIndexed(other, matches);
+            }
+            List<DocumentMetadata> documents = getDocuments(matches.stream().map(MetadataIndexEntry::getDocumentId).toList()).stream()
+                    .filter(document -> userId == null || userId.equals(document.getCreatedBy()))
+                    .filter(document -> MetadataIndexEntry.matches(document, searchData))
+                    .toList();
+            Page.Builder<DocumentMetadata> page = Page.builder(DocumentMetadata.class).items(documents);
+            return postings.lastEvaluatedKey() == null ? page.build() : page.lastEvaluatedKey(postings.lastEvaluatedKey()).build();
+        });
+    }
+
+    /**
+     * Returns the postings, in the given order, whose documents also have a posting under the index key.
+     */
+    private List<MetadataIndexEntry> retainIndexed(String indexKey, List<MetadataIndexEntry> postings) {
+        if (postings.isEmpty()) {
+            return postings;
+        }
+        Set<String> indexed = batchGet(metadataIndexTable, MetadataIndexEntry.class, postings.stream()
+                        .map(posting -> Key.builder().partitionValue(indexKey).sortValue(posting.getPostingKey()).build())
+                        .toList())
+                .stream()
+                .map(MetadataIndexEntry::getPostingKey)
+                .collect(Collectors.toSet());
+        return postings.stream().filter(posting -> indexed.contains(posting.getPostingKey())).toList();
+    }
+
+    /**
+     * Loads documents by ID, in the given order. Documents that no longer exist are skipped.
+     */
+    private List<DocumentMetadata> getDocuments(List<String> documentIds) {
+        Map<String, DocumentMetadata> documents = batchGet(table, DocumentMetadata.class, documentIds.stream()
+                        .map(documentId -> Key.builder().partitionValue(documentId).build())
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(DocumentMetadata::getDocumentId, Function.identity()));
+        return documentIds.stream().map(documents::get).filter(Objects::nonNull).toList();
+    }
+
+    private <T> List<T> batchGet(DynamoDbTable<T> target, Class<T> itemClass, List<Key> keys) {
+        List<T> items = new ArrayList<>(keys.size());
+        for (int from = 0; from < keys.size(); from += MAX_BATCH_GET_ITEMS) {
+            ReadBatch.Builder<T> batch = ReadBatch.builder(itemClass).mappedTableResource(target);
+            keys.subList(from, Math.min(from + MAX_BATCH_GET_ITEMS, keys.size())).forEach(batch::addGetItem);
+            // The result iterable requests unprocessed keys again until all are read
+            client.batchGetItem(r -> r.readBatches(batch.build())).resultsForTable(target).forEach(items::add);
+        }
+        return items;
+    }
+
+    /**
+     * Writes and removes postings in batches, retrying unprocessed items with exponential backoff.
+     */
+    private void writeIndexEntries(List<MetadataIndexEntry> puts, List<MetadataIndexEntry> deletes) {
+        batchWrite(metadataIndexTable, MetadataIndexEntry.class, puts, deletes.stream()
+                .map(posting -> Key.builder().partitionValue(posting.getIndexKey()).sortValue(posting.getPostingKey()).build())
+                .toList());
+    }
+
+    private <T> void batchWrite(DynamoDbTable<T> target, Class<T> itemClass, List<T> puts, List<Key> deletes) {
+        List<T> pendingPuts = puts;
+        List<Key> pendingDeletes = deletes;
+        while (!pendingPuts.isEmpty() || !pendingDeletes.isEmpty()) {
+            int putCount = Math.min(pendingPuts.size(), MAX_BATCH_WRITE_ITEMS);
+            int deleteCount = Math.min(pendingDeletes.size(), MAX_BATCH_WRITE_ITEMS - putCount);
+            writeBatch(target, itemClass, pendingPuts.subList(0, putCount), pendingDeletes.subList(0, deleteCount));
+            pendingPuts = pendingPuts.subList(putCount, pendingPuts.size());
+            pendingDeletes = pendingDeletes.subList(deleteCount, pendingDeletes.size());
+        }
+    }
+
+    private <T> void writeBatch(DynamoDbTable<T> target, Class<T> itemClass, List<T> puts, List<Key> deletes) {
+        for (int attempt = 0; !puts.isEmpty() || !deletes.isEmpty(); attempt++) {
+            if (attempt == MAX_BATCH_WRITE_ATTEMPTS) {
+                throw new IllegalStateException("Failed to write " + (puts.size() + deletes.size()) + " items to " + target.tableName());
+            }
+            if (attempt > 0) {
+                backOff(attempt);
+            }
+            WriteBatch.Builder<T> batch = WriteBatch.builder(itemClass).mappedTableResource(target);
+            puts.forEach(batch::addPutItem);
+            deletes.forEach(batch::addDeleteItem);
+            BatchWriteResult result = client.batchWriteItem(r -> r.writeBatches(batch.build()));
+            puts = result.unprocessedPutItemsForTable(target);
+            deletes = result.unprocessedDeleteItemsForTable(target);
+        }
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(50L << attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing batch", e);
+        }
+    }
+
+    /**
+     * Collects up to {@code pageSize} documents, asking DynamoDB for no more than the remaining number of items on
+     * each request so that a page never holds more than {@code pageSize} documents. Filtered scans may need
+     * several requests to fill a page; at most {@link #MAX_REQUESTS_PER_PAGE} are made before a short page is
+     * returned together with the token to continue the query from.
+     */
+    private DocumentPage readPage(int pageSize, String pageToken, PageToken.Query query, BiFunction<Integer, Map<String, AttributeValue>, Page<DocumentMetadata>> fetch) {
+        List<DocumentMetadata> items = new ArrayList<>(pageSize);
+        Map<String, AttributeValue> startKey = PageToken.decode(pageToken, query);
+        int requests = 0;
+        do {
+            Page<DocumentMetadata> page = fetch.apply(pageSize - items.size(), startKey);
+            items.addAll(page.items());
+            startKey = page.lastEvaluatedKey();
+            requests++;
+        } while (items.size() < pageSize && startKey != null && !startKey.isEmpty() && requests < MAX_REQUESTS_PER_PAGE);
+        return new DocumentPage(items, PageToken.encode(startKey, query));
     }
 }
@@ -0,0 +1,13 @@
+package com.example.localstack.data;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+
+import java.util.List;
+
+/**
+ * One page of a document listing.
+ *
+ * @param items         The documents on this page. May hold fewer items than requested, even none, while more pages follow.
+ * @param nextPageToken Opaque token to pass back to fetch the next page, or null if this is the last page.
+ */
+public record DocumentPage(List<DocumentMetadata> items, String nextPageToken) {}
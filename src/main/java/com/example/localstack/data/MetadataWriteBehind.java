@@ -0,0 +1,130 @@
+package com.example.localstack.data;
+
+import com.example.localstack.config.WriteBehindConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the metadata of new documents, either directly or, when write-behind is enabled, by queueing it and
+ * writing the queue in batches of up to {@link WriteBehindConfig#maxBatchSize()} items. A batch is written once it
+ * is full or the first document in it has waited {@link WriteBehindConfig#maxLinger()}.
+ *
+ * <p>Queued documents are put into the {@link DocumentMetadataCache} straight away so that this instance can
+ * serve them before they are durable. Callers that need durability wait for the returned future.
+ */
+@Slf4j
+@Component
+public class MetadataWriteBehind {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final DocumentMetadataRepository documentMetadataRepository;
+    private final DocumentMetadataCache documentMetadataCache;
+    private final WriteBehindConfig writeBehindConfig;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread flusher;
+    private volatile boolean running;
+
+    public MetadataWriteBehind(DocumentMetadataRepository documentMetadataRepository, DocumentMetadataCache documentMetadataCache, WriteBehindConfig writeBehindConfig) {
+        this.documentMetadataRepository = documentMetadataRepository;
+        this.documentMetadataCache = documentMetadataCache;
+        this.writeBehindConfig = writeBehindConfig;
+        this.queue = new LinkedBlockingQueue<>(writeBehindConfig.maxPending());
+        this.running = writeBehindConfig.enabled();
+        this.flusher = running ? Thread.ofVirtual().name("metadata-write-behind").start(this::flushLoop) : null;
+    }
+
+    /**
+     * Saves the metadata of a document that does not exist yet. A document that is not queued, because
+     * write-behind is disabled or its queue is full, is saved before this method returns and a failure to save it
+     * is thrown rather than left in the future.
+     *
+     * @return A future completed once the document is durably stored, or completed exceptionally if a queued
+     * document could not be stored. Without write-behind the future is already complete.
+     */
+    public CompletableFuture<DocumentMetadata> saveNew(DocumentMetadata documentMetadata) {
+        if (running) {
+            PendingWrite pendingWrite = new PendingWrite(documentMetadata, new CompletableFuture<>());
+            documentMetadataCache.put(documentMetadata);
+            if (queue.offer(pendingWrite)) {
+                return pendingWrite.saved();
+            }
+            log.warn("Write-behind queue is full, saving document {} directly", documentMetadata.getDocumentId());
+        }
+        try {
+            return CompletableFuture.completedFuture(documentMetadataRepository.save(documentMetadata));
+        } catch (RuntimeException e) {
+            documentMetadataCache.invalidate(documentMetadata.getDocumentId());
+            throw e;
+        }
+    }
+
+    /**
+     * Stops accepting queued writes and writes out what is queued.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join();
+            List<PendingWrite> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                flush(remaining);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    flush(collectBatch(first));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Write-behind interrupted with {} documents queued", queue.size());
+                return;
+            }
+        }
+    }
+
+    private List<PendingWrite> collectBatch(PendingWrite first) throws InterruptedException {
+        List<PendingWrite> batch = new ArrayList<>(writeBehindConfig.maxBatchSize());
+        batch.add(first);
+        long deadline = System.nanoTime() + writeBehindConfig.maxLinger().toNanos();
+        while (batch.size() < writeBehindConfig.maxBatchSize()) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        try {
+            documentMetadataRepository.saveAll(batch.stream().map(PendingWrite::documentMetadata).toList());
+            batch.forEach(pendingWrite -> pendingWrite.saved().complete(pendingWrite.documentMetadata()));
+        } catch (RuntimeException e) {
+            log.error("Error writing batch of {} documents", batch.size(), e);
+            batch.forEach(pendingWrite -> {
+                documentMetadataCache.invalidate(pendingWrite.documentMetadata().getDocumentId());
+                pendingWrite.saved().completeExceptionally(e);
+            });
+        }
+    }
+
+    private record PendingWrite(DocumentMetadata documentMetadata, CompletableFuture<DocumentMetadata> saved) {}
+}
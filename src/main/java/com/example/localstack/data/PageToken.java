@@ -0,0 +1,118 @@
+package com.example.localstack.data;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Converts between DynamoDB pagination keys and the opaque page tokens handed out to clients. A token is the
+ * URL-safe Base64 encoding of a JSON object holding a fingerprint of the query that issued it and the last
+ * evaluated key as an object of attribute name to string value; all key attributes of the document table, the
+ * metadata index and their secondary indexes are strings.
+ *
+ * <p>A token only continues the query it was issued for: one from another query, or whose key does not have the
+ * key attributes of the table or index read, is rejected as invalid instead of being passed on to DynamoDB.
+ */
+public final class PageToken {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int FINGERPRINT_LENGTH = 12;
+
+    private record Token(String query, Map<String, String> key) {}
+
+    /**
+     * A paged query.
+     *
+     * @param fingerprint   Identifies the table or index read and the conditions selecting the items.
+     * @param keyAttributes The attributes of the last evaluated keys of the table or index read.
+     */
+    public record Query(String fingerprint, Set<String> keyAttributes) {
+
+        /**
+         * @param tableMetadata The metadata of the table read.
+         * @param indexName     The secondary index read, null for the table itself.
+         * @param conditions    The values that select the items, e.g. the partition value and the criteria.
+         */
+        public static Query of(TableMetadata tableMetadata, String indexName, Object... conditions) {
+            Set<String> keyAttributes = new TreeSet<>(tableMetadata.primaryKeys());
+            if (indexName != null) {
+                keyAttributes.addAll(tableMetadata.indexKeys(indexName));
+            }
+            List<Object> description = new ArrayList<>();
+            description.add(keyAttributes);
+            description.add(indexName);
+            description.addAll(Arrays.asList(conditions));
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(OBJECT_MAPPER.writeValueAsBytes(description));
+                return new Query(Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, FINGERPRINT_LENGTH)), Set.copyOf(keyAttributes));
+            } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Failed to fingerprint query", e);
+            }
+        }
+    }
+
+    private PageToken() {
+    }
+
+    /**
+     * @param lastEvaluatedKey The last evaluated key of a page, may be null or empty.
+     * @param query            The query the page was read by.
+     * @return The page token, or null if there are no more pages.
+     */
+    public static String encode(Map<String, AttributeValue> lastEvaluatedKey, Query query) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+        Map<String, String> key = new LinkedHashMap<>();
+        lastEvaluatedKey.forEach((name, value) -> {
+            if (value.s() == null) {
+                throw new IllegalStateException("Unsupported key attribute type for: " + name);
+            }
+            key.put(name, value.s());
+        });
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(new Token(query.fingerprint(), key)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode page token", e);
+        }
+    }
+
+    /**
+     * @param pageToken A token returned by {@link #encode(Map, Query)}, may be null or blank for the first page.
+     * @param query     The query to continue.
+     * @return The exclusive start key, or null to start from the beginning.
+     * @throws IllegalArgumentException If the token is malformed or was not issued for the query.
+     */
+    public static Map<String, AttributeValue> decode(String pageToken, Query query) {
+        if (pageToken == null || pageToken.isBlank()) {
+            return null;
+        }
+        Token token;
+        try {
+            token = OBJECT_MAPPER.readValue(new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8), Token.class);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+        if (token == null || token.key() == null || token.key().isEmpty()) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        if (!query.fingerprint().equals(token.query()) || !query.keyAttributes().equals(token.key().keySet())) {
+            throw new IllegalArgumentException("Page token was not issued for this query");
+        }
+        Map<String, AttributeValue> startKey = new LinkedHashMap<>();
+        token.key().forEach((name, value) -> startKey.put(name, AttributeValue.builder().s(value).build()));
+        return startKey;
+    }
+}
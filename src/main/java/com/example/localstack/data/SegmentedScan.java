@@ -0,0 +1,147 @@
+package com.example.localstack.data;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a whole table as a parallel scan: every segment is read on its own virtual thread and the items of all
+ * segments are merged, in no particular order, into one stream through a bounded buffer. Segments block when the
+ * buffer is full, so a slow consumer slows the scan down instead of filling the heap.
+ *
+ * @param <T> The item type of the table.
+ */
+@Slf4j
+public final class SegmentedScan<T> implements Iterator<T>, AutoCloseable {
+    private static final int PAGE_LIMIT = 250;
+    private static final Object SEGMENT_DONE = new Object();
+
+    private final DynamoDbTable<T> table;
+    private final int totalSegments;
+    private final ThroughputLimiter throughputLimiter;
+    private final BlockingQueue<Object> buffer;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
+    private int runningSegments;
+    private Object next;
+
+    private SegmentedScan(DynamoDbTable<T> table, int totalSegments, ThroughputLimiter throughputLimiter, int bufferSize) {
+        this.table = table;
+        this.totalSegments = totalSegments;
+        this.throughputLimiter = throughputLimiter;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.runningSegments = totalSegments;
+    }
+
+    /**
+     * Starts scanning the table. The returned stream must be closed to stop the scan if it is not read to the end.
+     *
+     * @param table             The table to scan.
+     * @param totalSegments     The number of segments to scan in parallel.
+     * @param throughputLimiter Limits the items read per second, shared with other scans.
+     * @param bufferSize        The number of items read ahead of the consumer.
+     */
+    public static <T> Stream<T> stream(DynamoDbTable<T> table, int totalSegments, ThroughputLimiter throughputLimiter, int bufferSize) {
+        SegmentedScan<T> scan = new SegmentedScan<>(table, totalSegments, throughputLimiter, bufferSize);
+        scan.start();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan, Spliterator.NONNULL), false)
+                .onClose(scan::close);
+    }
+
+    private void start() {
+        for (int segment = 0; segment < totalSegments; segment++) {
+            int currentSegment = segment;
+            executor.execute(() -> scanSegment(currentSegment));
+        }
+        executor.shutdown();
+    }
+
+    private void scanSegment(int segment) {
+        ScanEnhancedRequest request = ScanEnhancedRequest.builder()
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .limit(PAGE_LIMIT)
+                .build();
+        try {
+            for (Page<T> page : table.scan(request)) {
+                for (T item : page.items()) {
+                    buffer.put(item);
+                }
+                if (closed) {
+                    return;
+                }
+                throughputLimiter.acquire(page.items().size());
+            }
+            buffer.put(SEGMENT_DONE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            if (!closed) {
+                log.error("Error scanning segment {} of {}", segment, totalSegments, e);
+                try {
+                    buffer.put(new SegmentFailure(e));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && runningSegments > 0) {
+            Object taken = take();
+            if (taken == SEGMENT_DONE) {
+                runningSegments--;
+            } else if (taken instanceof SegmentFailure failure) {
+                close();
+                throw new IllegalStateException("Failed to scan table", failure.cause());
+            } else {
+                next = taken;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = (T) next;
+        next = null;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        runningSegments = 0;
+        executor.shutdownNow();
+    }
+
+    private Object take() {
+        try {
+            return buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while scanning table", e);
+        }
+    }
+
+    private record SegmentFailure(RuntimeException cause) {}
+}
@@ -0,0 +1,45 @@
+package com.example.localstack.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spaces out work so that no more than a fixed number of permits is handed out per second on average. Permits
+ * are paid for up front, so a caller taking a large batch delays the callers after it rather than itself.
+ */
+public class ThroughputLimiter {
+    private final double permitsPerSecond;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond The sustained rate, or 0 or less for no limit.
+     */
+    public ThroughputLimiter(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Takes the permits, waiting until earlier callers' permits have been paid for.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire(int permits) throws InterruptedException {
+        if (permitsPerSecond <= 0 || permits <= 0) {
+            return;
+        }
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextFreeNanos);
+            nextFreeNanos = start + (long) (permits * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            waitNanos = start - now;
+        } finally {
+            lock.unlock();
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
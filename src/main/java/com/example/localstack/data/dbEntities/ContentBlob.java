@@ -0,0 +1,74 @@
+package com.example.localstack.data.dbEntities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+import java.time.Instant;
+
+/**
+ * Entry of the content index: encrypted content stored once in S3 and shared by {@link #referenceCount}
+ * documents of the same owner. Documents referencing it carry its hash in {@link DocumentMetadata#getContentHash()}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class ContentBlob {
+    public static final String CONTENT_KEY = "contentKey";
+    public static final String REFERENCE_COUNT = "referenceCount";
+    private static final String SEPARATOR = "#";
+
+    @Getter(onMethod_ = {@DynamoDbPartitionKey, @DynamoDbAttribute(CONTENT_KEY)})
+    private String contentKey;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("s3Bucket"))
+    private String s3Bucket;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("s3Key"))
+    private String s3Key;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("fileSize"))
+    private Long fileSize;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptedDataKey"))
+    private String encryptedDataKey;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptionNoncePrefix"))
+    private String encryptionNoncePrefix;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptionChunkSize"))
+    private Integer encryptionChunkSize;
+
+    /**
+     * The codec the content was compressed with before encryption, null if it is stored uncompressed.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("compressionCodec"))
+    private String compressionCodec;
+
+    /**
+     * Length of the compressed content, null if it is stored uncompressed.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("compressedSize"))
+    private Long compressedSize;
+
+    @Getter(onMethod_ = @DynamoDbAttribute(REFERENCE_COUNT))
+    private Long referenceCount;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("createdAt"))
+    private Instant createdAt;
+
+    /**
+     * Returns the content key of content owned by a user, {@code owner#hash}. Content is only shared between the
+     * documents of one owner, so an upload cannot reveal whether another user has stored the same bytes.
+     */
+    public static String contentKeyOf(String owner, String contentHash) {
+        return owner + SEPARATOR + contentHash;
+    }
+}
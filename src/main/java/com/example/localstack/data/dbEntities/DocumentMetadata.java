@@ -9,25 +9,41 @@ import lombok.NoArgsConstructor;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 
 import java.time.Instant;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @DynamoDbBean
 public class DocumentMetadata {
-    
+    public static final String CREATED_BY_INDEX = "createdBy-createdAt-index";
+    public static final String PATH_INDEX = "pathRoot-filePath-index";
+    /** Storage mode of documents clients transfer directly to S3, encrypted by S3 with the configured KMS key. */
+    public static final String STORAGE_MODE_SSE_KMS = "SSE_KMS";
+    /** Status of a document whose content has not been uploaded yet. */
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_AVAILABLE = "AVAILABLE";
+
     @Getter(onMethod_ = @DynamoDbPartitionKey)
     private String documentId;
     
     @Getter(onMethod_ = @DynamoDbAttribute("fileName"))
     private String fileName;
     
-    @Getter(onMethod_ = @DynamoDbAttribute("filePath"))
+    @Getter(onMethod_ = {@DynamoDbAttribute("filePath"), @DynamoDbSecondarySortKey(indexNames = PATH_INDEX)})
     private String filePath;
+
+    /**
+     * First segment of {@link #filePath}, maintained by the repository so that path prefix listings can be
+     * served from the path index.
+     */
+    @Getter(onMethod_ = {@DynamoDbAttribute("pathRoot"), @DynamoDbSecondaryPartitionKey(indexNames = PATH_INDEX)})
+    private String pathRoot;
     
     @Getter(onMethod_ = @DynamoDbAttribute("contentType"))
     private String contentType;
@@ -38,13 +54,13 @@ public class DocumentMetadata {
     @Getter(onMethod_ = @DynamoDbAttribute("version"))
     private String version;
     
-    @Getter(onMethod_ = @DynamoDbAttribute("createdAt"))
+    @Getter(onMethod_ = {@DynamoDbAttribute("createdAt"), @DynamoDbSecondarySortKey(indexNames = CREATED_BY_INDEX)})
     private Instant createdAt;
     
     @Getter(onMethod_ = @DynamoDbAttribute("updatedAt"))
     private Instant updatedAt;
     
-    @Getter(onMethod_ = @DynamoDbAttribute("createdBy"))
+    @Getter(onMethod_ = {@DynamoDbAttribute("createdBy"), @DynamoDbSecondaryPartitionKey(indexNames = CREATED_BY_INDEX)})
     private String createdBy;
     
     @Getter(onMethod_ = @DynamoDbAttribute("lastModifiedBy"))
@@ -67,4 +83,67 @@ public class DocumentMetadata {
 
     @Getter(onMethod_ = @DynamoDbAttribute("kmsKeyId"))
     private String kmsKeyId;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptedDataKey"))
+    private String encryptedDataKey;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptionScheme"))
+    private String encryptionScheme;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptionNoncePrefix"))
+    private String encryptionNoncePrefix;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("encryptionChunkSize"))
+    private Integer encryptionChunkSize;
+
+    /**
+     * Hex encoded SHA-256 of the plaintext for documents whose content is shared through the content index, see
+     * {@link ContentBlob}. Null for documents that own their S3 object.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("contentHash"))
+    private String contentHash;
+
+    /**
+     * The codec the content was compressed with before encryption, null if it is stored uncompressed.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("compressionCodec"))
+    private String compressionCodec;
+
+    /**
+     * Length of the compressed content, null if it is stored uncompressed.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("compressedSize"))
+    private Long compressedSize;
+
+    /**
+     * How the content is stored: {@link #STORAGE_MODE_SSE_KMS} for documents transferred through presigned URLs,
+     * null for content encrypted by the application.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("storageMode"))
+    private String storageMode;
+
+    /**
+     * {@link #STATUS_PENDING} until the content of a presigned upload is confirmed, then {@link #STATUS_AVAILABLE}.
+     * Null for documents uploaded through the application, which are available once they are saved.
+     */
+    @Getter(onMethod_ = @DynamoDbAttribute("status"))
+    private String status;
+
+    /**
+     * Strips leading slashes so that "/a/b" and "a/b" refer to the same folder. The root folder is "/", as
+     * index key attributes cannot be empty.
+     */
+    public static String normalizePath(String path) {
+        String normalized = path == null ? "" : path.replaceAll("^/+", "");
+        return normalized.isEmpty() ? "/" : normalized;
+    }
+
+    /**
+     * Returns the first segment of a path, the partition of the path index.
+     */
+    public static String pathRootOf(String path) {
+        String normalized = normalizePath(path);
+        int separator = normalized.indexOf('/');
+        return separator > 0 ? normalized.substring(0, separator) : normalized;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.example.localstack.data.dbEntities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One posting of the inverted metadata index: the document {@link #documentId} has the metadata entry encoded in
+ * {@link #indexKey}. All documents with the same metadata entry share a partition, sorted by owner through the
+ * {@link #postingKey}, so a search scoped to one user reads only that user's postings.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class MetadataIndexEntry {
+    private static final String SEPARATOR = "#";
+    private static final String COMPLETION_MARKER = "%indexed";
+
+    @Getter(onMethod_ = @DynamoDbPartitionKey)
+    private String indexKey;
+
+    @Getter(onMethod_ = @DynamoDbSortKey)
+    private String postingKey;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("documentId"))
+    private String documentId;
+
+    @Getter(onMethod_ = @DynamoDbAttribute("createdBy"))
+    private String createdBy;
+
+    /**
+     * Returns the index key of a metadata entry, {@code key#value} with both sides trimmed and lower-cased. A '#'
+     * in the metadata key is escaped so that the first separator always ends the key.
+     */
+    public static String indexKeyOf(String metadataKey, String metadataValue) {
+        return escape(normalize(metadataKey)) + SEPARATOR + normalize(metadataValue);
+    }
+
+    /**
+     * Returns the prefix shared by the posting keys of all documents of an owner, {@code createdBy#} with the
+     * owner escaped like a metadata key.
+     */
+    public static String ownerPrefixOf(String createdBy) {
+        return escape(createdBy == null ? "" : createdBy) + SEPARATOR;
+    }
+
+    /**
+     * Returns the sort key of a document's postings, {@code createdBy#documentId}.
+     */
+    public static String postingKeyOf(String createdBy, String documentId) {
+        return ownerPrefixOf(createdBy) + documentId;
+    }
+
+    /**
+     * Returns the entry that records that the postings of all documents stored before the index existed have been
+     * written. Its key has no separator, so it cannot collide with the index key of a metadata entry.
+     */
+    public static MetadataIndexEntry completionMarker() {
+        return MetadataIndexEntry.builder().indexKey(COMPLETION_MARKER).postingKey(COMPLETION_MARKER).build();
+    }
+
+    /**
+     * Returns the postings of all metadata entries of a document. A document whose content has not been uploaded
+     * yet has none, so that it cannot be found until the upload is completed.
+     */
+    public static List<MetadataIndexEntry> entriesFor(DocumentMetadata document) {
+        if (document.getMetadata() == null || DocumentMetadata.STATUS_PENDING.equals(document.getStatus())) {
+            return List.of();
+        }
+        return document.getMetadata().entrySet().stream()
+                .filter(entry -> entry.getKey() != null && entry.getValue() != null)
+                .map(entry -> indexKeyOf(entry.getKey(), entry.getValue()))
+                .distinct()
+                .map(indexKey -> new MetadataIndexEntry(indexKey, postingKeyOf(document.getCreatedBy(), document.getDocumentId()),
+                        document.getDocumentId(), document.getCreatedBy()))
+                .toList();
+    }
+
+    /**
+     * Returns whether the document's metadata holds every criterion, compared the way the index compares them.
+     */
+    public static boolean matches(DocumentMetadata document, Map<String, String> criteria) {
+        List<String> documentKeys = entriesFor(document).stream().map(MetadataIndexEntry::getIndexKey).toList();
+        return criteria.entrySet().stream().allMatch(entry -> documentKeys.contains(indexKeyOf(entry.getKey(), entry.getValue())));
+    }
+
+    private static String escape(String s) {
+        return s.replace("%", "%25").replace(SEPARATOR, "%23");
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.localstack.service;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.storage.PresignedObjectStore;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncS3Services {
+    CompletableFuture<DocumentMetadata> upload(String path, MultipartFile inputFile, Map<String, String> metaData, String userId);
+
+    CompletableFuture<InputStream> downloadDocument(DocumentMetadata document);
+
+    CompletableFuture<Optional<DocumentMetadata>> getDocumentMetadata(String documentId);
+
+    PresignedObjectStore.PresignedRequest presignDownload(DocumentMetadata document);
+}
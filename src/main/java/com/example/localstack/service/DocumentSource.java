@@ -0,0 +1,31 @@
+package com.example.localstack.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content to be stored as a document, whether it was uploaded as a file or arrived by other means.
+ *
+ * @param fileName    The name the document is stored under.
+ * @param contentType The media type of the content.
+ * @param size        The length of the content in bytes.
+ * @param content     Opens the content. May be called again to retry a failed upload.
+ */
+public record DocumentSource(String fileName, String contentType, long size, ContentSupplier content) {
+
+    public static DocumentSource of(MultipartFile file) {
+        return new DocumentSource(file.getOriginalFilename(), file.getContentType(), file.getSize(), file::getInputStream);
+    }
+
+    public static DocumentSource of(String fileName, String contentType, byte[] content) {
+        return new DocumentSource(fileName, contentType, content.length, () -> new ByteArrayInputStream(content));
+    }
+
+    @FunctionalInterface
+    public interface ContentSupplier {
+        InputStream open() throws IOException;
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.localstack.service;
 
 import com.example.localstack.data.messageEntities.Message;
+import io.awspring.cloud.sqs.listener.acknowledgement.BatchAcknowledgement;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface MessageListener {
-    void handle(Message message);
+    CompletableFuture<Void> handle(List<org.springframework.messaging.Message<Message>> messages, BatchAcknowledgement<Message> acknowledgement);
 }
@@ -2,6 +2,11 @@ package com.example.localstack.service;
 
 import com.example.localstack.data.messageEntities.Message;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface MessagePublisher {
     void publish(String queueName, Message message);
+
+    List<PublishResult> publishBatch(String queueName, Collection<Message> messages);
 }
@@ -0,0 +1,17 @@
+package com.example.localstack.service;
+
+import java.net.URL;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A document created for a direct upload to S3. The client PUTs the content to the URL, sending the headers
+ * unchanged as they are signed, and then completes the upload so the document becomes available.
+ *
+ * @param documentId The ID of the pending document.
+ * @param url        The presigned upload URL.
+ * @param method     The HTTP method to use with the URL.
+ * @param headers    The headers the client must send with the upload.
+ * @param expiresAt  When the URL stops working.
+ */
+public record PresignedUpload(String documentId, URL url, String method, Map<String, String> headers, Instant expiresAt) {}
@@ -0,0 +1,24 @@
+package com.example.localstack.service;
+
+import com.example.localstack.data.messageEntities.Message;
+
+/**
+ * Outcome of publishing one message of a batch.
+ *
+ * @param message The message.
+ * @param error   Why the message was not published, null if it was.
+ */
+public record PublishResult(Message message, String error) {
+
+    public static PublishResult success(Message message) {
+        return new PublishResult(message, null);
+    }
+
+    public static PublishResult failure(Message message, String error) {
+        return new PublishResult(message, error);
+    }
+
+    public boolean success() {
+        return error == null;
+    }
+}
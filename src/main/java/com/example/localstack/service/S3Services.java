@@ -1,6 +1,8 @@
 package com.example.localstack.service;
 
+import com.example.localstack.data.DocumentPage;
 import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.storage.PresignedObjectStore;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -8,17 +10,37 @@ import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface S3Services {
-    void upload(String path, MultipartFile inputFile, Map<String, String> metaData, String userId);
+    CompletableFuture<DocumentMetadata> upload(String path, MultipartFile inputFile, Map<String, String> metaData, String userId);
 
-    InputStream downloadDocument(String documentId) throws IOException;
+    List<UploadResult> uploadAll(String path, List<MultipartFile> inputFiles, Map<String, String> metaData, String userId);
 
-    List<DocumentMetadata> searchByMetadata(Map<String, String> searchCriteria);
+    List<UploadResult> uploadDocuments(String path, List<DocumentSource> sources, Map<String, String> metaData, String userId);
 
-    List<DocumentMetadata> findByPath(String path);
+    PresignedUpload createPresignedUpload(String path, String fileName, String contentType, Map<String, String> metaData, String userId);
 
-    List<DocumentMetadata> findByCreatedBy(String userId);
+    DocumentMetadata completePresignedUpload(DocumentMetadata document);
+
+    PresignedObjectStore.PresignedRequest presignDownload(DocumentMetadata document);
+
+    InputStream downloadDocument(DocumentMetadata document) throws IOException;
+
+    InputStream downloadEncodedDocument(DocumentMetadata document) throws IOException;
+
+    InputStream downloadDocumentRange(DocumentMetadata document, long start, long end) throws IOException;
+
+    DocumentPage searchByMetadata(Map<String, String> searchCriteria, String createdBy, Integer pageSize, String pageToken);
+
+    DocumentPage findByPath(String path, Integer pageSize, String pageToken);
+
+    DocumentPage findByCreatedBy(String userId, Integer pageSize, String pageToken);
+
+    Stream<DocumentMetadata> streamAllDocuments();
 
     Optional<DocumentMetadata> getDocumentMetadata(String documentId);
+
+    void deleteDocument(DocumentMetadata document);
 }
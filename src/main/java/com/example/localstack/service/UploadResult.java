@@ -0,0 +1,23 @@
+package com.example.localstack.service;
+
+/**
+ * Outcome of uploading one file of a bulk upload.
+ *
+ * @param fileName   The original name of the file.
+ * @param documentId The ID of the stored document, null if the upload failed.
+ * @param error      Why the upload failed, null if it succeeded.
+ */
+public record UploadResult(String fileName, String documentId, String error) {
+
+    public static UploadResult success(String fileName, String documentId) {
+        return new UploadResult(fileName, documentId, null);
+    }
+
+    public static UploadResult failure(String fileName, String error) {
+        return new UploadResult(fileName, null, error);
+    }
+
+    public boolean success() {
+        return error == null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.localstack.service.encryption;
+
+import javax.crypto.SecretKey;
+
+/**
+ * A KMS generated data key.
+ *
+ * @param plaintextKey The AES key used locally for encryption and decryption. Never persisted.
+ * @param encryptedKey The Base64 encoded KMS ciphertext of the key, stored alongside the document.
+ */
+public record DataKey(SecretKey plaintextKey, String encryptedKey) {
+}
@@ -0,0 +1,151 @@
+package com.example.localstack.service.encryption;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Streams the plaintext of content written with {@link ChunkedCipher}, decrypting one chunk at a time so that
+ * memory use stays at two chunk buffers regardless of the object size.
+ */
+public class DecryptingInputStream extends FilterInputStream {
+    private final ChunkedCipher cipher;
+    private final byte[] ciphertext;
+    private final byte[] plaintext;
+    private final long lastChunkIndex;
+    private final long finalChunkIndex;
+    private long chunkIndex;
+    private int position;
+    private int limit;
+    private boolean finished;
+
+    /**
+     * Decrypts a whole object. The final chunk is recognised by the end of {@code ciphertextStream}.
+     *
+     * @param ciphertextStream The stored object.
+     * @param cipher           A cipher initialised with the object's data key and nonce prefix.
+     * @param chunkSize        The plaintext chunk size the object was written with.
+     */
+    public DecryptingInputStream(InputStream ciphertextStream, ChunkedCipher cipher, int chunkSize) {
+        this(ciphertextStream, cipher, chunkSize, 0, -1, -1);
+    }
+
+    /**
+     * Decrypts a contiguous run of chunks from the middle of an object.
+     *
+     * @param ciphertextStream The ciphertext of chunks {@code firstChunkIndex} to {@code lastChunkIndex}.
+     * @param cipher           A cipher initialised with the object's data key and nonce prefix.
+     * @param chunkSize        The plaintext chunk size the object was written with.
+     * @param firstChunkIndex  Index of the first chunk in {@code ciphertextStream}.
+     * @param lastChunkIndex   Index of the last chunk in {@code ciphertextStream}, or -1 to read until the final chunk.
+     * @param finalChunkIndex  Index of the final chunk of the whole object, or -1 if it is only known from the end
+     *                         of the stream.
+     */
+    public DecryptingInputStream(InputStream ciphertextStream, ChunkedCipher cipher, int chunkSize, long firstChunkIndex, long lastChunkIndex, long finalChunkIndex) {
+        super(new PushbackInputStream(ciphertextStream, 1));
+        this.cipher = cipher;
+        this.ciphertext = new byte[chunkSize + ChunkedCipher.TAG_LENGTH];
+        this.plaintext = new byte[chunkSize];
+        this.chunkIndex = firstChunkIndex;
+        this.lastChunkIndex = lastChunkIndex;
+        this.finalChunkIndex = finalChunkIndex;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return plaintext[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(len, limit - position);
+        System.arraycopy(plaintext, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && ensureAvailable()) {
+            int count = (int) Math.min(n - skipped, limit - position);
+            position += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (position == limit) {
+            if (finished) {
+                return false;
+            }
+            decryptNextChunk();
+        }
+        return true;
+    }
+
+    private void decryptNextChunk() throws IOException {
+        PushbackInputStream source = (PushbackInputStream) in;
+        int read = source.readNBytes(ciphertext, 0, ciphertext.length);
+        if (read < ChunkedCipher.TAG_LENGTH) {
+            throw new IOException("Encrypted content is truncated at chunk " + chunkIndex);
+        }
+        boolean lastChunk;
+        if (finalChunkIndex >= 0) {
+            lastChunk = chunkIndex == finalChunkIndex;
+            if (!lastChunk && read < ciphertext.length) {
+                throw new IOException("Encrypted content is truncated at chunk " + chunkIndex);
+            }
+        } else {
+            lastChunk = read < ciphertext.length || isExhausted(source);
+        }
+        try {
+            limit = cipher.decryptChunk(chunkIndex, lastChunk, ciphertext, 0, read, plaintext, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to decrypt chunk " + chunkIndex, e);
+        }
+        position = 0;
+        finished = lastChunk || chunkIndex == lastChunkIndex;
+        chunkIndex++;
+    }
+
+    private static boolean isExhausted(PushbackInputStream source) throws IOException {
+        int next = source.read();
+        if (next == -1) {
+            return true;
+        }
+        source.unread(next);
+        return false;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.localstack.service.encryption;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Streams the {@link ChunkedCipher} ciphertext of a plaintext stream, encrypting one chunk at a time. The output
+ * is exactly what {@link DecryptingInputStream} reads back, and its length is
+ * {@link ChunkedCipher#ciphertextLength(long, int)} of the plaintext length.
+ */
+public class EncryptingInputStream extends FilterInputStream {
+    private final ChunkedCipher cipher;
+    private final byte[] plaintext;
+    private final byte[] ciphertext;
+    private long chunkIndex;
+    private int position;
+    private int limit;
+    private boolean finished;
+
+    /**
+     * @param plaintextStream The content to encrypt.
+     * @param cipher          A cipher initialised with the data key and a fresh nonce prefix.
+     * @param chunkSize       The plaintext chunk size.
+     */
+    public EncryptingInputStream(InputStream plaintextStream, ChunkedCipher cipher, int chunkSize) {
+        super(new PushbackInputStream(plaintextStream, 1));
+        this.cipher = cipher;
+        this.plaintext = new byte[chunkSize];
+        this.ciphertext = new byte[chunkSize + ChunkedCipher.TAG_LENGTH];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return ciphertext[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(len, limit - position);
+        System.arraycopy(ciphertext, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && ensureAvailable()) {
+            int count = (int) Math.min(n - skipped, limit - position);
+            position += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (position == limit) {
+            if (finished) {
+                return false;
+            }
+            encryptNextChunk();
+        }
+        return true;
+    }
+
+    private void encryptNextChunk() throws IOException {
+        PushbackInputStream source = (PushbackInputStream) in;
+        int read = source.readNBytes(plaintext, 0, plaintext.length);
+        boolean lastChunk = read < plaintext.length || isExhausted(source);
+        try {
+            limit = cipher.encryptChunk(chunkIndex, lastChunk, plaintext, 0, read, ciphertext, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt chunk " + chunkIndex, e);
+        }
+        position = 0;
+        finished = lastChunk;
+        chunkIndex++;
+    }
+
+    private static boolean isExhausted(PushbackInputStream source) throws IOException {
+        int next = source.read();
+        if (next == -1) {
+            return true;
+        }
+        source.unread(next);
+        return false;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.localstack.service.encryption;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.EncryptionConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.kms.KmsAsyncClient;
+import software.amazon.awssdk.services.kms.model.DataKeySpec;
+import software.amazon.awssdk.services.kms.model.DecryptRequest;
+import software.amazon.awssdk.services.kms.model.DecryptResponse;
+import software.amazon.awssdk.services.kms.model.GenerateDataKeyRequest;
+import software.amazon.awssdk.services.kms.model.GenerateDataKeyResponse;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Envelope encryption for document content. A data key is generated through KMS and used locally with
+ * AES-GCM (see {@link ChunkedCipher}); only the KMS wrapped copy of the key is persisted next to the document.
+ * Data keys are reused for a bounded time and number of documents, and decrypted data keys are cached, so
+ * steady state uploads and downloads do not call KMS at all.
+ */
+@Slf4j
+@Service
+public class EnvelopeEncryptionService {
+    /** Documents encrypted as a single AES-GCM message, IV first. Still readable, no longer written. */
+    public static final String ENCRYPTION_SCHEME = "AES_256_GCM_ENVELOPE";
+
+    private static final String CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEY_ALGORITHM = "AES";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final long KMS_TIMEOUT_SECONDS = 5;
+
+    private final KmsAsyncClient kmsAsyncClient;
+    private final AwsConfig awsConfig;
+    private final EncryptionConfig encryptionConfig;
+    private final Cache<String, SecretKey> decryptedDataKeys;
+    private final ReentrantLock dataKeyLock = new ReentrantLock();
+    private volatile ActiveDataKey activeDataKey;
+    private CompletableFuture<DataKey> pendingDataKey;
+
+    public EnvelopeEncryptionService(KmsAsyncClient kmsAsyncClient, AwsConfig awsConfig, EncryptionConfig encryptionConfig) {
+        this.kmsAsyncClient = kmsAsyncClient;
+        this.awsConfig = awsConfig;
+        this.encryptionConfig = encryptionConfig;
+        this.decryptedDataKeys = Caffeine.newBuilder()
+                .maximumSize(encryptionConfig.maxCachedDataKeys())
+                .expireAfterWrite(encryptionConfig.dataKeyTtl())
+                .build();
+    }
+
+    /**
+     * Decrypts a document that was encrypted as a single AES-GCM message ({@link #ENCRYPTION_SCHEME}). The data
+     * key is unwrapped through KMS only if it is not already cached.
+     *
+     * @param ciphertext       The IV followed by the AES-GCM ciphertext.
+     * @param encryptedDataKey The Base64 encoded wrapped data key stored with the document.
+     * @return The decrypted content.
+     * @throws RuntimeException If the data key cannot be unwrapped or the content fails authentication.
+     */
+    public byte[] decrypt(byte[] ciphertext, String encryptedDataKey) {
+        SecretKey key = resolveDataKey(encryptedDataKey);
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, ciphertext, 0, IV_LENGTH));
+            return cipher.doFinal(ciphertext, IV_LENGTH, ciphertext.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            log.error("Error decrypting content :", e);
+            throw new RuntimeException("failed to decrypt content", e);
+        }
+    }
+
+    /**
+     * Decrypts content that was encrypted directly with the KMS key, as documents were before envelope
+     * encryption was introduced.
+     *
+     * @param encryptedContent The KMS ciphertext blob.
+     * @return The decrypted content.
+     * @throws RuntimeException If an error occurs during the decryption process.
+     */
+    public byte[] decryptWithKms(byte[] encryptedContent) {
+        DecryptRequest decryptRequest = DecryptRequest.builder()
+                .ciphertextBlob(SdkBytes.fromByteArray(encryptedContent))
+                .build();
+        DecryptResponse decryptResponse = awaitKms(kmsAsyncClient.decrypt(decryptRequest), "decrypt content");
+        log.debug("Decrypted content using kmskey: {}", awsConfig.kmsKeyId());
+        return decryptResponse.plaintext().asByteArray();
+    }
+
+    /**
+     * Returns the data key currently used for encryption, generating a new one through KMS when the current
+     * key has expired or has been used for the configured number of documents.
+     */
+    public DataKey currentDataKey() {
+        ActiveDataKey active = activeDataKey;
+        if (active != null && active.tryAcquire()) {
+            return active.dataKey();
+        }
+        dataKeyLock.lock();
+        try {
+            active = activeDataKey;
+            if (active != null && active.tryAcquire()) {
+                return active.dataKey();
+            }
+            return activate(generateDataKey());
+        } finally {
+            dataKeyLock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #currentDataKey()}. While a new data key is being generated, all callers
+     * share the pending KMS request.
+     */
+    public CompletableFuture<DataKey> currentDataKeyAsync() {
+        ActiveDataKey active = activeDataKey;
+        if (active != null && active.tryAcquire()) {
+            return CompletableFuture.completedFuture(active.dataKey());
+        }
+        dataKeyLock.lock();
+        try {
+            active = activeDataKey;
+            if (active != null && active.tryAcquire()) {
+                return CompletableFuture.completedFuture(active.dataKey());
+            }
+            if (pendingDataKey == null) {
+                CompletableFuture<DataKey> pending = kmsAsyncClient.generateDataKey(dataKeyRequest())
+                        .orTimeout(KMS_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .thenApply(response -> {
+                            DataKey dataKey = toDataKey(response);
+                            dataKeyLock.lock();
+                            try {
+                                return activate(dataKey);
+                            } finally {
+                                dataKeyLock.unlock();
+                            }
+                        });
+                pendingDataKey = pending;
+                pending.whenComplete((dataKey, e) -> clearPendingDataKey(pending));
+            }
+            return pendingDataKey;
+        } finally {
+            dataKeyLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the plaintext data key for a wrapped key, unwrapping it through KMS on a cache miss.
+     */
+    public SecretKey resolveDataKey(String encryptedDataKey) {
+        return decryptedDataKeys.get(encryptedDataKey, this::unwrapDataKey);
+    }
+
+    /**
+     * Non-blocking variant of {@link #resolveDataKey(String)}.
+     */
+    public CompletableFuture<SecretKey> resolveDataKeyAsync(String encryptedDataKey) {
+        SecretKey cached = decryptedDataKeys.getIfPresent(encryptedDataKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        DecryptRequest decryptRequest = DecryptRequest.builder()
+                .ciphertextBlob(SdkBytes.fromByteArray(Base64.getDecoder().decode(encryptedDataKey)))
+                .build();
+        return kmsAsyncClient.decrypt(decryptRequest)
+                .orTimeout(KMS_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .thenApply(response -> {
+                    SecretKey key = toSecretKey(response.plaintext().asByteArray());
+                    decryptedDataKeys.put(encryptedDataKey, key);
+                    return key;
+                });
+    }
+
+    private DataKey activate(DataKey dataKey) {
+        ActiveDataKey active = new ActiveDataKey(dataKey, Instant.now().plus(encryptionConfig.dataKeyTtl()), encryptionConfig.maxDataKeyUses());
+        active.tryAcquire();
+        activeDataKey = active;
+        return dataKey;
+    }
+
+    private void clearPendingDataKey(CompletableFuture<DataKey> pending) {
+        dataKeyLock.lock();
+        try {
+            if (pendingDataKey == pending) {
+                pendingDataKey = null;
+            }
+        } finally {
+            dataKeyLock.unlock();
+        }
+    }
+
+    private GenerateDataKeyRequest dataKeyRequest() {
+        return GenerateDataKeyRequest.builder()
+                .keyId(awsConfig.kmsKeyId())
+                .keySpec(DataKeySpec.AES_256)
+                .build();
+    }
+
+    private DataKey generateDataKey() {
+        return toDataKey(awaitKms(kmsAsyncClient.generateDataKey(dataKeyRequest()), "generate data key"));
+    }
+
+    private DataKey toDataKey(GenerateDataKeyResponse response) {
+        SecretKey key = toSecretKey(response.plaintext().asByteArray());
+        String encryptedKey = Base64.getEncoder().encodeToString(response.ciphertextBlob().asByteArray());
+        decryptedDataKeys.put(encryptedKey, key);
+        log.debug("Generated data key using kmskey: {}", awsConfig.kmsKeyId());
+        return new DataKey(key, encryptedKey);
+    }
+
+    private SecretKey unwrapDataKey(String encryptedDataKey) {
+        return toSecretKey(decryptWithKms(Base64.getDecoder().decode(encryptedDataKey)));
+    }
+
+    private static SecretKey toSecretKey(byte[] plaintext) {
+        SecretKey key = new SecretKeySpec(plaintext, KEY_ALGORITHM);
+        Arrays.fill(plaintext, (byte) 0);
+        return key;
+    }
+
+    private <T> T awaitKms(CompletableFuture<T> request, String operation) {
+        try {
+            return request.get(KMS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("failed to " + operation, e);
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Error calling kms to {} :", operation, e);
+            throw new RuntimeException("failed to " + operation, e);
+        }
+    }
+
+    private static final class ActiveDataKey {
+        private final DataKey dataKey;
+        private final Instant expiresAt;
+        private final long maxUses;
+        private final AtomicLong uses = new AtomicLong();
+
+        private ActiveDataKey(DataKey dataKey, Instant expiresAt, long maxUses) {
+            this.dataKey = dataKey;
+            this.expiresAt = expiresAt;
+            this.maxUses = maxUses;
+        }
+
+        private boolean tryAcquire() {
+            return Instant.now().isBefore(expiresAt) && uses.incrementAndGet() <= maxUses;
+        }
+
+        private DataKey dataKey() {
+            return dataKey;
+        }
+    }
+}
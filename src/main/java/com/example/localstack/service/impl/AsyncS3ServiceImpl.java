@@ -0,0 +1,218 @@
+package com.example.localstack.service.impl;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.StorageConfig;
+import com.example.localstack.data.AsyncDocumentMetadataRepository;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.AsyncS3Services;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.encryption.DataKey;
+import com.example.localstack.service.encryption.DecryptingInputStream;
+import com.example.localstack.service.encryption.EncryptingInputStream;
+import com.example.localstack.service.encryption.EnvelopeEncryptionService;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.CompressionCodec;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.PresignedObjectStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Document operations that never block the calling thread. Data keys come from KMS, content goes to S3 through
+ * the CRT based {@link S3AsyncClient} and metadata goes to DynamoDB through the enhanced async client; every
+ * step is chained on the returned future. The only blocking work left, reading the uploaded file from the
+ * servlet container's temporary storage while it is encrypted, runs on virtual threads.
+ */
+@Slf4j
+@Service
+public class AsyncS3ServiceImpl implements AsyncS3Services {
+    private final S3AsyncClient s3AsyncClient;
+    private final EnvelopeEncryptionService envelopeEncryptionService;
+    private final AsyncDocumentMetadataRepository documentMetadataRepository;
+    private final EncryptedObjectStore encryptedObjectStore;
+    private final PresignedObjectStore presignedObjectStore;
+    private final BucketRegistry bucketRegistry;
+    private final AwsConfig awsConfig;
+    private final int chunkSize;
+    private final ExecutorService blockingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public AsyncS3ServiceImpl(S3AsyncClient s3AsyncClient, EnvelopeEncryptionService envelopeEncryptionService, AsyncDocumentMetadataRepository documentMetadataRepository, EncryptedObjectStore encryptedObjectStore, PresignedObjectStore presignedObjectStore, BucketRegistry bucketRegistry, AwsConfig awsConfig, StorageConfig storageConfig) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.envelopeEncryptionService = envelopeEncryptionService;
+        this.documentMetadataRepository = documentMetadataRepository;
+        this.encryptedObjectStore = encryptedObjectStore;
+        this.presignedObjectStore = presignedObjectStore;
+        this.bucketRegistry = bucketRegistry;
+        this.awsConfig = awsConfig;
+        this.chunkSize = Math.toIntExact(storageConfig.chunkSize().toBytes());
+    }
+
+    /**
+     * Uploads a file with the same chunked encryption as {@link S3ServiceImpl#upload}. The ciphertext length is
+     * known up front, so the content is streamed as a single PUT and the CRT client splits it into parallel part
+     * uploads where that pays off. The bucket is provisioned again and the upload retried once if it has
+     * disappeared.
+     *
+     * @param path      The folder the file is uploaded into.
+     * @param inputFile The file to upload.
+     * @param metaData  The metadata attached to the file.
+     * @param userId    The user id of the user uploading the file.
+     * @return A future completed with the saved metadata once both content and metadata are stored.
+     */
+    @Override
+    public CompletableFuture<DocumentMetadata> upload(String path, MultipartFile inputFile, Map<String, String> metaData, String userId) {
+        String documentId = UUID.randomUUID().toString();
+        String s3Key = S3ServiceImpl.generateS3Key(path, documentId, inputFile.getOriginalFilename());
+        String bucket = awsConfig.bucketName();
+
+        log.info("Uploading file to S3 bucket asynchronously: {}", path);
+        return CompletableFuture.runAsync(() -> bucketRegistry.ensureBucket(bucket), blockingExecutor)
+                .thenCompose(ignored -> storeContent(bucket, s3Key, inputFile))
+                .exceptionallyCompose(e -> {
+                    if (!BucketRegistry.isMissingBucket(e)) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    return CompletableFuture.runAsync(() -> {
+                                bucketRegistry.invalidate(bucket);
+                                bucketRegistry.ensureBucket(bucket);
+                            }, blockingExecutor)
+                            .thenCompose(ignored -> storeContent(bucket, s3Key, inputFile));
+                })
+                .thenApply(storedContent -> toDocumentMetadata(documentId, s3Key, path, inputFile, metaData, userId, storedContent))
+                .thenCompose(documentMetadataRepository::saveNew)
+                .whenComplete((saved, e) -> {
+                    if (e == null) {
+                        log.info("File uploaded successfully with key: {}", documentId);
+                    } else {
+                        log.error("Error uploading file to S3 bucket: {} with key: {}", bucket, s3Key, e);
+                    }
+                });
+    }
+
+    /**
+     * Opens a stream over the decrypted content of a document. For chunked documents the future completes as
+     * soon as S3 starts responding and the content is decrypted, and decompressed if it was stored compressed,
+     * while the caller reads it; documents in older
+     * formats are read through the {@link EncryptedObjectStore} on a virtual thread.
+     *
+     * @param document The metadata of the document to download.
+     * @return A future of the plaintext content. The caller must close it to release the S3 connection.
+     */
+    @Override
+    public CompletableFuture<InputStream> downloadDocument(DocumentMetadata document) {
+        if (!ChunkedCipher.ENCRYPTION_SCHEME.equals(document.getEncryptionScheme())) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return encryptedObjectStore.read(document);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, blockingExecutor);
+        }
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(document.getS3Bucket())
+                .key(document.getS3Key())
+                .build();
+        byte[] noncePrefix = Base64.getDecoder().decode(document.getEncryptionNoncePrefix());
+        return envelopeEncryptionService.resolveDataKeyAsync(document.getEncryptedDataKey())
+                .thenCompose(key -> s3AsyncClient.getObject(request, AsyncResponseTransformer.toBlockingInputStream())
+                        .thenApply(ciphertext -> CompressionCodec.decompressing(document.getCompressionCodec(),
+                                new DecryptingInputStream(ciphertext, new ChunkedCipher(key, noncePrefix), document.getEncryptionChunkSize()))));
+    }
+
+    @Override
+    public CompletableFuture<Optional<DocumentMetadata>> getDocumentMetadata(String documentId) {
+        return documentMetadataRepository.findById(documentId);
+    }
+
+    /**
+     * Presigns a download of a document stored with {@link DocumentMetadata#STORAGE_MODE_SSE_KMS}. Signing is
+     * done locally, without a call to AWS.
+     */
+    @Override
+    public PresignedObjectStore.PresignedRequest presignDownload(DocumentMetadata document) {
+        return presignedObjectStore.presignDownload(document.getS3Bucket(), document.getS3Key());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        blockingExecutor.shutdown();
+    }
+
+    private CompletableFuture<StoredContent> storeContent(String bucket, String s3Key, MultipartFile inputFile) {
+        return envelopeEncryptionService.currentDataKeyAsync().thenCompose(dataKey -> {
+            byte[] noncePrefix = new byte[ChunkedCipher.NONCE_PREFIX_LENGTH];
+            secureRandom.nextBytes(noncePrefix);
+            InputStream ciphertext;
+            try {
+                ciphertext = new EncryptingInputStream(inputFile.getInputStream(), new ChunkedCipher(dataKey.plaintextKey(), noncePrefix), chunkSize);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            long storedLength = ChunkedCipher.ciphertextLength(inputFile.getSize(), chunkSize);
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(s3Key)
+                    .contentLength(storedLength)
+                    .build();
+            return s3AsyncClient.putObject(request, AsyncRequestBody.fromInputStream(ciphertext, storedLength, blockingExecutor))
+                    .whenComplete((response, e) -> closeQuietly(ciphertext))
+                    .thenApply(response -> new StoredContent(dataKey, Base64.getEncoder().encodeToString(noncePrefix)));
+        });
+    }
+
+    private DocumentMetadata toDocumentMetadata(String documentId, String s3Key, String path, MultipartFile inputFile, Map<String, String> metaData, String userId, StoredContent storedContent) {
+        return DocumentMetadata.builder()
+                .documentId(documentId)
+                .fileName(inputFile.getOriginalFilename())
+                .filePath(DocumentMetadata.normalizePath(path))
+                .contentType(inputFile.getContentType())
+                .fileSize(inputFile.getSize())
+                .version("1.0")
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .createdBy(userId)
+                .lastModifiedBy(userId)
+                .s3Key(s3Key)
+                .s3Bucket(awsConfig.bucketName())
+                .metadata(metaData)
+                .isEncrypted(true)
+                .kmsKeyId(awsConfig.kmsKeyId())
+                .encryptedDataKey(storedContent.dataKey().encryptedKey())
+                .encryptionScheme(ChunkedCipher.ENCRYPTION_SCHEME)
+                .encryptionNoncePrefix(storedContent.noncePrefix())
+                .encryptionChunkSize(chunkSize)
+                .build();
+    }
+
+    private void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            log.debug("Error closing upload stream", e);
+        }
+    }
+
+    private record StoredContent(DataKey dataKey, String noncePrefix) {}
+}
@@ -1,41 +1,87 @@
 package com.example.localstack.service.impl;
 
-import com.example.localstack.config.AwsConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
 import com.example.localstack.data.messageEntities.Message;
 import com.example.localstack.service.MessageListener;
+import com.example.localstack.service.messaging.ClaimCheckStore;
+import com.example.localstack.service.messaging.MessagePersistencePipeline;
 import io.awspring.cloud.sqs.annotation.SqsListener;
+import io.awspring.cloud.sqs.annotation.SqsListenerAcknowledgementMode;
+import io.awspring.cloud.sqs.listener.acknowledgement.BatchAcknowledgement;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-
-import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 public class MessageListenerImpl implements MessageListener {
-    private final AwsConfig awsConfig;
-    private final S3ServiceImpl s3ServiceImpl;
+    private final MessagePersistencePipeline messagePersistencePipeline;
+    private final ClaimCheckStore claimCheckStore;
 
-    public MessageListenerImpl(AwsConfig awsConfig, S3ServiceImpl s3ServiceImpl) {
-        this.awsConfig = awsConfig;
-        this.s3ServiceImpl = s3ServiceImpl;
+    public MessageListenerImpl(MessagePersistencePipeline messagePersistencePipeline, ClaimCheckStore claimCheckStore) {
+        this.messagePersistencePipeline = messagePersistencePipeline;
+        this.claimCheckStore = claimCheckStore;
     }
 
     /**
-     * Handles an incoming SQS message, processes it, and uploads its content to an S3 bucket.
+     * Handles a batch of incoming SQS messages by handing each to the {@link MessagePersistencePipeline}, which
+     * encrypts it, stores it in the S3 bucket and writes its metadata. A message is acknowledged only after its
+     * metadata has been written; the others become visible again and are redelivered. Content offloaded to S3 by
+     * the publisher is loaded before the message enters the pipeline and deleted once the message is acknowledged.
+     *
+     * <p>The container holds on to the batch's share of the in-flight limit until the returned future completes,
+     * and this method blocks while the pipeline is full, so a slow S3 or KMS stops the container from polling
+     * instead of piling up received messages.
      *
-     * @param message The SQS message to process, containing a unique identifier and content.
+     * @param messages        The SQS messages received by one poll, each containing a unique identifier and content.
+     * @param acknowledgement Acknowledges processed messages, with batched delete requests.
+     * @return A future completed once the stored messages have been acknowledged.
      */
-    @SqsListener(queueNames = "${app.queue-name}")
+    @SqsListener(queueNames = "${app.queue-name}", acknowledgementMode = SqsListenerAcknowledgementMode.MANUAL)
     @Override
-    public void handle(Message message) {
-        log.debug("Message received: {}", message);
-        var bucketName = awsConfig.bucketName();
-        log.info("Uploading message to S3 bucket: {}", bucketName);
-        var key = message.uuid().toString();
-        var inputStream = new ByteArrayInputStream(message.content().getBytes(UTF_8));
-//        s3ServiceImpl.upload(bucketName, key, inputStream, metadata);
-        log.info("{} Message uploaded successfully", key);
+    public CompletableFuture<Void> handle(List<org.springframework.messaging.Message<Message>> messages, BatchAcknowledgement<Message> acknowledgement) {
+        log.debug("Received batch of {} messages", messages.size());
+        List<CompletableFuture<DocumentMetadata>> persisted = new ArrayList<>(messages.size());
+        for (org.springframework.messaging.Message<Message> message : messages) {
+            persisted.add(submit(message));
+        }
+
+        return CompletableFuture.allOf(persisted.stream()
+                        .map(future -> future.handle((documentMetadata, e) -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenCompose(ignored -> {
+                    List<org.springframework.messaging.Message<Message>> processed = new ArrayList<>(messages.size());
+                    for (int i = 0; i < messages.size(); i++) {
+                        CompletableFuture<DocumentMetadata> future = persisted.get(i);
+                        if (future.isCompletedExceptionally()) {
+                            log.warn("Message {} was not stored and will be redelivered: {}", messages.get(i).getPayload().uuid(), future.exceptionNow().getMessage());
+                        } else {
+                            processed.add(messages.get(i));
+                        }
+                    }
+                    log.info("{} of {} messages stored successfully", processed.size(), messages.size());
+                    if (processed.isEmpty()) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    return acknowledgement.acknowledgeAsync(processed).thenRun(() -> claimCheckStore.release(processed));
+                });
+    }
+
+    private CompletableFuture<DocumentMetadata> submit(org.springframework.messaging.Message<Message> message) {
+        try {
+            return messagePersistencePipeline.submit(claimCheckStore.resolve(message));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 }
@@ -1,31 +1,80 @@
 package com.example.localstack.service.impl;
 
+import com.example.localstack.config.PublishBatchingConfig;
 import com.example.localstack.data.messageEntities.Message;
 import com.example.localstack.service.MessagePublisher;
+import com.example.localstack.service.PublishResult;
+import com.example.localstack.service.messaging.ClaimCheckStore;
+import com.example.localstack.service.messaging.MessagePublishBatcher;
+import com.example.localstack.service.messaging.SqsBatchSender;
 import io.awspring.cloud.sqs.operations.SqsTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 @Slf4j
 public class MessagePublisherImpl implements MessagePublisher {
     private final SqsTemplate sqsTemplate;
+    private final SqsBatchSender sqsBatchSender;
+    private final ClaimCheckStore claimCheckStore;
+    private final MessagePublishBatcher messagePublishBatcher;
+    private final PublishBatchingConfig publishBatchingConfig;
 
-    public MessagePublisherImpl(SqsTemplate sqsTemplate) {
+    public MessagePublisherImpl(SqsTemplate sqsTemplate, SqsBatchSender sqsBatchSender, ClaimCheckStore claimCheckStore, MessagePublishBatcher messagePublishBatcher, PublishBatchingConfig publishBatchingConfig) {
         this.sqsTemplate = sqsTemplate;
+        this.sqsBatchSender = sqsBatchSender;
+        this.claimCheckStore = claimCheckStore;
+        this.messagePublishBatcher = messagePublishBatcher;
+        this.publishBatchingConfig = publishBatchingConfig;
     }
 
     /**
      * Publishes a message to the specified SQS queue.
-     * Logs the attempt to publish and confirms success upon completion.
+     * Logs the attempt to publish and confirms success upon completion. With auto-batching
+     * enabled the message is sent together with concurrently published ones and this method
+     * returns once its batch has been sent. Content too large to be sent inline is offloaded to S3
+     * by the {@link ClaimCheckStore}.
      *
      * @param queueName The name of the SQS queue to which the message will be published.
      * @param message The message object containing the content and unique identifier to be published.
+     * @throws IllegalStateException If the message could not be published.
      */
     @Override
     public void publish(String queueName, Message message) {
         log.info("Publishing message to queue: {}", queueName);
-        sqsTemplate.send(to -> to.queue(queueName).payload(message));
+        if (publishBatchingConfig.enabled()) {
+            PublishResult result = messagePublishBatcher.submit(queueName, message).join();
+            if (!result.success()) {
+                throw new IllegalStateException("Failed to publish message " + message.uuid() + " to queue " + queueName + ": " + result.error());
+            }
+        } else {
+            org.springframework.messaging.Message<Message> sqsMessage = claimCheckStore.toSqsMessage(message);
+            try {
+                sqsTemplate.send(queueName, sqsMessage);
+            } catch (RuntimeException e) {
+                claimCheckStore.release(List.of(sqsMessage));
+                throw e;
+            }
+        }
         log.info("Message published successfully");
     }
+
+    /**
+     * Publishes several messages to the specified SQS queue with batch requests of up to
+     * {@value SqsBatchSender#MAX_BATCH_SIZE} messages, one round trip per batch.
+     *
+     * @param queueName The name of the SQS queue to which the messages will be published.
+     * @param messages  The messages to publish.
+     * @return The outcome of every message, in the order of {@code messages}.
+     */
+    @Override
+    public List<PublishResult> publishBatch(String queueName, Collection<Message> messages) {
+        log.info("Publishing {} messages to queue: {}", messages.size(), queueName);
+        List<PublishResult> results = sqsBatchSender.send(queueName, messages);
+        log.info("{} of {} messages published successfully", results.stream().filter(PublishResult::success).count(), messages.size());
+        return results;
+    }
 }
@@ -1,179 +1,572 @@
 package com.example.localstack.service.impl;
 
 import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.CompressionConfig;
+import com.example.localstack.config.DedupConfig;
+import com.example.localstack.config.PresignConfig;
+import com.example.localstack.config.SearchConfig;
+import com.example.localstack.config.UploadConfig;
+import com.example.localstack.data.ContentBlobRepository;
 import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.DocumentPage;
+import com.example.localstack.data.MetadataWriteBehind;
+import com.example.localstack.data.dbEntities.ContentBlob;
 import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.DocumentSource;
+import com.example.localstack.service.PresignedUpload;
 import com.example.localstack.service.S3Services;
-import io.awspring.cloud.s3.S3Template;
+import com.example.localstack.service.UploadResult;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.metrics.DocumentStageMetrics;
+import com.example.localstack.service.metrics.DocumentStageMetrics.Stage;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.CompressionCodec;
+import com.example.localstack.service.storage.DocumentContentCache;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.PresignedObjectStore;
+import com.example.localstack.service.storage.StoredObject;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.services.kms.KmsAsyncClient;
-import software.amazon.awssdk.services.kms.model.DecryptRequest;
-import software.amazon.awssdk.services.kms.model.DecryptResponse;
-import software.amazon.awssdk.services.kms.model.EncryptRequest;
-import software.amazon.awssdk.services.kms.model.EncryptResponse;
-
-import java.io.ByteArrayInputStream;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
 
 
 @Slf4j
 @Service
 public class S3ServiceImpl implements S3Services {
-    private final S3Template s3Template;
-    private final KmsAsyncClient kmsAsyncClient;
+    private final EncryptedObjectStore encryptedObjectStore;
+    private final DocumentContentCache documentContentCache;
+    private final PresignedObjectStore presignedObjectStore;
+    private final BucketRegistry bucketRegistry;
     private final AwsConfig awsConfig;
     private final DocumentMetadataRepository documentMetadataRepository;
+    private final SearchConfig searchConfig;
+    private final MetadataWriteBehind metadataWriteBehind;
+    private final ContentBlobRepository contentBlobRepository;
+    private final DedupConfig dedupConfig;
+    private final CompressionConfig compressionConfig;
+    private final PresignConfig presignConfig;
+    private final List<MediaType> compressibleTypes;
+    private final Semaphore uploadPermits;
+    private final DocumentStageMetrics stageMetrics;
 
-    public S3ServiceImpl(S3Template s3Template, KmsAsyncClient kmsAsyncClient, AwsConfig awsConfig, DocumentMetadataRepository documentMetadataRepository) {
-        this.s3Template = s3Template;
-        this.kmsAsyncClient = kmsAsyncClient;
+    public S3ServiceImpl(EncryptedObjectStore encryptedObjectStore, DocumentContentCache documentContentCache, PresignedObjectStore presignedObjectStore, BucketRegistry bucketRegistry, AwsConfig awsConfig, DocumentMetadataRepository documentMetadataRepository, MetadataWriteBehind metadataWriteBehind, ContentBlobRepository contentBlobRepository, DedupConfig dedupConfig, CompressionConfig compressionConfig, PresignConfig presignConfig, SearchConfig searchConfig, UploadConfig uploadConfig, DocumentStageMetrics stageMetrics) {
+        this.encryptedObjectStore = encryptedObjectStore;
+        this.documentContentCache = documentContentCache;
+        this.presignedObjectStore = presignedObjectStore;
+        this.bucketRegistry = bucketRegistry;
         this.awsConfig = awsConfig;
         this.documentMetadataRepository = documentMetadataRepository;
+        this.metadataWriteBehind = metadataWriteBehind;
+        this.contentBlobRepository = contentBlobRepository;
+        this.dedupConfig = dedupConfig;
+        this.compressionConfig = compressionConfig;
+        this.presignConfig = presignConfig;
+        this.compressibleTypes = compressionConfig.contentTypes().stream().map(MediaType::parseMediaType).toList();
+        this.searchConfig = searchConfig;
+        this.uploadPermits = new Semaphore(uploadConfig.maxConcurrentUploads());
+        this.stageMetrics = stageMetrics;
     }
 
     /**
-     * Uploads a file to an S3 bucket. The content of the file is encrypted
-     * before being uploaded. If the bucket does not exist, it will be created.
-     * Logs the upload process and handles any exceptions that occur during
-     * the operation.
+     * Uploads a file into a folder of the document bucket. Compressible content is compressed first, and the
+     * content is then streamed through chunked encryption under a KMS data key into S3, so it is never held in
+     * memory as a whole; with deduplication enabled, content the user has stored before is referenced instead of
+     * being uploaded again. The bucket is provisioned through the {@link BucketRegistry} the first time it is used
+     * and again if it has disappeared. The metadata is saved through the {@link MetadataWriteBehind}, and every
+     * stage is timed through {@link DocumentStageMetrics}.
      *
-     * @param path      The name of the S3 bucket where the file will be uploaded.
-     * @param inputFile The input stream containing the file content to be uploaded.
-     * @param metaData  The input stream containing the file content to be uploaded.
+     * @param path      The folder the file is uploaded into.
+     * @param inputFile The file to upload.
+     * @param metaData  The metadata attached to the file.
      * @param userId    The user id of the user uploading the file.
+     * @return A future completed once the metadata is saved. With write-behind enabled the metadata is only queued
+     * when this method returns, and the future fails if the queued write does.
+     * @throws RuntimeException If the content cannot be stored or the metadata can neither be saved nor queued.
      */
     @Override
-    public void upload(String path, MultipartFile inputFile, Map<String, String> metaData, String userId) {
+    public CompletableFuture<DocumentMetadata> upload(String path, MultipartFile inputFile, Map<String, String> metaData, String userId) {
         String documentId = UUID.randomUUID().toString();
         String s3Key = generateS3Key(path, documentId, inputFile.getOriginalFilename());
 
         log.info("Uploading file to S3 bucket: {}", path);
         try {
-            s3Template.createBucket(awsConfig.bucketName());
-            byte[] encryptedContent = encryptContent(inputFile.getBytes());
-            s3Template.upload(awsConfig.bucketName(), s3Key, new ByteArrayInputStream(encryptedContent));
-            DocumentMetadata documentMetadata = DocumentMetadata.builder()
-                    .documentId(documentId)
-                    .fileName(inputFile.getOriginalFilename())
-                    .filePath(path)
-                    .contentType(inputFile.getContentType())
-                    .fileSize(inputFile.getSize())
-                    .version("1.0")
-                    .createdAt(Instant.now())
-                    .updatedAt(Instant.now())
-                    .createdBy(userId)
-                    .lastModifiedBy(userId)
-                    .s3Key(s3Key)
-                    .s3Bucket(awsConfig.bucketName())
-                    .metadata(metaData)
-                    .isEncrypted(true)
-                    .kmsKeyId(awsConfig.kmsKeyId())
-                    .build();
-            documentMetadataRepository.save(documentMetadata);
+            stageMetrics.run(Stage.CREATE_BUCKET, -1, () -> bucketRegistry.ensureBucket(awsConfig.bucketName()));
+            DocumentMetadata document = storeDocument(documentId, s3Key, path, DocumentSource.of(inputFile), metaData, userId);
+            CompletableFuture<DocumentMetadata> saved;
+            try {
+                // With write-behind this is only the time to queue the write, which is what the upload waits for
+                saved = stageMetrics.time(Stage.METADATA_SAVE, -1, () -> metadataWriteBehind.saveNew(document));
+            } catch (RuntimeException e) {
+                releaseContentReference(document);
+                throw e;
+            }
+            saved.whenComplete((savedDocument, e) -> {
+                if (e != null) {
+                    releaseContentReference(document);
+                }
+            });
             log.info("File uploaded successfully with key: {}", documentId);
+            return saved;
         } catch (Exception e) {
             log.error("Error uploading file to S3 bucket: {}", awsConfig.bucketName());
             throw new RuntimeException("Failed to upload file to S3 bucket: ".concat(awsConfig.bucketName()).concat( " with key: ").concat(s3Key).concat(" due to: ").concat(e.getMessage()));
         }
     }
 
+    /**
+     * Uploads several files into the same folder. The files are encrypted and stored concurrently on virtual
+     * threads, with at most the configured number of files of all bulk uploads in flight at once, and the
+     * metadata of all stored files is then written with batch writes. A failing file does not affect the
+     * others.
+     *
+     * @param path       The folder the files are uploaded into.
+     * @param inputFiles The files to upload.
+     * @param metaData   The metadata attached to every file.
+     * @param userId     The user id of the user uploading the files.
+     * @return The outcome of every file, in the order of {@code inputFiles}.
+     */
+    @Override
+    public List<UploadResult> uploadAll(String path, List<MultipartFile> inputFiles, Map<String, String> metaData, String userId) {
+        log.info("Uploading {} files to S3 bucket: {}", inputFiles.size(), path);
+        return uploadDocuments(path, inputFiles.stream().map(DocumentSource::of).toList(), metaData, userId);
+    }
+
+    /**
+     * Stores several documents into the same folder, like {@link #uploadAll(String, List, Map, String)} but for
+     * content that did not arrive as uploaded files.
+     *
+     * @param path     The folder the documents are stored in.
+     * @param sources  The content of the documents.
+     * @param metaData The metadata attached to every document.
+     * @param userId   The user id of the owner of the documents.
+     * @return The outcome of every document, in the order of {@code sources}.
+     */
     @Override
-    public InputStream downloadDocument(String documentId) throws IOException {
-        Optional<DocumentMetadata> metadata = documentMetadataRepository.findById(documentId);
-        if (metadata.isEmpty()) {
-            throw new RuntimeException("Document not found: " + documentId);
+    public List<UploadResult> uploadDocuments(String path, List<DocumentSource> sources, Map<String, String> metaData, String userId) {
+        stageMetrics.run(Stage.CREATE_BUCKET, -1, () -> bucketRegistry.ensureBucket(awsConfig.bucketName()));
+
+        List<Future<DocumentMetadata>> uploads = new ArrayList<>(sources.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (DocumentSource source : sources) {
+                uploads.add(executor.submit(() -> storeDocumentWithPermit(path, source, metaData, userId)));
+            }
         }
 
-        DocumentMetadata doc = metadata.get();
-        InputStream encryptedStream = s3Template.download(doc.getS3Bucket(), doc.getS3Key()).getInputStream();
+        UploadResult[] results = new UploadResult[sources.size()];
+        List<DocumentMetadata> storedDocuments = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            String fileName = sources.get(i).fileName();
+            try {
+                DocumentMetadata documentMetadata = uploads.get(i).get();
+                storedDocuments.add(documentMetadata);
+                results[i] = UploadResult.success(fileName, documentMetadata.getDocumentId());
+            } catch (ExecutionException e) {
+                log.error("Error uploading file {} to S3 bucket: {}", fileName, awsConfig.bucketName(), e.getCause());
+                results[i] = UploadResult.failure(fileName, Objects.requireNonNullElse(e.getCause().getMessage(), e.getCause().getClass().getSimpleName()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while uploading files to S3 bucket: ".concat(awsConfig.bucketName()));
+            }
+        }
 
-        byte[] encryptedData = encryptedStream.readAllBytes();
-        byte[] decryptedData = decryptContent(encryptedData);
-        return new ByteArrayInputStream(decryptedData);
+        if (!storedDocuments.isEmpty()) {
+            try {
+                stageMetrics.time(Stage.METADATA_SAVE, -1, () -> documentMetadataRepository.saveAll(storedDocuments));
+            } catch (RuntimeException e) {
+                log.error("Error saving metadata of {} uploaded files", storedDocuments.size(), e);
+                storedDocuments.forEach(this::releaseContentReference);
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i].success()) {
+                        results[i] = UploadResult.failure(results[i].fileName(), "Failed to save document metadata: ".concat(e.getMessage()));
+                    }
+                }
+            }
+        }
+        return List.of(results);
     }
 
+    /**
+     * Creates a pending document whose content the client uploads directly to S3 through a presigned URL. The
+     * content is encrypted by S3 with the configured KMS key and never passes through the application. The
+     * document only becomes available once the upload is completed, see {@link #completePresignedUpload}.
+     *
+     * @param path        The folder of the document.
+     * @param fileName    The name of the file to upload.
+     * @param contentType The content type of the file, which the client must upload it with. May be null.
+     * @param metaData    The metadata of the document.
+     * @param userId      The user uploading the file.
+     * @return The document ID and the request the client uploads the content with.
+     */
+    @Override
+    public PresignedUpload createPresignedUpload(String path, String fileName, String contentType, Map<String, String> metaData, String userId) {
+        String documentId = UUID.randomUUID().toString();
+        String s3Key = generateS3Key(path, documentId, fileName);
+        bucketRegistry.ensureBucket(awsConfig.bucketName());
+        PresignedObjectStore.PresignedRequest upload = presignedObjectStore.presignUpload(awsConfig.bucketName(), s3Key, contentType);
+        // Saved right away rather than written behind, as the client may complete the upload at any moment
+        documentMetadataRepository.save(DocumentMetadata.builder()
+                .documentId(documentId)
+                .fileName(fileName)
+                .filePath(DocumentMetadata.normalizePath(path))
+                .contentType(contentType)
+                .version("1.0")
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .createdBy(userId)
+                .lastModifiedBy(userId)
+                .metadata(metaData)
+                .isEncrypted(true)
+                .kmsKeyId(awsConfig.kmsKeyId())
+                .encryptionScheme(ServerSideEncryption.AWS_KMS.toString())
+                .storageMode(DocumentMetadata.STORAGE_MODE_SSE_KMS)
+                .status(DocumentMetadata.STATUS_PENDING)
+                .s3Key(s3Key)
+                .s3Bucket(awsConfig.bucketName())
+                .build());
+        log.info("Created presigned upload of document {} for user {}", documentId, userId);
+        return new PresignedUpload(documentId, upload.url(), upload.method(), upload.headers(), upload.expiresAt());
+    }
 
+    /**
+     * Completes a presigned upload once the client has uploaded the content. The uploaded object is checked for
+     * the configured KMS encryption and size limit, and its size is recorded. Completing an available document
+     * again has no effect. The given document is left as it is.
+     *
+     * @param document The pending document.
+     * @return The available document.
+     * @throws IllegalStateException If the document is not a presigned upload, its content has not been uploaded,
+     *                               or the uploaded object is not acceptable, in which case it is deleted.
+     */
     @Override
-    public List<DocumentMetadata> searchByMetadata(Map<String, String> searchCriteria) {
-        return documentMetadataRepository.searchByMetadata(searchCriteria);
+    public DocumentMetadata completePresignedUpload(DocumentMetadata document) {
+        if (!DocumentMetadata.STORAGE_MODE_SSE_KMS.equals(document.getStorageMode())) {
+            throw new IllegalStateException("Document " + document.getDocumentId() + " is not a presigned upload");
+        }
+        if (DocumentMetadata.STATUS_AVAILABLE.equals(document.getStatus())) {
+            return document;
+        }
+        HeadObjectResponse object = presignedObjectStore.head(document.getS3Bucket(), document.getS3Key())
+                .orElseThrow(() -> new IllegalStateException("The content of document " + document.getDocumentId() + " has not been uploaded"));
+        if (!presignedObjectStore.isEncryptedWithConfiguredKey(object)) {
+            encryptedObjectStore.delete(document.getS3Bucket(), document.getS3Key());
+            throw new IllegalStateException("The content of document " + document.getDocumentId() + " is not encrypted with the configured KMS key");
+        }
+        if (object.contentLength() > presignConfig.maxUploadSize().toBytes()) {
+            encryptedObjectStore.delete(document.getS3Bucket(), document.getS3Key());
+            throw new IllegalStateException("The content of document " + document.getDocumentId() + " exceeds " + presignConfig.maxUploadSize());
+        }
+        // The pending document may be the cached instance; the repository replaces it only once the save succeeds
+        DocumentMetadata completed = document.toBuilder()
+                .fileSize(object.contentLength())
+                .status(DocumentMetadata.STATUS_AVAILABLE)
+                .updatedAt(Instant.now())
+                .build();
+        DocumentMetadata saved = documentMetadataRepository.save(completed);
+        log.info("Completed presigned upload of document {} with {} bytes", document.getDocumentId(), object.contentLength());
+        return saved;
     }
 
+    /**
+     * Presigns a download of a document stored with {@link DocumentMetadata#STORAGE_MODE_SSE_KMS}, which the
+     * client then fetches directly from S3.
+     */
     @Override
-    public List<DocumentMetadata> findByPath(String path) {
-        return documentMetadataRepository.findByPath(path);
+    public PresignedObjectStore.PresignedRequest presignDownload(DocumentMetadata document) {
+        return presignedObjectStore.presignDownload(document.getS3Bucket(), document.getS3Key());
     }
 
+    /**
+     * Downloads a document. The caller has already loaded the metadata, typically to check access, so it is
+     * not read again. Hot documents are served from the {@link DocumentContentCache} when it is enabled.
+     *
+     * @param document The metadata of the document to download.
+     * @return An InputStream over the decrypted content.
+     */
     @Override
-    public List<DocumentMetadata> findByCreatedBy(String userId) {
-        return documentMetadataRepository.findByCreatedBy(userId);
+    public InputStream downloadDocument(DocumentMetadata document) throws IOException {
+        return CompressionCodec.decompressing(document.getCompressionCodec(), downloadEncodedDocument(document));
     }
 
+    /**
+     * Downloads a document without decompressing it, for clients that accept its codec as content coding.
+     *
+     * @param document The metadata of the document to download.
+     * @return An InputStream over the decrypted content, still compressed with the document's codec.
+     */
     @Override
-    public Optional<DocumentMetadata> getDocumentMetadata(String documentId) {
-        return documentMetadataRepository.findById(documentId);
+    public InputStream downloadEncodedDocument(DocumentMetadata document) throws IOException {
+        return documentContentCache.read(document, encryptedObjectStore::readEncoded);
     }
 
-    private String generateS3Key(String path, String documentId, String originalFilename) {
-        return String.format("%s/%s/%s", path.replaceAll("^/", ""), documentId, originalFilename);
+    /**
+     * Downloads part of a document. Only the encrypted chunks that overlap the
+     * requested range are fetched from S3 and decrypted, or read from the
+     * {@link DocumentContentCache} if the document is cached.
+     *
+     * @param document The metadata of the document to download.
+     * @param start    The first byte of the range, inclusive.
+     * @param end      The last byte of the range, inclusive.
+     * @return An InputStream over the decrypted bytes of the range.
+     */
+    @Override
+    public InputStream downloadDocumentRange(DocumentMetadata document, long start, long end) throws IOException {
+        InputStream cached = documentContentCache.readRangeIfPresent(document, start, end);
+        return cached != null ? cached : encryptedObjectStore.readRange(document, start, end);
     }
 
+
     /**
-     * Decrypts the provided encrypted input stream using AWS KMS and returns the decrypted content as an InputStream.
-     * This method reads all bytes from the provided encrypted content, creates a KMS DecryptRequest, and uses the
-     * AWS KMS client to decrypt the content. If any errors occur during decryption, a RuntimeException is thrown.
+     * Returns one page of the documents matching the search criteria. When the search is scoped to a user only
+     * that user's documents are read, through the createdBy index; otherwise the whole table is scanned.
      *
-     * @param encryptedContent The InputStream containing the encrypted content to be decrypted.
-     * @return An InputStream containing the decrypted content.
-     * @throws RuntimeException If an error occurs during the decryption process.
+     * @param searchCriteria The metadata entries to match.
+     * @param createdBy      The user whose documents to search, or null to search all documents.
+     * @param pageSize       The requested page size, clamped to the configured maximum. Null for the default.
+     * @param pageToken      The token returned with the previous page, null for the first page.
+     * @return The page, with the token for the next page if there is one.
      */
-    private byte[] decryptContent(byte[] encryptedContent) {
-        try {
-            DecryptRequest decryptRequest = DecryptRequest.builder()
-                    .ciphertextBlob(SdkBytes.fromByteArray(encryptedContent))
-                    .build();
-            DecryptResponse decryptResponse = kmsAsyncClient.decrypt(decryptRequest).get(5, TimeUnit.SECONDS);
-            log.debug("Decrypted content using kmskey: {}", awsConfig.kmsKeyId());
-            return decryptResponse.plaintext().asByteArray();
-        } catch (ExecutionException | InterruptedException | TimeoutException e) {
-            log.error("Error decrypting content :", e);
-            throw new RuntimeException("failed to decrypt content", e);
+    @Override
+    public DocumentPage searchByMetadata(Map<String, String> searchCriteria, String createdBy, Integer pageSize, String pageToken) {
+        int resolvedPageSize = searchConfig.resolvePageSize(pageSize);
+        if (createdBy == null) {
+            return documentMetadataRepository.searchByMetadata(searchCriteria, resolvedPageSize, pageToken);
         }
+        return documentMetadataRepository.searchByCreatedByAndMetadata(createdBy, searchCriteria, resolvedPageSize, pageToken);
+    }
+
+    @Override
+    public DocumentPage findByPath(String path, Integer pageSize, String pageToken) {
+        return documentMetadataRepository.findByPath(path, searchConfig.resolvePageSize(pageSize), pageToken);
+    }
+
+    @Override
+    public DocumentPage findByCreatedBy(String userId, Integer pageSize, String pageToken) {
+        return documentMetadataRepository.findByCreatedBy(userId, searchConfig.resolvePageSize(pageSize), pageToken);
+    }
+
+    /**
+     * Streams the metadata of every stored document, read by a parallel scan of the table.
+     *
+     * @return The documents, in no particular order. The caller must close the stream.
+     */
+    @Override
+    public Stream<DocumentMetadata> streamAllDocuments() {
+        return documentMetadataRepository.scanAll();
+    }
+
+    @Override
+    public Optional<DocumentMetadata> getDocumentMetadata(String documentId) {
+        return stageMetrics.time(Stage.METADATA_LOOKUP, -1, () -> documentMetadataRepository.findById(documentId));
     }
 
     /**
-     * Encrypts the provided input stream using AWS KMS and returns the encrypted content as an InputStream.
-     * This method reads all bytes from the provided content, creates a KMS EncryptRequest, and uses the
-     * AWS KMS client to encrypt the content. If any errors occur during encryption, a RuntimeException is thrown.
+     * Deletes a document. Its S3 object is deleted with it unless the content is shared with other documents
+     * through the content index, in which case only the reference is dropped and the last document to go deletes
+     * the object.
      *
-     * @param content The InputStream containing the data to be encrypted.
-     * @return An InputStream containing the encrypted content.
-     * @throws RuntimeException If an error occurs during the encryption process.
+     * @param document The metadata of the document to delete.
      */
-    private byte[] encryptContent(byte[] content) {
+    @Override
+    public void deleteDocument(DocumentMetadata document) {
+        log.info("Deleting document: {}", document.getDocumentId());
+        documentMetadataRepository.deleteById(document.getDocumentId());
+        documentContentCache.invalidate(document);
+        if (document.getContentHash() == null) {
+            encryptedObjectStore.delete(document.getS3Bucket(), document.getS3Key());
+        } else {
+            releaseContentReference(document);
+        }
+    }
+
+    private DocumentMetadata storeDocumentWithPermit(String path, DocumentSource source, Map<String, String> metaData, String userId) throws IOException, InterruptedException {
+        String documentId = UUID.randomUUID().toString();
+        uploadPermits.acquire();
         try {
-            EncryptRequest encryptRequest = EncryptRequest.builder()
-                    .keyId(awsConfig.kmsKeyId())
-                    .plaintext(SdkBytes.fromByteArray(content))
+            return storeDocument(documentId, generateS3Key(path, documentId, source.fileName()), path, source, metaData, userId);
+        } finally {
+            uploadPermits.release();
+        }
+    }
+
+    /**
+     * Encrypts and stores the content of a file, recreating the bucket and retrying once if it has disappeared.
+     * With deduplication enabled the content is hashed first, and content the user has stored before is
+     * referenced through the content index without encrypting or uploading it again.
+     *
+     * @return The metadata of the stored document, not yet saved.
+     */
+    private DocumentMetadata storeDocument(String documentId, String s3Key, String path, DocumentSource source, Map<String, String> metaData, String userId) throws IOException {
+        CompressionCodec codec = compressionCodecFor(source);
+        if (!dedupConfig.enabled()) {
+            return storedDocument(newDocument(documentId, path, source, metaData, userId), s3Key, codec, storeContentWithRetry(s3Key, source, codec));
+        }
+
+        String contentHash = contentHash(source);
+        String contentKey = ContentBlob.contentKeyOf(userId, contentHash);
+        Optional<ContentBlob> existing = contentBlobRepository.acquire(contentKey);
+        if (existing.isPresent()) {
+            ContentBlob contentBlob = existing.get();
+            log.info("Content of {} is already stored as {}, skipping upload", source.fileName(), contentBlob.getS3Key());
+            return newDocument(documentId, path, source, metaData, userId)
+                    .s3Key(contentBlob.getS3Key())
+                    .s3Bucket(contentBlob.getS3Bucket())
+                    .encryptedDataKey(contentBlob.getEncryptedDataKey())
+                    .encryptionNoncePrefix(contentBlob.getEncryptionNoncePrefix())
+                    .encryptionChunkSize(contentBlob.getEncryptionChunkSize())
+                    .compressionCodec(contentBlob.getCompressionCodec())
+                    .compressedSize(contentBlob.getCompressedSize())
+                    .contentHash(contentHash)
                     .build();
-        EncryptResponse encryptResponse;
+        }
+
+        StoredObject storedObject = storeContentWithRetry(s3Key, source, codec);
+        boolean registered = contentBlobRepository.register(ContentBlob.builder()
+                .contentKey(contentKey)
+                .s3Bucket(awsConfig.bucketName())
+                .s3Key(s3Key)
+                .fileSize(source.size())
+                .encryptedDataKey(storedObject.encryptedDataKey())
+                .encryptionNoncePrefix(storedObject.noncePrefix())
+                .encryptionChunkSize(storedObject.chunkSize())
+                .compressionCodec(codec == null ? null : codec.codecName())
+                .compressedSize(codec == null ? null : storedObject.plaintextLength())
+                .createdAt(Instant.now())
+                .build());
+        DocumentMetadata.DocumentMetadataBuilder document = newDocument(documentId, path, source, metaData, userId);
+        return storedDocument(registered ? document.contentHash(contentHash) : document, s3Key, codec, storedObject);
+    }
+
+    private DocumentMetadata.DocumentMetadataBuilder newDocument(String documentId, String path, DocumentSource source, Map<String, String> metaData, String userId) {
+        return DocumentMetadata.builder()
+                .documentId(documentId)
+                .fileName(source.fileName())
+                .filePath(DocumentMetadata.normalizePath(path))
+                .contentType(source.contentType())
+                .fileSize(source.size())
+                .version("1.0")
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .createdBy(userId)
+                .lastModifiedBy(userId)
+                .metadata(metaData)
+                .isEncrypted(true)
+                .kmsKeyId(awsConfig.kmsKeyId())
+                .encryptionScheme(ChunkedCipher.ENCRYPTION_SCHEME);
+    }
+
+    private DocumentMetadata storedDocument(DocumentMetadata.DocumentMetadataBuilder document, String s3Key, CompressionCodec codec, StoredObject storedObject) {
+        return document
+                .s3Key(s3Key)
+                .s3Bucket(awsConfig.bucketName())
+                .encryptedDataKey(storedObject.encryptedDataKey())
+                .encryptionNoncePrefix(storedObject.noncePrefix())
+                .encryptionChunkSize(storedObject.chunkSize())
+                .compressionCodec(codec == null ? null : codec.codecName())
+                .compressedSize(codec == null ? null : storedObject.plaintextLength())
+                .build();
+    }
+
+    private StoredObject storeContentWithRetry(String s3Key, DocumentSource source, CompressionCodec codec) throws IOException {
+        try {
+            return storeContent(s3Key, source, codec);
+        } catch (IOException | RuntimeException e) {
+            if (!BucketRegistry.isMissingBucket(e)) {
+                throw e;
+            }
+            bucketRegistry.invalidate(awsConfig.bucketName());
+            stageMetrics.run(Stage.CREATE_BUCKET, -1, () -> bucketRegistry.ensureBucket(awsConfig.bucketName()));
+            return storeContent(s3Key, source, codec);
+        }
+    }
+
+    /**
+     * Picks the codec for a document by its content type and size, null to store it uncompressed.
+     */
+    private CompressionCodec compressionCodecFor(DocumentSource source) {
+        if (!compressionConfig.enabled() || source.contentType() == null || source.size() < compressionConfig.minSize().toBytes()) {
+            return null;
+        }
+        try {
+            MediaType contentType = MediaType.parseMediaType(source.contentType());
+            return compressibleTypes.stream().anyMatch(type -> type.includes(contentType))
+                    ? CompressionCodec.forName(compressionConfig.codec())
+                    : null;
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 of the content. It is read in a separate pass ahead of the upload, which
+     * is cheap for uploaded files and is what allows a repeated upload to skip encryption and the S3 PUT.
+     */
+    private String contentHash(DocumentSource source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = source.content().open()) {
+            for (int read; (read = inputStream.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Drops a document's reference to shared content, deleting the object if it was the last one. Documents
+     * that own their object are left alone.
+     */
+    private void releaseContentReference(DocumentMetadata document) {
+        if (document.getContentHash() == null) {
+            return;
+        }
+        try {
+            contentBlobRepository.release(ContentBlob.contentKeyOf(document.getCreatedBy(), document.getContentHash()))
+                    .ifPresent(contentBlob -> encryptedObjectStore.delete(contentBlob.getS3Bucket(), contentBlob.getS3Key()));
+        } catch (RuntimeException e) {
+            log.error("Error releasing content of document {}", document.getDocumentId(), e);
+        }
+    }
+
+    private StoredObject storeContent(String s3Key, DocumentSource source, CompressionCodec codec) throws IOException {
+        try (InputStream inputStream = codec == null ? source.content().open() : codec.compress(source.content().open())) {
+            return encryptedObjectStore.write(awsConfig.bucketName(), s3Key, inputStream);
+        }
+    }
 
-            encryptResponse = kmsAsyncClient.encrypt(encryptRequest).get(5, TimeUnit.SECONDS);
-        log.debug("Encrypted content using kmskey: {}", awsConfig.kmsKeyId());
-        return encryptResponse.ciphertextBlob().asByteArray();
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            throw new RuntimeException(e);
+    static String generateS3Key(String path, String documentId, String originalFilename) {
+        String folder = DocumentMetadata.normalizePath(path);
+        if ("/".equals(folder)) {
+            return String.format("%s/%s", documentId, originalFilename);
         }
+        return String.format("%s/%s/%s", folder, documentId, originalFilename);
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.example.localstack.service.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reference to message content that was offloaded to S3, sent in place of the content as the
+ * {@value ClaimCheckStore#HEADER} message attribute.
+ *
+ * @param bucket           The bucket the content is stored in.
+ * @param key              The key the content is stored under.
+ * @param encryptedDataKey The Base64 encoded KMS wrapped data key.
+ * @param noncePrefix      The Base64 encoded nonce prefix.
+ * @param chunkSize        The plaintext chunk size the content was encrypted with.
+ * @param length           The length of the plaintext content in bytes.
+ */
+public record ClaimCheck(String bucket, String key, String encryptedDataKey, String noncePrefix, int chunkSize, long length) {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public String encode() {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode claim check", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the value is not an encoded claim check.
+     */
+    public static ClaimCheck decode(String value) {
+        try {
+            return OBJECT_MAPPER.readValue(value, ClaimCheck.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid claim check", e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.localstack.service.messaging;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.ClaimCheckConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.EncryptedContent;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.StoredObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Implements the claim-check pattern for SQS messages. Content above {@link ClaimCheckConfig#threshold()} is
+ * encrypted into the S3 bucket and the message is sent without it, carrying a {@link ClaimCheck} in the
+ * {@value #HEADER} message attribute instead. This keeps messages within the SQS size limit and receives cheap
+ * however large the content is. The receiver resolves the reference back into the content and releases the
+ * object once the message has been processed.
+ *
+ * <p>Objects are released on a best-effort basis; a lifecycle rule expiring {@link ClaimCheckConfig#keyPrefix()}
+ * after the queue's retention period cleans up after receivers that fail in between.
+ */
+@Slf4j
+@Component
+public class ClaimCheckStore {
+    public static final String HEADER = "claim-check";
+    /** Upper bound on the keys of a single S3 DeleteObjects request. */
+    private static final int MAX_DELETE_KEYS = 1000;
+
+    private final EncryptedObjectStore encryptedObjectStore;
+    private final BucketRegistry bucketRegistry;
+    private final S3Client s3Client;
+    private final AwsConfig awsConfig;
+    private final ClaimCheckConfig claimCheckConfig;
+
+    public ClaimCheckStore(EncryptedObjectStore encryptedObjectStore, BucketRegistry bucketRegistry, S3Client s3Client, AwsConfig awsConfig, ClaimCheckConfig claimCheckConfig) {
+        this.encryptedObjectStore = encryptedObjectStore;
+        this.bucketRegistry = bucketRegistry;
+        this.s3Client = s3Client;
+        this.awsConfig = awsConfig;
+        this.claimCheckConfig = claimCheckConfig;
+    }
+
+    /**
+     * Builds the SQS message for a message, offloading its content to S3 if it is above the threshold.
+     *
+     * @param message The message to send.
+     * @return The message itself, or a copy without content carrying a {@link ClaimCheck}.
+     * @throws UncheckedIOException If the content cannot be encrypted.
+     */
+    public org.springframework.messaging.Message<Message> toSqsMessage(Message message) {
+        byte[] content = message.content() == null ? null : message.content().getBytes(UTF_8);
+        if (!claimCheckConfig.enabled() || content == null || content.length <= claimCheckConfig.threshold().toBytes()) {
+            return MessageBuilder.withPayload(message).build();
+        }
+        ClaimCheck claimCheck = offload(message, content);
+        log.debug("Offloaded {} bytes of message {} to {}", content.length, message.uuid(), claimCheck.key());
+        return MessageBuilder.withPayload(new Message(message.uuid(), null))
+                .setHeader(HEADER, claimCheck.encode())
+                .build();
+    }
+
+    /**
+     * Returns the message with its content, loading the content from S3 if it was offloaded.
+     *
+     * @param sqsMessage A received SQS message.
+     * @return The message as it was sent.
+     * @throws IOException If the offloaded content cannot be read.
+     */
+    public Message resolve(org.springframework.messaging.Message<Message> sqsMessage) throws IOException {
+        ClaimCheck claimCheck = claimCheckOf(sqsMessage);
+        if (claimCheck == null) {
+            return sqsMessage.getPayload();
+        }
+        DocumentMetadata location = DocumentMetadata.builder()
+                .s3Bucket(claimCheck.bucket())
+                .s3Key(claimCheck.key())
+                .fileSize(claimCheck.length())
+                .encryptedDataKey(claimCheck.encryptedDataKey())
+                .encryptionScheme(ChunkedCipher.ENCRYPTION_SCHEME)
+                .encryptionNoncePrefix(claimCheck.noncePrefix())
+                .encryptionChunkSize(claimCheck.chunkSize())
+                .build();
+        try (InputStream content = encryptedObjectStore.read(location)) {
+            return new Message(sqsMessage.getPayload().uuid(), new String(content.readAllBytes(), UTF_8));
+        }
+    }
+
+    /**
+     * Deletes the offloaded content of messages that no longer need it, either because they were processed or
+     * because they could not be sent. Messages without offloaded content are ignored. Failures are logged only.
+     *
+     * @param sqsMessages Messages built by {@link #toSqsMessage(Message)} or received from SQS.
+     */
+    public void release(Collection<? extends org.springframework.messaging.Message<Message>> sqsMessages) {
+        Map<String, List<String>> keysByBucket = sqsMessages.stream()
+                .map(ClaimCheckStore::claimCheckOf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(ClaimCheck::bucket, Collectors.mapping(ClaimCheck::key, Collectors.toList())));
+        keysByBucket.forEach((bucket, keys) -> {
+            for (int from = 0; from < keys.size(); from += MAX_DELETE_KEYS) {
+                List<ObjectIdentifier> objects = keys.subList(from, Math.min(from + MAX_DELETE_KEYS, keys.size())).stream()
+                        .map(key -> ObjectIdentifier.builder().key(key).build())
+                        .toList();
+                try {
+                    s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                            .bucket(bucket)
+                            .delete(Delete.builder().objects(objects).quiet(true).build())
+                            .build());
+                } catch (RuntimeException e) {
+                    log.warn("Error releasing {} claim checks in bucket {}: {}", objects.size(), bucket, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private ClaimCheck offload(Message message, byte[] content) {
+        String bucket = awsConfig.bucketName();
+        String key = claimCheckConfig.keyPrefix() + message.uuid() + "/" + UUID.randomUUID();
+        EncryptedContent encrypted;
+        try {
+            encrypted = encryptedObjectStore.encrypt(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        StoredObject storedObject;
+        try {
+            bucketRegistry.ensureBucket(bucket);
+            storedObject = encryptedObjectStore.put(bucket, key, encrypted);
+        } catch (RuntimeException e) {
+            if (!BucketRegistry.isMissingBucket(e)) {
+                throw e;
+            }
+            bucketRegistry.invalidate(bucket);
+            bucketRegistry.ensureBucket(bucket);
+            storedObject = encryptedObjectStore.put(bucket, key, encrypted);
+        }
+        return new ClaimCheck(bucket, key, storedObject.encryptedDataKey(), storedObject.noncePrefix(), storedObject.chunkSize(), storedObject.plaintextLength());
+    }
+
+    private static ClaimCheck claimCheckOf(org.springframework.messaging.Message<Message> sqsMessage) {
+        String value = sqsMessage.getHeaders().get(HEADER, String.class);
+        return value == null ? null : ClaimCheck.decode(value);
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.localstack.service.messaging;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.PipelineConfig;
+import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.EncryptedContent;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.StoredObject;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Persists SQS messages as documents in three stages, each with its own workers on virtual threads:
+ * encryption, the S3 upload of the ciphertext, and the metadata write, batched up to
+ * {@link PipelineConfig#metadataBatchSize()} documents. The stages are connected by bounded queues. When a stage
+ * falls behind, for example because S3 or KMS slows down, its queue fills up, the stage before it blocks, and
+ * eventually {@link #submit} blocks the listener, which then stops polling; work never piles up in memory beyond
+ * the queue capacities.
+ *
+ * <p>SQS delivers a message at least once, so the document of a message is keyed by the message's UUID. A
+ * redelivered message overwrites the document and S3 object stored for it before instead of adding new ones, and
+ * one delivered again while it is still in the pipeline shares the outcome of the delivery in progress.
+ *
+ * <p>The depth of every queue is published as {@value #QUEUE_DEPTH_METER}, tagged with the stage it feeds.
+ */
+@Slf4j
+@Component
+public class MessagePersistencePipeline {
+    static final String QUEUE_DEPTH_METER = "app.pipeline.queue.depth";
+    static final String MESSAGE_PATH = "messages";
+    static final String MESSAGE_OWNER = "sqs-listener";
+    private static final String MESSAGE_CONTENT_TYPE = "text/plain";
+    private static final Map<String, String> MESSAGE_METADATA = Map.of("source", "sqs");
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final EncryptedObjectStore encryptedObjectStore;
+    private final DocumentMetadataRepository documentMetadataRepository;
+    private final BucketRegistry bucketRegistry;
+    private final AwsConfig awsConfig;
+    private final PipelineConfig pipelineConfig;
+    private final BlockingQueue<Pending> encryptQueue;
+    private final BlockingQueue<Encrypted> uploadQueue;
+    private final BlockingQueue<Uploaded> metadataQueue;
+    private final StageWorkers encryptWorkers;
+    private final StageWorkers uploadWorkers;
+    private final StageWorkers metadataWorkers;
+    private final Map<UUID, CompletableFuture<DocumentMetadata>> inFlight = new ConcurrentHashMap<>();
+
+    public MessagePersistencePipeline(EncryptedObjectStore encryptedObjectStore, DocumentMetadataRepository documentMetadataRepository, BucketRegistry bucketRegistry, AwsConfig awsConfig, PipelineConfig pipelineConfig, MeterRegistry meterRegistry) {
+        this.encryptedObjectStore = encryptedObjectStore;
+        this.documentMetadataRepository = documentMetadataRepository;
+        this.bucketRegistry = bucketRegistry;
+        this.awsConfig = awsConfig;
+        this.pipelineConfig = pipelineConfig;
+        this.encryptQueue = new ArrayBlockingQueue<>(pipelineConfig.queueCapacity());
+        this.uploadQueue = new ArrayBlockingQueue<>(pipelineConfig.queueCapacity());
+        this.metadataQueue = new ArrayBlockingQueue<>(pipelineConfig.queueCapacity());
+        registerQueueDepth(meterRegistry, "encrypt", encryptQueue);
+        registerQueueDepth(meterRegistry, "upload", uploadQueue);
+        registerQueueDepth(meterRegistry, "metadata", metadataQueue);
+
+        this.encryptWorkers = new StageWorkers();
+        this.uploadWorkers = new StageWorkers();
+        this.metadataWorkers = new StageWorkers();
+        encryptWorkers.start("pipeline-encrypt-", pipelineConfig.resolvedEncryptWorkers(), () -> runStage(encryptWorkers, encryptQueue, this::encrypt, uploadQueue));
+        uploadWorkers.start("pipeline-upload-", pipelineConfig.uploadWorkers(), () -> runStage(uploadWorkers, uploadQueue, this::upload, metadataQueue));
+        metadataWorkers.start("pipeline-metadata-", 1, this::runMetadataStage);
+    }
+
+    /**
+     * Hands a message to the pipeline, blocking while the first stage is full.
+     *
+     * @return A future completed with the saved document once both content and metadata are durably stored, or
+     * completed exceptionally if any stage failed.
+     * @throws InterruptedException If interrupted while waiting for room in the pipeline.
+     */
+    public CompletableFuture<DocumentMetadata> submit(Message message) throws InterruptedException {
+        if (encryptWorkers.closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Message pipeline is shut down"));
+        }
+        Pending pending = new Pending(message, new CompletableFuture<>());
+        CompletableFuture<DocumentMetadata> persisted = inFlight.compute(message.uuid(), (uuid, inProgress) ->
+                inProgress == null || inProgress.isDone() ? pending.persisted() : inProgress);
+        if (persisted != pending.persisted()) {
+            return persisted;
+        }
+        pending.persisted().whenComplete((document, e) -> inFlight.remove(message.uuid(), pending.persisted()));
+        try {
+            encryptQueue.put(pending);
+        } catch (InterruptedException e) {
+            pending.persisted().completeExceptionally(e);
+            throw e;
+        }
+        return pending.persisted();
+    }
+
+    /**
+     * Stops the workers once everything submitted so far has passed through the pipeline. Stages are closed front
+     * to back, each after the one before it has drained its queue.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        encryptWorkers.close();
+        uploadWorkers.close();
+        metadataWorkers.close();
+    }
+
+    private Encrypted encrypt(Pending pending) throws IOException {
+        byte[] content = Objects.requireNonNullElse(pending.message().content(), "").getBytes(UTF_8);
+        return new Encrypted(pending, encryptedObjectStore.encrypt(content));
+    }
+
+    private Uploaded upload(Encrypted encrypted) {
+        String documentId = encrypted.pending().message().uuid().toString();
+        String s3Key = String.format("%s/%s/%s", MESSAGE_PATH, documentId, documentId);
+        String bucket = awsConfig.bucketName();
+        StoredObject storedObject;
+        try {
+            bucketRegistry.ensureBucket(bucket);
+            storedObject = encryptedObjectStore.put(bucket, s3Key, encrypted.content());
+        } catch (RuntimeException e) {
+            if (!BucketRegistry.isMissingBucket(e)) {
+                throw e;
+            }
+            bucketRegistry.invalidate(bucket);
+            bucketRegistry.ensureBucket(bucket);
+            storedObject = encryptedObjectStore.put(bucket, s3Key, encrypted.content());
+        }
+        return new Uploaded(encrypted.pending(), DocumentMetadata.builder()
+                .documentId(documentId)
+                .fileName(encrypted.pending().message().uuid().toString())
+                .filePath(DocumentMetadata.normalizePath(MESSAGE_PATH))
+                .contentType(MESSAGE_CONTENT_TYPE)
+                .fileSize(storedObject.plaintextLength())
+                .version("1.0")
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .createdBy(MESSAGE_OWNER)
+                .lastModifiedBy(MESSAGE_OWNER)
+                .s3Key(s3Key)
+                .s3Bucket(bucket)
+                .metadata(MESSAGE_METADATA)
+                .isEncrypted(true)
+                .kmsKeyId(awsConfig.kmsKeyId())
+                .encryptedDataKey(storedObject.encryptedDataKey())
+                .encryptionScheme(ChunkedCipher.ENCRYPTION_SCHEME)
+                .encryptionNoncePrefix(storedObject.noncePrefix())
+                .encryptionChunkSize(storedObject.chunkSize())
+                .build());
+    }
+
+    /**
+     * Runs one worker of the encrypt or upload stage: takes items from {@code input}, processes them and hands
+     * the results to {@code output}, blocking while it is full.
+     */
+    private <I extends Stage, O> void runStage(StageWorkers stage, BlockingQueue<I> input, StageFunction<I, O> function, BlockingQueue<O> output) {
+        try {
+            while (!stage.closed || !input.isEmpty()) {
+                I item = input.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    continue;
+                }
+                O result;
+                try {
+                    result = function.apply(item);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Error persisting message {}", item.pending().message().uuid(), e);
+                    item.pending().persisted().completeExceptionally(e instanceof IOException io ? new UncheckedIOException(io) : e);
+                    continue;
+                }
+                output.put(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Message pipeline worker interrupted");
+        }
+    }
+
+    private void runMetadataStage() {
+        int maxBatchSize = Math.clamp(pipelineConfig.metadataBatchSize(), 1, 25);
+        try {
+            while (!metadataWorkers.closed || !metadataQueue.isEmpty()) {
+                Uploaded first = metadataQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Uploaded> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + pipelineConfig.metadataMaxLinger().toNanos();
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Uploaded next = remaining > 0 ? metadataQueue.poll(remaining, TimeUnit.NANOSECONDS) : metadataQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                saveMetadata(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Message pipeline metadata worker interrupted");
+        }
+    }
+
+    /**
+     * Writes the metadata of a batch. Every document of a message has the same metadata, so overwriting one
+     * stored by an earlier delivery leaves no stale index postings behind.
+     */
+    private void saveMetadata(List<Uploaded> batch) {
+        try {
+            documentMetadataRepository.saveAll(batch.stream().map(Uploaded::documentMetadata).toList());
+            batch.forEach(uploaded -> uploaded.pending().persisted().complete(uploaded.documentMetadata()));
+        } catch (RuntimeException e) {
+            log.error("Error writing metadata of {} messages", batch.size(), e);
+            batch.forEach(uploaded -> uploaded.pending().persisted().completeExceptionally(e));
+        }
+    }
+
+    private static void registerQueueDepth(MeterRegistry meterRegistry, String stage, BlockingQueue<?> queue) {
+        Gauge.builder(QUEUE_DEPTH_METER, queue, BlockingQueue::size)
+                .description("Messages waiting for a stage of the message pipeline")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface StageFunction<I, O> {
+        O apply(I item) throws IOException;
+    }
+
+    /**
+     * The worker threads of one stage. Once closed they finish the items queued for the stage and exit.
+     */
+    private static final class StageWorkers {
+        private final List<Thread> threads = new ArrayList<>();
+        private volatile boolean closed;
+
+        void start(String namePrefix, int count, Runnable worker) {
+            for (int i = 0; i < count; i++) {
+                threads.add(Thread.ofVirtual().name(namePrefix + i).start(worker));
+            }
+        }
+
+        void close() throws InterruptedException {
+            closed = true;
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private interface Stage {
+        Pending pending();
+    }
+
+    private record Pending(Message message, CompletableFuture<DocumentMetadata> persisted) implements Stage {
+        @Override
+        public Pending pending() {
+            return this;
+        }
+    }
+
+    private record Encrypted(Pending pending, EncryptedContent content) implements Stage {}
+
+    private record Uploaded(Pending pending, DocumentMetadata documentMetadata) implements Stage {}
+}
@@ -0,0 +1,126 @@
+package com.example.localstack.service.messaging;
+
+import com.example.localstack.config.PublishBatchingConfig;
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.PublishResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers individually published messages and sends them with SQS batch requests. A batch is sent once it holds
+ * {@link PublishBatchingConfig#maxBatchSize()} messages or the first message in it has waited
+ * {@link PublishBatchingConfig#maxLinger()}. Messages for different queues buffered together are sent as one
+ * batch per queue.
+ */
+@Slf4j
+@Component
+public class MessagePublishBatcher {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final SqsBatchSender sqsBatchSender;
+    private final PublishBatchingConfig publishBatchingConfig;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingPublish> queue;
+    private final Thread flusher;
+    private volatile boolean running;
+
+    public MessagePublishBatcher(SqsBatchSender sqsBatchSender, PublishBatchingConfig publishBatchingConfig) {
+        this.sqsBatchSender = sqsBatchSender;
+        this.publishBatchingConfig = publishBatchingConfig;
+        this.maxBatchSize = Math.clamp(publishBatchingConfig.maxBatchSize(), 1, SqsBatchSender.MAX_BATCH_SIZE);
+        this.queue = new LinkedBlockingQueue<>(publishBatchingConfig.maxPending());
+        this.running = publishBatchingConfig.enabled();
+        this.flusher = running ? Thread.ofVirtual().name("sqs-publish-batcher").start(this::flushLoop) : null;
+    }
+
+    /**
+     * Publishes a message with the next batch for its queue.
+     *
+     * @return A future completed with the outcome once the batch holding the message is sent. Without
+     * auto-batching, or when the buffer is full, the message is sent directly and the future is already complete.
+     */
+    public CompletableFuture<PublishResult> submit(String queueName, Message message) {
+        if (running) {
+            PendingPublish pendingPublish = new PendingPublish(queueName, message, new CompletableFuture<>());
+            if (queue.offer(pendingPublish)) {
+                return pendingPublish.published();
+            }
+            log.warn("Publish buffer is full, sending message {} directly", message.uuid());
+        }
+        return CompletableFuture.completedFuture(sqsBatchSender.send(queueName, List.of(message)).getFirst());
+    }
+
+    /**
+     * Stops buffering and sends what is buffered.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join();
+            List<PendingPublish> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                flush(remaining);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPublish first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    flush(collectBatch(first));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Publish batcher interrupted with {} messages buffered", queue.size());
+                return;
+            }
+        }
+    }
+
+    private List<PendingPublish> collectBatch(PendingPublish first) throws InterruptedException {
+        List<PendingPublish> batch = new ArrayList<>(maxBatchSize);
+        batch.add(first);
+        long deadline = System.nanoTime() + publishBatchingConfig.maxLinger().toNanos();
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingPublish next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingPublish> batch) {
+        Map<String, List<PendingPublish>> byQueue = new LinkedHashMap<>();
+        batch.forEach(pendingPublish -> byQueue.computeIfAbsent(pendingPublish.queueName(), queueName -> new ArrayList<>()).add(pendingPublish));
+        byQueue.forEach((queueName, pending) -> {
+            try {
+                List<PublishResult> results = sqsBatchSender.send(queueName, pending.stream().map(PendingPublish::message).toList());
+                for (int i = 0; i < pending.size(); i++) {
+                    pending.get(i).published().complete(results.get(i));
+                }
+            } catch (RuntimeException e) {
+                log.error("Error publishing batch of {} messages to queue: {}", pending.size(), queueName, e);
+                pending.forEach(pendingPublish -> pendingPublish.published().completeExceptionally(e));
+            }
+        });
+    }
+
+    private record PendingPublish(String queueName, Message message, CompletableFuture<PublishResult> published) {}
+}
@@ -0,0 +1,143 @@
+package com.example.localstack.service.messaging;
+
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.PublishResult;
+import io.awspring.cloud.sqs.operations.SendBatchOperationFailedException;
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sends messages with SQS batch requests. Messages are grouped into batches of at most {@value #MAX_BATCH_SIZE}
+ * messages and, estimated from their content, at most {@value #MAX_BATCH_BYTES} bytes, the limits of a single
+ * SQS batch request. The fill of every batch relative to {@value #MAX_BATCH_SIZE} messages is published as
+ * {@value #FILL_RATIO_METER} and messages SQS rejected are counted as {@value #FAILED_METER}. Large content is
+ * offloaded by the {@link ClaimCheckStore} before batching, so only the references count towards the batch size.
+ */
+@Slf4j
+@Component
+public class SqsBatchSender {
+    public static final int MAX_BATCH_SIZE = 10;
+    static final String FILL_RATIO_METER = "app.sqs.publish.batch.fill";
+    static final String FAILED_METER = "app.sqs.publish.failed";
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+    /** Allowance for the JSON envelope and message attributes around the content. */
+    private static final int MESSAGE_OVERHEAD_BYTES = 512;
+
+    private final SqsTemplate sqsTemplate;
+    private final ClaimCheckStore claimCheckStore;
+    private final DistributionSummary fillRatio;
+    private final Counter failedMessages;
+
+    public SqsBatchSender(SqsTemplate sqsTemplate, ClaimCheckStore claimCheckStore, MeterRegistry meterRegistry) {
+        this.sqsTemplate = sqsTemplate;
+        this.claimCheckStore = claimCheckStore;
+        this.fillRatio = DistributionSummary.builder(FILL_RATIO_METER)
+                .description("Messages per SQS batch request relative to the maximum of " + MAX_BATCH_SIZE)
+                .baseUnit("ratio")
+                .register(meterRegistry);
+        this.failedMessages = Counter.builder(FAILED_METER)
+                .description("Messages that could not be published")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the messages to a queue. A failing message or batch does not affect the other batches.
+     *
+     * @return The outcome of every message, in the order of {@code messages}.
+     */
+    public List<PublishResult> send(String queueName, Collection<Message> messages) {
+        PublishResult[] results = new PublishResult[messages.size()];
+        List<Outgoing> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        int batchBytes = 0;
+        int position = 0;
+        for (Message message : messages) {
+            int index = position++;
+            org.springframework.messaging.Message<Message> sqsMessage;
+            try {
+                sqsMessage = claimCheckStore.toSqsMessage(message);
+            } catch (RuntimeException e) {
+                log.error("Error offloading content of message {}", message.uuid(), e);
+                failedMessages.increment();
+                results[index] = PublishResult.failure(message, errorMessage(e));
+                continue;
+            }
+            int messageBytes = estimatedSize(sqsMessage.getPayload());
+            if (batch.size() == MAX_BATCH_SIZE || (!batch.isEmpty() && batchBytes + messageBytes > MAX_BATCH_BYTES)) {
+                sendBatch(queueName, batch, results);
+                batch = new ArrayList<>(MAX_BATCH_SIZE);
+                batchBytes = 0;
+            }
+            batch.add(new Outgoing(index, message, sqsMessage));
+            batchBytes += messageBytes;
+        }
+        if (!batch.isEmpty()) {
+            sendBatch(queueName, batch, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void sendBatch(String queueName, List<Outgoing> batch, PublishResult[] results) {
+        fillRatio.record((double) batch.size() / MAX_BATCH_SIZE);
+        List<org.springframework.messaging.Message<Message>> sqsMessages = batch.stream()
+                .map(Outgoing::sqsMessage)
+                .toList();
+        SendResult.Batch<Message> result;
+        try {
+            result = sqsTemplate.sendMany(queueName, sqsMessages);
+        } catch (SendBatchOperationFailedException e) {
+            result = e.getSendBatchResult(Message.class);
+        } catch (RuntimeException e) {
+            log.error("Error publishing batch of {} messages to queue: {}", batch.size(), queueName, e);
+            failedMessages.increment(batch.size());
+            claimCheckStore.release(sqsMessages);
+            String error = errorMessage(e);
+            batch.forEach(outgoing -> results[outgoing.index()] = PublishResult.failure(outgoing.message(), error));
+            return;
+        }
+
+        Map<Message, String> errors = new HashMap<>();
+        for (SendResult.Failed<Message> failed : result.failed()) {
+            errors.put(failed.message().getPayload(), Objects.requireNonNullElse(failed.errorMessage(), "Rejected by SQS"));
+        }
+        List<org.springframework.messaging.Message<Message>> rejected = new ArrayList<>(errors.size());
+        for (Outgoing outgoing : batch) {
+            String error = errors.get(outgoing.sqsMessage().getPayload());
+            if (error == null) {
+                results[outgoing.index()] = PublishResult.success(outgoing.message());
+            } else {
+                results[outgoing.index()] = PublishResult.failure(outgoing.message(), error);
+                rejected.add(outgoing.sqsMessage());
+            }
+        }
+        if (!rejected.isEmpty()) {
+            log.warn("{} of {} messages were not published to queue: {}", rejected.size(), batch.size(), queueName);
+            failedMessages.increment(rejected.size());
+            claimCheckStore.release(rejected);
+        }
+    }
+
+    private static String errorMessage(RuntimeException e) {
+        return Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName());
+    }
+
+    private static int estimatedSize(Message message) {
+        return (message.content() == null ? 0 : message.content().getBytes(UTF_8).length) + MESSAGE_OVERHEAD_BYTES;
+    }
+
+    private record Outgoing(int index, Message message, org.springframework.messaging.Message<Message> sqsMessage) {}
+}
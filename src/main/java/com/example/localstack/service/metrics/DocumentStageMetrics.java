@@ -0,0 +1,133 @@
+package com.example.localstack.service.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the stages of the document upload and download paths, so a slow request can be pinned on KMS, S3,
+ * DynamoDB or the application's own encryption. Every stage is timed as {@value #DURATION_METER} and the bytes
+ * it handled are summarised as {@value #SIZE_METER}, both with percentile histograms and tagged with the stage,
+ * the outcome and the size bucket of the content. Stages timed while a request is being served are also added
+ * to its {@link ServerTiming}.
+ */
+@Component
+public class DocumentStageMetrics {
+    static final String DURATION_METER = "app.documents.stage.duration";
+    static final String SIZE_METER = "app.documents.stage.size";
+    private static final long SMALL_BYTES = DataSize.ofKilobytes(64).toBytes();
+    private static final long MEDIUM_BYTES = DataSize.ofMegabytes(1).toBytes();
+    private static final long LARGE_BYTES = DataSize.ofMegabytes(16).toBytes();
+
+    public enum Stage {
+        CREATE_BUCKET("create-bucket"),
+        DATA_KEY("data-key"),
+        ENCRYPT("encrypt"),
+        S3_PUT("s3-put"),
+        METADATA_SAVE("metadata-save"),
+        METADATA_LOOKUP("metadata-lookup"),
+        S3_GET("s3-get"),
+        DECRYPT("decrypt");
+
+        private final String stageName;
+
+        Stage(String stageName) {
+            this.stageName = stageName;
+        }
+
+        public String stageName() {
+            return stageName;
+        }
+    }
+
+    private final Meter.MeterProvider<Timer> durations;
+    private final Meter.MeterProvider<DistributionSummary> sizes;
+
+    public DocumentStageMetrics(MeterRegistry meterRegistry) {
+        this.durations = Timer.builder(DURATION_METER)
+                .description("Time spent in a stage of the document upload and download paths")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.sizes = DistributionSummary.builder(SIZE_METER)
+                .description("Bytes handled by a stage of the document upload and download paths")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+    }
+
+    /**
+     * Times a stage that produces a result.
+     *
+     * @param stage The stage.
+     * @param bytes The bytes the stage handles, or -1 if it does not handle content.
+     * @param call  The work of the stage. It counts as failed if it throws.
+     */
+    public <T, E extends Exception> T time(Stage stage, long bytes, StageCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            record(stage, System.nanoTime() - start, bytes, success);
+        }
+    }
+
+    /**
+     * Times a stage without a result, see {@link #time(Stage, long, StageCall)}.
+     */
+    public <E extends Exception> void run(Stage stage, long bytes, StageRunnable<E> runnable) throws E {
+        time(stage, bytes, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a stage that was timed by the caller, for work that is spread over many calls such as streaming
+     * encryption.
+     *
+     * @param stage   The stage.
+     * @param nanos   The time spent in the stage.
+     * @param bytes   The bytes the stage handled, or -1 if it does not handle content.
+     * @param success Whether the stage succeeded.
+     */
+    public void record(Stage stage, long nanos, long bytes, boolean success) {
+        String outcome = success ? "success" : "error";
+        durations.withTags("stage", stage.stageName(), "outcome", outcome, "size", sizeBucket(bytes))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (bytes >= 0) {
+            sizes.withTags("stage", stage.stageName(), "outcome", outcome).record(bytes);
+        }
+        ServerTiming.record(stage.stageName(), nanos);
+    }
+
+    static String sizeBucket(long bytes) {
+        if (bytes < 0) {
+            return "none";
+        }
+        if (bytes < SMALL_BYTES) {
+            return "lt-64kb";
+        }
+        if (bytes < MEDIUM_BYTES) {
+            return "lt-1mb";
+        }
+        return bytes < LARGE_BYTES ? "lt-16mb" : "gte-16mb";
+    }
+
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface StageRunnable<E extends Exception> {
+        void run() throws E;
+    }
+}
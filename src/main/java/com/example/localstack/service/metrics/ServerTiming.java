@@ -0,0 +1,61 @@
+package com.example.localstack.service.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The time a request spent in each stage, reported to the client in the {@value #HEADER} response header. A
+ * timing is bound to the thread serving the request; stages that run on other threads, such as the files of a
+ * bulk upload or the decryption of a streamed download, are not part of it.
+ */
+public final class ServerTiming {
+    public static final String HEADER = "Server-Timing";
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Starts collecting the stages run by the current thread.
+     */
+    public static ServerTiming start() {
+        ServerTiming timing = new ServerTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * Stops collecting the stages run by the current thread.
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    static void record(String stage, long nanos) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.add(stage, nanos);
+        }
+    }
+
+    private synchronized void add(String stage, long nanos) {
+        stageNanos.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * Returns the header value with the total time of every stage in milliseconds, in the order the stages first
+     * ran, or null if no stage ran.
+     */
+    public synchronized String headerValue() {
+        if (stageNanos.isEmpty()) {
+            return null;
+        }
+        return stageNanos.entrySet().stream()
+                .map(stage -> String.format(Locale.ROOT, "%s;dur=%.1f", stage.getKey(), stage.getValue() / 1_000_000.0))
+                .collect(Collectors.joining(", "));
+    }
+}
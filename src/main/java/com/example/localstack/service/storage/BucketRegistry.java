@@ -0,0 +1,103 @@
+package com.example.localstack.service.storage;
+
+import com.example.localstack.config.AwsConfig;
+import io.awspring.cloud.s3.S3Template;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps track of the buckets known to exist so that the upload path does not have to check for or create the
+ * bucket on every request. Buckets are provisioned once, at startup for the configured bucket or on first use
+ * for any other, and forgotten again when a data-plane call reports that the bucket has disappeared.
+ */
+@Slf4j
+@Component
+public class BucketRegistry {
+    private static final String NO_SUCH_BUCKET = "NoSuchBucket";
+
+    private final S3Template s3Template;
+    private final AwsConfig awsConfig;
+    private final Set<String> provisionedBuckets = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock provisioningLock = new ReentrantLock();
+
+    public BucketRegistry(S3Template s3Template, AwsConfig awsConfig) {
+        this.s3Template = s3Template;
+        this.awsConfig = awsConfig;
+    }
+
+    @PostConstruct
+    public void provisionConfiguredBuckets() {
+        try {
+            ensureBucket(awsConfig.bucketName());
+        } catch (Exception e) {
+            log.error("Error provisioning S3 bucket {}, retrying on first use \n {}", awsConfig.bucketName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Makes sure the bucket exists, creating it if necessary. Only the first call for a bucket reaches S3.
+     *
+     * @param bucketName The bucket to provision.
+     */
+    public void ensureBucket(String bucketName) {
+        if (provisionedBuckets.contains(bucketName)) {
+            return;
+        }
+        provisioningLock.lock();
+        try {
+            if (provisionedBuckets.contains(bucketName)) {
+                return;
+            }
+            if (!s3Template.bucketExists(bucketName)) {
+                createBucket(bucketName);
+            }
+            provisionedBuckets.add(bucketName);
+            log.info("S3 bucket {} is provisioned", bucketName);
+        } finally {
+            provisioningLock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a bucket so that the next {@link #ensureBucket(String)} checks for it again.
+     *
+     * @param bucketName The bucket that was found to be missing.
+     */
+    public void invalidate(String bucketName) {
+        provisionedBuckets.remove(bucketName);
+        log.warn("S3 bucket {} is missing, it will be provisioned again", bucketName);
+    }
+
+    /**
+     * Returns whether the exception, or any of its causes, reports a missing bucket.
+     */
+    public static boolean isMissingBucket(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof NoSuchBucketException) {
+                return true;
+            }
+            if (t instanceof S3Exception s3Exception && s3Exception.awsErrorDetails() != null
+                    && NO_SUCH_BUCKET.equals(s3Exception.awsErrorDetails().errorCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void createBucket(String bucketName) {
+        try {
+            s3Template.createBucket(bucketName);
+            log.info("Created S3 bucket {}", bucketName);
+        } catch (BucketAlreadyOwnedByYouException e) {
+            log.info("S3 bucket {} already exists", bucketName);
+        }
+    }
+}
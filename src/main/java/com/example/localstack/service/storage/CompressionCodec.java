@@ -0,0 +1,67 @@
+package com.example.localstack.service.storage;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression applied to document content before it is encrypted. The codec of a document is recorded in its
+ * metadata by {@link #codecName()}, so codecs can be added without affecting documents already stored.
+ */
+public enum CompressionCodec {
+    /**
+     * zlib format deflate, the format of the HTTP {@code deflate} content coding.
+     */
+    DEFLATE("deflate") {
+        @Override
+        public InputStream compress(InputStream content) {
+            return new DeflaterInputStream(content);
+        }
+
+        @Override
+        public InputStream decompress(InputStream compressed) {
+            return new InflaterInputStream(compressed);
+        }
+    };
+
+    private final String codecName;
+
+    CompressionCodec(String codecName) {
+        this.codecName = codecName;
+    }
+
+    public String codecName() {
+        return codecName;
+    }
+
+    /**
+     * @return A stream compressing {@code content} as it is read. Closing it closes {@code content}.
+     */
+    public abstract InputStream compress(InputStream content);
+
+    /**
+     * @return A stream decompressing {@code compressed} as it is read. Closing it closes {@code compressed}.
+     */
+    public abstract InputStream decompress(InputStream compressed);
+
+    /**
+     * @throws IllegalArgumentException If no codec has that name.
+     */
+    public static CompressionCodec forName(String codecName) {
+        return Arrays.stream(values())
+                .filter(codec -> codec.codecName.equals(codecName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown compression codec: " + codecName));
+    }
+
+    /**
+     * Decompresses stored content with the codec it was compressed with.
+     *
+     * @param codecName The recorded codec, null for content stored uncompressed.
+     * @param content   The stored content.
+     */
+    public static InputStream decompressing(String codecName, InputStream content) {
+        return codecName == null ? content : forName(codecName).decompress(content);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.localstack.service.storage;
+
+import com.example.localstack.config.ContentCacheConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.encryption.DecryptingInputStream;
+import com.example.localstack.service.encryption.EncryptingInputStream;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded local disk cache of decrypted document content, keyed by document ID and version. Hot documents
+ * are served from local disk instead of being fetched from S3 and decrypted again on every download.
+ *
+ * <p>Cached content stays encrypted at rest with {@link ChunkedCipher}, under a key generated when the cache is
+ * created and only ever held in memory. Cache files are therefore useless to any other process, including this
+ * one after a restart, and the directory is emptied on startup and shutdown. Because every hit has to be
+ * decrypted on its way out, hits are streamed through the heap rather than transferred file to socket.
+ *
+ * <p>A miss downloads the whole document into the cache before it is served. The download runs on the thread
+ * that missed, outside the cache's locks, and concurrent misses for the same document wait for it instead of
+ * starting their own. Eviction is by total size with Caffeine's frequency-aware policy, so one large cold
+ * download does not flush the hot set. Hit, miss and eviction counts are published as the {@code cache.*} meters
+ * of the {@value #CACHE_NAME} cache.
+ */
+@Slf4j
+@Component
+public class DocumentContentCache {
+    static final String CACHE_NAME = "documentContent";
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Reads the stored content of a document on a cache miss.
+     */
+    @FunctionalInterface
+    public interface ContentLoader {
+        InputStream load(DocumentMetadata document) throws IOException;
+    }
+
+    private record Entry(Path path, byte[] noncePrefix, long storedLength) {
+        long finalChunkIndex() {
+            return Math.max(0, (storedLength - 1) / (CHUNK_SIZE + ChunkedCipher.TAG_LENGTH));
+        }
+    }
+
+    private final ContentCacheConfig contentCacheConfig;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Path directory;
+    private final SecretKey localKey;
+    private final AsyncCache<String, Entry> cache;
+
+    public DocumentContentCache(ContentCacheConfig contentCacheConfig, MeterRegistry meterRegistry) {
+        this.contentCacheConfig = contentCacheConfig;
+        if (!contentCacheConfig.enabled()) {
+            this.directory = null;
+            this.localKey = null;
+            this.cache = null;
+            return;
+        }
+        try {
+            this.directory = contentCacheConfig.directory() == null
+                    ? Files.createTempDirectory("content-cache")
+                    : Files.createDirectories(contentCacheConfig.directory());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the content cache directory", e);
+        }
+        deleteCacheFiles();
+        this.localKey = generateLocalKey();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(contentCacheConfig.maxSize().toBytes())
+                .<String, Entry>weigher((key, entry) -> (int) Math.min(Integer.MAX_VALUE, entry.storedLength()))
+                .removalListener((String key, Entry entry, RemovalCause cause) -> deleteFile(entry))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the stored content of a document, from the cache if present and through the loader otherwise.
+     * The loaded content is cached unless the cache is disabled or the document is too large.
+     *
+     * @param document The document to read.
+     * @param loader   Reads the stored content on a miss, see {@link EncryptedObjectStore#readEncoded(DocumentMetadata)}.
+     * @return An InputStream over the stored content, still compressed with the document's codec.
+     * @throws IOException If the content cannot be loaded or cached.
+     */
+    public InputStream read(DocumentMetadata document, ContentLoader loader) throws IOException {
+        if (!isCacheable(document)) {
+            return loader.load(document);
+        }
+        Entry entry = getOrFill(document, loader);
+        try {
+            return open(entry, 0, entry.finalChunkIndex(), 0);
+        } catch (NoSuchFileException e) {
+            log.warn("Cached content of document {} disappeared, reading it from the store", document.getDocumentId());
+            cache.synchronous().invalidate(keyOf(document));
+            return loader.load(document);
+        }
+    }
+
+    /**
+     * Returns part of the stored content of a document if it is cached. Only the cached chunks that overlap the
+     * range are decrypted.
+     *
+     * @param start The first byte of the range, inclusive.
+     * @param end   The last byte of the range, inclusive.
+     * @return An InputStream over the bytes of the range, or null on a miss, which is not filled, and for
+     * compressed documents, whose ranges cannot be located in the stored content.
+     * @throws IOException If the cached content cannot be read.
+     */
+    public InputStream readRangeIfPresent(DocumentMetadata document, long start, long end) throws IOException {
+        CompletableFuture<Entry> cached = cache == null || document.getCompressionCodec() != null ? null : cache.getIfPresent(keyOf(document));
+        // Content that is still being downloaded counts as a miss rather than holding up the range request
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return null;
+        }
+        Entry entry = cached.join();
+        long firstChunk = start / CHUNK_SIZE;
+        long lastChunk = Math.min(end / CHUNK_SIZE, entry.finalChunkIndex());
+        InputStream content = open(entry, firstChunk, lastChunk, start - firstChunk * CHUNK_SIZE);
+        return new BoundedInputStream(content, end - start + 1);
+    }
+
+    /**
+     * Drops the cached content of a document, e.g. when the document is deleted.
+     */
+    public void invalidate(DocumentMetadata document) {
+        if (cache != null) {
+            cache.synchronous().invalidate(keyOf(document));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cache != null) {
+            cache.synchronous().invalidateAll();
+            cache.synchronous().cleanUp();
+            deleteCacheFiles();
+        }
+    }
+
+    private boolean isCacheable(DocumentMetadata document) {
+        Long storedSize = document.getCompressionCodec() != null ? document.getCompressedSize() : document.getFileSize();
+        return cache != null && document.getDocumentId() != null && storedSize != null
+                && storedSize <= contentCacheConfig.maxEntrySize().toBytes();
+    }
+
+    /**
+     * Returns the cache entry of a document, filling it on this thread if it is missing. Only the creation of the
+     * pending entry runs inside the cache's compute, so the download does not hold up other keys, and a failed
+     * fill is dropped by the cache so that the next read tries again.
+     */
+    private Entry getOrFill(DocumentMetadata document, ContentLoader loader) throws IOException {
+        CompletableFuture<Entry> filling = new CompletableFuture<>();
+        CompletableFuture<Entry> entry = cache.get(keyOf(document), (key, executor) -> filling);
+        if (entry == filling) {
+            try {
+                filling.complete(fill(document, loader));
+            } catch (RuntimeException | Error e) {
+                filling.completeExceptionally(e);
+            }
+        }
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private Entry fill(DocumentMetadata document, ContentLoader loader) {
+        byte[] noncePrefix = new byte[ChunkedCipher.NONCE_PREFIX_LENGTH];
+        secureRandom.nextBytes(noncePrefix);
+        Path path = directory.resolve(UUID.randomUUID() + ".bin");
+        Path partial = directory.resolve(path.getFileName() + ".partial");
+        try (InputStream content = new EncryptingInputStream(loader.load(document), new ChunkedCipher(localKey, noncePrefix), CHUNK_SIZE)) {
+            long storedLength = Files.copy(content, partial);
+            Files.move(partial, path, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Cached {} bytes of document {}", storedLength, document.getDocumentId());
+            return new Entry(path, noncePrefix, storedLength);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+    }
+
+    private InputStream open(Entry entry, long firstChunk, long lastChunk, long skip) throws IOException {
+        FileChannel channel = FileChannel.open(entry.path(), StandardOpenOption.READ);
+        try {
+            channel.position(ChunkedCipher.ciphertextOffset(firstChunk, CHUNK_SIZE));
+            InputStream content = new DecryptingInputStream(Channels.newInputStream(channel),
+                    new ChunkedCipher(localKey, entry.noncePrefix()), CHUNK_SIZE, firstChunk, lastChunk, entry.finalChunkIndex());
+            content.skipNBytes(skip);
+            return content;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void deleteFile(Entry entry) {
+        // Readers that still have the file open keep reading it; the space is freed once they close it
+        deleteQuietly(entry.path());
+    }
+
+    private void deleteCacheFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().matches(".*\\.bin(\\.partial)?"))
+                    .forEach(DocumentContentCache::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("Error clearing content cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Error deleting cached content {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static SecretKey generateLocalKey() {
+        try {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(256);
+            return keyGenerator.generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("AES is not available", e);
+        }
+    }
+
+    private static String keyOf(DocumentMetadata document) {
+        return document.getDocumentId() + "@" + Objects.toString(document.getVersion(), "");
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.localstack.service.storage;
+
+/**
+ * Content encrypted in memory by {@link EncryptedObjectStore#encrypt(byte[])} and not stored yet.
+ *
+ * @param storedObject The parameters required to decrypt the content once it is stored.
+ * @param ciphertext   The encrypted content, exactly as it is to be stored.
+ */
+public record EncryptedContent(StoredObject storedObject, byte[] ciphertext) {
+}
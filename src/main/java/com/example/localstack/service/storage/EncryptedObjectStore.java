@@ -0,0 +1,425 @@
+package com.example.localstack.service.storage;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.encryption.DataKey;
+import com.example.localstack.service.encryption.DecryptingInputStream;
+import com.example.localstack.service.encryption.EnvelopeEncryptionService;
+import com.example.localstack.service.metrics.DocumentStageMetrics;
+import com.example.localstack.service.metrics.DocumentStageMetrics.Stage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Writes and reads encrypted document content in S3 without holding whole documents in memory.
+ *
+ * <p>Uploads read the source one chunk at a time, seal each chunk with {@link ChunkedCipher} into a pooled part
+ * buffer and ship full buffers as S3 multipart upload parts. Content that fits into a single part is sent with
+ * one plain PUT instead. Downloads decrypt the S3 response stream chunk by chunk.
+ *
+ * <p>Data key lookups, every S3 request and the encryption and decryption of each object are timed through
+ * {@link DocumentStageMetrics}.
+ */
+@Slf4j
+@Component
+public class EncryptedObjectStore {
+    private final S3Client s3Client;
+    private final EnvelopeEncryptionService envelopeEncryptionService;
+    private final TransferBufferPool transferBufferPool;
+    private final DocumentStageMetrics stageMetrics;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public EncryptedObjectStore(S3Client s3Client, EnvelopeEncryptionService envelopeEncryptionService, TransferBufferPool transferBufferPool, DocumentStageMetrics stageMetrics) {
+        this.s3Client = s3Client;
+        this.envelopeEncryptionService = envelopeEncryptionService;
+        this.transferBufferPool = transferBufferPool;
+        this.stageMetrics = stageMetrics;
+    }
+
+    /**
+     * Encrypts the content and stores it under the given key.
+     *
+     * @param bucket  The target S3 bucket.
+     * @param key     The target object key.
+     * @param content The plaintext content. Not closed by this method.
+     * @return The parameters required to decrypt the stored object.
+     * @throws IOException If the content cannot be read or encrypted.
+     */
+    public StoredObject write(String bucket, String key, InputStream content) throws IOException {
+        DataKey dataKey = stageMetrics.time(Stage.DATA_KEY, -1, envelopeEncryptionService::currentDataKey);
+        byte[] noncePrefix = new byte[ChunkedCipher.NONCE_PREFIX_LENGTH];
+        secureRandom.nextBytes(noncePrefix);
+        ChunkedCipher cipher = new ChunkedCipher(dataKey.plaintextKey(), noncePrefix);
+
+        TransferBufferPool.TransferBuffer buffer = acquireBuffer();
+        String uploadId = null;
+        try {
+            PushbackInputStream source = new PushbackInputStream(content, 1);
+            byte[] chunk = buffer.chunk();
+            byte[] part = buffer.part();
+            List<CompletedPart> completedParts = new ArrayList<>();
+            int partLength = 0;
+            long chunkIndex = 0;
+            long plaintextLength = 0;
+            long storedLength = 0;
+            boolean lastChunk = false;
+
+            while (!lastChunk) {
+                int read = source.readNBytes(chunk, 0, chunk.length);
+                lastChunk = read < chunk.length || isExhausted(source);
+                partLength += cipher.encryptChunk(chunkIndex++, lastChunk, chunk, 0, read, part, partLength);
+                plaintextLength += read;
+                if (partLength == part.length && !lastChunk) {
+                    if (uploadId == null) {
+                        uploadId = createMultipartUpload(bucket, key);
+                    }
+                    completedParts.add(uploadPart(bucket, key, uploadId, completedParts.size() + 1, part, partLength));
+                    storedLength += partLength;
+                    partLength = 0;
+                }
+            }
+            storedLength += partLength;
+
+            if (uploadId == null) {
+                putObject(bucket, key, part, partLength);
+            } else {
+                completedParts.add(uploadPart(bucket, key, uploadId, completedParts.size() + 1, part, partLength));
+                completeMultipartUpload(bucket, key, uploadId, completedParts);
+            }
+            stageMetrics.record(Stage.ENCRYPT, cipher.elapsedNanos(), cipher.processedBytes(), true);
+            log.debug("Stored {} bytes as {} encrypted bytes in {} part(s) under key: {}", plaintextLength, storedLength, Math.max(1, completedParts.size()), key);
+            return new StoredObject(dataKey.encryptedKey(), Base64.getEncoder().encodeToString(noncePrefix), chunk.length, plaintextLength, storedLength);
+        } catch (GeneralSecurityException e) {
+            stageMetrics.record(Stage.ENCRYPT, cipher.elapsedNanos(), cipher.processedBytes(), false);
+            abortMultipartUpload(bucket, key, uploadId);
+            throw new IOException("Failed to encrypt content for key: " + key, e);
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(bucket, key, uploadId);
+            throw e;
+        } finally {
+            transferBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Encrypts content that is already in memory without storing it, so that encryption and upload can run as
+     * separate steps. The result is stored with {@link #put(String, String, EncryptedContent)}.
+     *
+     * @param plaintext The content to encrypt.
+     * @return The ciphertext together with the parameters required to decrypt it.
+     * @throws IOException If the content cannot be encrypted.
+     */
+    public EncryptedContent encrypt(byte[] plaintext) throws IOException {
+        DataKey dataKey = stageMetrics.time(Stage.DATA_KEY, -1, envelopeEncryptionService::currentDataKey);
+        byte[] noncePrefix = new byte[ChunkedCipher.NONCE_PREFIX_LENGTH];
+        secureRandom.nextBytes(noncePrefix);
+        ChunkedCipher cipher = new ChunkedCipher(dataKey.plaintextKey(), noncePrefix);
+        int chunkSize = transferBufferPool.chunkSize();
+
+        byte[] ciphertext = new byte[Math.toIntExact(ChunkedCipher.ciphertextLength(plaintext.length, chunkSize))];
+        int offset = 0;
+        int written = 0;
+        long chunkIndex = 0;
+        boolean lastChunk = false;
+        try {
+            while (!lastChunk) {
+                int length = Math.min(chunkSize, plaintext.length - offset);
+                lastChunk = offset + length == plaintext.length;
+                written += cipher.encryptChunk(chunkIndex++, lastChunk, plaintext, offset, length, ciphertext, written);
+                offset += length;
+            }
+        } catch (GeneralSecurityException e) {
+            stageMetrics.record(Stage.ENCRYPT, cipher.elapsedNanos(), cipher.processedBytes(), false);
+            throw new IOException("Failed to encrypt content", e);
+        }
+        stageMetrics.record(Stage.ENCRYPT, cipher.elapsedNanos(), cipher.processedBytes(), true);
+        StoredObject storedObject = new StoredObject(dataKey.encryptedKey(), Base64.getEncoder().encodeToString(noncePrefix), chunkSize, plaintext.length, written);
+        return new EncryptedContent(storedObject, ciphertext);
+    }
+
+    /**
+     * Stores content encrypted by {@link #encrypt(byte[])} with a single PUT.
+     *
+     * @param bucket  The target S3 bucket.
+     * @param key     The target object key.
+     * @param content The encrypted content.
+     * @return The parameters required to decrypt the stored object.
+     */
+    public StoredObject put(String bucket, String key, EncryptedContent content) {
+        putObject(bucket, key, content.ciphertext(), content.ciphertext().length);
+        return content.storedObject();
+    }
+
+    /**
+     * Opens a stream over the decrypted content of a document, decompressed if it was stored compressed.
+     *
+     * @param doc The metadata of the document to read.
+     * @return The plaintext content. The caller must close it to release the S3 connection.
+     * @throws IOException If the object cannot be read.
+     */
+    public InputStream read(DocumentMetadata doc) throws IOException {
+        return CompressionCodec.decompressing(doc.getCompressionCodec(), readEncoded(doc));
+    }
+
+    /**
+     * Opens a stream over the decrypted content of a document as it was stored, still compressed with
+     * {@link DocumentMetadata#getCompressionCodec()} if it has a codec.
+     *
+     * @param doc The metadata of the document to read.
+     * @return The decrypted content. The caller must close it to release the S3 connection.
+     * @throws IOException If the object cannot be read.
+     */
+    public InputStream readEncoded(DocumentMetadata doc) throws IOException {
+        if (DocumentMetadata.STORAGE_MODE_SSE_KMS.equals(doc.getStorageMode())) {
+            // Encrypted by S3, which decrypts it on the way out
+            return getObject(doc.getS3Bucket(), doc.getS3Key());
+        }
+        if (ChunkedCipher.ENCRYPTION_SCHEME.equals(doc.getEncryptionScheme())) {
+            ChunkedCipher cipher = cipherFor(doc);
+            return new TimedDecryption(new DecryptingInputStream(getObject(doc.getS3Bucket(), doc.getS3Key()), cipher, doc.getEncryptionChunkSize()), cipher);
+        }
+
+        byte[] encryptedData;
+        try (InputStream encryptedStream = getObject(doc.getS3Bucket(), doc.getS3Key())) {
+            encryptedData = encryptedStream.readAllBytes();
+        }
+        byte[] decryptedData = stageMetrics.time(Stage.DECRYPT, encryptedData.length, () -> doc.getEncryptedDataKey() == null
+                ? envelopeEncryptionService.decryptWithKms(encryptedData)
+                : envelopeEncryptionService.decrypt(encryptedData, doc.getEncryptedDataKey()));
+        return new ByteArrayInputStream(decryptedData);
+    }
+
+    /**
+     * Opens a stream over a byte range of the decrypted content of a document. For chunked documents only the
+     * ciphertext of the chunks overlapping the range is fetched from S3 and decrypted; compressed documents and
+     * documents in older formats are decrypted and decompressed from the start and sliced.
+     *
+     * @param doc   The metadata of the document to read.
+     * @param start The first plaintext byte to return, inclusive.
+     * @param end   The last plaintext byte to return, inclusive.
+     * @return The requested plaintext bytes. The caller must close it to release the S3 connection.
+     * @throws IOException If the object cannot be read.
+     */
+    public InputStream readRange(DocumentMetadata doc, long start, long end) throws IOException {
+        long length = end - start + 1;
+        if (!ChunkedCipher.ENCRYPTION_SCHEME.equals(doc.getEncryptionScheme()) || doc.getCompressionCodec() != null) {
+            InputStream content = read(doc);
+            try {
+                content.skipNBytes(start);
+            } catch (IOException | RuntimeException e) {
+                content.close();
+                throw e;
+            }
+            return new BoundedInputStream(content, length);
+        }
+
+        int chunkSize = doc.getEncryptionChunkSize();
+        long firstChunk = start / chunkSize;
+        long lastChunk = end / chunkSize;
+        long finalChunk = Math.max(1, (doc.getFileSize() + chunkSize - 1) / chunkSize) - 1;
+        long rangeStart = ChunkedCipher.ciphertextOffset(firstChunk, chunkSize);
+        long rangeEnd = Math.min(ChunkedCipher.ciphertextOffset(lastChunk + 1, chunkSize), ChunkedCipher.ciphertextLength(doc.getFileSize(), chunkSize)) - 1;
+
+        ChunkedCipher cipher = cipherFor(doc);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(doc.getS3Bucket())
+                .key(doc.getS3Key())
+                .range("bytes=" + rangeStart + "-" + rangeEnd)
+                .build();
+        InputStream content = new TimedDecryption(new DecryptingInputStream(getObject(request), cipher, chunkSize, firstChunk, lastChunk, finalChunk), cipher);
+        try {
+            content.skipNBytes(start - firstChunk * chunkSize);
+        } catch (IOException | RuntimeException e) {
+            content.close();
+            throw e;
+        }
+        return new BoundedInputStream(content, length);
+    }
+
+    /**
+     * Deletes a stored object.
+     *
+     * @param bucket The bucket of the object.
+     * @param key    The key of the object.
+     */
+    public void delete(String bucket, String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+    }
+
+    private ChunkedCipher cipherFor(DocumentMetadata doc) {
+        SecretKey key = stageMetrics.time(Stage.DATA_KEY, -1, () -> envelopeEncryptionService.resolveDataKey(doc.getEncryptedDataKey()));
+        return new ChunkedCipher(key, Base64.getDecoder().decode(doc.getEncryptionNoncePrefix()));
+    }
+
+    private ResponseInputStream<GetObjectResponse> getObject(String bucket, String key) {
+        return getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+    }
+
+    /**
+     * Opens an object, timed up to the response headers; reading the body is part of the consumer's time.
+     */
+    private ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        long start = System.nanoTime();
+        try {
+            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request);
+            Long contentLength = response.response().contentLength();
+            stageMetrics.record(Stage.S3_GET, System.nanoTime() - start, contentLength == null ? -1 : contentLength, true);
+            return response;
+        } catch (RuntimeException e) {
+            stageMetrics.record(Stage.S3_GET, System.nanoTime() - start, -1, false);
+            throw e;
+        }
+    }
+
+    private TransferBufferPool.TransferBuffer acquireBuffer() throws IOException {
+        try {
+            return transferBufferPool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a transfer buffer");
+        }
+    }
+
+    private boolean isExhausted(PushbackInputStream source) throws IOException {
+        int next = source.read();
+        if (next == -1) {
+            return true;
+        }
+        source.unread(next);
+        return false;
+    }
+
+    private void putObject(String bucket, String key, byte[] content, int length) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentLength((long) length)
+                .build();
+        stageMetrics.time(Stage.S3_PUT, length, () -> s3Client.putObject(request, RequestBody.fromInputStream(new ByteArrayInputStream(content, 0, length), length)));
+    }
+
+    private String createMultipartUpload(String bucket, String key) {
+        CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        return stageMetrics.time(Stage.S3_PUT, -1, () -> s3Client.createMultipartUpload(request)).uploadId();
+    }
+
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] content, int length) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+        UploadPartResponse response = stageMetrics.time(Stage.S3_PUT, length,
+                () -> s3Client.uploadPart(request, RequestBody.fromInputStream(new ByteArrayInputStream(content, 0, length), length)));
+        return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+    }
+
+    private void completeMultipartUpload(String bucket, String key, String uploadId, List<CompletedPart> parts) {
+        CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build();
+        stageMetrics.time(Stage.S3_PUT, -1, () -> s3Client.completeMultipartUpload(request));
+    }
+
+    private void abortMultipartUpload(String bucket, String key, String uploadId) {
+        if (uploadId == null) {
+            return;
+        }
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+        } catch (RuntimeException e) {
+            log.error("Error aborting multipart upload {} for key: {}", uploadId, key, e);
+        }
+    }
+
+    /**
+     * Records the time spent decrypting a downloaded object once the consumer closes it.
+     */
+    private class TimedDecryption extends FilterInputStream {
+        private final ChunkedCipher cipher;
+        private boolean failed;
+        private boolean recorded;
+
+        TimedDecryption(DecryptingInputStream content, ChunkedCipher cipher) {
+            super(content);
+            this.cipher = cipher;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!recorded) {
+                    recorded = true;
+                    stageMetrics.record(Stage.DECRYPT, cipher.elapsedNanos(), cipher.processedBytes(), !failed);
+                }
+            }
+        }
+    }
+}
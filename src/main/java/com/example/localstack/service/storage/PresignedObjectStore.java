@@ -0,0 +1,98 @@
+package com.example.localstack.service.storage;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.PresignConfig;
+import io.awspring.cloud.s3.ObjectMetadata;
+import io.awspring.cloud.s3.S3Template;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+
+import java.net.URL;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Issues presigned URLs through which clients move document content directly to and from S3, encrypted by S3
+ * with the configured KMS key instead of by the application.
+ */
+@Component
+public class PresignedObjectStore {
+    static final String SSE_HEADER = "x-amz-server-side-encryption";
+    static final String SSE_KMS_KEY_HEADER = "x-amz-server-side-encryption-aws-kms-key-id";
+
+    private final S3Template s3Template;
+    private final S3Client s3Client;
+    private final AwsConfig awsConfig;
+    private final PresignConfig presignConfig;
+
+    public PresignedObjectStore(S3Template s3Template, S3Client s3Client, AwsConfig awsConfig, PresignConfig presignConfig) {
+        this.s3Template = s3Template;
+        this.s3Client = s3Client;
+        this.awsConfig = awsConfig;
+        this.presignConfig = presignConfig;
+    }
+
+    /**
+     * A presigned request. The headers are part of the signature, so the client must send them unchanged.
+     */
+    public record PresignedRequest(URL url, String method, Map<String, String> headers, Instant expiresAt) {}
+
+    /**
+     * Presigns a PUT of an object encrypted by S3 with the configured KMS key.
+     *
+     * @param bucket      The target S3 bucket.
+     * @param key         The target object key.
+     * @param contentType The content type the client will upload, or null.
+     */
+    public PresignedRequest presignUpload(String bucket, String key, String contentType) {
+        Instant expiresAt = Instant.now().plus(presignConfig.uploadUrlTtl());
+        ObjectMetadata metadata = ObjectMetadata.builder()
+                .serverSideEncryption(ServerSideEncryption.AWS_KMS.toString())
+                .ssekmsKeyId(awsConfig.kmsKeyId())
+                .build();
+        URL url = s3Template.createSignedPutURL(bucket, key, presignConfig.uploadUrlTtl(), metadata, contentType);
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(SSE_HEADER, ServerSideEncryption.AWS_KMS.toString());
+        headers.put(SSE_KMS_KEY_HEADER, awsConfig.kmsKeyId());
+        if (contentType != null) {
+            headers.put(HttpHeaders.CONTENT_TYPE, contentType);
+        }
+        return new PresignedRequest(url, "PUT", headers, expiresAt);
+    }
+
+    /**
+     * Presigns a GET of an object. S3 decrypts objects encrypted with a KMS key on the way out.
+     */
+    public PresignedRequest presignDownload(String bucket, String key) {
+        Instant expiresAt = Instant.now().plus(presignConfig.downloadUrlTtl());
+        return new PresignedRequest(s3Template.createSignedGetURL(bucket, key, presignConfig.downloadUrlTtl()), "GET", Map.of(), expiresAt);
+    }
+
+    /**
+     * Returns the S3 metadata of an uploaded object, or empty if nothing was uploaded under the key.
+     */
+    public Optional<HeadObjectResponse> head(String bucket, String key) {
+        try {
+            return Optional.of(s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns whether an uploaded object is encrypted with the configured KMS key. S3 reports the key as its ARN,
+     * so a key configured by its ID matches the end of the ARN.
+     */
+    public boolean isEncryptedWithConfiguredKey(HeadObjectResponse object) {
+        String kmsKeyId = object.ssekmsKeyId();
+        return object.serverSideEncryption() == ServerSideEncryption.AWS_KMS && kmsKeyId != null
+                && (kmsKeyId.equals(awsConfig.kmsKeyId()) || kmsKeyId.endsWith("/" + awsConfig.kmsKeyId()));
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.localstack.service.storage;
+
+/**
+ * Describes an object written by {@link EncryptedObjectStore}. Everything except the content itself that is
+ * needed to decrypt the object later must be kept with the document metadata.
+ *
+ * @param encryptedDataKey The Base64 encoded KMS wrapped data key.
+ * @param noncePrefix      The Base64 encoded per-object nonce prefix.
+ * @param chunkSize        The plaintext chunk size the object was encrypted with.
+ * @param plaintextLength  Number of content bytes read from the source.
+ * @param storedLength     Number of bytes written to S3.
+ */
+public record StoredObject(String encryptedDataKey, String noncePrefix, int chunkSize, long plaintextLength, long storedLength) {
+}
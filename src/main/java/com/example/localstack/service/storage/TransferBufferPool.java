@@ -0,0 +1,64 @@
+package com.example.localstack.service.storage;
+
+import com.example.localstack.config.StorageConfig;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed size pool of reusable transfer buffers shared by all uploads. Buffers are allocated lazily up to
+ * {@link StorageConfig#maxTransferBuffers()}; once all of them are in use further uploads wait for one to be
+ * released, which caps the heap used for transfers independently of file sizes and request concurrency.
+ */
+@Component
+public class TransferBufferPool {
+    private final Semaphore permits;
+    private final Queue<TransferBuffer> idleBuffers = new ConcurrentLinkedQueue<>();
+    private final int chunkSize;
+    private final int partCapacity;
+    private final long acquireTimeoutMillis;
+
+    public TransferBufferPool(StorageConfig storageConfig) {
+        this.permits = new Semaphore(storageConfig.maxTransferBuffers(), true);
+        this.chunkSize = Math.toIntExact(storageConfig.chunkSize().toBytes());
+        int encryptedChunkSize = chunkSize + ChunkedCipher.TAG_LENGTH;
+        // Rounded up to whole encrypted chunks, so a full part never falls below the configured size
+        this.partCapacity = Math.max(1, Math.ceilDiv(Math.toIntExact(storageConfig.partSize().toBytes()), encryptedChunkSize)) * encryptedChunkSize;
+        this.acquireTimeoutMillis = storageConfig.bufferAcquireTimeout().toMillis();
+    }
+
+    /**
+     * Takes a buffer from the pool, waiting up to the configured timeout for one to become available.
+     *
+     * @throws IllegalStateException If no buffer became available in time.
+     */
+    public TransferBuffer acquire() throws InterruptedException {
+        if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("No transfer buffer available, too many concurrent uploads");
+        }
+        TransferBuffer buffer = idleBuffers.poll();
+        return buffer != null ? buffer : new TransferBuffer(new byte[chunkSize], new byte[partCapacity]);
+    }
+
+    public void release(TransferBuffer buffer) {
+        idleBuffers.offer(buffer);
+        permits.release();
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Buffers owned by a single upload while it holds them.
+     *
+     * @param chunk Holds one plaintext chunk read from the source.
+     * @param part  Collects encrypted chunks until a full multipart upload part is ready.
+     */
+    public record TransferBuffer(byte[] chunk, byte[] part) {
+    }
+}
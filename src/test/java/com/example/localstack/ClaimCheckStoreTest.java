@@ -0,0 +1,99 @@
+package com.example.localstack;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.ClaimCheckConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.messaging.ClaimCheckStore;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.EncryptedContent;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ClaimCheckStoreTest {
+    private static final String BUCKET_NAME = "test-bucket";
+
+    @Mock
+    private EncryptedObjectStore encryptedObjectStore;
+
+    @Mock
+    private BucketRegistry bucketRegistry;
+
+    @Mock
+    private S3Client s3Client;
+
+    private ClaimCheckStore claimCheckStore;
+
+    @BeforeEach
+    void setUp() {
+        AwsConfig awsConfig = new AwsConfig("test-queue", BUCKET_NAME, "test-key", new AwsConfig.Listener(0, 10, Duration.ofSeconds(10)));
+        claimCheckStore = new ClaimCheckStore(encryptedObjectStore, bucketRegistry, s3Client, awsConfig,
+                new ClaimCheckConfig(true, DataSize.ofBytes(16), "claim-checks/"));
+    }
+
+    @Test
+    void toSqsMessage_ShouldSendSmallContentInline() {
+        // Given
+        Message message = new Message(UUID.randomUUID(), "small");
+
+        // When
+        org.springframework.messaging.Message<Message> sqsMessage = claimCheckStore.toSqsMessage(message);
+
+        // Then
+        assertThat(sqsMessage.getPayload()).isEqualTo(message);
+        assertThat(sqsMessage.getHeaders()).doesNotContainKey(ClaimCheckStore.HEADER);
+        verifyNoInteractions(encryptedObjectStore);
+    }
+
+    @Test
+    void toSqsMessage_ShouldOffloadLargeContent_AndResolveAndReleaseIt() throws Exception {
+        // Given
+        Message message = new Message(UUID.randomUUID(), "content larger than the threshold");
+        byte[] content = message.content().getBytes(UTF_8);
+        EncryptedContent encrypted = new EncryptedContent(new StoredObject("data-key", "nonce", 65536, content.length, content.length + 16), new byte[content.length + 16]);
+        when(encryptedObjectStore.encrypt(content)).thenReturn(encrypted);
+        when(encryptedObjectStore.put(eq(BUCKET_NAME), anyString(), eq(encrypted))).thenReturn(encrypted.storedObject());
+        when(encryptedObjectStore.read(any(DocumentMetadata.class))).thenReturn(new ByteArrayInputStream(content));
+
+        // When
+        org.springframework.messaging.Message<Message> sqsMessage = claimCheckStore.toSqsMessage(message);
+        Message resolved = claimCheckStore.resolve(sqsMessage);
+        claimCheckStore.release(List.of(sqsMessage));
+
+        // Then
+        assertThat(sqsMessage.getPayload().content()).isNull();
+        assertThat(resolved).isEqualTo(message);
+        ArgumentCaptor<DocumentMetadata> locationCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(encryptedObjectStore).read(locationCaptor.capture());
+        assertThat(locationCaptor.getValue().getEncryptedDataKey()).isEqualTo("data-key");
+        ArgumentCaptor<DeleteObjectsRequest> deleteCaptor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client).deleteObjects(deleteCaptor.capture());
+        assertThat(deleteCaptor.getValue().bucket()).isEqualTo(BUCKET_NAME);
+        assertThat(deleteCaptor.getValue().delete().objects()).singleElement()
+                .satisfies(object -> assertThat(object.key()).isEqualTo(locationCaptor.getValue().getS3Key()).startsWith("claim-checks/" + message.uuid()));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.localstack;
+
+import com.example.localstack.config.ContentCacheConfig;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.storage.DocumentContentCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocumentContentCacheTest {
+    @TempDir
+    private Path directory;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private byte[] content;
+    private DocumentContentCache cache;
+
+    @BeforeEach
+    void setUp() {
+        content = new byte[200_000];
+        new Random(42).nextBytes(content);
+        cache = new DocumentContentCache(new ContentCacheConfig(true, directory, DataSize.ofMegabytes(10), DataSize.ofMegabytes(1)), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void read_ShouldLoadOnce_AndServeLaterReadsFromEncryptedLocalFiles() throws Exception {
+        // Given
+        DocumentMetadata document = document("v1", content.length);
+
+        // When
+        byte[] first = read(document);
+        byte[] second = read(document);
+
+        // Then
+        assertThat(first).isEqualTo(content);
+        assertThat(second).isEqualTo(content);
+        assertThat(loads).hasValue(1);
+        List<Path> files = cacheFiles();
+        assertThat(files).singleElement();
+        byte[] stored = Files.readAllBytes(files.getFirst());
+        assertThat(stored).hasSizeGreaterThan(content.length);
+        assertThat(Arrays.copyOfRange(stored, 0, 1024)).isNotEqualTo(Arrays.copyOfRange(content, 0, 1024));
+    }
+
+    @Test
+    void read_ShouldLoadAgain_ForANewVersionOrAfterInvalidation() throws Exception {
+        // Given
+        DocumentMetadata document = document("v1", content.length);
+        read(document);
+
+        // When
+        read(document("v2", content.length));
+        cache.invalidate(document);
+        read(document);
+
+        // Then
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void read_ShouldBypassTheCache_ForDocumentsAboveTheEntrySizeLimit() throws Exception {
+        // Given
+        DocumentMetadata document = document("v1", DataSize.ofMegabytes(2).toBytes());
+
+        // When
+        read(document);
+        read(document);
+
+        // Then
+        assertThat(loads).hasValue(2);
+        assertThat(cacheFiles()).isEmpty();
+    }
+
+    @Test
+    void readRangeIfPresent_ShouldServeRangesOfCachedDocumentsOnly() throws Exception {
+        // Given
+        DocumentMetadata document = document("v1", content.length);
+        assertThat(cache.readRangeIfPresent(document, 0, 9)).isNull();
+        read(document);
+
+        // When
+        try (InputStream range = cache.readRangeIfPresent(document, 70_000, 140_099)) {
+            // Then
+            assertThat(range.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 70_000, 140_100));
+        }
+    }
+
+    @Test
+    void read_ShouldShareOneLoad_WithoutBlockingOtherDocuments() throws Exception {
+        // Given - a slow first load of doc-1
+        DocumentMetadata slow = document("v1", content.length);
+        DocumentMetadata other = DocumentMetadata.builder().documentId("doc-2").version("v1").fileSize((long) content.length).build();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DocumentContentCache.ContentLoader slowLoader = loaded -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new ByteArrayInputStream(content);
+        };
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<byte[]> first = executor.submit(() -> readAll(cache.read(slow, slowLoader)));
+            loading.await();
+            Future<byte[]> second = executor.submit(() -> readAll(cache.read(slow, slowLoader)));
+
+            // When
+            byte[] otherContent = read(other);
+            release.countDown();
+
+            // Then
+            assertThat(otherContent).isEqualTo(content);
+            assertThat(first.get()).isEqualTo(content);
+            assertThat(second.get()).isEqualTo(content);
+        }
+        assertThat(loads).hasValue(2);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] read(DocumentMetadata document) throws IOException {
+        try (InputStream in = cache.read(document, loaded -> {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        })) {
+            return in.readAllBytes();
+        }
+    }
+
+    private List<Path> cacheFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private static DocumentMetadata document(String version, long fileSize) {
+        return DocumentMetadata.builder()
+                .documentId("doc-1")
+                .version(version)
+                .fileSize(fileSize)
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.localstack;
+
+import com.example.localstack.config.MetadataCacheConfig;
+import com.example.localstack.data.DocumentMetadataCache;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocumentMetadataCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private DocumentMetadataCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new DocumentMetadataCache(new MetadataCacheConfig(100, Duration.ofMinutes(1)), meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_ShouldLoadOnce_UntilInvalidated() {
+        DocumentMetadata document = DocumentMetadata.builder().documentId("doc-1").build();
+
+        assertThat(cache.get("doc-1", id -> load(document))).contains(document);
+        assertThat(cache.get("doc-1", id -> load(document))).contains(document);
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate("doc-1");
+        assertThat(cache.get("doc-1", id -> load(document))).contains(document);
+        assertThat(loads).hasValue(2);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "documentMetadata").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void get_ShouldNotCacheMissingDocuments() {
+        assertThat(cache.get("missing", id -> load(null))).isEmpty();
+        assertThat(cache.get("missing", id -> load(null))).isEmpty();
+        assertThat(loads).hasValue(2);
+    }
+
+    private Optional<DocumentMetadata> load(DocumentMetadata document) {
+        loads.incrementAndGet();
+        return Optional.ofNullable(document);
+    }
+}
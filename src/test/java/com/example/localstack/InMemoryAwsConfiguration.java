@@ -0,0 +1,98 @@
+package com.example.localstack;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.inmemory.InMemoryAws;
+import com.example.localstack.inmemory.SimulatedConditions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.kms.KmsAsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+
+import java.time.Duration;
+
+/**
+ * Runs the application against in-memory AWS services instead of LocalStack. The SDK clients are replaced, so
+ * {@code S3Template}, {@code DynamoDbEnhancedClient} and {@code SqsTemplate} are auto-configured on top of them
+ * as usual. Latency, throttling and errors of each service are set with {@code test.in-memory-aws.*}, for example
+ * {@code test.in-memory-aws.s3.median-latency=20ms}.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+class InMemoryAwsConfiguration {
+
+    @Bean
+    InMemoryAws inMemoryAws(AwsConfig awsConfig,
+                            @Value("${test.in-memory-aws.s3.median-latency:0ms}") Duration s3Median,
+                            @Value("${test.in-memory-aws.s3.p99-latency:0ms}") Duration s3P99,
+                            @Value("${test.in-memory-aws.kms.median-latency:0ms}") Duration kmsMedian,
+                            @Value("${test.in-memory-aws.kms.p99-latency:0ms}") Duration kmsP99,
+                            @Value("${test.in-memory-aws.dynamodb.median-latency:0ms}") Duration dynamoDbMedian,
+                            @Value("${test.in-memory-aws.dynamodb.p99-latency:0ms}") Duration dynamoDbP99,
+                            @Value("${test.in-memory-aws.dynamodb.max-requests-per-second:0}") double dynamoDbMaxRequestsPerSecond,
+                            @Value("${test.in-memory-aws.sqs.median-latency:0ms}") Duration sqsMedian,
+                            @Value("${test.in-memory-aws.sqs.p99-latency:0ms}") Duration sqsP99,
+                            @Value("${test.in-memory-aws.error-rate:0}") double errorRate) {
+        InMemoryAws aws = InMemoryAws.builder()
+                .s3(SimulatedConditions.latency(s3Median, s3P99).withErrorRate(errorRate))
+                .kms(SimulatedConditions.latency(kmsMedian, kmsP99).withErrorRate(errorRate))
+                .dynamoDb(SimulatedConditions.latency(dynamoDbMedian, dynamoDbP99).withMaxRequestsPerSecond(dynamoDbMaxRequestsPerSecond).withErrorRate(errorRate))
+                .sqs(SimulatedConditions.latency(sqsMedian, sqsP99).withErrorRate(errorRate))
+                .build();
+        // The listener starts polling before anything has been published
+        aws.sqsAsyncClient().createQueue(r -> r.queueName(awsConfig.queueName())).join();
+        return aws;
+    }
+
+    /**
+     * Only used to sign presigned URLs, which nothing answers.
+     */
+    @Bean
+    @Primary
+    AwsCredentialsProvider inMemoryCredentialsProvider() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create("in-memory", "in-memory"));
+    }
+
+    @Bean
+    @Primary
+    S3Client inMemoryS3Client(InMemoryAws aws) {
+        return aws.s3Client();
+    }
+
+    @Bean
+    @Primary
+    S3AsyncClient inMemoryS3AsyncClient(InMemoryAws aws) {
+        return aws.s3AsyncClient();
+    }
+
+    @Bean
+    @Primary
+    KmsAsyncClient inMemoryKmsAsyncClient(InMemoryAws aws) {
+        return aws.kmsAsyncClient();
+    }
+
+    @Bean
+    @Primary
+    DynamoDbClient inMemoryDynamoDbClient(InMemoryAws aws) {
+        return aws.dynamoDbClient();
+    }
+
+    @Bean
+    @Primary
+    DynamoDbAsyncClient inMemoryDynamoDbAsyncClient(InMemoryAws aws) {
+        return aws.dynamoDbAsyncClient();
+    }
+
+    @Bean
+    @Primary
+    SqsAsyncClient inMemorySqsAsyncClient(InMemoryAws aws) {
+        return aws.sqsAsyncClient();
+    }
+}
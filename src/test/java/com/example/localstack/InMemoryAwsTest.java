@@ -0,0 +1,244 @@
+package com.example.localstack;
+
+import com.example.localstack.data.DocumentPage;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.dbEntities.MetadataIndexEntry;
+import com.example.localstack.inmemory.InMemoryAws;
+import com.example.localstack.inmemory.InMemoryDocumentService;
+import com.example.localstack.inmemory.SimulatedConditions;
+import com.example.localstack.service.PresignedUpload;
+import com.example.localstack.service.impl.S3ServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryAwsTest {
+    private static final String USER_ID = "user-1";
+
+    @Test
+    void documentService_ShouldStoreFindAndReadDocuments() throws Exception {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().build();
+        S3ServiceImpl s3Service = InMemoryDocumentService.create(aws);
+        String content = "in-memory content ".repeat(200);
+        MockMultipartFile file = new MockMultipartFile("file", "notes.txt", "text/plain", content.getBytes(StandardCharsets.UTF_8));
+
+        // When
+        DocumentMetadata uploaded = s3Service.upload("documents/notes", file, Map.of("project", "alpha"), USER_ID).join();
+        DocumentPage byUser = s3Service.findByCreatedBy(USER_ID, null, null);
+        DocumentPage byMetadata = s3Service.searchByMetadata(Map.of("project", "alpha"), null, null, null);
+        String downloaded;
+        try (InputStream stream = s3Service.downloadDocument(s3Service.getDocumentMetadata(uploaded.getDocumentId()).orElseThrow())) {
+            downloaded = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Then
+        assertThat(downloaded).isEqualTo(content);
+        assertThat(byUser.items()).extracting(DocumentMetadata::getDocumentId).containsExactly(uploaded.getDocumentId());
+        assertThat(byMetadata.items()).extracting(DocumentMetadata::getDocumentId).containsExactly(uploaded.getDocumentId());
+        // Compressed, then encrypted by the application before it reached S3
+        byte[] stored = aws.s3Client().storedContent(uploaded.getS3Bucket(), uploaded.getS3Key());
+        assertThat(stored).hasSizeLessThan(content.length());
+        assertThat(new String(stored, StandardCharsets.ISO_8859_1)).doesNotContain("in-memory content");
+    }
+
+    @Test
+    void searchByMetadata_ShouldOnlyAcceptPageTokensOfTheSameSearch() {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().build();
+        S3ServiceImpl s3Service = InMemoryDocumentService.create(aws);
+        for (String name : List.of("a.txt", "b.txt")) {
+            MockMultipartFile file = new MockMultipartFile("file", name, "text/plain", "content".getBytes(StandardCharsets.UTF_8));
+            s3Service.upload("documents/notes", file, Map.of("project", "alpha"), USER_ID).join();
+        }
+
+        // When
+        DocumentPage first = s3Service.searchByMetadata(Map.of("project", "alpha"), USER_ID, 1, null);
+        DocumentPage second = s3Service.searchByMetadata(Map.of("project", "alpha"), USER_ID, 1, first.nextPageToken());
+
+        // Then
+        assertThat(first.items()).hasSize(1);
+        assertThat(second.items()).hasSize(1).doesNotContainAnyElementsOf(first.items());
+        assertThatThrownBy(() -> s3Service.searchByMetadata(Map.of("project", "beta"), USER_ID, 1, first.nextPageToken()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> s3Service.findByCreatedBy(USER_ID, 1, first.nextPageToken()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void createTables_ShouldIndexStoredDocuments_UntilTheMetadataIndexIsComplete() {
+        // Given - postings lost and the index never marked complete, as after an indexing run that failed part way
+        InMemoryAws aws = InMemoryAws.builder().build();
+        S3ServiceImpl s3Service = InMemoryDocumentService.create(aws);
+        MockMultipartFile file = new MockMultipartFile("file", "notes.txt", "text/plain", "content".getBytes(StandardCharsets.UTF_8));
+        DocumentMetadata uploaded = s3Service.upload("documents/notes", file, Map.of("project", "alpha"), USER_ID).join();
+        DynamoDbTable<MetadataIndexEntry> metadataIndex = aws.dynamoDbEnhancedClient()
+                .table("documents-metadata-index", TableSchema.fromBean(MetadataIndexEntry.class));
+        metadataIndex.scan().items().stream().toList().forEach(metadataIndex::deleteItem);
+
+        // When - the application starts again
+        S3ServiceImpl restarted = InMemoryDocumentService.create(aws);
+
+        // Then
+        assertThat(restarted.searchByMetadata(Map.of("project", "alpha"), null, null, null).items())
+                .extracting(DocumentMetadata::getDocumentId)
+                .containsExactly(uploaded.getDocumentId());
+        assertThat(metadataIndex.getItem(MetadataIndexEntry.completionMarker())).isNotNull();
+    }
+
+    @Test
+    void createPresignedUpload_ShouldNotListTheDocument_UntilTheUploadIsCompleted() {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().build();
+        S3ServiceImpl s3Service = InMemoryDocumentService.create(aws);
+
+        // When
+        PresignedUpload pending = s3Service.createPresignedUpload("documents/notes", "notes.txt", "text/plain", Map.of("project", "alpha"), USER_ID);
+
+        // Then
+        assertThat(s3Service.getDocumentMetadata(pending.documentId())).isPresent();
+        assertThat(s3Service.findByCreatedBy(USER_ID, null, null).items()).isEmpty();
+        assertThat(s3Service.findByPath("documents/notes", null, null).items()).isEmpty();
+        assertThat(s3Service.searchByMetadata(Map.of("project", "alpha"), null, null, null).items()).isEmpty();
+        assertThat(s3Service.searchByMetadata(Map.of(), null, null, null).items()).isEmpty();
+        try (Stream<DocumentMetadata> exported = s3Service.streamAllDocuments()) {
+            assertThat(exported).isEmpty();
+        }
+    }
+
+    @Test
+    void upload_ShouldFail_WhenS3FailsEveryRequest() {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().s3(SimulatedConditions.none().withErrorRate(1)).build();
+        S3ServiceImpl s3Service = InMemoryDocumentService.create(aws);
+        MockMultipartFile file = new MockMultipartFile("file", "notes.txt", "text/plain", "content".getBytes(StandardCharsets.UTF_8));
+        long putsAtStartup = aws.dynamoDbClient().simulator().requestCount("PutItem");
+
+        // When / Then
+        assertThatThrownBy(() -> s3Service.upload("documents/notes", file, Map.of(), USER_ID))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Failed to upload file");
+        assertThat(aws.dynamoDbClient().simulator().requestCount("PutItem")).isEqualTo(putsAtStartup);
+    }
+
+    @Test
+    void upload_ShouldStoreContentLargerThanOnePart() throws Exception {
+        // Given - random content is stored uncompressed, so it spans several multipart parts
+        InMemoryAws aws = InMemoryAws.builder().build();
+        S3ServiceImpl s3Service = InMemoryDocumentService.create(aws);
+        byte[] content = new byte[12 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(content);
+        MockMultipartFile file = new MockMultipartFile("file", "data.bin", "application/octet-stream", content);
+
+        // When
+        DocumentMetadata uploaded = s3Service.upload("documents/data", file, Map.of(), USER_ID).join();
+        byte[] downloaded;
+        try (InputStream stream = s3Service.downloadDocument(uploaded)) {
+            downloaded = stream.readAllBytes();
+        }
+
+        // Then
+        assertThat(aws.s3Client().simulator().requestCount("UploadPart")).isGreaterThan(1);
+        assertThat(downloaded).isEqualTo(content);
+    }
+
+    @Test
+    void s3_ShouldRejectMultipartUploads_WithANonFinalPartUnder5MiB() {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().build();
+        aws.s3Client().createBucket(r -> r.bucket("bucket"));
+        String uploadId = aws.s3Client().createMultipartUpload(r -> r.bucket("bucket").key("key")).uploadId();
+        String first = aws.s3Client().uploadPart(r -> r.bucket("bucket").key("key").uploadId(uploadId).partNumber(1),
+                RequestBody.fromBytes(new byte[1024])).eTag();
+        String second = aws.s3Client().uploadPart(r -> r.bucket("bucket").key("key").uploadId(uploadId).partNumber(2),
+                RequestBody.fromBytes(new byte[1024])).eTag();
+
+        // When / Then
+        assertThatThrownBy(() -> aws.s3Client().completeMultipartUpload(r -> r.bucket("bucket").key("key").uploadId(uploadId)
+                .multipartUpload(m -> m.parts(CompletedPart.builder().partNumber(1).eTag(first).build(),
+                        CompletedPart.builder().partNumber(2).eTag(second).build()))))
+                .isInstanceOfSatisfying(S3Exception.class,
+                        e -> assertThat(e.awsErrorDetails().errorCode()).isEqualTo("EntityTooSmall"));
+    }
+
+    @Test
+    void dynamoDb_ShouldThrottle_WhenRequestsExceedTheRate() {
+        // Given - a burst allowance of two requests, the first spent creating the table
+        InMemoryAws aws = InMemoryAws.builder()
+                .dynamoDb(SimulatedConditions.none().withMaxRequestsPerSecond(2))
+                .build();
+        createItemsTable(aws);
+        Map<String, AttributeValue> item = Map.of("id", AttributeValue.fromS("1"));
+
+        // When
+        aws.dynamoDbClient().putItem(r -> r.tableName("items").item(item));
+
+        // Then
+        assertThatThrownBy(() -> aws.dynamoDbClient().putItem(r -> r.tableName("items").item(item)))
+                .isInstanceOf(ProvisionedThroughputExceededException.class);
+    }
+
+    @Test
+    void dynamoDb_ShouldDelayRequests_BySimulatedLatency() {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder()
+                .dynamoDb(SimulatedConditions.latency(Duration.ofMillis(50), Duration.ofMillis(50)))
+                .build();
+
+        // When
+        long start = System.nanoTime();
+        createItemsTable(aws);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Then
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void sqs_ShouldRedeliverMessages_UntilTheyAreDeleted() {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().build();
+        String queueUrl = aws.sqsAsyncClient().createQueue(r -> r.queueName("queue")).join().queueUrl();
+        aws.sqsAsyncClient().sendMessage(r -> r.queueUrl(queueUrl).messageBody("hello")).join();
+
+        // When
+        List<Message> first = aws.sqsAsyncClient().receiveMessage(r -> r.queueUrl(queueUrl).visibilityTimeout(0)).join().messages();
+        List<Message> second = aws.sqsAsyncClient().receiveMessage(r -> r.queueUrl(queueUrl)).join().messages();
+        aws.sqsAsyncClient().deleteMessage(r -> r.queueUrl(queueUrl).receiptHandle(second.getFirst().receiptHandle())).join();
+        List<Message> third = aws.sqsAsyncClient().receiveMessage(r -> r.queueUrl(queueUrl)).join().messages();
+
+        // Then
+        assertThat(first).extracting(Message::body).containsExactly("hello");
+        assertThat(second).extracting(Message::body).containsExactly("hello");
+        assertThat(third).isEmpty();
+        assertThat(aws.sqsAsyncClient().messageCount("queue")).isZero();
+    }
+
+    private static void createItemsTable(InMemoryAws aws) {
+        aws.dynamoDbClient().createTable(r -> r.tableName("items")
+                .keySchema(KeySchemaElement.builder().attributeName("id").keyType(KeyType.HASH).build())
+                .attributeDefinitions(AttributeDefinition.builder().attributeName("id").attributeType(ScalarAttributeType.S).build()));
+    }
+}
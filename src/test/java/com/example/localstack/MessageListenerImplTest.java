@@ -0,0 +1,61 @@
+package com.example.localstack;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.impl.MessageListenerImpl;
+import com.example.localstack.service.messaging.ClaimCheckStore;
+import com.example.localstack.service.messaging.MessagePersistencePipeline;
+import io.awspring.cloud.sqs.listener.acknowledgement.BatchAcknowledgement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageListenerImplTest {
+
+    @Mock
+    private MessagePersistencePipeline messagePersistencePipeline;
+
+    @Mock
+    private ClaimCheckStore claimCheckStore;
+
+    @Mock
+    private BatchAcknowledgement<Message> acknowledgement;
+
+    @Test
+    void handle_ShouldAcknowledgeAndReleaseOnlyPersistedMessages() throws Exception {
+        // Given
+        List<org.springframework.messaging.Message<Message>> messages = List.of(
+                MessageBuilder.withPayload(new Message(UUID.randomUUID(), "first")).build(),
+                MessageBuilder.withPayload(new Message(UUID.randomUUID(), "second")).build());
+        for (org.springframework.messaging.Message<Message> message : messages) {
+            when(claimCheckStore.resolve(message)).thenReturn(message.getPayload());
+        }
+        when(messagePersistencePipeline.submit(messages.get(0).getPayload()))
+                .thenReturn(CompletableFuture.completedFuture(DocumentMetadata.builder().documentId("doc-1").build()));
+        when(messagePersistencePipeline.submit(messages.get(1).getPayload()))
+                .thenReturn(CompletableFuture.failedFuture(new UncheckedIOException(new IOException("S3 unavailable"))));
+        when(acknowledgement.acknowledgeAsync(List.of(messages.get(0)))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        CompletableFuture<Void> handled = new MessageListenerImpl(messagePersistencePipeline, claimCheckStore).handle(messages, acknowledgement);
+
+        // Then
+        assertThat(handled).succeedsWithin(Duration.ofSeconds(1));
+        verify(acknowledgement).acknowledgeAsync(List.of(messages.get(0)));
+        verify(claimCheckStore).release(List.of(messages.get(0)));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.localstack;
+
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.PipelineConfig;
+import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.messaging.MessagePersistencePipeline;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.EncryptedContent;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.StoredObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessagePersistencePipelineTest {
+    private static final String BUCKET_NAME = "test-bucket";
+
+    @Mock
+    private EncryptedObjectStore encryptedObjectStore;
+
+    @Mock
+    private DocumentMetadataRepository documentMetadataRepository;
+
+    @Mock
+    private BucketRegistry bucketRegistry;
+
+    @Captor
+    private ArgumentCaptor<List<DocumentMetadata>> batchCaptor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MessagePersistencePipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        AwsConfig awsConfig = new AwsConfig("test-queue", BUCKET_NAME, "test-key", new AwsConfig.Listener(0, 10, Duration.ofSeconds(10)));
+        pipeline = new MessagePersistencePipeline(encryptedObjectStore, documentMetadataRepository, bucketRegistry, awsConfig,
+                new PipelineConfig(10, 2, 2, 25, Duration.ofMillis(10)), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void submit_ShouldCompleteOnceTheMetadataIsWritten() throws Exception {
+        // Given
+        Message message = new Message(UUID.randomUUID(), "content");
+        EncryptedContent encrypted = new EncryptedContent(new StoredObject("key", "nonce", 65536, 7, 30), new byte[30]);
+        when(encryptedObjectStore.encrypt(any(byte[].class))).thenReturn(encrypted);
+        when(encryptedObjectStore.put(eq(BUCKET_NAME), anyString(), eq(encrypted))).thenReturn(encrypted.storedObject());
+        when(documentMetadataRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        DocumentMetadata saved = pipeline.submit(message).get();
+
+        // Then
+        verify(documentMetadataRepository).saveAll(batchCaptor.capture());
+        assertThat(batchCaptor.getValue()).containsExactly(saved);
+        assertThat(saved.getDocumentId()).isEqualTo(message.uuid().toString());
+        assertThat(saved.getS3Key()).isEqualTo("messages/" + message.uuid() + "/" + message.uuid());
+        assertThat(saved.getFileSize()).isEqualTo(7L);
+        assertThat(meterRegistry.get("app.pipeline.queue.depth").tag("stage", "upload").gauge().value()).isZero();
+    }
+
+    @Test
+    void submit_ShouldOverwriteTheDocument_WhenAMessageIsRedelivered() throws Exception {
+        // Given
+        Message message = new Message(UUID.randomUUID(), "content");
+        EncryptedContent encrypted = new EncryptedContent(new StoredObject("key", "nonce", 65536, 7, 30), new byte[30]);
+        when(encryptedObjectStore.encrypt(any(byte[].class))).thenReturn(encrypted);
+        when(encryptedObjectStore.put(eq(BUCKET_NAME), anyString(), eq(encrypted))).thenReturn(encrypted.storedObject());
+        when(documentMetadataRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        DocumentMetadata first = pipeline.submit(message).get();
+        DocumentMetadata redelivered = pipeline.submit(message).get();
+
+        // Then
+        assertThat(redelivered.getDocumentId()).isEqualTo(first.getDocumentId());
+        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(encryptedObjectStore, times(2)).put(eq(BUCKET_NAME), keyCaptor.capture(), eq(encrypted));
+        assertThat(keyCaptor.getAllValues()).containsOnly(first.getS3Key());
+    }
+
+    @Test
+    void submit_ShouldShareTheDelivery_WhenAMessageIsRedeliveredWhileInThePipeline() throws Exception {
+        // Given - the first delivery is held in the encrypt stage
+        Message message = new Message(UUID.randomUUID(), "content");
+        EncryptedContent encrypted = new EncryptedContent(new StoredObject("key", "nonce", 65536, 7, 30), new byte[30]);
+        CountDownLatch encrypting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(encryptedObjectStore.encrypt(any(byte[].class))).thenAnswer(invocation -> {
+            encrypting.countDown();
+            release.await();
+            return encrypted;
+        });
+        when(encryptedObjectStore.put(eq(BUCKET_NAME), anyString(), eq(encrypted))).thenReturn(encrypted.storedObject());
+        when(documentMetadataRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        CompletableFuture<DocumentMetadata> first = pipeline.submit(message);
+        encrypting.await();
+
+        // When
+        CompletableFuture<DocumentMetadata> redelivered = pipeline.submit(message);
+        release.countDown();
+
+        // Then
+        assertThat(redelivered).isSameAs(first);
+        assertThat(first.get().getDocumentId()).isEqualTo(message.uuid().toString());
+        verify(encryptedObjectStore, times(1)).put(eq(BUCKET_NAME), anyString(), eq(encrypted));
+    }
+
+    @Test
+    void submit_ShouldFailWithoutWritingMetadata_WhenTheUploadFails() throws Exception {
+        // Given
+        EncryptedContent encrypted = new EncryptedContent(new StoredObject("key", "nonce", 65536, 7, 30), new byte[30]);
+        when(encryptedObjectStore.encrypt(any(byte[].class))).thenReturn(encrypted);
+        when(encryptedObjectStore.put(eq(BUCKET_NAME), anyString(), eq(encrypted))).thenThrow(new IllegalStateException("S3 unavailable"));
+
+        // When
+        CompletableFuture<DocumentMetadata> persisted = pipeline.submit(new Message(UUID.randomUUID(), "content"));
+
+        // Then
+        assertThatThrownBy(persisted::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(IllegalStateException.class);
+        verify(documentMetadataRepository, never()).saveAll(any());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.localstack;
+
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.data.dbEntities.MetadataIndexEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetadataIndexEntryTest {
+
+    @Test
+    void indexKeyOf_ShouldNormalizeCaseAndWhitespace() {
+        assertThat(MetadataIndexEntry.indexKeyOf(" Author ", "Jane Doe ")).isEqualTo("author#jane doe");
+    }
+
+    @Test
+    void indexKeyOf_ShouldKeepKeysWithSeparatorsDistinct() {
+        assertThat(MetadataIndexEntry.indexKeyOf("a#b", "c")).isNotEqualTo(MetadataIndexEntry.indexKeyOf("a", "b#c"));
+    }
+
+    @Test
+    void ownerPrefixOf_ShouldKeepOwnersWithSeparatorsDistinct() {
+        assertThat(MetadataIndexEntry.postingKeyOf("a#b", "c")).doesNotStartWith(MetadataIndexEntry.ownerPrefixOf("a"));
+    }
+
+    @Test
+    void entriesFor_ShouldCreateOnePostingPerMetadataEntry() {
+        // Given
+        DocumentMetadata document = DocumentMetadata.builder()
+                .documentId("doc-1")
+                .createdBy("user-1")
+                .metadata(Map.of("author", "jane", "department", "engineering"))
+                .build();
+
+        // When / Then
+        assertThat(MetadataIndexEntry.entriesFor(document))
+                .extracting(MetadataIndexEntry::getIndexKey)
+                .containsExactlyInAnyOrder("author#jane", "department#engineering");
+        assertThat(MetadataIndexEntry.entriesFor(document))
+                .allSatisfy(posting -> {
+                    assertThat(posting.getDocumentId()).isEqualTo("doc-1");
+                    assertThat(posting.getCreatedBy()).isEqualTo("user-1");
+                    assertThat(posting.getPostingKey()).isEqualTo("user-1#doc-1").startsWith(MetadataIndexEntry.ownerPrefixOf("user-1"));
+                });
+        assertThat(MetadataIndexEntry.entriesFor(DocumentMetadata.builder().documentId("doc-2").build())).isEmpty();
+    }
+
+    @Test
+    void entriesFor_ShouldCreateNoPostings_WhileTheUploadIsPending() {
+        DocumentMetadata document = DocumentMetadata.builder()
+                .documentId("doc-1")
+                .createdBy("user-1")
+                .metadata(Map.of("author", "jane"))
+                .status(DocumentMetadata.STATUS_PENDING)
+                .build();
+
+        assertThat(MetadataIndexEntry.entriesFor(document)).isEmpty();
+        document.setStatus(DocumentMetadata.STATUS_AVAILABLE);
+        assertThat(MetadataIndexEntry.entriesFor(document)).hasSize(1);
+    }
+
+    @Test
+    void matches_ShouldRequireEveryCriterion() {
+        DocumentMetadata document = DocumentMetadata.builder()
+                .documentId("doc-1")
+                .metadata(Map.of("author", "Jane", "department", "engineering"))
+                .build();
+
+        assertThat(MetadataIndexEntry.matches(document, Map.of("AUTHOR", "jane"))).isTrue();
+        assertThat(MetadataIndexEntry.matches(document, Map.of("author", "jane", "department", "sales"))).isFalse();
+    }
+}
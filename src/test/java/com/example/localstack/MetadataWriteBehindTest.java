@@ -0,0 +1,112 @@
+package com.example.localstack;
+
+import com.example.localstack.config.MetadataCacheConfig;
+import com.example.localstack.config.WriteBehindConfig;
+import com.example.localstack.data.DocumentMetadataCache;
+import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.MetadataWriteBehind;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MetadataWriteBehindTest {
+
+    @Mock
+    private DocumentMetadataRepository documentMetadataRepository;
+
+    @Captor
+    private ArgumentCaptor<List<DocumentMetadata>> batchCaptor;
+
+    private MetadataWriteBehind metadataWriteBehind;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        metadataWriteBehind.shutdown();
+    }
+
+    @Test
+    void saveNew_ShouldWriteQueuedDocumentsInOneBatch() {
+        // Given
+        metadataWriteBehind = create(new WriteBehindConfig(true, 3, Duration.ofSeconds(5), 100));
+        List<DocumentMetadata> documents = IntStream.range(0, 3)
+                .mapToObj(i -> DocumentMetadata.builder().documentId("doc-" + i).build())
+                .toList();
+
+        // When
+        List<CompletableFuture<DocumentMetadata>> saved = documents.stream().map(metadataWriteBehind::saveNew).toList();
+
+        // Then - the batch is full, so it is written without waiting for the linger time
+        saved.forEach(CompletableFuture::join);
+        verify(documentMetadataRepository, timeout(1000)).saveAll(batchCaptor.capture());
+        assertThat(batchCaptor.getValue()).containsExactlyElementsOf(documents);
+        verify(documentMetadataRepository, never()).save(any(DocumentMetadata.class));
+    }
+
+    @Test
+    void saveNew_ShouldFailTheFutures_WhenTheBatchCannotBeWritten() {
+        // Given
+        metadataWriteBehind = create(new WriteBehindConfig(true, 25, Duration.ofMillis(10), 100));
+        when(documentMetadataRepository.saveAll(anyList())).thenThrow(new IllegalStateException("Failed to write 1 items"));
+
+        // When
+        CompletableFuture<DocumentMetadata> saved = metadataWriteBehind.saveNew(DocumentMetadata.builder().documentId("doc-1").build());
+
+        // Then
+        assertThatThrownBy(saved::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void saveNew_ShouldSaveDirectly_WhenWriteBehindIsDisabled() {
+        // Given
+        metadataWriteBehind = create(new WriteBehindConfig(false, 25, Duration.ofMillis(10), 100));
+        DocumentMetadata document = DocumentMetadata.builder().documentId("doc-1").build();
+        when(documentMetadataRepository.save(document)).thenReturn(document);
+
+        // When
+        CompletableFuture<DocumentMetadata> saved = metadataWriteBehind.saveNew(document);
+
+        // Then
+        assertThat(saved).isCompletedWithValue(document);
+        verify(documentMetadataRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void saveNew_ShouldThrow_WhenTheDirectSaveFails() {
+        // Given
+        metadataWriteBehind = create(new WriteBehindConfig(false, 25, Duration.ofMillis(10), 100));
+        DocumentMetadata document = DocumentMetadata.builder().documentId("doc-1").build();
+        when(documentMetadataRepository.save(document)).thenThrow(new IllegalStateException("Database save failed"));
+
+        // When / Then - nothing was queued, so the caller learns of the failure without waiting on the future
+        assertThatThrownBy(() -> metadataWriteBehind.saveNew(document))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Database save failed");
+    }
+
+    private MetadataWriteBehind create(WriteBehindConfig writeBehindConfig) {
+        DocumentMetadataCache cache = new DocumentMetadataCache(new MetadataCacheConfig(100, Duration.ofMinutes(1)), new SimpleMeterRegistry());
+        return new MetadataWriteBehind(documentMetadataRepository, cache, writeBehindConfig);
+    }
+}
@@ -1,43 +1,110 @@
 package com.example.localstack;
 
 import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.CompressionConfig;
+import com.example.localstack.config.ContentCacheConfig;
+import com.example.localstack.config.DedupConfig;
+import com.example.localstack.config.EncryptionConfig;
+import com.example.localstack.config.MetadataCacheConfig;
+import com.example.localstack.config.PresignConfig;
+import com.example.localstack.config.SearchConfig;
+import com.example.localstack.config.StorageConfig;
+import com.example.localstack.config.UploadConfig;
+import com.example.localstack.config.WriteBehindConfig;
+import com.example.localstack.data.ContentBlobRepository;
+import com.example.localstack.data.DocumentMetadataCache;
 import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.DocumentPage;
+import com.example.localstack.data.MetadataWriteBehind;
+import com.example.localstack.data.PageToken;
+import com.example.localstack.data.dbEntities.ContentBlob;
 import com.example.localstack.data.dbEntities.DocumentMetadata;
+import com.example.localstack.service.UploadResult;
+import com.example.localstack.service.encryption.ChunkedCipher;
+import com.example.localstack.service.encryption.DataKey;
+import com.example.localstack.service.encryption.DecryptingInputStream;
+import com.example.localstack.service.encryption.EncryptingInputStream;
+import com.example.localstack.service.encryption.EnvelopeEncryptionService;
 import com.example.localstack.service.impl.S3ServiceImpl;
+import com.example.localstack.service.metrics.DocumentStageMetrics;
+import com.example.localstack.service.metrics.ServerTiming;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.DocumentContentCache;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.PresignedObjectStore;
+import com.example.localstack.service.storage.TransferBufferPool;
 import io.awspring.cloud.s3.S3Template;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.kms.KmsAsyncClient;
+import software.amazon.awssdk.services.kms.model.DataKeySpec;
+import software.amazon.awssdk.services.kms.model.DecryptRequest;
 import software.amazon.awssdk.services.kms.model.EncryptRequest;
-import software.amazon.awssdk.services.kms.model.EncryptResponse;
+import software.amazon.awssdk.services.kms.model.GenerateDataKeyRequest;
+import software.amazon.awssdk.services.kms.model.GenerateDataKeyResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
+import javax.crypto.spec.SecretKeySpec;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,6 +126,9 @@ public class S3ServiceImplTest {
     @Mock
     private S3Template s3Template;
 
+    @Mock
+    private S3Client s3Client;
+
     @Mock
     private KmsAsyncClient kmsAsyncClient;
 
@@ -68,11 +138,21 @@ public class S3ServiceImplTest {
     @Mock
     private DocumentMetadataRepository documentMetadataRepository;
 
+    @Mock
+    private ContentBlobRepository contentBlobRepository;
+
     @Mock
     private MultipartFile multipartFile;
 
+    @Captor
+    private ArgumentCaptor<List<DocumentMetadata>> savedCaptor;
+
+    private EnvelopeEncryptionService envelopeEncryptionService;
+
     private S3ServiceImpl s3Service;
 
+    private SimpleMeterRegistry meterRegistry;
+
     private static final String TEST_BUCKET_NAME = "test-bucket";
     private static final String TEST_KMS_KEY_ID = "test-kms-key-id";
     private static final String TEST_USER_ID = "test-user-123";
@@ -84,13 +164,42 @@ public class S3ServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        s3Service = new S3ServiceImpl(s3Template, kmsAsyncClient, awsConfig, documentMetadataRepository);
+        EncryptionConfig encryptionConfig = new EncryptionConfig(Duration.ofMinutes(5), 1000, 1000);
+        envelopeEncryptionService = new EnvelopeEncryptionService(kmsAsyncClient, awsConfig, encryptionConfig);
+        meterRegistry = new SimpleMeterRegistry();
+        s3Service = createService(new StorageConfig(DataSize.ofKilobytes(64), DataSize.ofMegabytes(5), 4, Duration.ofSeconds(1)));
 
         // Set up common mock behaviors
         lenient().when(awsConfig.bucketName()).thenReturn(TEST_BUCKET_NAME);
         lenient().when(awsConfig.kmsKeyId()).thenReturn(TEST_KMS_KEY_ID);
     }
 
+    @Test
+    void upload_ShouldTimeEveryStage() throws Exception {
+        // Given
+        setupMultipartFileMock();
+        setupSuccessfulKmsEncryption();
+        ServerTiming serverTiming = ServerTiming.start();
+
+        // When
+        try {
+            s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID).join();
+        } finally {
+            ServerTiming.stop();
+        }
+
+        // Then
+        assertThat(meterRegistry.find("app.documents.stage.duration").timers())
+                .extracting(timer -> timer.getId().getTag("stage"))
+                .containsExactlyInAnyOrder("create-bucket", "data-key", "encrypt", "s3-put", "metadata-save");
+        Timer put = meterRegistry.get("app.documents.stage.duration").tag("stage", "s3-put").timer();
+        assertThat(put.getId().getTag("outcome")).isEqualTo("success");
+        assertThat(put.getId().getTag("size")).isEqualTo("lt-64kb");
+        assertThat(meterRegistry.get("app.documents.stage.size").tag("stage", "encrypt").summary().totalAmount())
+                .isEqualTo(TEST_FILE_CONTENT.length());
+        assertThat(serverTiming.headerValue()).startsWith("create-bucket;dur=").contains("encrypt;dur=", "s3-put;dur=");
+    }
+
     @Test
     void upload_ShouldSuccessfullyUploadFile_WhenAllDependenciesWorkCorrectly() throws Exception {
         // Given
@@ -103,7 +212,9 @@ public class S3ServiceImplTest {
 
         // Then
         verify(s3Template).createBucket(TEST_BUCKET_NAME);
-        verify(s3Template).upload(eq(TEST_BUCKET_NAME), anyString(), any(ByteArrayInputStream.class));
+        PutObjectRequest putRequest = verifySinglePut();
+        assertThat(putRequest.bucket()).isEqualTo(TEST_BUCKET_NAME);
+        assertThat(putRequest.contentLength()).isEqualTo(ChunkedCipher.ciphertextLength(TEST_FILE_CONTENT.length(), 64 * 1024));
 
         ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
         verify(documentMetadataRepository).save(documentCaptor.capture());
@@ -151,10 +262,7 @@ public class S3ServiceImplTest {
         s3Service.upload(pathWithLeadingSlash, multipartFile, createTestMetadata(), TEST_USER_ID);
 
         // Then
-        ArgumentCaptor<String> s3KeyCaptor = ArgumentCaptor.forClass(String.class);
-        verify(s3Template).upload(eq(TEST_BUCKET_NAME), s3KeyCaptor.capture(), any(ByteArrayInputStream.class));
-
-        String capturedS3Key = s3KeyCaptor.getValue();
+        String capturedS3Key = verifySinglePut().key();
         assertThat(capturedS3Key).startsWith("documents/test/");
         assertThat(capturedS3Key).endsWith("/" + TEST_FILENAME);
         assertThat(capturedS3Key).doesNotStartWith("/");
@@ -166,9 +274,9 @@ public class S3ServiceImplTest {
         when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
         when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(TEST_FILE_CONTENT.getBytes()));
         
-        CompletableFuture<EncryptResponse> failedFuture = new CompletableFuture<>();
+        CompletableFuture<GenerateDataKeyResponse> failedFuture = new CompletableFuture<>();
         failedFuture.completeExceptionally(new ExecutionException("KMS encryption failed", new RuntimeException()));
-        when(kmsAsyncClient.encrypt(any(EncryptRequest.class))).thenReturn(failedFuture);
+        when(kmsAsyncClient.generateDataKey(any(GenerateDataKeyRequest.class))).thenReturn(failedFuture);
 
         // When & Then
         assertThatThrownBy(() -> s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID))
@@ -183,9 +291,9 @@ public class S3ServiceImplTest {
         when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
         when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(TEST_FILE_CONTENT.getBytes()));
         
-        CompletableFuture<EncryptResponse> timeoutFuture = new CompletableFuture<>();
+        CompletableFuture<GenerateDataKeyResponse> timeoutFuture = new CompletableFuture<>();
         // Don't complete the future to simulate timeout
-        when(kmsAsyncClient.encrypt(any(EncryptRequest.class))).thenReturn(timeoutFuture);
+        when(kmsAsyncClient.generateDataKey(any(GenerateDataKeyRequest.class))).thenReturn(timeoutFuture);
 
         // When & Then
         assertThatThrownBy(() -> s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID))
@@ -200,7 +308,7 @@ public class S3ServiceImplTest {
         when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
         when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(TEST_FILE_CONTENT.getBytes()));
         setupSuccessfulKmsEncryption();
-        doThrow(new RuntimeException("S3 upload failed")).when(s3Template).upload(anyString(), anyString(), any(InputStream.class));
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenThrow(new RuntimeException("S3 upload failed"));
 
         // When & Then
         assertThatThrownBy(() -> s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID))
@@ -234,12 +342,228 @@ public class S3ServiceImplTest {
         s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
 
         // Then
-        ArgumentCaptor<EncryptRequest> encryptRequestCaptor = ArgumentCaptor.forClass(EncryptRequest.class);
-        verify(kmsAsyncClient).encrypt(encryptRequestCaptor.capture());
+        ArgumentCaptor<GenerateDataKeyRequest> dataKeyRequestCaptor = ArgumentCaptor.forClass(GenerateDataKeyRequest.class);
+        verify(kmsAsyncClient).generateDataKey(dataKeyRequestCaptor.capture());
+        verify(kmsAsyncClient, never()).encrypt(any(EncryptRequest.class));
 
-        EncryptRequest capturedRequest = encryptRequestCaptor.getValue();
+        GenerateDataKeyRequest capturedRequest = dataKeyRequestCaptor.getValue();
         assertThat(capturedRequest.keyId()).isEqualTo(TEST_KMS_KEY_ID);
-        assertThat(capturedRequest.plaintext().asUtf8String()).isEqualTo(TEST_FILE_CONTENT);
+        assertThat(capturedRequest.keySpec()).isEqualTo(DataKeySpec.AES_256);
+
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        assertThat(documentCaptor.getValue().getEncryptedDataKey()).isNotBlank();
+        assertThat(documentCaptor.getValue().getEncryptionScheme()).isEqualTo(ChunkedCipher.ENCRYPTION_SCHEME);
+    }
+
+    @Test
+    void upload_ShouldReuseCachedDataKey_AcrossUploads() throws Exception {
+        // Given
+        setupSuccessfulKmsEncryption();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            setupMultipartFileMock();
+            s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+        }
+
+        // Then
+        verify(kmsAsyncClient, times(1)).generateDataKey(any(GenerateDataKeyRequest.class));
+        verify(s3Client, times(3)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void downloadDocument_ShouldDecryptUploadedContent_WithoutCallingKms() throws Exception {
+        // Given
+        setupMultipartFileMock();
+        setupSuccessfulKmsEncryption();
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        byte[] storedContent = readBody(bodyCaptor.getValue());
+        assertThat(new String(storedContent)).doesNotContain(TEST_FILE_CONTENT);
+
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        DocumentMetadata savedDocument = documentCaptor.getValue();
+
+        stubGetObject(storedContent);
+
+        // When
+        try (InputStream downloaded = s3Service.downloadDocument(savedDocument)) {
+            // Then
+            assertThat(new String(downloaded.readAllBytes())).isEqualTo(TEST_FILE_CONTENT);
+        }
+        verify(kmsAsyncClient, never()).decrypt(any(DecryptRequest.class));
+    }
+
+    @Test
+    void upload_ShouldCompressTextBeforeEncryption_AndDownloadShouldDecompressIt() throws Exception {
+        // Given
+        s3Service = createService(new StorageConfig(DataSize.ofKilobytes(64), DataSize.ofMegabytes(5), 4, Duration.ofSeconds(1)),
+                new DedupConfig(false), new CompressionConfig(true, "deflate", DataSize.ofKilobytes(1), List.of("text/*", "application/json")));
+        byte[] content = "id,name,amount\n1,report,100\n".repeat(2000).getBytes();
+        when(multipartFile.getOriginalFilename()).thenReturn("report.csv");
+        when(multipartFile.getContentType()).thenReturn("text/csv");
+        when(multipartFile.getSize()).thenReturn((long) content.length);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        setupSuccessfulKmsEncryption();
+
+        // When
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+
+        // Then
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        byte[] storedContent = readBody(bodyCaptor.getValue());
+        assertThat(storedContent.length).isLessThan(content.length / 10);
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        DocumentMetadata savedDocument = documentCaptor.getValue();
+        assertThat(savedDocument.getCompressionCodec()).isEqualTo("deflate");
+        assertThat(savedDocument.getFileSize()).isEqualTo(content.length);
+        assertThat(ChunkedCipher.ciphertextLength(savedDocument.getCompressedSize(), 64 * 1024)).isEqualTo(storedContent.length);
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) storedContent.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(storedContent))));
+        try (InputStream downloaded = s3Service.downloadDocument(savedDocument);
+             InputStream range = s3Service.downloadDocumentRange(savedDocument, 30_000, 30_099)) {
+            assertThat(downloaded.readAllBytes()).isEqualTo(content);
+            assertThat(range.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 30_000, 30_100));
+        }
+    }
+
+    @Test
+    void encryptingInputStream_ShouldProduceContentTheDecryptingStreamReadsBack() throws Exception {
+        // Given
+        int chunkSize = 1024;
+        byte[] plaintext = new byte[3 * chunkSize + 100];
+        new SecureRandom().nextBytes(plaintext);
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        ChunkedCipher cipher = new ChunkedCipher(new SecretKeySpec(key, "AES"), new byte[ChunkedCipher.NONCE_PREFIX_LENGTH]);
+
+        // When
+        byte[] ciphertext;
+        try (InputStream encrypting = new EncryptingInputStream(new ByteArrayInputStream(plaintext), cipher, chunkSize)) {
+            ciphertext = encrypting.readAllBytes();
+        }
+
+        // Then
+        assertThat((long) ciphertext.length).isEqualTo(ChunkedCipher.ciphertextLength(plaintext.length, chunkSize));
+        try (InputStream decrypting = new DecryptingInputStream(new ByteArrayInputStream(ciphertext), cipher, chunkSize)) {
+            assertThat(decrypting.readAllBytes()).isEqualTo(plaintext);
+        }
+    }
+
+    @Test
+    void currentDataKeyAsync_ShouldShareOneKmsRequest_WhileTheDataKeyIsGenerated() throws Exception {
+        // Given
+        CompletableFuture<GenerateDataKeyResponse> pendingResponse = new CompletableFuture<>();
+        when(kmsAsyncClient.generateDataKey(any(GenerateDataKeyRequest.class))).thenReturn(pendingResponse);
+
+        // When
+        CompletableFuture<DataKey> first = envelopeEncryptionService.currentDataKeyAsync();
+        CompletableFuture<DataKey> second = envelopeEncryptionService.currentDataKeyAsync();
+        pendingResponse.complete(GenerateDataKeyResponse.builder()
+                .keyId(TEST_KMS_KEY_ID)
+                .plaintext(SdkBytes.fromByteArray(new byte[32]))
+                .ciphertextBlob(SdkBytes.fromByteArray("wrapped-data-key".getBytes()))
+                .build());
+
+        // Then
+        assertThat(first.get()).isSameAs(second.get());
+        assertThat(envelopeEncryptionService.currentDataKeyAsync().get()).isSameAs(first.get());
+        verify(kmsAsyncClient, times(1)).generateDataKey(any(GenerateDataKeyRequest.class));
+    }
+
+    @Test
+    void upload_ShouldStreamLargeContentAsMultipartUpload_WithBoundedBuffers() throws Exception {
+        // Given - 16 byte chunks and 64 byte parts hold two encrypted chunks per part
+        s3Service = createService(new StorageConfig(DataSize.ofBytes(16), DataSize.ofBytes(64), 1, Duration.ofSeconds(1)));
+        byte[] content = new byte[200];
+        new SecureRandom().nextBytes(content);
+        when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
+        when(multipartFile.getContentType()).thenReturn(TEST_CONTENT_TYPE);
+        when(multipartFile.getSize()).thenReturn((long) content.length);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        setupSuccessfulKmsEncryption();
+
+        ByteArrayOutputStream storedContent = new ByteArrayOutputStream();
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            storedContent.write(readBody(invocation.getArgument(1)));
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        });
+
+        // When
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+
+        // Then - 13 chunks, 12 of them in six full parts and the short final chunk in a seventh part
+        verify(s3Client, times(7)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(completeCaptor.capture());
+        assertThat(completeCaptor.getValue().multipartUpload().parts()).hasSize(7);
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        assertThat(storedContent.size()).isEqualTo(ChunkedCipher.ciphertextLength(content.length, 16));
+
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        DocumentMetadata savedDocument = documentCaptor.getValue();
+        stubGetObject(storedContent.toByteArray());
+
+        try (InputStream downloaded = s3Service.downloadDocument(savedDocument)) {
+            assertThat(downloaded.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void upload_ShouldAbortMultipartUpload_WhenPartUploadFails() throws Exception {
+        // Given
+        s3Service = createService(new StorageConfig(DataSize.ofBytes(16), DataSize.ofBytes(64), 1, Duration.ofSeconds(1)));
+        when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[200]));
+        setupSuccessfulKmsEncryption();
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenThrow(new RuntimeException("S3 part upload failed"));
+
+        // When & Then
+        assertThatThrownBy(() -> s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Failed to upload file to S3 bucket");
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void downloadDocument_ShouldFail_WhenStoredContentIsTruncated() throws Exception {
+        // Given
+        s3Service = createService(new StorageConfig(DataSize.ofBytes(16), DataSize.ofBytes(256), 1, Duration.ofSeconds(1)));
+        when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
+        when(multipartFile.getContentType()).thenReturn(TEST_CONTENT_TYPE);
+        when(multipartFile.getSize()).thenReturn(48L);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[48]));
+        setupSuccessfulKmsEncryption();
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        byte[] storedContent = readBody(bodyCaptor.getValue());
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        DocumentMetadata savedDocument = documentCaptor.getValue();
+
+        // When - drop the final chunk, leaving only whole non-final chunks
+        stubGetObject(Arrays.copyOf(storedContent, 2 * (16 + ChunkedCipher.TAG_LENGTH)));
+
+        // Then
+        try (InputStream downloaded = s3Service.downloadDocument(savedDocument)) {
+            assertThatThrownBy(downloaded::readAllBytes).isInstanceOf(IOException.class);
+        }
     }
 
     @Test
@@ -287,9 +611,385 @@ public class S3ServiceImplTest {
         s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
 
         // Then
+        verify(s3Template).bucketExists(TEST_BUCKET_NAME);
         verify(s3Template).createBucket(TEST_BUCKET_NAME);
     }
 
+    @Test
+    void upload_ShouldProvisionBucketOnlyOnce_AcrossUploads() throws Exception {
+        // Given
+        setupSuccessfulKmsEncryption();
+        when(s3Template.bucketExists(TEST_BUCKET_NAME)).thenReturn(true);
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            setupMultipartFileMock();
+            s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+        }
+
+        // Then
+        verify(s3Template, times(1)).bucketExists(TEST_BUCKET_NAME);
+        verify(s3Template, never()).createBucket(TEST_BUCKET_NAME);
+        verify(s3Client, times(3)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void upload_ShouldRecreateBucketAndRetry_WhenBucketDisappeared() throws Exception {
+        // Given
+        setupMultipartFileMock();
+        when(multipartFile.getInputStream()).thenReturn(
+                new ByteArrayInputStream(TEST_FILE_CONTENT.getBytes()), new ByteArrayInputStream(TEST_FILE_CONTENT.getBytes()));
+        setupSuccessfulKmsEncryption();
+        when(s3Template.bucketExists(TEST_BUCKET_NAME)).thenReturn(true, false);
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(NoSuchBucketException.builder().message("The specified bucket does not exist").build())
+                .thenReturn(null);
+
+        // When
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+
+        // Then
+        verify(s3Template, times(2)).bucketExists(TEST_BUCKET_NAME);
+        verify(s3Template).createBucket(TEST_BUCKET_NAME);
+        verify(s3Client, times(2)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(documentMetadataRepository).save(any(DocumentMetadata.class));
+    }
+
+    @Test
+    void downloadDocumentRange_ShouldFetchAndDecryptOnlyOverlappingChunks() throws Exception {
+        // Given
+        s3Service = createService(new StorageConfig(DataSize.ofBytes(16), DataSize.ofBytes(1024), 1, Duration.ofSeconds(1)));
+        byte[] content = new byte[200];
+        new SecureRandom().nextBytes(content);
+        when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
+        when(multipartFile.getContentType()).thenReturn(TEST_CONTENT_TYPE);
+        when(multipartFile.getSize()).thenReturn((long) content.length);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        setupSuccessfulKmsEncryption();
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID);
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        byte[] storedContent = readBody(bodyCaptor.getValue());
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        DocumentMetadata savedDocument = documentCaptor.getValue();
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            String[] bounds = request.range().substring("bytes=".length()).split("-");
+            byte[] slice = Arrays.copyOfRange(storedContent, Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]) + 1);
+            return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(slice)));
+        });
+
+        // When - a range in the middle and a range ending in the final, short chunk
+        byte[] middle;
+        try (InputStream range = s3Service.downloadDocumentRange(savedDocument, 40, 99)) {
+            middle = range.readAllBytes();
+        }
+        byte[] tail;
+        try (InputStream range = s3Service.downloadDocumentRange(savedDocument, 190, 199)) {
+            tail = range.readAllBytes();
+        }
+
+        // Then
+        assertThat(middle).isEqualTo(Arrays.copyOfRange(content, 40, 100));
+        assertThat(tail).isEqualTo(Arrays.copyOfRange(content, 190, 200));
+        ArgumentCaptor<GetObjectRequest> getCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client, times(2)).getObject(getCaptor.capture());
+        assertThat(getCaptor.getAllValues().get(0).range()).isEqualTo("bytes=64-223");
+        assertThat(getCaptor.getAllValues().get(1).range()).isEqualTo("bytes=352-407");
+    }
+
+    @Test
+    void uploadAll_ShouldStoreFilesConcurrentlyAndReportEachOutcome() throws Exception {
+        // Given
+        setupSuccessfulKmsEncryption();
+        when(s3Template.bucketExists(TEST_BUCKET_NAME)).thenReturn(true);
+        MultipartFile first = bulkFile("first.txt", new ByteArrayInputStream("first".getBytes()));
+        MultipartFile broken = mock(MultipartFile.class);
+        when(broken.getOriginalFilename()).thenReturn("broken.txt");
+        when(broken.getInputStream()).thenThrow(new IOException("Stream closed"));
+        MultipartFile third = bulkFile("third.txt", new ByteArrayInputStream("third".getBytes()));
+
+        // When
+        List<UploadResult> results = s3Service.uploadAll(TEST_PATH, List.of(first, broken, third), createTestMetadata(), TEST_USER_ID);
+
+        // Then
+        assertThat(results).extracting(UploadResult::fileName).containsExactly("first.txt", "broken.txt", "third.txt");
+        assertThat(results).extracting(UploadResult::success).containsExactly(true, false, true);
+        assertThat(results.get(1).error()).isEqualTo("Stream closed");
+        verify(s3Client, times(2)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(kmsAsyncClient, times(1)).generateDataKey(any(GenerateDataKeyRequest.class));
+        verify(documentMetadataRepository).saveAll(savedCaptor.capture());
+        assertThat(savedCaptor.getValue()).extracting(DocumentMetadata::getDocumentId)
+                .containsExactly(results.get(0).documentId(), results.get(2).documentId());
+        verify(documentMetadataRepository, never()).save(any(DocumentMetadata.class));
+    }
+
+    @Test
+    void upload_ShouldReferenceStoredContent_WhenDedupIsEnabledAndTheContentIsKnown() throws Exception {
+        // Given
+        s3Service = createService(new StorageConfig(DataSize.ofKilobytes(64), DataSize.ofMegabytes(5), 4, Duration.ofSeconds(1)), new DedupConfig(true));
+        setupMultipartFileMock();
+        String contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(TEST_FILE_CONTENT.getBytes()));
+        ContentBlob storedContent = ContentBlob.builder()
+                .contentKey(ContentBlob.contentKeyOf(TEST_USER_ID, contentHash))
+                .s3Bucket(TEST_BUCKET_NAME)
+                .s3Key("documents/test/first-upload/test-file.txt")
+                .encryptedDataKey("wrapped-data-key")
+                .encryptionNoncePrefix("nonce-prefix")
+                .encryptionChunkSize(64 * 1024)
+                .referenceCount(2L)
+                .build();
+        when(contentBlobRepository.acquire(storedContent.getContentKey())).thenReturn(Optional.of(storedContent));
+
+        // When
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID).join();
+
+        // Then - neither KMS nor the S3 PUT are involved
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(kmsAsyncClient, never()).generateDataKey(any(GenerateDataKeyRequest.class));
+        verify(contentBlobRepository, never()).register(any(ContentBlob.class));
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        assertThat(documentCaptor.getValue().getS3Key()).isEqualTo(storedContent.getS3Key());
+        assertThat(documentCaptor.getValue().getEncryptedDataKey()).isEqualTo("wrapped-data-key");
+        assertThat(documentCaptor.getValue().getContentHash()).isEqualTo(contentHash);
+    }
+
+    @Test
+    void upload_ShouldStoreAndRegisterContent_WhenDedupIsEnabledAndTheContentIsNew() throws Exception {
+        // Given
+        s3Service = createService(new StorageConfig(DataSize.ofKilobytes(64), DataSize.ofMegabytes(5), 4, Duration.ofSeconds(1)), new DedupConfig(true));
+        when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
+        when(multipartFile.getContentType()).thenReturn(TEST_CONTENT_TYPE);
+        when(multipartFile.getSize()).thenReturn(TEST_FILE_SIZE);
+        // Read twice, once to hash the content and once to upload it
+        when(multipartFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(TEST_FILE_CONTENT.getBytes()));
+        setupSuccessfulKmsEncryption();
+        when(contentBlobRepository.acquire(any())).thenReturn(Optional.empty());
+        when(contentBlobRepository.register(any(ContentBlob.class))).thenReturn(true);
+
+        // When
+        s3Service.upload(TEST_PATH, multipartFile, createTestMetadata(), TEST_USER_ID).join();
+
+        // Then
+        PutObjectRequest putRequest = verifySinglePut();
+        ArgumentCaptor<ContentBlob> contentCaptor = ArgumentCaptor.forClass(ContentBlob.class);
+        verify(contentBlobRepository).register(contentCaptor.capture());
+        assertThat(contentCaptor.getValue().getS3Key()).isEqualTo(putRequest.key());
+        assertThat(contentCaptor.getValue().getFileSize()).isEqualTo(TEST_FILE_SIZE);
+        ArgumentCaptor<DocumentMetadata> documentCaptor = ArgumentCaptor.forClass(DocumentMetadata.class);
+        verify(documentMetadataRepository).save(documentCaptor.capture());
+        assertThat(ContentBlob.contentKeyOf(TEST_USER_ID, documentCaptor.getValue().getContentHash())).isEqualTo(contentCaptor.getValue().getContentKey());
+    }
+
+    @Test
+    void deleteDocument_ShouldDeleteSharedContent_OnlyWithTheLastReference() {
+        // Given
+        DocumentMetadata document = DocumentMetadata.builder()
+                .documentId("doc-1")
+                .createdBy(TEST_USER_ID)
+                .s3Bucket(TEST_BUCKET_NAME)
+                .s3Key("shared-key")
+                .contentHash("content-hash")
+                .build();
+        ContentBlob lastReference = ContentBlob.builder().s3Bucket(TEST_BUCKET_NAME).s3Key("shared-key").referenceCount(0L).build();
+        when(contentBlobRepository.release(ContentBlob.contentKeyOf(TEST_USER_ID, "content-hash")))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(lastReference));
+
+        // When
+        s3Service.deleteDocument(document);
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+        s3Service.deleteDocument(document);
+
+        // Then
+        verify(documentMetadataRepository, times(2)).deleteById("doc-1");
+        ArgumentCaptor<DeleteObjectRequest> deleteCaptor = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        verify(s3Client).deleteObject(deleteCaptor.capture());
+        assertThat(deleteCaptor.getValue().key()).isEqualTo("shared-key");
+    }
+
+    @Test
+    void searchByMetadata_ShouldClampPageSizeAndPassPageToken() {
+        // Given
+        Map<String, String> criteria = Map.of("author", "test-author");
+        PageToken.Query query = PageToken.Query.of(TableSchema.fromBean(DocumentMetadata.class).tableMetadata(), null);
+        String pageToken = PageToken.encode(Map.of("documentId", AttributeValue.builder().s("doc-1").build()), query);
+        DocumentPage page = new DocumentPage(List.of(DocumentMetadata.builder().documentId("doc-2").build()), null);
+        when(documentMetadataRepository.searchByMetadata(criteria, 500, pageToken)).thenReturn(page);
+        when(documentMetadataRepository.searchByMetadata(eq(criteria), eq(50), any())).thenReturn(page);
+
+        // When
+        DocumentPage oversized = s3Service.searchByMetadata(criteria, null, 10_000, pageToken);
+        DocumentPage defaulted = s3Service.searchByMetadata(criteria, null, null, null);
+
+        // Then
+        assertThat(oversized).isSameAs(page);
+        assertThat(defaulted).isSameAs(page);
+        assertThat(PageToken.decode(pageToken, query)).containsEntry("documentId", AttributeValue.builder().s("doc-1").build());
+    }
+
+    @Test
+    void searchByMetadata_ShouldOnlyQueryTheUsersDocuments_WhenScopedToAUser() {
+        // Given
+        Map<String, String> criteria = Map.of("author", "test-author");
+        DocumentPage page = new DocumentPage(List.of(), null);
+        when(documentMetadataRepository.searchByCreatedByAndMetadata(TEST_USER_ID, criteria, 50, null)).thenReturn(page);
+
+        // When
+        DocumentPage result = s3Service.searchByMetadata(criteria, TEST_USER_ID, null, null);
+
+        // Then
+        assertThat(result).isSameAs(page);
+        verify(documentMetadataRepository, never()).searchByMetadata(any(), anyInt(), any());
+    }
+
+    @Test
+    void completePresignedUpload_ShouldMakeTheDocumentAvailable_WhenTheObjectIsEncryptedWithTheConfiguredKey() {
+        // Given
+        DocumentMetadata document = pendingPresignedDocument();
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .serverSideEncryption(ServerSideEncryption.AWS_KMS)
+                .ssekmsKeyId("arn:aws:kms:us-east-1:000000000000:key/" + TEST_KMS_KEY_ID)
+                .contentLength(TEST_FILE_SIZE)
+                .build());
+        when(documentMetadataRepository.save(any(DocumentMetadata.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        DocumentMetadata completed = s3Service.completePresignedUpload(document);
+
+        // Then
+        assertThat(completed.getStatus()).isEqualTo(DocumentMetadata.STATUS_AVAILABLE);
+        assertThat(completed.getFileSize()).isEqualTo(TEST_FILE_SIZE);
+        assertThat(document.getStatus()).isEqualTo(DocumentMetadata.STATUS_PENDING);
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    @Test
+    void completePresignedUpload_ShouldLeaveTheDocumentPending_WhenTheSaveFails() {
+        // Given - the document the controller passes in may be the cached instance
+        DocumentMetadata document = pendingPresignedDocument();
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .serverSideEncryption(ServerSideEncryption.AWS_KMS)
+                .ssekmsKeyId(TEST_KMS_KEY_ID)
+                .contentLength(TEST_FILE_SIZE)
+                .build());
+        when(documentMetadataRepository.save(any(DocumentMetadata.class))).thenThrow(new IllegalStateException("Database save failed"));
+
+        // When / Then
+        assertThatThrownBy(() -> s3Service.completePresignedUpload(document)).hasMessage("Database save failed");
+        assertThat(document.getStatus()).isEqualTo(DocumentMetadata.STATUS_PENDING);
+        assertThat(document.getFileSize()).isNull();
+    }
+
+    @Test
+    void completePresignedUpload_ShouldDeleteTheObject_WhenItIsNotEncryptedWithTheConfiguredKey() {
+        // Given
+        DocumentMetadata document = pendingPresignedDocument();
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .serverSideEncryption(ServerSideEncryption.AES256)
+                .contentLength(TEST_FILE_SIZE)
+                .build());
+
+        // When / Then
+        assertThatThrownBy(() -> s3Service.completePresignedUpload(document)).isInstanceOf(IllegalStateException.class);
+        verify(s3Client).deleteObject(any(DeleteObjectRequest.class));
+        verify(documentMetadataRepository, never()).save(any(DocumentMetadata.class));
+        assertThat(document.getStatus()).isEqualTo(DocumentMetadata.STATUS_PENDING);
+    }
+
+    @Test
+    void pageToken_ShouldRejectMalformedTokens() {
+        PageToken.Query query = PageToken.Query.of(TableSchema.fromBean(DocumentMetadata.class).tableMetadata(), null);
+        assertThat(PageToken.decode(null, query)).isNull();
+        assertThat(PageToken.encode(Map.of(), query)).isNull();
+        assertThatThrownBy(() -> PageToken.decode("not a token", query)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageToken.decode("e30", query)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pageToken_ShouldRejectTokensOfOtherQueries() {
+        // Given
+        TableMetadata tableMetadata = TableSchema.fromBean(DocumentMetadata.class).tableMetadata();
+        PageToken.Query byUser = PageToken.Query.of(tableMetadata, DocumentMetadata.CREATED_BY_INDEX, TEST_USER_ID);
+        Map<String, AttributeValue> lastKey = Map.of(
+                "documentId", AttributeValue.builder().s("doc-1").build(),
+                "createdBy", AttributeValue.builder().s(TEST_USER_ID).build(),
+                "createdAt", AttributeValue.builder().s("2024-01-01T00:00:00Z").build());
+        String pageToken = PageToken.encode(lastKey, byUser);
+
+        // When / Then
+        assertThat(PageToken.decode(pageToken, PageToken.Query.of(tableMetadata, DocumentMetadata.CREATED_BY_INDEX, TEST_USER_ID)))
+                .isEqualTo(lastKey);
+        assertThatThrownBy(() -> PageToken.decode(pageToken, PageToken.Query.of(tableMetadata, DocumentMetadata.CREATED_BY_INDEX, "other-user")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageToken.decode(pageToken, PageToken.Query.of(tableMetadata, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        // A token whose key does not fit the index is rejected even with the right fingerprint
+        String mismatchedKey = PageToken.encode(Map.of("documentId", AttributeValue.builder().s("doc-1").build()), byUser);
+        assertThatThrownBy(() -> PageToken.decode(mismatchedKey, byUser)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private S3ServiceImpl createService(StorageConfig storageConfig) {
+        return createService(storageConfig, new DedupConfig(false));
+    }
+
+    private S3ServiceImpl createService(StorageConfig storageConfig, DedupConfig dedupConfig) {
+        return createService(storageConfig, dedupConfig, new CompressionConfig(false, "deflate", DataSize.ofKilobytes(1), List.of("text/*")));
+    }
+
+    private S3ServiceImpl createService(StorageConfig storageConfig, DedupConfig dedupConfig, CompressionConfig compressionConfig) {
+        DocumentStageMetrics stageMetrics = new DocumentStageMetrics(meterRegistry);
+        EncryptedObjectStore encryptedObjectStore = new EncryptedObjectStore(s3Client, envelopeEncryptionService, new TransferBufferPool(storageConfig), stageMetrics);
+        MetadataWriteBehind metadataWriteBehind = new MetadataWriteBehind(documentMetadataRepository,
+                new DocumentMetadataCache(new MetadataCacheConfig(100, Duration.ofMinutes(1)), new SimpleMeterRegistry()),
+                new WriteBehindConfig(false, 25, Duration.ofMillis(20), 100));
+        DocumentContentCache documentContentCache = new DocumentContentCache(new ContentCacheConfig(false, null, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1)), new SimpleMeterRegistry());
+        PresignConfig presignConfig = new PresignConfig(Duration.ofMinutes(15), Duration.ofMinutes(5), DataSize.ofMegabytes(1));
+        PresignedObjectStore presignedObjectStore = new PresignedObjectStore(s3Template, s3Client, awsConfig, presignConfig);
+        return new S3ServiceImpl(encryptedObjectStore, documentContentCache, presignedObjectStore, new BucketRegistry(s3Template, awsConfig), awsConfig, documentMetadataRepository, metadataWriteBehind, contentBlobRepository, dedupConfig, compressionConfig, presignConfig, new SearchConfig(50, 500), new UploadConfig(4, 100), stageMetrics);
+    }
+
+    private static DocumentMetadata pendingPresignedDocument() {
+        return DocumentMetadata.builder()
+                .documentId("doc-1")
+                .s3Bucket(TEST_BUCKET_NAME)
+                .s3Key("documents/test/doc-1/" + TEST_FILENAME)
+                .storageMode(DocumentMetadata.STORAGE_MODE_SSE_KMS)
+                .status(DocumentMetadata.STATUS_PENDING)
+                .build();
+    }
+
+    private PutObjectRequest verifySinglePut() {
+        ArgumentCaptor<PutObjectRequest> putRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3Client).putObject(putRequestCaptor.capture(), any(RequestBody.class));
+        return putRequestCaptor.getValue();
+    }
+
+    private void stubGetObject(byte[] storedContent) {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) storedContent.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(storedContent))));
+    }
+
+    private static byte[] readBody(RequestBody requestBody) throws IOException {
+        try (InputStream body = requestBody.contentStreamProvider().newStream()) {
+            return body.readAllBytes();
+        }
+    }
+
+    private MultipartFile bulkFile(String fileName, InputStream content) throws IOException {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn(fileName);
+        when(file.getContentType()).thenReturn(TEST_CONTENT_TYPE);
+        when(file.getSize()).thenReturn(TEST_FILE_SIZE);
+        when(file.getInputStream()).thenReturn(content);
+        return file;
+    }
+
     private void setupMultipartFileMock() throws IOException {
         when(multipartFile.getOriginalFilename()).thenReturn(TEST_FILENAME);
         when(multipartFile.getContentType()).thenReturn(TEST_CONTENT_TYPE);
@@ -298,12 +998,16 @@ public class S3ServiceImplTest {
     }
 
     private void setupSuccessfulKmsEncryption() {
-        EncryptResponse encryptResponse = mock(EncryptResponse.class);
-        SdkBytes encryptedBytes = SdkBytes.fromByteArray("encrypted-content".getBytes());
-        when(encryptResponse.ciphertextBlob()).thenReturn(encryptedBytes);
+        byte[] dataKey = new byte[32];
+        new SecureRandom().nextBytes(dataKey);
+        GenerateDataKeyResponse dataKeyResponse = GenerateDataKeyResponse.builder()
+                .keyId(TEST_KMS_KEY_ID)
+                .plaintext(SdkBytes.fromByteArray(dataKey))
+                .ciphertextBlob(SdkBytes.fromByteArray("wrapped-data-key".getBytes()))
+                .build();
 
-        CompletableFuture<EncryptResponse> successfulFuture = CompletableFuture.completedFuture(encryptResponse);
-        when(kmsAsyncClient.encrypt(any(EncryptRequest.class))).thenReturn(successfulFuture);
+        CompletableFuture<GenerateDataKeyResponse> successfulFuture = CompletableFuture.completedFuture(dataKeyResponse);
+        when(kmsAsyncClient.generateDataKey(any(GenerateDataKeyRequest.class))).thenReturn(successfulFuture);
     }
 
     private Map<String, String> createTestMetadata() {
@@ -0,0 +1,82 @@
+package com.example.localstack;
+
+import com.example.localstack.data.SegmentedScan;
+import com.example.localstack.data.ThroughputLimiter;
+import com.example.localstack.data.dbEntities.DocumentMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SegmentedScanTest {
+
+    @Mock
+    private DynamoDbTable<DocumentMetadata> table;
+
+    @Test
+    void stream_ShouldMergeTheItemsOfAllSegments() {
+        // Given - every segment returns two pages of two documents
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> {
+            ScanEnhancedRequest request = invocation.getArgument(0);
+            int segment = request.segment();
+            return PageIterable.create(() -> List.of(
+                    page(documents(segment, 0, 2)),
+                    page(documents(segment, 2, 4))).iterator());
+        });
+
+        // When
+        List<String> documentIds;
+        try (Stream<DocumentMetadata> documents = SegmentedScan.stream(table, 3, new ThroughputLimiter(0), 2)) {
+            documentIds = documents.map(DocumentMetadata::getDocumentId).toList();
+        }
+
+        // Then
+        assertThat(documentIds).containsExactlyInAnyOrder(
+                "0-0", "0-1", "0-2", "0-3", "1-0", "1-1", "1-2", "1-3", "2-0", "2-1", "2-2", "2-3");
+        verify(table, times(3)).scan(any(ScanEnhancedRequest.class));
+    }
+
+    @Test
+    void stream_ShouldFail_WhenASegmentFails() {
+        // Given
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> {
+            ScanEnhancedRequest request = invocation.getArgument(0);
+            if (request.segment() == 1) {
+                throw DynamoDbException.builder().message("Throughput exceeded").build();
+            }
+            return PageIterable.create(() -> List.of(page(documents(request.segment(), 0, 1))).iterator());
+        });
+
+        // When / Then
+        try (Stream<DocumentMetadata> documents = SegmentedScan.stream(table, 2, new ThroughputLimiter(0), 10)) {
+            assertThatThrownBy(documents::toList).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private static Page<DocumentMetadata> page(List<DocumentMetadata> documents) {
+        return Page.builder(DocumentMetadata.class).items(documents).build();
+    }
+
+    private static List<DocumentMetadata> documents(int segment, int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> DocumentMetadata.builder().documentId(segment + "-" + i).build())
+                .toList();
+    }
+}
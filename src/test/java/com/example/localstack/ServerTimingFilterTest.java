@@ -0,0 +1,69 @@
+package com.example.localstack;
+
+import com.example.localstack.controller.ServerTimingFilter;
+import com.example.localstack.service.metrics.DocumentStageMetrics;
+import com.example.localstack.service.metrics.DocumentStageMetrics.Stage;
+import com.example.localstack.service.metrics.ServerTiming;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServerTimingFilterTest {
+    private final DocumentStageMetrics stageMetrics = new DocumentStageMetrics(new SimpleMeterRegistry());
+    private final ServerTimingFilter filter = new ServerTimingFilter();
+
+    @Test
+    void doFilter_ShouldReportTheStagesRunBeforeTheBody() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/documents/doc-1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            stageMetrics.record(Stage.METADATA_LOOKUP, TimeUnit.MILLISECONDS.toNanos(3), -1, true);
+            stageMetrics.record(Stage.S3_GET, TimeUnit.MILLISECONDS.toNanos(12), 1024, true);
+            stageMetrics.record(Stage.S3_GET, TimeUnit.MILLISECONDS.toNanos(8), 1024, true);
+            res.getOutputStream().write(new byte[]{1, 2, 3});
+            // Too late for the header, which went out with the first byte
+            stageMetrics.record(Stage.DECRYPT, TimeUnit.MILLISECONDS.toNanos(5), 3, true);
+        };
+
+        // When
+        filter.doFilter(request, response, chain);
+
+        // Then
+        assertThat(response.getHeader(ServerTiming.HEADER)).isEqualTo("metadata-lookup;dur=3.0, s3-get;dur=20.0");
+    }
+
+    @Test
+    void doFilter_ShouldReportStages_WhenTheResponseHasNoBody() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/documents/doc-1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> stageMetrics.record(Stage.METADATA_LOOKUP, TimeUnit.MILLISECONDS.toNanos(2), -1, true);
+
+        // When
+        filter.doFilter(request, response, chain);
+
+        // Then
+        assertThat(response.getHeader(ServerTiming.HEADER)).isEqualTo("metadata-lookup;dur=2.0");
+    }
+
+    @Test
+    void doFilter_ShouldLeaveOtherEndpointsAlone() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/messages");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> stageMetrics.record(Stage.METADATA_LOOKUP, 1, -1, true);
+
+        // When
+        filter.doFilter(request, response, chain);
+
+        // Then
+        assertThat(response.getHeader(ServerTiming.HEADER)).isNull();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.localstack;
+
+import com.example.localstack.data.messageEntities.Message;
+import com.example.localstack.service.PublishResult;
+import com.example.localstack.service.messaging.ClaimCheckStore;
+import com.example.localstack.service.messaging.SqsBatchSender;
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SqsBatchSenderTest {
+    private static final String QUEUE_NAME = "test-queue";
+
+    @Mock
+    private SqsTemplate sqsTemplate;
+
+    @Mock
+    private ClaimCheckStore claimCheckStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SqsBatchSender sqsBatchSender;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sqsBatchSender = new SqsBatchSender(sqsTemplate, claimCheckStore, meterRegistry);
+        when(claimCheckStore.toSqsMessage(any(Message.class))).thenAnswer(invocation -> MessageBuilder.withPayload(invocation.getArgument(0)).build());
+    }
+
+    @Test
+    void send_ShouldSendBatchesOfTen_AndReportRejectedMessages() {
+        // Given
+        List<Message> messages = IntStream.range(0, 23)
+                .mapToObj(i -> new Message(UUID.randomUUID(), i == 12 ? "reject" : "content-" + i))
+                .toList();
+        when(sqsTemplate.<Message>sendMany(eq(QUEUE_NAME), anyCollection())).thenAnswer(invocation -> {
+            Collection<org.springframework.messaging.Message<Message>> batch = invocation.getArgument(1);
+            List<SendResult<Message>> successful = new ArrayList<>();
+            List<SendResult.Failed<Message>> failed = new ArrayList<>();
+            for (org.springframework.messaging.Message<Message> message : batch) {
+                if ("reject".equals(message.getPayload().content())) {
+                    failed.add(new SendResult.Failed<>("Throttled", QUEUE_NAME, message, Map.of()));
+                } else {
+                    successful.add(new SendResult<>(UUID.randomUUID(), QUEUE_NAME, message, Map.of()));
+                }
+            }
+            return new SendResult.Batch<>(successful, failed);
+        });
+
+        // When
+        List<PublishResult> results = sqsBatchSender.send(QUEUE_NAME, messages);
+
+        // Then
+        verify(sqsTemplate, times(3)).sendMany(eq(QUEUE_NAME), anyCollection());
+        assertThat(results).extracting(PublishResult::message).containsExactlyElementsOf(messages);
+        assertThat(results).filteredOn(result -> !result.success())
+                .singleElement()
+                .satisfies(result -> {
+                    assertThat(result.message()).isEqualTo(messages.get(12));
+                    assertThat(result.error()).isEqualTo("Throttled");
+                });
+        DistributionSummary fillRatio = meterRegistry.get("app.sqs.publish.batch.fill").summary();
+        assertThat(fillRatio.count()).isEqualTo(3);
+        assertThat(fillRatio.totalAmount()).isCloseTo(2.3, within(1e-9));
+        assertThat(meterRegistry.get("app.sqs.publish.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void send_ShouldFailEveryMessageOfABatch_WhenTheRequestFails() {
+        // Given
+        List<Message> messages = List.of(new Message(UUID.randomUUID(), "a"), new Message(UUID.randomUUID(), "b"));
+        when(sqsTemplate.<Message>sendMany(eq(QUEUE_NAME), anyCollection())).thenThrow(new IllegalStateException("Queue does not exist"));
+
+        // When
+        List<PublishResult> results = sqsBatchSender.send(QUEUE_NAME, messages);
+
+        // Then
+        assertThat(results).allSatisfy(result -> assertThat(result.error()).isEqualTo("Queue does not exist"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.localstack;
+
+import com.example.localstack.config.AWS.SqsConfig;
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.inmemory.InMemoryAws;
+import io.awspring.cloud.sqs.MessageExecutionThread;
+import io.awspring.cloud.sqs.listener.SqsMessageListenerContainer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqsConfigTest {
+    private static final String QUEUE_NAME = "test-queue";
+
+    @Test
+    void defaultSqsListenerContainerFactory_ShouldCreateContainersThatStartAndDeliverMessages() throws Exception {
+        // Given
+        InMemoryAws aws = InMemoryAws.builder().build();
+        String queueUrl = aws.sqsAsyncClient().createQueue(r -> r.queueName(QUEUE_NAME)).join().queueUrl();
+        AwsConfig awsConfig = new AwsConfig("testqueue", "testbucket", "testkey", new AwsConfig.Listener(0, 10, Duration.ofSeconds(1)));
+        SqsMessageListenerContainer<Object> container = new SqsConfig()
+                .defaultSqsListenerContainerFactory(aws.sqsAsyncClient(), awsConfig)
+                .createContainer(QUEUE_NAME);
+        CompletableFuture<Thread> listenerThread = new CompletableFuture<>();
+        container.setMessageListener(message -> listenerThread.complete(Thread.currentThread()));
+
+        // When
+        container.start();
+        try {
+            aws.sqsAsyncClient().sendMessage(r -> r.queueUrl(queueUrl).messageBody("hello")).join();
+
+            // Then
+            assertThat(container.isRunning()).isTrue();
+            assertThat(listenerThread.get(10, TimeUnit.SECONDS)).isInstanceOf(MessageExecutionThread.class);
+        } finally {
+            container.stop();
+        }
+    }
+}
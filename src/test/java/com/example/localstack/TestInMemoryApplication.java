@@ -0,0 +1,15 @@
+package com.example.localstack;
+
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Starts the application against in-memory AWS services, without Docker. Keycloak is still needed for the
+ * OAuth2 client registration.
+ */
+public class TestInMemoryApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.from(LocalstackApplication::main).with(InMemoryAwsConfiguration.class).run(args);
+    }
+
+}
@@ -60,7 +60,7 @@ class TestcontainersConfiguration {
     @Bean
     @Primary
     public AwsConfig testAwsConfig() {
-        return new AwsConfig(awsConfig.queueName(), awsConfig.bucketName(), dynamicKmsKeyId);
+        return new AwsConfig(awsConfig.queueName(), awsConfig.bucketName(), dynamicKmsKeyId, awsConfig.listener());
     }
 
     private String extractKeyId(String keyOutput) {
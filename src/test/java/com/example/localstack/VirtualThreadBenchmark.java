@@ -0,0 +1,115 @@
+package com.example.localstack;
+
+import com.example.localstack.service.encryption.ChunkedCipher;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares request throughput and latency of the platform-thread and the virtual-thread execution mode for a
+ * handler shaped like a document upload: one chunk is encrypted on the CPU, then the handler blocks on a
+ * simulated S3 call and a simulated DynamoDB call, the latter inside a {@code synchronized} block on one of
+ * {@value #CONNECTIONS} connections. The platform mode uses a pool the size of Tomcat's default of 200 threads.
+ *
+ * <p>Run its {@code main} method from the test classpath, for example from the IDE after {@code ./mvnw test-compile}.
+ * Optional arguments: number of requests, concurrent clients, S3 latency in ms, DynamoDB latency in ms.
+ */
+public class VirtualThreadBenchmark {
+    private static final int PLATFORM_POOL_SIZE = 200;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CONNECTIONS = 256;
+
+    private final int requests;
+    private final int clients;
+    private final long s3LatencyMillis;
+    private final long dynamoDbLatencyMillis;
+    private final SecretKeySpec dataKey;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final Object[] connections = new Object[CONNECTIONS];
+
+    VirtualThreadBenchmark(int requests, int clients, long s3LatencyMillis, long dynamoDbLatencyMillis) {
+        this.requests = requests;
+        this.clients = clients;
+        this.s3LatencyMillis = s3LatencyMillis;
+        this.dynamoDbLatencyMillis = dynamoDbLatencyMillis;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.dataKey = new SecretKeySpec(key, "AES");
+        Arrays.setAll(connections, i -> new Object());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        long s3LatencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        long dynamoDbLatencyMillis = args.length > 3 ? Long.parseLong(args[3]) : 8;
+        VirtualThreadBenchmark benchmark = new VirtualThreadBenchmark(requests, clients, s3LatencyMillis, dynamoDbLatencyMillis);
+
+        System.out.printf("%d requests from %d concurrent clients, S3 %d ms, DynamoDB %d ms%n", requests, clients, s3LatencyMillis, dynamoDbLatencyMillis);
+        // A warm-up round of each mode lets the JIT compile the handler before anything is measured
+        benchmark.run("warm-up", Executors.newFixedThreadPool(PLATFORM_POOL_SIZE));
+        benchmark.run("warm-up", Executors.newVirtualThreadPerTaskExecutor());
+        benchmark.run("platform", Executors.newFixedThreadPool(PLATFORM_POOL_SIZE)).print();
+        benchmark.run("virtual", Executors.newVirtualThreadPerTaskExecutor()).print();
+    }
+
+    private Result run(String mode, ExecutorService handlerExecutor) throws Exception {
+        long[] latencies = new long[requests];
+        Semaphore inFlight = new Semaphore(clients);
+        List<Future<?>> handled = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        try (handlerExecutor) {
+            for (int i = 0; i < requests; i++) {
+                int request = i;
+                inFlight.acquire();
+                long submitted = System.nanoTime();
+                handled.add(handlerExecutor.submit(() -> {
+                    try {
+                        handle(request);
+                    } finally {
+                        latencies[request] = System.nanoTime() - submitted;
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : handled) {
+                future.get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(mode, requests * 1e9 / elapsed, percentile(latencies, 0.5), percentile(latencies, 0.99));
+    }
+
+    private void handle(int request) throws GeneralSecurityException, InterruptedException {
+        ChunkedCipher cipher = new ChunkedCipher(dataKey, new byte[ChunkedCipher.NONCE_PREFIX_LENGTH]);
+        byte[] ciphertext = new byte[CHUNK_SIZE + ChunkedCipher.TAG_LENGTH];
+        cipher.encryptChunk(request, true, chunk, 0, chunk.length, ciphertext, 0);
+        Thread.sleep(s3LatencyMillis);
+        synchronized (connections[request % CONNECTIONS]) {
+            // Before Java 24 this pinned the virtual thread to its carrier for the whole call
+            Thread.sleep(dynamoDbLatencyMillis);
+        }
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private record Result(String mode, double requestsPerSecond, double p50Millis, double p99Millis) {
+        void print() {
+            System.out.printf("%-8s %10.0f req/s   p50 %8.1f ms   p99 %8.1f ms%n", mode, requestsPerSecond, p50Millis, p99Millis);
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package com.example.localstack.inmemory;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+
+/**
+ * Evaluates DynamoDB condition, key condition, update and projection expressions against items held in memory.
+ * Supports the comparison operators, {@code BETWEEN}, {@code IN}, {@code AND}/{@code OR}/{@code NOT}, the
+ * functions {@code attribute_exists}, {@code attribute_not_exists}, {@code begins_with}, {@code contains} and
+ * {@code size}, and the update actions {@code SET} (with {@code +}, {@code -}, {@code if_not_exists} and
+ * {@code list_append}), {@code REMOVE} and {@code ADD} on numbers and sets. Only top level attributes can be
+ * addressed; nested paths are rejected like any other invalid expression.
+ */
+final class DynamoDbExpressions {
+    /** Orders key values the way DynamoDB orders sort keys: numbers by value, strings and binary bytewise. */
+    static final Comparator<AttributeValue> KEY_ORDER = (left, right) -> {
+        Integer order = compare(left, right);
+        if (order == null) {
+            throw validation("Key values of different types cannot be ordered");
+        }
+        return order;
+    };
+
+    private DynamoDbExpressions() {
+    }
+
+    /**
+     * Returns whether an item, or null for a missing item, satisfies a condition; a null condition always holds.
+     */
+    static boolean matches(String condition, Map<String, String> names, Map<String, AttributeValue> values,
+                           Map<String, AttributeValue> item) {
+        if (condition == null) {
+            return true;
+        }
+        Parser parser = new Parser(condition, names, values, item == null ? Map.of() : item);
+        boolean matches = parser.condition();
+        parser.expectEnd();
+        return matches;
+    }
+
+    /**
+     * Applies an update expression to a copy of an item, evaluating every operand against the item as it was.
+     */
+    static Map<String, AttributeValue> update(String expression, Map<String, String> names, Map<String, AttributeValue> values,
+                                              Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> updated = new HashMap<>(item);
+        new Parser(expression, names, values, item).update(updated);
+        return updated;
+    }
+
+    /**
+     * Keeps only the projected attributes of an item; a null projection keeps them all.
+     */
+    static Map<String, AttributeValue> project(String projection, Map<String, String> names, Map<String, AttributeValue> item) {
+        if (projection == null) {
+            return item;
+        }
+        Map<String, AttributeValue> projected = new HashMap<>();
+        for (String attribute : new Parser(projection, names, Map.of(), item).paths()) {
+            AttributeValue value = item.get(attribute);
+            if (value != null) {
+                projected.put(attribute, value);
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * Returns the value a key condition requires an attribute to equal, or null if it does not pin the attribute.
+     */
+    static AttributeValue equalityValue(String keyCondition, Map<String, String> names, Map<String, AttributeValue> values, String attribute) {
+        List<Token> tokens = tokenize(keyCondition);
+        for (int i = 0; i + 2 < tokens.size(); i++) {
+            if (!tokens.get(i + 1).is("=")) {
+                continue;
+            }
+            Token left = tokens.get(i);
+            Token right = tokens.get(i + 2);
+            if (left.isPath() && right.kind() == Kind.VALUE && attribute.equals(resolve(left, names))) {
+                return value(right, values);
+            }
+            if (right.isPath() && left.kind() == Kind.VALUE && attribute.equals(resolve(right, names))) {
+                return value(left, values);
+            }
+        }
+        return null;
+    }
+
+    static DynamoDbException validation(String message) {
+        return (DynamoDbException) DynamoDbException.builder().statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder().serviceName("DynamoDb").errorCode("ValidationException").errorMessage(message).build())
+                .message(message)
+                .build();
+    }
+
+    /**
+     * Compares two values of the same scalar type; null if they cannot be compared.
+     */
+    private static Integer compare(AttributeValue left, AttributeValue right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (left.n() != null && right.n() != null) {
+            return new BigDecimal(left.n()).compareTo(new BigDecimal(right.n()));
+        }
+        if (left.s() != null && right.s() != null) {
+            return left.s().compareTo(right.s());
+        }
+        if (left.b() != null && right.b() != null) {
+            return Arrays.compareUnsigned(left.b().asByteArrayUnsafe(), right.b().asByteArrayUnsafe());
+        }
+        return null;
+    }
+
+    private static boolean isEqual(AttributeValue left, AttributeValue right) {
+        Integer order = compare(left, right);
+        return order != null ? order == 0 : left != null && left.equals(right);
+    }
+
+    private static String resolve(Token token, Map<String, String> names) {
+        if (token.kind() != Kind.NAME) {
+            return token.text();
+        }
+        String name = names == null ? null : names.get(token.text());
+        if (name == null) {
+            throw validation("An expression attribute name used in the document path is not defined; attribute name: " + token.text());
+        }
+        return name;
+    }
+
+    private static AttributeValue value(Token token, Map<String, AttributeValue> values) {
+        AttributeValue value = values == null ? null : values.get(token.text());
+        if (value == null) {
+            throw validation("An expression attribute value used in expression is not defined; attribute value: " + token.text());
+        }
+        return value;
+    }
+
+    private enum Kind {IDENTIFIER, NAME, VALUE, SYMBOL, END}
+
+    private record Token(Kind kind, String text) {
+        boolean is(String symbol) {
+            return kind == Kind.SYMBOL && text.equals(symbol);
+        }
+
+        boolean isKeyword(String keyword) {
+            return kind == Kind.IDENTIFIER && text.equalsIgnoreCase(keyword);
+        }
+
+        boolean isPath() {
+            return kind == Kind.IDENTIFIER || kind == Kind.NAME;
+        }
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#' || c == ':' || Character.isLetter(c) || c == '_') {
+                int end = i + 1;
+                while (end < expression.length() && (Character.isLetterOrDigit(expression.charAt(end)) || expression.charAt(end) == '_')) {
+                    end++;
+                }
+                Kind kind = c == '#' ? Kind.NAME : c == ':' ? Kind.VALUE : Kind.IDENTIFIER;
+                tokens.add(new Token(kind, expression.substring(i, end)));
+                i = end;
+            } else if ((c == '<' || c == '>') && i + 1 < expression.length() && (expression.charAt(i + 1) == '=' || (c == '<' && expression.charAt(i + 1) == '>'))) {
+                tokens.add(new Token(Kind.SYMBOL, expression.substring(i, i + 2)));
+                i += 2;
+            } else if ("=<>(),+-".indexOf(c) >= 0) {
+                tokens.add(new Token(Kind.SYMBOL, String.valueOf(c)));
+                i++;
+            } else {
+                throw validation("Invalid expression: unsupported token '" + c + "' in " + expression);
+            }
+        }
+        tokens.add(new Token(Kind.END, ""));
+        return tokens;
+    }
+
+    /**
+     * Recursive descent parser that evaluates as it parses. Both sides of AND and OR are always parsed, so the
+     * whole expression is validated even where the result is already known.
+     */
+    private static final class Parser {
+        private final String expression;
+        private final List<Token> tokens;
+        private final Map<String, String> names;
+        private final Map<String, AttributeValue> values;
+        private final Map<String, AttributeValue> item;
+        private int position;
+
+        Parser(String expression, Map<String, String> names, Map<String, AttributeValue> values, Map<String, AttributeValue> item) {
+            this.expression = expression;
+            this.tokens = tokenize(expression);
+            this.names = names;
+            this.values = values;
+            this.item = item;
+        }
+
+        boolean condition() {
+            boolean result = conjunction();
+            while (peek().isKeyword("OR")) {
+                next();
+                boolean right = conjunction();
+                result = result || right;
+            }
+            return result;
+        }
+
+        void update(Map<String, AttributeValue> updated) {
+            Set<String> seen = new LinkedHashSet<>();
+            while (peek().kind() != Kind.END) {
+                Token action = next();
+                if (action.isKeyword("SET")) {
+                    do {
+                        String attribute = path();
+                        expect("=");
+                        AttributeValue value = setValue();
+                        claim(seen, attribute);
+                        updated.put(attribute, value);
+                    } while (accept(","));
+                } else if (action.isKeyword("REMOVE")) {
+                    do {
+                        String attribute = path();
+                        claim(seen, attribute);
+                        updated.remove(attribute);
+                    } while (accept(","));
+                } else if (action.isKeyword("ADD")) {
+                    do {
+                        String attribute = path();
+                        AttributeValue value = operand();
+                        claim(seen, attribute);
+                        updated.put(attribute, add(item.get(attribute), value));
+                    } while (accept(","));
+                } else {
+                    throw invalid("unsupported update action " + action.text());
+                }
+            }
+        }
+
+        List<String> paths() {
+            List<String> paths = new ArrayList<>();
+            do {
+                paths.add(path());
+            } while (accept(","));
+            expectEnd();
+            return paths;
+        }
+
+        void expectEnd() {
+            if (peek().kind() != Kind.END) {
+                throw invalid("unexpected token " + peek().text());
+            }
+        }
+
+        private boolean conjunction() {
+            boolean result = negation();
+            while (peek().isKeyword("AND")) {
+                next();
+                boolean right = negation();
+                result = result && right;
+            }
+            return result;
+        }
+
+        private boolean negation() {
+            if (peek().isKeyword("NOT")) {
+                next();
+                return !negation();
+            }
+            return predicate();
+        }
+
+        private boolean predicate() {
+            if (accept("(")) {
+                boolean result = condition();
+                expect(")");
+                return result;
+            }
+            Token token = peek();
+            if (token.kind() == Kind.IDENTIFIER && tokens.get(position + 1).is("(") && !token.text().equals("size")) {
+                return function();
+            }
+            AttributeValue left = operand();
+            Token operator = next();
+            if (operator.isKeyword("BETWEEN")) {
+                AttributeValue low = operand();
+                if (!next().isKeyword("AND")) {
+                    throw invalid("BETWEEN without AND");
+                }
+                AttributeValue high = operand();
+                Integer fromLow = compare(left, low);
+                Integer toHigh = compare(left, high);
+                return fromLow != null && toHigh != null && fromLow >= 0 && toHigh <= 0;
+            }
+            if (operator.isKeyword("IN")) {
+                expect("(");
+                boolean found = false;
+                do {
+                    found |= isEqual(left, operand());
+                } while (accept(","));
+                expect(")");
+                return found;
+            }
+            AttributeValue right = operand();
+            if (operator.is("=")) {
+                return isEqual(left, right);
+            }
+            if (operator.is("<>")) {
+                return !isEqual(left, right);
+            }
+            Integer order = compare(left, right);
+            return order != null && switch (operator.text()) {
+                case "<" -> order < 0;
+                case "<=" -> order <= 0;
+                case ">" -> order > 0;
+                case ">=" -> order >= 0;
+                default -> throw invalid("unsupported operator " + operator.text());
+            };
+        }
+
+        private boolean function() {
+            String function = next().text();
+            expect("(");
+            boolean result = switch (function) {
+                case "attribute_exists" -> item.containsKey(path());
+                case "attribute_not_exists" -> !item.containsKey(path());
+                case "begins_with" -> {
+                    AttributeValue value = item.get(path());
+                    expect(",");
+                    AttributeValue prefix = operand();
+                    yield value != null && (value.s() != null && prefix.s() != null ? value.s().startsWith(prefix.s())
+                            : value.b() != null && prefix.b() != null && startsWith(value.b(), prefix.b()));
+                }
+                case "contains" -> {
+                    AttributeValue value = item.get(path());
+                    expect(",");
+                    AttributeValue operand = operand();
+                    yield value != null && contains(value, operand);
+                }
+                default -> throw invalid("unsupported function " + function);
+            };
+            expect(")");
+            return result;
+        }
+
+        private AttributeValue setValue() {
+            AttributeValue value = operand();
+            if (accept("+")) {
+                return arithmetic(value, operand(), BigDecimal::add);
+            }
+            if (accept("-")) {
+                return arithmetic(value, operand(), BigDecimal::subtract);
+            }
+            return value;
+        }
+
+        private AttributeValue operand() {
+            Token token = peek();
+            if (token.kind() == Kind.VALUE) {
+                next();
+                return value(token, values);
+            }
+            if (token.kind() == Kind.IDENTIFIER && tokens.get(position + 1).is("(")) {
+                next();
+                expect("(");
+                AttributeValue result = switch (token.text()) {
+                    case "size" -> size(item.get(path()));
+                    case "if_not_exists" -> {
+                        AttributeValue existing = item.get(path());
+                        expect(",");
+                        AttributeValue fallback = operand();
+                        yield existing != null ? existing : fallback;
+                    }
+                    case "list_append" -> {
+                        AttributeValue first = operand();
+                        expect(",");
+                        AttributeValue second = operand();
+                        if (first == null || second == null || !first.hasL() || !second.hasL()) {
+                            throw invalid("list_append operands must be lists");
+                        }
+                        List<AttributeValue> appended = new ArrayList<>(first.l());
+                        appended.addAll(second.l());
+                        yield AttributeValue.fromL(appended);
+                    }
+                    default -> throw invalid("unsupported function " + token.text());
+                };
+                expect(")");
+                return result;
+            }
+            return item.get(path());
+        }
+
+        private String path() {
+            Token token = next();
+            if (!token.isPath()) {
+                throw invalid("expected an attribute name but found " + token.text());
+            }
+            return resolve(token, names);
+        }
+
+        private AttributeValue arithmetic(AttributeValue left, AttributeValue right, BinaryOperator<BigDecimal> operator) {
+            if (left == null || right == null || left.n() == null || right.n() == null) {
+                throw validation("An operand in the update expression has an incorrect data type");
+            }
+            return AttributeValue.fromN(normalize(operator.apply(new BigDecimal(left.n()), new BigDecimal(right.n()))));
+        }
+
+        private AttributeValue add(AttributeValue existing, AttributeValue value) {
+            if (value.n() != null) {
+                return arithmetic(existing == null ? AttributeValue.fromN("0") : existing, value, BigDecimal::add);
+            }
+            if (value.hasSs()) {
+                Set<String> union = new LinkedHashSet<>(existing == null ? List.of() : existing.ss());
+                union.addAll(value.ss());
+                return AttributeValue.fromSs(List.copyOf(union));
+            }
+            if (value.hasNs()) {
+                Set<String> union = new LinkedHashSet<>(existing == null ? List.of() : existing.ns());
+                union.addAll(value.ns());
+                return AttributeValue.fromNs(List.copyOf(union));
+            }
+            throw validation("ADD only supports numbers and sets");
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token next() {
+            Token token = tokens.get(position);
+            if (token.kind() != Kind.END) {
+                position++;
+            }
+            return token;
+        }
+
+        private boolean accept(String symbol) {
+            if (peek().is(symbol)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String symbol) {
+            if (!accept(symbol)) {
+                throw invalid("expected '" + symbol + "' but found '" + peek().text() + "'");
+            }
+        }
+
+        private void claim(Set<String> seen, String attribute) {
+            if (!seen.add(attribute)) {
+                throw validation("Two document paths overlap with each other; attribute: " + attribute);
+            }
+        }
+
+        private DynamoDbException invalid(String problem) {
+            return validation("Invalid expression: " + problem + " in " + expression);
+        }
+    }
+
+    private static AttributeValue size(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        long size;
+        if (value.s() != null) {
+            size = value.s().length();
+        } else if (value.b() != null) {
+            size = value.b().asByteArrayUnsafe().length;
+        } else if (value.hasL()) {
+            size = value.l().size();
+        } else if (value.hasM()) {
+            size = value.m().size();
+        } else if (value.hasSs()) {
+            size = value.ss().size();
+        } else if (value.hasNs()) {
+            size = value.ns().size();
+        } else if (value.hasBs()) {
+            size = value.bs().size();
+        } else {
+            return null;
+        }
+        return AttributeValue.fromN(Long.toString(size));
+    }
+
+    private static boolean contains(AttributeValue value, AttributeValue operand) {
+        if (value.s() != null) {
+            return operand.s() != null && value.s().contains(operand.s());
+        }
+        if (value.hasSs()) {
+            return operand.s() != null && value.ss().contains(operand.s());
+        }
+        if (value.hasNs()) {
+            return operand.n() != null && value.ns().stream().anyMatch(n -> isEqual(AttributeValue.fromN(n), operand));
+        }
+        if (value.hasL()) {
+            return value.l().stream().anyMatch(element -> isEqual(element, operand));
+        }
+        return false;
+    }
+
+    private static boolean startsWith(SdkBytes value, SdkBytes prefix) {
+        byte[] bytes = value.asByteArrayUnsafe();
+        byte[] start = prefix.asByteArrayUnsafe();
+        return bytes.length >= start.length && Arrays.equals(bytes, 0, start.length, start, 0, start.length);
+    }
+
+    private static String normalize(BigDecimal number) {
+        return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+    }
+}
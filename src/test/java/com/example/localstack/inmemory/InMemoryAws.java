@@ -0,0 +1,137 @@
+package com.example.localstack.inmemory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.awspring.cloud.s3.InMemoryBufferingS3OutputStreamProvider;
+import io.awspring.cloud.s3.Jackson2JsonS3ObjectConverter;
+import io.awspring.cloud.s3.S3Template;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * In-memory stand-ins for every AWS service the application uses, each with its own simulated conditions. The
+ * Spring Cloud AWS templates and the enhanced DynamoDB clients are built unchanged on top of the in-memory SDK
+ * clients, so everything above the wire runs as it does against AWS or LocalStack.
+ *
+ * <pre>{@code
+ * InMemoryAws aws = InMemoryAws.builder()
+ *         .s3(SimulatedConditions.latency(Duration.ofMillis(20), Duration.ofMillis(150)))
+ *         .dynamoDb(SimulatedConditions.latency(Duration.ofMillis(5), Duration.ofMillis(30)).withMaxRequestsPerSecond(1000))
+ *         .build();
+ * }</pre>
+ */
+public class InMemoryAws {
+    public static final String REGION = "us-east-1";
+
+    private final InMemoryS3Client s3Client;
+    private final InMemoryS3AsyncClient s3AsyncClient;
+    private final InMemoryKmsAsyncClient kmsAsyncClient;
+    private final InMemoryDynamoDbClient dynamoDbClient;
+    private final InMemoryDynamoDbAsyncClient dynamoDbAsyncClient;
+    private final InMemorySqsAsyncClient sqsAsyncClient;
+
+    private InMemoryAws(Builder builder) {
+        this.s3Client = new InMemoryS3Client(builder.s3, REGION);
+        this.s3AsyncClient = new InMemoryS3AsyncClient(s3Client);
+        this.kmsAsyncClient = new InMemoryKmsAsyncClient(builder.kms, REGION);
+        this.dynamoDbClient = new InMemoryDynamoDbClient(builder.dynamoDb, REGION);
+        this.dynamoDbAsyncClient = new InMemoryDynamoDbAsyncClient(dynamoDbClient);
+        this.sqsAsyncClient = new InMemorySqsAsyncClient(builder.sqs, REGION);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public InMemoryS3Client s3Client() {
+        return s3Client;
+    }
+
+    public InMemoryS3AsyncClient s3AsyncClient() {
+        return s3AsyncClient;
+    }
+
+    public InMemoryKmsAsyncClient kmsAsyncClient() {
+        return kmsAsyncClient;
+    }
+
+    public InMemoryDynamoDbClient dynamoDbClient() {
+        return dynamoDbClient;
+    }
+
+    public InMemoryDynamoDbAsyncClient dynamoDbAsyncClient() {
+        return dynamoDbAsyncClient;
+    }
+
+    public InMemorySqsAsyncClient sqsAsyncClient() {
+        return sqsAsyncClient;
+    }
+
+    public DynamoDbEnhancedClient dynamoDbEnhancedClient() {
+        return DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+    }
+
+    public DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient() {
+        return DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(dynamoDbAsyncClient).build();
+    }
+
+    /**
+     * An S3 template over the in-memory S3. Presigned URLs are signed with dummy credentials for a local
+     * endpoint; they are well formed but nothing answers them.
+     */
+    public S3Template s3Template(ObjectMapper objectMapper) {
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.of(REGION))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("in-memory", "in-memory")))
+                .endpointOverride(s3Client.serviceClientConfiguration().endpointOverride().orElseThrow())
+                .build();
+        return new S3Template(s3Client, new InMemoryBufferingS3OutputStreamProvider(s3Client, null),
+                new Jackson2JsonS3ObjectConverter(objectMapper), presigner);
+    }
+
+    public SqsTemplate sqsTemplate() {
+        return SqsTemplate.newTemplate(sqsAsyncClient);
+    }
+
+    public static class Builder {
+        private SimulatedConditions s3 = SimulatedConditions.none();
+        private SimulatedConditions kms = SimulatedConditions.none();
+        private SimulatedConditions dynamoDb = SimulatedConditions.none();
+        private SimulatedConditions sqs = SimulatedConditions.none();
+
+        public Builder s3(SimulatedConditions conditions) {
+            this.s3 = conditions;
+            return this;
+        }
+
+        public Builder kms(SimulatedConditions conditions) {
+            this.kms = conditions;
+            return this;
+        }
+
+        public Builder dynamoDb(SimulatedConditions conditions) {
+            this.dynamoDb = conditions;
+            return this;
+        }
+
+        public Builder sqs(SimulatedConditions conditions) {
+            this.sqs = conditions;
+            return this;
+        }
+
+        /**
+         * Applies the same conditions to every service.
+         */
+        public Builder all(SimulatedConditions conditions) {
+            return s3(conditions).kms(conditions).dynamoDb(conditions).sqs(conditions);
+        }
+
+        public InMemoryAws build() {
+            return new InMemoryAws(this);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.localstack.inmemory;
+
+import com.example.localstack.config.AWS.DynamoDbConfig;
+import com.example.localstack.config.AwsConfig;
+import com.example.localstack.config.CompressionConfig;
+import com.example.localstack.config.ContentCacheConfig;
+import com.example.localstack.config.DedupConfig;
+import com.example.localstack.config.EncryptionConfig;
+import com.example.localstack.config.MetadataCacheConfig;
+import com.example.localstack.config.PresignConfig;
+import com.example.localstack.config.ScanConfig;
+import com.example.localstack.config.SearchConfig;
+import com.example.localstack.config.StorageConfig;
+import com.example.localstack.config.UploadConfig;
+import com.example.localstack.config.WriteBehindConfig;
+import com.example.localstack.data.ContentBlobRepository;
+import com.example.localstack.data.DocumentMetadataCache;
+import com.example.localstack.data.DocumentMetadataRepository;
+import com.example.localstack.data.MetadataWriteBehind;
+import com.example.localstack.service.encryption.EnvelopeEncryptionService;
+import com.example.localstack.service.impl.S3ServiceImpl;
+import com.example.localstack.service.metrics.DocumentStageMetrics;
+import com.example.localstack.service.storage.BucketRegistry;
+import com.example.localstack.service.storage.DocumentContentCache;
+import com.example.localstack.service.storage.EncryptedObjectStore;
+import com.example.localstack.service.storage.PresignedObjectStore;
+import com.example.localstack.service.storage.TransferBufferPool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.awspring.cloud.s3.S3Template;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Builds the document service the way the application context does over {@link InMemoryAws}, with the settings
+ * bound from application.yml like the {@code @ConfigurationProperties} records of the application. The DynamoDB
+ * tables are created by the application's own {@link DynamoDbConfig}.
+ */
+public final class InMemoryDocumentService {
+    private static final Binder APPLICATION_PROPERTIES = loadApplicationProperties();
+
+    private InMemoryDocumentService() {
+    }
+
+    public static S3ServiceImpl create(InMemoryAws aws) {
+        return create(aws, bind("app.dedup", DedupConfig.class));
+    }
+
+    public static S3ServiceImpl create(InMemoryAws aws, DedupConfig dedupConfig) {
+        DynamoDbEnhancedClient enhancedClient = aws.dynamoDbEnhancedClient();
+        AwsConfig awsConfig = bind("app", AwsConfig.class);
+
+        DocumentMetadataCache documentMetadataCache = new DocumentMetadataCache(bind("app.metadata-cache", MetadataCacheConfig.class), new SimpleMeterRegistry());
+        DocumentMetadataRepository documentMetadataRepository = new DocumentMetadataRepository(enhancedClient,
+                property("app.dynamodb.table-name"), property("app.dynamodb.metadata-index-table-name"),
+                bind("app.scan", ScanConfig.class), documentMetadataCache);
+        createTables(enhancedClient, aws, documentMetadataRepository);
+        MetadataWriteBehind metadataWriteBehind = new MetadataWriteBehind(documentMetadataRepository, documentMetadataCache,
+                bind("app.write-behind", WriteBehindConfig.class));
+        ContentBlobRepository contentBlobRepository = new ContentBlobRepository(enhancedClient, aws.dynamoDbClient(),
+                property("app.dynamodb.content-index-table-name"));
+
+        EnvelopeEncryptionService envelopeEncryptionService = new EnvelopeEncryptionService(aws.kmsAsyncClient(), awsConfig,
+                bind("app.encryption", EncryptionConfig.class));
+        DocumentStageMetrics stageMetrics = new DocumentStageMetrics(new SimpleMeterRegistry());
+        EncryptedObjectStore encryptedObjectStore = new EncryptedObjectStore(aws.s3Client(), envelopeEncryptionService,
+                new TransferBufferPool(bind("app.storage", StorageConfig.class)), stageMetrics);
+        DocumentContentCache documentContentCache = new DocumentContentCache(bind("app.content-cache", ContentCacheConfig.class), new SimpleMeterRegistry());
+        S3Template s3Template = aws.s3Template(new ObjectMapper());
+        PresignConfig presignConfig = bind("app.presign", PresignConfig.class);
+        PresignedObjectStore presignedObjectStore = new PresignedObjectStore(s3Template, aws.s3Client(), awsConfig, presignConfig);
+
+        return new S3ServiceImpl(encryptedObjectStore, documentContentCache, presignedObjectStore, new BucketRegistry(s3Template, awsConfig),
+                awsConfig, documentMetadataRepository, metadataWriteBehind, contentBlobRepository, dedupConfig,
+                bind("app.compression", CompressionConfig.class), presignConfig, bind("app.search", SearchConfig.class),
+                bind("app.upload", UploadConfig.class), stageMetrics);
+    }
+
+    private static void createTables(DynamoDbEnhancedClient enhancedClient, InMemoryAws aws, DocumentMetadataRepository documentMetadataRepository) {
+        DynamoDbConfig dynamoDbConfig = new DynamoDbConfig(enhancedClient, aws.dynamoDbClient(), documentMetadataRepository);
+        ReflectionTestUtils.setField(dynamoDbConfig, "tableName", property("app.dynamodb.table-name"));
+        ReflectionTestUtils.setField(dynamoDbConfig, "metadataIndexTableName", property("app.dynamodb.metadata-index-table-name"));
+        ReflectionTestUtils.setField(dynamoDbConfig, "contentIndexTableName", property("app.dynamodb.content-index-table-name"));
+        dynamoDbConfig.createTableIfNotExist();
+    }
+
+    private static <T> T bind(String prefix, Class<T> type) {
+        return APPLICATION_PROPERTIES.bindOrCreate(prefix, type);
+    }
+
+    private static String property(String name) {
+        return APPLICATION_PROPERTIES.bind(name, String.class).get();
+    }
+
+    private static Binder loadApplicationProperties() {
+        try {
+            List<PropertySource<?>> sources = new YamlPropertySourceLoader().load("application.yml", new ClassPathResource("application.yml"));
+            return new Binder(ConfigurationPropertySources.from(sources));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read application.yml", e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.localstack.inmemory;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbServiceClientConfiguration;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CreateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.CreateTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.paginators.BatchGetItemPublisher;
+import software.amazon.awssdk.services.dynamodb.paginators.QueryPublisher;
+import software.amazon.awssdk.services.dynamodb.paginators.ScanPublisher;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Async view of an {@link InMemoryDynamoDbClient}, sharing its tables and simulated conditions. Calls run on
+ * virtual threads, so simulated latency does not hold up the caller.
+ */
+public class InMemoryDynamoDbAsyncClient implements DynamoDbAsyncClient {
+    private final InMemoryDynamoDbClient dynamoDbClient;
+
+    public InMemoryDynamoDbAsyncClient(InMemoryDynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    @Override
+    public CompletableFuture<CreateTableResponse> createTable(CreateTableRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.createTable(request));
+    }
+
+    @Override
+    public CompletableFuture<DescribeTableResponse> describeTable(DescribeTableRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.describeTable(request));
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.putItem(request));
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.getItem(request));
+    }
+
+    @Override
+    public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.deleteItem(request));
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.updateItem(request));
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.batchGetItem(request));
+    }
+
+    @Override
+    public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.batchWriteItem(request));
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.query(request));
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> scan(ScanRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> dynamoDbClient.scan(request));
+    }
+
+    @Override
+    public QueryPublisher queryPaginator(QueryRequest request) {
+        return new QueryPublisher(this, request);
+    }
+
+    @Override
+    public ScanPublisher scanPaginator(ScanRequest request) {
+        return new ScanPublisher(this, request);
+    }
+
+    @Override
+    public BatchGetItemPublisher batchGetItemPaginator(BatchGetItemRequest request) {
+        return new BatchGetItemPublisher(this, request);
+    }
+
+    @Override
+    public DynamoDbServiceClientConfiguration serviceClientConfiguration() {
+        return dynamoDbClient.serviceClientConfiguration();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
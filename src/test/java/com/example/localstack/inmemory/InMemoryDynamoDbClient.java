@@ -0,0 +1,595 @@
+package com.example.localstack.inmemory;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbServiceClientConfiguration;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.BillingModeSummary;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.CreateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.CreateTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DeleteTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexUpdate;
+import software.amazon.awssdk.services.dynamodb.model.IndexStatus;
+import software.amazon.awssdk.services.dynamodb.model.InternalServerErrorException;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.Projection;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceInUseException;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+import software.amazon.awssdk.services.dynamodb.model.TableStatus;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.amazon.awssdk.services.dynamodb.paginators.BatchGetItemIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.QueryIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.ScanIterable;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * DynamoDB held in memory, enough of it for the enhanced client: tables with global secondary indexes, item
+ * reads and writes with condition and update expressions, batches, and paginated queries and parallel scans.
+ * Writes to a table are serialised, so conditional writes are atomic as in DynamoDB. Requests go through the
+ * {@link SimulatedConditions} of the service, throttled with {@code ProvisionedThroughputExceededException}.
+ *
+ * <p>Queries of the base table read a single partition; queries of an index look at every item of the table.
+ */
+public class InMemoryDynamoDbClient implements DynamoDbClient {
+    /** The sort key of items in tables without one, so that every partition is a sorted map. */
+    private static final AttributeValue NO_SORT_KEY = AttributeValue.fromS("");
+
+    private record Index(String name, String partitionKey, String sortKey, List<KeySchemaElement> keySchema, Projection projection) {}
+
+    private static final class Table {
+        private final String name;
+        private final String partitionKey;
+        private final String sortKey;
+        private final List<KeySchemaElement> keySchema;
+        private final Map<String, AttributeDefinition> attributeDefinitions = new ConcurrentHashMap<>();
+        private final Map<String, Index> indexes = new ConcurrentHashMap<>();
+        private final NavigableMap<AttributeValue, NavigableMap<AttributeValue, Map<String, AttributeValue>>> partitions =
+                new ConcurrentSkipListMap<>(DynamoDbExpressions.KEY_ORDER);
+        private final Instant createdAt = Instant.now();
+
+        Table(String name, List<KeySchemaElement> keySchema) {
+            this.name = name;
+            this.keySchema = List.copyOf(keySchema);
+            this.partitionKey = keyAttribute(keySchema, KeyType.HASH);
+            this.sortKey = keyAttribute(keySchema, KeyType.RANGE);
+        }
+    }
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final SimulatedConditions.Simulator simulator;
+    private final String region;
+
+    public InMemoryDynamoDbClient(SimulatedConditions conditions, String region) {
+        this.region = region;
+        this.simulator = new SimulatedConditions.Simulator(conditions,
+                () -> ProvisionedThroughputExceededException.builder().statusCode(400)
+                        .awsErrorDetails(details("ProvisionedThroughputExceededException", "The level of configured provisioned throughput for the table was exceeded."))
+                        .build(),
+                () -> InternalServerErrorException.builder().statusCode(500)
+                        .awsErrorDetails(details("InternalServerError", "Internal server error"))
+                        .build());
+    }
+
+    public SimulatedConditions.Simulator simulator() {
+        return simulator;
+    }
+
+    @Override
+    public CreateTableResponse createTable(CreateTableRequest request) {
+        return simulator.call("CreateTable", () -> {
+            Table table = new Table(request.tableName(), request.keySchema());
+            request.attributeDefinitions().forEach(definition -> table.attributeDefinitions.put(definition.attributeName(), definition));
+            request.globalSecondaryIndexes().forEach(index ->
+                    table.indexes.put(index.indexName(), index(index.indexName(), index.keySchema(), index.projection())));
+            request.localSecondaryIndexes().forEach(index ->
+                    table.indexes.put(index.indexName(), index(index.indexName(), index.keySchema(), index.projection())));
+            if (tables.putIfAbsent(request.tableName(), table) != null) {
+                throw ResourceInUseException.builder().statusCode(400)
+                        .awsErrorDetails(details("ResourceInUseException", "Table already exists: " + request.tableName()))
+                        .build();
+            }
+            return CreateTableResponse.builder().tableDescription(describe(table)).build();
+        });
+    }
+
+    @Override
+    public DescribeTableResponse describeTable(DescribeTableRequest request) {
+        return simulator.call("DescribeTable", () -> DescribeTableResponse.builder().table(describe(table(request.tableName()))).build());
+    }
+
+    @Override
+    public UpdateTableResponse updateTable(UpdateTableRequest request) {
+        return simulator.call("UpdateTable", () -> {
+            Table table = table(request.tableName());
+            synchronized (table) {
+                request.attributeDefinitions().forEach(definition -> table.attributeDefinitions.put(definition.attributeName(), definition));
+                for (GlobalSecondaryIndexUpdate update : request.globalSecondaryIndexUpdates()) {
+                    if (update.create() != null) {
+                        table.indexes.put(update.create().indexName(), index(update.create().indexName(), update.create().keySchema(), update.create().projection()));
+                    }
+                    if (update.delete() != null) {
+                        table.indexes.remove(update.delete().indexName());
+                    }
+                }
+            }
+            return UpdateTableResponse.builder().tableDescription(describe(table)).build();
+        });
+    }
+
+    @Override
+    public DeleteTableResponse deleteTable(DeleteTableRequest request) {
+        return simulator.call("DeleteTable", () -> {
+            Table table = table(request.tableName());
+            tables.remove(request.tableName());
+            return DeleteTableResponse.builder().tableDescription(describe(table)).build();
+        });
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        return simulator.call("PutItem", () -> {
+            Table table = table(request.tableName());
+            Map<String, AttributeValue> previous;
+            synchronized (table) {
+                previous = item(table, request.item());
+                checkCondition(request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(), previous);
+                store(table, request.item());
+            }
+            return PutItemResponse.builder()
+                    .attributes(request.returnValues() == ReturnValue.ALL_OLD && previous != null ? previous : null)
+                    .build();
+        });
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        return simulator.call("GetItem", () -> {
+            Map<String, AttributeValue> item = item(table(request.tableName()), request.key());
+            return GetItemResponse.builder()
+                    .item(item == null ? null : DynamoDbExpressions.project(request.projectionExpression(), request.expressionAttributeNames(), item))
+                    .build();
+        });
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        return simulator.call("DeleteItem", () -> {
+            Table table = table(request.tableName());
+            Map<String, AttributeValue> previous;
+            synchronized (table) {
+                previous = item(table, request.key());
+                checkCondition(request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(), previous);
+                remove(table, request.key());
+            }
+            return DeleteItemResponse.builder()
+                    .attributes(request.returnValues() == ReturnValue.ALL_OLD && previous != null ? previous : null)
+                    .build();
+        });
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        return simulator.call("UpdateItem", () -> {
+            Table table = table(request.tableName());
+            Map<String, AttributeValue> previous;
+            Map<String, AttributeValue> updated;
+            synchronized (table) {
+                previous = item(table, request.key());
+                checkCondition(request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(), previous);
+                Map<String, AttributeValue> current = previous != null ? previous : request.key();
+                updated = request.updateExpression() == null ? current
+                        : DynamoDbExpressions.update(request.updateExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(), current);
+                if (!Objects.equals(keyOf(table, updated), keyOf(table, request.key()))) {
+                    throw DynamoDbExpressions.validation("Cannot update attribute " + table.partitionKey + ". This attribute is part of the key");
+                }
+                store(table, updated);
+            }
+            return UpdateItemResponse.builder().attributes(returnedAttributes(request.returnValues(), previous, updated)).build();
+        });
+    }
+
+    @Override
+    public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+        return simulator.call("BatchGetItem", () -> {
+            Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+            request.requestItems().forEach((tableName, keysAndAttributes) -> {
+                Table table = table(tableName);
+                List<Map<String, AttributeValue>> items = new ArrayList<>();
+                for (Map<String, AttributeValue> key : keysAndAttributes.keys()) {
+                    Map<String, AttributeValue> item = item(table, key);
+                    if (item != null) {
+                        items.add(DynamoDbExpressions.project(keysAndAttributes.projectionExpression(), keysAndAttributes.expressionAttributeNames(), item));
+                    }
+                }
+                responses.put(tableName, items);
+            });
+            return BatchGetItemResponse.builder().responses(responses).unprocessedKeys(Map.<String, KeysAndAttributes>of()).build();
+        });
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        return simulator.call("BatchWriteItem", () -> {
+            request.requestItems().forEach((tableName, writes) -> {
+                Table table = table(tableName);
+                synchronized (table) {
+                    for (WriteRequest write : writes) {
+                        if (write.putRequest() != null) {
+                            store(table, write.putRequest().item());
+                        } else if (write.deleteRequest() != null) {
+                            remove(table, write.deleteRequest().key());
+                        }
+                    }
+                }
+            });
+            return BatchWriteItemResponse.builder().unprocessedItems(Map.<String, List<WriteRequest>>of()).build();
+        });
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        return simulator.call("Query", () -> {
+            Table table = table(request.tableName());
+            Index index = request.indexName() == null ? null : index(table, request.indexName());
+            String partitionKey = index == null ? table.partitionKey : index.partitionKey();
+            AttributeValue partition = DynamoDbExpressions.equalityValue(request.keyConditionExpression(),
+                    request.expressionAttributeNames(), request.expressionAttributeValues(), partitionKey);
+            if (partition == null) {
+                throw DynamoDbExpressions.validation("Query condition missed key schema element: " + partitionKey);
+            }
+            boolean forward = !Boolean.FALSE.equals(request.scanIndexForward());
+            Stream<Map<String, AttributeValue>> candidates = index == null
+                    ? partitionItems(table, partition, forward, request.exclusiveStartKey())
+                    : indexItems(table, index, partition, forward, request.exclusiveStartKey());
+            Page page = page(candidates
+                            .filter(item -> DynamoDbExpressions.matches(request.keyConditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(), item)),
+                    request.limit(), table, index);
+            List<Map<String, AttributeValue>> items = page.filter(request.filterExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(),
+                    request.projectionExpression());
+            return QueryResponse.builder()
+                    .items(items)
+                    .count(items.size())
+                    .scannedCount(page.scanned().size())
+                    .lastEvaluatedKey(page.lastEvaluatedKey())
+                    .build();
+        });
+    }
+
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        return simulator.call("Scan", () -> {
+            Table table = table(request.tableName());
+            Index index = request.indexName() == null ? null : index(table, request.indexName());
+            Stream<Map<String, AttributeValue>> candidates = tableItems(table, request.exclusiveStartKey());
+            if (index != null) {
+                candidates = candidates.filter(item -> item.containsKey(index.partitionKey()) && (index.sortKey() == null || item.containsKey(index.sortKey())));
+            }
+            if (request.totalSegments() != null) {
+                int segment = request.segment();
+                int totalSegments = request.totalSegments();
+                candidates = candidates.filter(item -> Math.floorMod(item.get(table.partitionKey).hashCode(), totalSegments) == segment);
+            }
+            Page page = page(candidates, request.limit(), table, index);
+            List<Map<String, AttributeValue>> items = page.filter(request.filterExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(),
+                    request.projectionExpression());
+            return ScanResponse.builder()
+                    .items(items)
+                    .count(items.size())
+                    .scannedCount(page.scanned().size())
+                    .lastEvaluatedKey(page.lastEvaluatedKey())
+                    .build();
+        });
+    }
+
+    @Override
+    public QueryIterable queryPaginator(QueryRequest request) {
+        return new QueryIterable(this, request);
+    }
+
+    @Override
+    public ScanIterable scanPaginator(ScanRequest request) {
+        return new ScanIterable(this, request);
+    }
+
+    @Override
+    public BatchGetItemIterable batchGetItemPaginator(BatchGetItemRequest request) {
+        return new BatchGetItemIterable(this, request);
+    }
+
+    @Override
+    public DynamoDbWaiter waiter() {
+        return DynamoDbWaiter.builder().client(this).build();
+    }
+
+    @Override
+    public DynamoDbServiceClientConfiguration serviceClientConfiguration() {
+        // Clients derived from this one must not reach a real endpoint
+        return DynamoDbServiceClientConfiguration.builder()
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("in-memory", "in-memory")))
+                .endpointOverride(URI.create("http://localhost:1"))
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * The items read for one page, before the filter expression.
+     */
+    private record Page(List<Map<String, AttributeValue>> scanned, Map<String, AttributeValue> lastEvaluatedKey) {
+        List<Map<String, AttributeValue>> filter(String filterExpression, Map<String, String> names, Map<String, AttributeValue> values, String projection) {
+            return scanned.stream()
+                    .filter(item -> DynamoDbExpressions.matches(filterExpression, names, values, item))
+                    .map(item -> DynamoDbExpressions.project(projection, names, item))
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads up to the limit from the candidates. Like DynamoDB, the last evaluated key is returned whenever the
+     * limit stopped the read, even if nothing follows.
+     */
+    private static Page page(Stream<Map<String, AttributeValue>> candidates, Integer limit, Table table, Index index) {
+        List<Map<String, AttributeValue>> scanned = new ArrayList<>();
+        Iterator<Map<String, AttributeValue>> iterator = candidates.iterator();
+        while (iterator.hasNext() && (limit == null || scanned.size() < limit)) {
+            scanned.add(iterator.next());
+        }
+        if (limit == null || scanned.size() < limit || scanned.isEmpty()) {
+            return new Page(scanned, null);
+        }
+        Map<String, AttributeValue> last = scanned.getLast();
+        Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>(keyOf(table, last));
+        if (index != null) {
+            lastEvaluatedKey.put(index.partitionKey(), last.get(index.partitionKey()));
+            if (index.sortKey() != null) {
+                lastEvaluatedKey.put(index.sortKey(), last.get(index.sortKey()));
+            }
+        }
+        return new Page(scanned, lastEvaluatedKey);
+    }
+
+    /**
+     * Streams every item of a table in key order, starting after the exclusive start key.
+     */
+    private static Stream<Map<String, AttributeValue>> tableItems(Table table, Map<String, AttributeValue> exclusiveStartKey) {
+        if (exclusiveStartKey == null || exclusiveStartKey.isEmpty()) {
+            return table.partitions.values().stream().flatMap(items -> items.values().stream());
+        }
+        AttributeValue startPartition = exclusiveStartKey.get(table.partitionKey);
+        AttributeValue startSortKey = sortValue(table, exclusiveStartKey);
+        return table.partitions.tailMap(startPartition, true).entrySet().stream()
+                .flatMap(partition -> DynamoDbExpressions.KEY_ORDER.compare(partition.getKey(), startPartition) == 0
+                        ? partition.getValue().tailMap(startSortKey, false).values().stream()
+                        : partition.getValue().values().stream());
+    }
+
+    private static Stream<Map<String, AttributeValue>> partitionItems(Table table, AttributeValue partition, boolean forward,
+                                                                      Map<String, AttributeValue> exclusiveStartKey) {
+        NavigableMap<AttributeValue, Map<String, AttributeValue>> items = table.partitions.get(partition);
+        if (items == null) {
+            return Stream.empty();
+        }
+        if (!forward) {
+            items = items.descendingMap();
+        }
+        if (exclusiveStartKey != null && !exclusiveStartKey.isEmpty()) {
+            items = items.tailMap(sortValue(table, exclusiveStartKey), false);
+        }
+        return items.values().stream();
+    }
+
+    /**
+     * Streams the items of an index partition ordered by the index sort key, ties broken by the table key.
+     */
+    private static Stream<Map<String, AttributeValue>> indexItems(Table table, Index index, AttributeValue partition, boolean forward,
+                                                                  Map<String, AttributeValue> exclusiveStartKey) {
+        List<String> order = new ArrayList<>();
+        if (index.sortKey() != null) {
+            order.add(index.sortKey());
+        }
+        order.add(table.partitionKey);
+        if (table.sortKey != null) {
+            order.add(table.sortKey);
+        }
+        Comparator<Map<String, AttributeValue>> comparator = (left, right) -> {
+            for (String attribute : order) {
+                int result = DynamoDbExpressions.KEY_ORDER.compare(left.get(attribute), right.get(attribute));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+        Comparator<Map<String, AttributeValue>> direction = forward ? comparator : comparator.reversed();
+        return tableItems(table, null)
+                .filter(item -> item.containsKey(index.partitionKey()) && (index.sortKey() == null || item.containsKey(index.sortKey())))
+                .filter(item -> DynamoDbExpressions.KEY_ORDER.compare(item.get(index.partitionKey()), partition) == 0)
+                .sorted(direction)
+                .filter(item -> exclusiveStartKey == null || exclusiveStartKey.isEmpty() || direction.compare(item, exclusiveStartKey) > 0);
+    }
+
+    private static Map<String, AttributeValue> returnedAttributes(ReturnValue returnValue, Map<String, AttributeValue> previous,
+                                                                  Map<String, AttributeValue> updated) {
+        if (returnValue == null) {
+            return null;
+        }
+        return switch (returnValue) {
+            case ALL_OLD -> previous;
+            case ALL_NEW -> updated;
+            case UPDATED_OLD -> changed(previous == null ? Map.of() : previous, updated, previous == null ? Map.of() : previous);
+            case UPDATED_NEW -> changed(previous == null ? Map.of() : previous, updated, updated);
+            default -> null;
+        };
+    }
+
+    private static Map<String, AttributeValue> changed(Map<String, AttributeValue> previous, Map<String, AttributeValue> updated,
+                                                       Map<String, AttributeValue> source) {
+        Map<String, AttributeValue> changed = new HashMap<>();
+        source.forEach((attribute, value) -> {
+            if (!Objects.equals(previous.get(attribute), updated.get(attribute))) {
+                changed.put(attribute, value);
+            }
+        });
+        return changed;
+    }
+
+    private void checkCondition(String condition, Map<String, String> names, Map<String, AttributeValue> values, Map<String, AttributeValue> item) {
+        if (!DynamoDbExpressions.matches(condition, names, values, item)) {
+            throw ConditionalCheckFailedException.builder().statusCode(400)
+                    .awsErrorDetails(details("ConditionalCheckFailedException", "The conditional request failed"))
+                    .build();
+        }
+    }
+
+    private Table table(String tableName) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            throw ResourceNotFoundException.builder().statusCode(400)
+                    .awsErrorDetails(details("ResourceNotFoundException", "Cannot do operations on a non-existent table"))
+                    .build();
+        }
+        return table;
+    }
+
+    private static Index index(Table table, String indexName) {
+        Index index = table.indexes.get(indexName);
+        if (index == null) {
+            throw DynamoDbExpressions.validation("The table does not have the specified index: " + indexName);
+        }
+        return index;
+    }
+
+    private static Index index(String name, List<KeySchemaElement> keySchema, Projection projection) {
+        return new Index(name, keyAttribute(keySchema, KeyType.HASH), keyAttribute(keySchema, KeyType.RANGE), List.copyOf(keySchema), projection);
+    }
+
+    private static Map<String, AttributeValue> item(Table table, Map<String, AttributeValue> key) {
+        NavigableMap<AttributeValue, Map<String, AttributeValue>> partition = table.partitions.get(keyValue(table, key, table.partitionKey));
+        return partition == null ? null : partition.get(sortValue(table, key));
+    }
+
+    private static void store(Table table, Map<String, AttributeValue> item) {
+        table.partitions.computeIfAbsent(keyValue(table, item, table.partitionKey), partition -> new ConcurrentSkipListMap<>(DynamoDbExpressions.KEY_ORDER))
+                .put(sortValue(table, item), Map.copyOf(item));
+    }
+
+    private static void remove(Table table, Map<String, AttributeValue> key) {
+        AttributeValue partitionValue = keyValue(table, key, table.partitionKey);
+        NavigableMap<AttributeValue, Map<String, AttributeValue>> partition = table.partitions.get(partitionValue);
+        if (partition != null) {
+            partition.remove(sortValue(table, key));
+            if (partition.isEmpty()) {
+                table.partitions.remove(partitionValue, partition);
+            }
+        }
+    }
+
+    private static AttributeValue sortValue(Table table, Map<String, AttributeValue> key) {
+        return table.sortKey == null ? NO_SORT_KEY : keyValue(table, key, table.sortKey);
+    }
+
+    private static AttributeValue keyValue(Table table, Map<String, AttributeValue> key, String attribute) {
+        AttributeValue value = key.get(attribute);
+        if (value == null) {
+            throw DynamoDbExpressions.validation("One of the required keys was not given a value: " + attribute + " of table " + table.name);
+        }
+        return value;
+    }
+
+    private static Map<String, AttributeValue> keyOf(Table table, Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(table.partitionKey, item.get(table.partitionKey));
+        if (table.sortKey != null) {
+            key.put(table.sortKey, item.get(table.sortKey));
+        }
+        return key;
+    }
+
+    private static String keyAttribute(List<KeySchemaElement> keySchema, KeyType keyType) {
+        return keySchema.stream()
+                .filter(element -> element.keyType() == keyType)
+                .map(KeySchemaElement::attributeName)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static TableDescription describe(Table table) {
+        long itemCount = table.partitions.values().stream().mapToLong(Map::size).sum();
+        return TableDescription.builder()
+                .tableName(table.name)
+                .tableStatus(TableStatus.ACTIVE)
+                .keySchema(table.keySchema)
+                .attributeDefinitions(table.attributeDefinitions.values())
+                .globalSecondaryIndexes(table.indexes.values().stream()
+                        .map(index -> GlobalSecondaryIndexDescription.builder()
+                                .indexName(index.name())
+                                .keySchema(index.keySchema())
+                                .projection(index.projection())
+                                .indexStatus(IndexStatus.ACTIVE)
+                                .build())
+                        .toList())
+                .billingModeSummary(BillingModeSummary.builder().billingMode(BillingMode.PAY_PER_REQUEST).build())
+                .itemCount(itemCount)
+                .creationDateTime(table.createdAt)
+                .build();
+    }
+
+    private static AwsErrorDetails details(String errorCode, String message) {
+        return AwsErrorDetails.builder().serviceName("DynamoDb").errorCode(errorCode).errorMessage(message).build();
+    }
+}
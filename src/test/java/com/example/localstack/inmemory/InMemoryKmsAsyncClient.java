@@ -0,0 +1,166 @@
+package com.example.localstack.inmemory;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.kms.KmsAsyncClient;
+import software.amazon.awssdk.services.kms.model.DataKeySpec;
+import software.amazon.awssdk.services.kms.model.DecryptRequest;
+import software.amazon.awssdk.services.kms.model.DecryptResponse;
+import software.amazon.awssdk.services.kms.model.EncryptRequest;
+import software.amazon.awssdk.services.kms.model.EncryptResponse;
+import software.amazon.awssdk.services.kms.model.GenerateDataKeyRequest;
+import software.amazon.awssdk.services.kms.model.GenerateDataKeyResponse;
+import software.amazon.awssdk.services.kms.model.InvalidCiphertextException;
+import software.amazon.awssdk.services.kms.model.KmsException;
+import software.amazon.awssdk.services.kms.model.KmsInternalException;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * KMS held in memory. A master key is created on first use of a key ID or alias and never leaves the client;
+ * ciphertext blobs carry the key reference, so they decrypt without naming the key, as with KMS. Blobs are only
+ * valid for the client instance that produced them.
+ */
+public class InMemoryKmsAsyncClient implements KmsAsyncClient {
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final Map<String, SecretKey> masterKeys = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final SimulatedConditions.Simulator simulator;
+    private final String region;
+
+    public InMemoryKmsAsyncClient(SimulatedConditions conditions, String region) {
+        this.region = region;
+        this.simulator = new SimulatedConditions.Simulator(conditions,
+                () -> error(400, "ThrottlingException", "Rate exceeded"),
+                () -> KmsInternalException.builder().statusCode(500)
+                        .awsErrorDetails(details("KMSInternalException", "An internal error occurred"))
+                        .build());
+    }
+
+    public SimulatedConditions.Simulator simulator() {
+        return simulator;
+    }
+
+    @Override
+    public CompletableFuture<GenerateDataKeyResponse> generateDataKey(GenerateDataKeyRequest request) {
+        return simulator.callAsync("GenerateDataKey", () -> {
+            int length = request.numberOfBytes() != null ? request.numberOfBytes()
+                    : request.keySpec() == DataKeySpec.AES_128 ? 16 : 32;
+            byte[] plaintext = new byte[length];
+            random.nextBytes(plaintext);
+            return GenerateDataKeyResponse.builder()
+                    .keyId(arnOf(request.keyId()))
+                    .plaintext(SdkBytes.fromByteArray(plaintext))
+                    .ciphertextBlob(SdkBytes.fromByteArray(encrypt(request.keyId(), plaintext)))
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<EncryptResponse> encrypt(EncryptRequest request) {
+        return simulator.callAsync("Encrypt", () -> EncryptResponse.builder()
+                .keyId(arnOf(request.keyId()))
+                .ciphertextBlob(SdkBytes.fromByteArray(encrypt(request.keyId(), request.plaintext().asByteArray())))
+                .build());
+    }
+
+    @Override
+    public CompletableFuture<DecryptResponse> decrypt(DecryptRequest request) {
+        return simulator.callAsync("Decrypt", () -> {
+            ByteBuffer blob = ByteBuffer.wrap(request.ciphertextBlob().asByteArray());
+            if (blob.remaining() < Short.BYTES || blob.remaining() < Short.BYTES + Short.toUnsignedInt(blob.getShort(0)) + NONCE_LENGTH) {
+                throw invalidCiphertext();
+            }
+            byte[] keyId = new byte[Short.toUnsignedInt(blob.getShort())];
+            blob.get(keyId);
+            byte[] nonce = new byte[NONCE_LENGTH];
+            blob.get(nonce);
+            String masterKeyId = new String(keyId, StandardCharsets.UTF_8);
+            SecretKey masterKey = masterKeys.get(masterKeyId);
+            if (masterKey == null) {
+                throw invalidCiphertext();
+            }
+            try {
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_BITS, nonce));
+                cipher.updateAAD(keyId);
+                return DecryptResponse.builder()
+                        .keyId(arnOf(masterKeyId))
+                        .plaintext(SdkBytes.fromByteArray(cipher.doFinal(blob.array(), blob.position(), blob.remaining())))
+                        .build();
+            } catch (GeneralSecurityException e) {
+                throw invalidCiphertext();
+            }
+        });
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private byte[] encrypt(String keyId, byte[] plaintext) {
+        SecretKey masterKey = masterKeys.computeIfAbsent(keyId, id -> newMasterKey());
+        byte[] keyIdBytes = keyId.getBytes(StandardCharsets.UTF_8);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(TAG_BITS, nonce));
+            cipher.updateAAD(keyIdBytes);
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            return ByteBuffer.allocate(Short.BYTES + keyIdBytes.length + NONCE_LENGTH + ciphertext.length)
+                    .putShort((short) keyIdBytes.length)
+                    .put(keyIdBytes)
+                    .put(nonce)
+                    .put(ciphertext)
+                    .array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error encrypting with master key " + keyId, e);
+        }
+    }
+
+    private static SecretKey newMasterKey() {
+        try {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(256);
+            return keyGenerator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error generating a master key", e);
+        }
+    }
+
+    private String arnOf(String keyId) {
+        return keyId.startsWith("arn:") ? keyId : "arn:aws:kms:" + region + ":000000000000:" + (keyId.startsWith("alias/") ? keyId : "key/" + keyId);
+    }
+
+    private static KmsException invalidCiphertext() {
+        return InvalidCiphertextException.builder().statusCode(400)
+                .awsErrorDetails(details("InvalidCiphertextException", "The ciphertext is invalid"))
+                .build();
+    }
+
+    private static KmsException error(int statusCode, String errorCode, String message) {
+        return (KmsException) KmsException.builder().statusCode(statusCode).awsErrorDetails(details(errorCode, message)).message(message).build();
+    }
+
+    private static AwsErrorDetails details(String errorCode, String message) {
+        return AwsErrorDetails.builder().serviceName("KMS").errorCode(errorCode).errorMessage(message).build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.localstack.inmemory;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3ServiceClientConfiguration;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Async view of an {@link InMemoryS3Client}, sharing its buckets and simulated conditions. Calls run on virtual
+ * threads, so simulated latency does not hold up the caller.
+ */
+public class InMemoryS3AsyncClient implements S3AsyncClient {
+    private final InMemoryS3Client s3Client;
+
+    public InMemoryS3AsyncClient(InMemoryS3Client s3Client) {
+        this.s3Client = s3Client;
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody requestBody) {
+        return collect(requestBody).thenCompose(content -> SimulatedConditions.Simulator.supplyOnVirtualThread(
+                () -> s3Client.putObject(request, RequestBody.fromBytes(content))));
+    }
+
+    @Override
+    public <ReturnT> CompletableFuture<ReturnT> getObject(GetObjectRequest request, AsyncResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+        CompletableFuture<ReturnT> result = responseTransformer.prepare();
+        SimulatedConditions.Simulator.supplyOnVirtualThread(() -> s3Client.getObject(request, ResponseTransformer.toBytes()))
+                .whenComplete((object, e) -> {
+                    if (e != null) {
+                        responseTransformer.exceptionOccurred(e);
+                        return;
+                    }
+                    responseTransformer.onResponse(object.response());
+                    responseTransformer.onStream(AsyncRequestBody.fromBytes(object.asByteArrayUnsafe()));
+                });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> s3Client.headObject(request));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+        return SimulatedConditions.Simulator.supplyOnVirtualThread(() -> s3Client.deleteObject(request));
+    }
+
+    @Override
+    public S3ServiceClientConfiguration serviceClientConfiguration() {
+        return s3Client.serviceClientConfiguration();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reads a request body into memory, as S3 receives it before answering.
+     */
+    private static CompletableFuture<byte[]> collect(AsyncRequestBody requestBody) {
+        CompletableFuture<byte[]> content = new CompletableFuture<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        requestBody.subscribe(new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer bytes) {
+                byte[] chunk = new byte[bytes.remaining()];
+                bytes.get(chunk);
+                buffer.writeBytes(chunk);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                content.completeExceptionally(e);
+            }
+
+            @Override
+            public void onComplete() {
+                content.complete(buffer.toByteArray());
+            }
+        });
+        return content;
+    }
+}
@@ -0,0 +1,391 @@
+package com.example.localstack.inmemory;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ServiceClientConfiguration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListBucketsRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * S3 held in memory, implementing the operations the application uses: buckets, single and multipart uploads,
+ * ranged downloads, HEAD and deletes. Objects stored with SSE-KMS report their key like S3 does, and multipart
+ * uploads are rejected with {@code EntityTooSmall} if a part other than the last is under 5 MiB. Requests go
+ * through the {@link SimulatedConditions} of the service, throttled with {@code 503 SlowDown}.
+ */
+public class InMemoryS3Client implements S3Client {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    /** The smallest part S3 accepts in a multipart upload, except for the last one. */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private record StoredObject(byte[] content, String contentType, Map<String, String> metadata,
+                                ServerSideEncryption serverSideEncryption, String kmsKeyId, Instant lastModified, String eTag) {}
+
+    private record MultipartUpload(PutObjectRequest target, Map<Integer, byte[]> parts) {}
+
+    private final Map<String, Map<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final SimulatedConditions.Simulator simulator;
+    private final String region;
+
+    public InMemoryS3Client(SimulatedConditions conditions, String region) {
+        this.region = region;
+        this.simulator = new SimulatedConditions.Simulator(conditions,
+                () -> error(503, "SlowDown", "Please reduce your request rate."),
+                () -> error(500, "InternalError", "We encountered an internal error. Please try again."));
+    }
+
+    public SimulatedConditions.Simulator simulator() {
+        return simulator;
+    }
+
+    /**
+     * Returns the stored bytes of an object, as S3 keeps them, or null if there is no such object.
+     */
+    public byte[] storedContent(String bucket, String key) {
+        StoredObject object = bucket(bucket).get(key);
+        return object == null ? null : object.content();
+    }
+
+    @Override
+    public CreateBucketResponse createBucket(CreateBucketRequest request) {
+        return simulator.call("CreateBucket", () -> {
+            if (buckets.putIfAbsent(request.bucket(), new ConcurrentSkipListMap<>()) != null) {
+                throw BucketAlreadyOwnedByYouException.builder().statusCode(409)
+                        .awsErrorDetails(details("BucketAlreadyOwnedByYou", "Your previous request to create the named bucket succeeded and you already own it."))
+                        .build();
+            }
+            return CreateBucketResponse.builder().location("/" + request.bucket()).build();
+        });
+    }
+
+    @Override
+    public HeadBucketResponse headBucket(HeadBucketRequest request) {
+        return simulator.call("HeadBucket", () -> {
+            bucket(request.bucket());
+            return HeadBucketResponse.builder().bucketRegion(region).build();
+        });
+    }
+
+    @Override
+    public ListBucketsResponse listBuckets(ListBucketsRequest request) {
+        return simulator.call("ListBuckets", () -> ListBucketsResponse.builder()
+                .buckets(buckets.keySet().stream().sorted().map(name -> Bucket.builder().name(name).build()).toList())
+                .build());
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody requestBody) {
+        byte[] content = readAll(requestBody);
+        return simulator.call("PutObject", () -> {
+            StoredObject object = store(request, content);
+            return PutObjectResponse.builder()
+                    .eTag(object.eTag())
+                    .serverSideEncryption(object.serverSideEncryption())
+                    .ssekmsKeyId(object.kmsKeyId())
+                    .build();
+        });
+    }
+
+    @Override
+    public <ReturnT> ReturnT getObject(GetObjectRequest request, ResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+        return simulator.call("GetObject", () -> {
+            StoredObject object = object(request.bucket(), request.key());
+            long[] range = resolveRange(request.range(), object.content().length);
+            byte[] content = range == null ? object.content() : Arrays.copyOfRange(object.content(), (int) range[0], (int) range[1] + 1);
+            GetObjectResponse response = GetObjectResponse.builder()
+                    .contentLength((long) content.length)
+                    .contentRange(range == null ? null : "bytes " + range[0] + "-" + range[1] + "/" + object.content().length)
+                    .contentType(object.contentType())
+                    .metadata(object.metadata())
+                    .eTag(object.eTag())
+                    .lastModified(object.lastModified())
+                    .serverSideEncryption(object.serverSideEncryption())
+                    .ssekmsKeyId(object.kmsKeyId())
+                    .build();
+            try {
+                return responseTransformer.transform(response, AbortableInputStream.create(new ByteArrayInputStream(content)));
+            } catch (Exception e) {
+                throw new IllegalStateException("Error transforming the response of GetObject " + request.key(), e);
+            }
+        });
+    }
+
+    @Override
+    public ResponseBytes<GetObjectResponse> getObjectAsBytes(GetObjectRequest request) {
+        return getObject(request, ResponseTransformer.toBytes());
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        return simulator.call("HeadObject", () -> {
+            StoredObject object = object(request.bucket(), request.key());
+            return HeadObjectResponse.builder()
+                    .contentLength((long) object.content().length)
+                    .contentType(object.contentType())
+                    .metadata(object.metadata())
+                    .eTag(object.eTag())
+                    .lastModified(object.lastModified())
+                    .serverSideEncryption(object.serverSideEncryption())
+                    .ssekmsKeyId(object.kmsKeyId())
+                    .build();
+        });
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        return simulator.call("DeleteObject", () -> {
+            bucket(request.bucket()).remove(request.key());
+            return DeleteObjectResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+        return simulator.call("DeleteObjects", () -> {
+            Map<String, StoredObject> bucket = bucket(request.bucket());
+            List<DeletedObject> deleted = request.delete().objects().stream()
+                    .map(object -> {
+                        bucket.remove(object.key());
+                        return DeletedObject.builder().key(object.key()).build();
+                    })
+                    .toList();
+            return DeleteObjectsResponse.builder()
+                    .deleted(Boolean.TRUE.equals(request.delete().quiet()) ? List.of() : deleted)
+                    .build();
+        });
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        return simulator.call("CreateMultipartUpload", () -> {
+            bucket(request.bucket());
+            String uploadId = UUID.randomUUID().toString();
+            PutObjectRequest target = PutObjectRequest.builder()
+                    .bucket(request.bucket())
+                    .key(request.key())
+                    .contentType(request.contentType())
+                    .metadata(request.metadata())
+                    .serverSideEncryption(request.serverSideEncryption())
+                    .ssekmsKeyId(request.ssekmsKeyId())
+                    .build();
+            uploads.put(uploadId, new MultipartUpload(target, new ConcurrentSkipListMap<>()));
+            return CreateMultipartUploadResponse.builder().bucket(request.bucket()).key(request.key()).uploadId(uploadId).build();
+        });
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody requestBody) {
+        byte[] content = readAll(requestBody);
+        return simulator.call("UploadPart", () -> {
+            upload(request.uploadId()).parts().put(request.partNumber(), content);
+            return UploadPartResponse.builder().eTag(eTagOf(content)).build();
+        });
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        return simulator.call("CompleteMultipartUpload", () -> {
+            MultipartUpload upload = upload(request.uploadId());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            List<CompletedPart> parts = request.multipartUpload().parts();
+            for (int i = 0; i < parts.size(); i++) {
+                byte[] partContent = upload.parts().get(parts.get(i).partNumber());
+                if (partContent == null || !Objects.equals(eTagOf(partContent), parts.get(i).eTag())) {
+                    throw error(400, "InvalidPart", "One or more of the specified parts could not be found.");
+                }
+                // Like S3, part sizes are only checked on completion, when the last part is known
+                if (i < parts.size() - 1 && partContent.length < MIN_PART_SIZE) {
+                    throw error(400, "EntityTooSmall", "Your proposed upload is smaller than the minimum allowed object size.");
+                }
+                content.writeBytes(partContent);
+            }
+            uploads.remove(request.uploadId());
+            StoredObject object = store(upload.target(), content.toByteArray());
+            return CompleteMultipartUploadResponse.builder()
+                    .bucket(request.bucket())
+                    .key(request.key())
+                    .eTag(object.eTag())
+                    .serverSideEncryption(object.serverSideEncryption())
+                    .ssekmsKeyId(object.kmsKeyId())
+                    .build();
+        });
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        return simulator.call("AbortMultipartUpload", () -> {
+            uploads.remove(request.uploadId());
+            return AbortMultipartUploadResponse.builder().build();
+        });
+    }
+
+    @Override
+    public S3ServiceClientConfiguration serviceClientConfiguration() {
+        // Clients derived from this one must not reach a real endpoint
+        return S3ServiceClientConfiguration.builder()
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("in-memory", "in-memory")))
+                .endpointOverride(URI.create("http://localhost:1"))
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private StoredObject store(PutObjectRequest request, byte[] content) {
+        ServerSideEncryption serverSideEncryption = request.serverSideEncryption();
+        String kmsKeyId = serverSideEncryption == ServerSideEncryption.AWS_KMS
+                ? "arn:aws:kms:" + region + ":000000000000:key/" + Objects.requireNonNullElse(request.ssekmsKeyId(), "aws/s3")
+                : null;
+        StoredObject object = new StoredObject(content, request.contentType(), request.metadata(), serverSideEncryption, kmsKeyId,
+                Instant.now(), eTagOf(content));
+        bucket(request.bucket()).put(request.key(), object);
+        return object;
+    }
+
+    private Map<String, StoredObject> bucket(String bucket) {
+        Map<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            throw NoSuchBucketException.builder().statusCode(404)
+                    .awsErrorDetails(details("NoSuchBucket", "The specified bucket does not exist"))
+                    .build();
+        }
+        return objects;
+    }
+
+    private StoredObject object(String bucket, String key) {
+        StoredObject object = bucket(bucket).get(key);
+        if (object == null) {
+            throw NoSuchKeyException.builder().statusCode(404)
+                    .awsErrorDetails(details("NoSuchKey", "The specified key does not exist."))
+                    .build();
+        }
+        return object;
+    }
+
+    private MultipartUpload upload(String uploadId) {
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw NoSuchUploadException.builder().statusCode(404)
+                    .awsErrorDetails(details("NoSuchUpload", "The specified upload does not exist."))
+                    .build();
+        }
+        return upload;
+    }
+
+    /**
+     * Resolves a Range header against the object length.
+     *
+     * @return The first and last byte, inclusive, or null for the whole object.
+     */
+    private static long[] resolveRange(String range, long length) {
+        if (range == null) {
+            return null;
+        }
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        long start;
+        long end;
+        if (matcher.group(1).isEmpty()) {
+            start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+            end = length - 1;
+        } else {
+            start = Long.parseLong(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+        }
+        if (start >= length || start > end) {
+            throw error(416, "InvalidRange", "The requested range is not satisfiable");
+        }
+        return new long[]{start, end};
+    }
+
+    private static byte[] readAll(RequestBody requestBody) {
+        try (InputStream content = requestBody.contentStreamProvider().newStream()) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String eTagOf(byte[] content) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static S3Exception error(int statusCode, String errorCode, String message) {
+        return (S3Exception) S3Exception.builder().statusCode(statusCode).awsErrorDetails(details(errorCode, message)).message(message).build();
+    }
+
+    private static AwsErrorDetails details(String errorCode, String message) {
+        return AwsErrorDetails.builder().serviceName("S3").errorCode(errorCode).errorMessage(message).build();
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.localstack.inmemory;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchEntryIdsNotDistinctException;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityResponse;
+import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
+import software.amazon.awssdk.services.sqs.model.CreateQueueResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageResponse;
+import software.amazon.awssdk.services.sqs.model.EmptyBatchRequestException;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesResponse;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.ReceiptHandleIsInvalidException;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+import software.amazon.awssdk.services.sqs.model.TooManyEntriesInBatchRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * SQS held in memory: standard queues with delays, visibility timeouts, long polling, batches and the message
+ * size limit, so that claim checks and redelivery behave as against SQS. FIFO ordering and deduplication are not
+ * simulated. Requests go through the {@link SimulatedConditions} of the service, throttled with
+ * {@code RequestThrottled}.
+ */
+public class InMemorySqsAsyncClient implements SqsAsyncClient {
+    private static final int MAX_MESSAGE_BYTES = 262_144;
+    private static final int MAX_BATCH_ENTRIES = 10;
+    private static final String ACCOUNT_ID = "000000000000";
+
+    private static final class StoredMessage {
+        private final String messageId = UUID.randomUUID().toString();
+        private final String body;
+        private final Map<String, MessageAttributeValue> messageAttributes;
+        private final long sentAt = System.currentTimeMillis();
+        private long visibleAt;
+        private long firstReceivedAt;
+        private int receiveCount;
+        private String receiptHandle;
+
+        StoredMessage(String body, Map<String, MessageAttributeValue> messageAttributes, long visibleAt) {
+            this.body = body;
+            this.messageAttributes = messageAttributes;
+            this.visibleAt = visibleAt;
+        }
+    }
+
+    private static final class Queue {
+        private final String name;
+        private final String url;
+        private final Map<QueueAttributeName, String> attributes = new EnumMap<>(QueueAttributeName.class);
+        private final Map<String, StoredMessage> messages = new LinkedHashMap<>();
+        private final Map<String, StoredMessage> inFlight = new HashMap<>();
+
+        Queue(String name, String url) {
+            this.name = name;
+            this.url = url;
+            attributes.put(QueueAttributeName.VISIBILITY_TIMEOUT, "30");
+            attributes.put(QueueAttributeName.DELAY_SECONDS, "0");
+            attributes.put(QueueAttributeName.RECEIVE_MESSAGE_WAIT_TIME_SECONDS, "0");
+            attributes.put(QueueAttributeName.MAXIMUM_MESSAGE_SIZE, String.valueOf(MAX_MESSAGE_BYTES));
+        }
+
+        int attribute(QueueAttributeName name) {
+            return Integer.parseInt(attributes.get(name));
+        }
+    }
+
+    private final Map<String, Queue> queuesByName = new ConcurrentHashMap<>();
+    private final Map<String, Queue> queuesByUrl = new ConcurrentHashMap<>();
+    private final SimulatedConditions.Simulator simulator;
+    private final String region;
+
+    public InMemorySqsAsyncClient(SimulatedConditions conditions, String region) {
+        this.region = region;
+        this.simulator = new SimulatedConditions.Simulator(conditions,
+                () -> error(400, "RequestThrottled", "Request is throttled."),
+                () -> error(500, "InternalError", "We encountered an internal error. Please try again."));
+    }
+
+    public SimulatedConditions.Simulator simulator() {
+        return simulator;
+    }
+
+    /**
+     * Returns the number of messages in a queue, visible or not.
+     */
+    public int messageCount(String queueName) {
+        Queue queue = queuesByName.get(queueName);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.messages.size();
+        }
+    }
+
+    @Override
+    public CompletableFuture<CreateQueueResponse> createQueue(CreateQueueRequest request) {
+        return simulator.callAsync("CreateQueue", () -> {
+            Queue queue = queuesByName.computeIfAbsent(request.queueName(), name -> {
+                Queue created = new Queue(name, "http://localhost:1/" + ACCOUNT_ID + "/" + name);
+                created.attributes.putAll(request.attributes());
+                created.attributes.put(QueueAttributeName.QUEUE_ARN, "arn:aws:sqs:" + region + ":" + ACCOUNT_ID + ":" + name);
+                queuesByUrl.put(created.url, created);
+                return created;
+            });
+            return CreateQueueResponse.builder().queueUrl(queue.url).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<GetQueueUrlResponse> getQueueUrl(GetQueueUrlRequest request) {
+        return simulator.callAsync("GetQueueUrl", () -> {
+            Queue queue = queuesByName.get(request.queueName());
+            if (queue == null) {
+                throw queueDoesNotExist();
+            }
+            return GetQueueUrlResponse.builder().queueUrl(queue.url).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return simulator.callAsync("GetQueueAttributes", () -> {
+            Queue queue = queue(request.queueUrl());
+            Map<QueueAttributeName, String> attributes = new EnumMap<>(QueueAttributeName.class);
+            synchronized (queue) {
+                long now = System.currentTimeMillis();
+                long visible = queue.messages.values().stream().filter(message -> message.visibleAt <= now).count();
+                long inFlight = queue.messages.values().stream().filter(message -> message.visibleAt > now && message.receiveCount > 0).count();
+                attributes.putAll(queue.attributes);
+                attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, String.valueOf(visible));
+                attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE, String.valueOf(inFlight));
+                attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED, String.valueOf(queue.messages.size() - visible - inFlight));
+            }
+            if (!request.attributeNames().contains(QueueAttributeName.ALL)) {
+                attributes.keySet().retainAll(request.attributeNames());
+            }
+            return GetQueueAttributesResponse.builder().attributes(attributes).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return simulator.callAsync("SendMessage", () -> {
+            Queue queue = queue(request.queueUrl());
+            checkSize(request.messageBody(), request.messageAttributes());
+            StoredMessage message = send(queue, request.messageBody(), request.messageAttributes(), request.delaySeconds());
+            return SendMessageResponse.builder()
+                    .messageId(message.messageId)
+                    .md5OfMessageBody(md5(message.body))
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return simulator.callAsync("SendMessageBatch", () -> {
+            Queue queue = queue(request.queueUrl());
+            checkBatch(request.entries(), SendMessageBatchRequestEntry::id);
+            int batchBytes = request.entries().stream().mapToInt(entry -> size(entry.messageBody(), entry.messageAttributes())).sum();
+            if (batchBytes > MAX_MESSAGE_BYTES) {
+                throw error(400, "BatchRequestTooLong", "Batch requests cannot be longer than " + MAX_MESSAGE_BYTES + " bytes.");
+            }
+            List<SendMessageBatchResultEntry> successful = new ArrayList<>();
+            for (SendMessageBatchRequestEntry entry : request.entries()) {
+                StoredMessage message = send(queue, entry.messageBody(), entry.messageAttributes(), entry.delaySeconds());
+                successful.add(SendMessageBatchResultEntry.builder()
+                        .id(entry.id())
+                        .messageId(message.messageId)
+                        .md5OfMessageBody(md5(message.body))
+                        .build());
+            }
+            return SendMessageBatchResponse.builder().successful(successful).failed(List.<BatchResultErrorEntry>of()).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return simulator.callAsync("ReceiveMessage", () -> {
+            Queue queue = queue(request.queueUrl());
+            int maxMessages = Objects.requireNonNullElse(request.maxNumberOfMessages(), 1);
+            int waitSeconds = request.waitTimeSeconds() != null ? request.waitTimeSeconds() : queue.attribute(QueueAttributeName.RECEIVE_MESSAGE_WAIT_TIME_SECONDS);
+            int visibilityTimeout = request.visibilityTimeout() != null ? request.visibilityTimeout() : queue.attribute(QueueAttributeName.VISIBILITY_TIMEOUT);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitSeconds);
+            List<Message> received = new ArrayList<>();
+            synchronized (queue) {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    for (StoredMessage message : queue.messages.values()) {
+                        if (received.size() == maxMessages) {
+                            break;
+                        }
+                        if (message.visibleAt <= now) {
+                            received.add(receive(queue, message, now, visibilityTimeout, request.messageAttributeNames()));
+                        }
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (!received.isEmpty() || remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        // Woken by new messages; expiring visibility timeouts are noticed on the next slice
+                        TimeUnit.NANOSECONDS.timedWait(queue, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            return ReceiveMessageResponse.builder().messages(received).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return simulator.callAsync("DeleteMessage", () -> {
+            delete(queue(request.queueUrl()), request.receiptHandle());
+            return DeleteMessageResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return simulator.callAsync("DeleteMessageBatch", () -> {
+            Queue queue = queue(request.queueUrl());
+            checkBatch(request.entries(), DeleteMessageBatchRequestEntry::id);
+            List<DeleteMessageBatchResultEntry> successful = new ArrayList<>();
+            for (DeleteMessageBatchRequestEntry entry : request.entries()) {
+                delete(queue, entry.receiptHandle());
+                successful.add(DeleteMessageBatchResultEntry.builder().id(entry.id()).build());
+            }
+            return DeleteMessageBatchResponse.builder().successful(successful).failed(List.<BatchResultErrorEntry>of()).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChangeMessageVisibilityResponse> changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        return simulator.callAsync("ChangeMessageVisibility", () -> {
+            changeVisibility(queue(request.queueUrl()), request.receiptHandle(), request.visibilityTimeout());
+            return ChangeMessageVisibilityResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+        return simulator.callAsync("ChangeMessageVisibilityBatch", () -> {
+            Queue queue = queue(request.queueUrl());
+            checkBatch(request.entries(), ChangeMessageVisibilityBatchRequestEntry::id);
+            List<ChangeMessageVisibilityBatchResultEntry> successful = new ArrayList<>();
+            List<BatchResultErrorEntry> failed = new ArrayList<>();
+            for (ChangeMessageVisibilityBatchRequestEntry entry : request.entries()) {
+                try {
+                    changeVisibility(queue, entry.receiptHandle(), entry.visibilityTimeout());
+                    successful.add(ChangeMessageVisibilityBatchResultEntry.builder().id(entry.id()).build());
+                } catch (ReceiptHandleIsInvalidException e) {
+                    failed.add(BatchResultErrorEntry.builder().id(entry.id()).code("ReceiptHandleIsInvalid").senderFault(true).message(e.getMessage()).build());
+                }
+            }
+            return ChangeMessageVisibilityBatchResponse.builder().successful(successful).failed(failed).build();
+        });
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private StoredMessage send(Queue queue, String body, Map<String, MessageAttributeValue> messageAttributes, Integer delaySeconds) {
+        int delay = delaySeconds != null ? delaySeconds : queue.attribute(QueueAttributeName.DELAY_SECONDS);
+        StoredMessage message = new StoredMessage(body, Map.copyOf(messageAttributes), System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delay));
+        synchronized (queue) {
+            queue.messages.put(message.messageId, message);
+            queue.notifyAll();
+        }
+        return message;
+    }
+
+    /**
+     * Hands a message out with a new receipt handle, invalidating the handle of any earlier receive.
+     */
+    private static Message receive(Queue queue, StoredMessage message, long now, int visibilityTimeout, List<String> messageAttributeNames) {
+        if (message.receiptHandle != null) {
+            queue.inFlight.remove(message.receiptHandle);
+        }
+        message.receiptHandle = UUID.randomUUID().toString();
+        message.receiveCount++;
+        if (message.firstReceivedAt == 0) {
+            message.firstReceivedAt = now;
+        }
+        message.visibleAt = now + TimeUnit.SECONDS.toMillis(visibilityTimeout);
+        queue.inFlight.put(message.receiptHandle, message);
+
+        Map<String, MessageAttributeValue> attributes = new HashMap<>(message.messageAttributes);
+        if (!messageAttributeNames.contains("All") && !messageAttributeNames.contains(".*")) {
+            attributes.keySet().retainAll(messageAttributeNames);
+        }
+        Map<MessageSystemAttributeName, String> systemAttributes = new EnumMap<>(MessageSystemAttributeName.class);
+        systemAttributes.put(MessageSystemAttributeName.SENT_TIMESTAMP, String.valueOf(message.sentAt));
+        systemAttributes.put(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, String.valueOf(message.receiveCount));
+        systemAttributes.put(MessageSystemAttributeName.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP, String.valueOf(message.firstReceivedAt));
+        systemAttributes.put(MessageSystemAttributeName.SENDER_ID, ACCOUNT_ID);
+        return Message.builder()
+                .messageId(message.messageId)
+                .receiptHandle(message.receiptHandle)
+                .body(message.body)
+                .md5OfBody(md5(message.body))
+                .messageAttributes(attributes)
+                .attributes(systemAttributes)
+                .build();
+    }
+
+    /**
+     * Deletes the message of a receipt handle. Like SQS, deleting a message that is already gone succeeds.
+     */
+    private static void delete(Queue queue, String receiptHandle) {
+        synchronized (queue) {
+            StoredMessage message = queue.inFlight.remove(receiptHandle);
+            if (message != null) {
+                queue.messages.remove(message.messageId);
+            }
+        }
+    }
+
+    private static void changeVisibility(Queue queue, String receiptHandle, Integer visibilityTimeout) {
+        synchronized (queue) {
+            StoredMessage message = queue.inFlight.get(receiptHandle);
+            if (message == null) {
+                throw ReceiptHandleIsInvalidException.builder().statusCode(400)
+                        .awsErrorDetails(details("ReceiptHandleIsInvalid", "The input receipt handle is invalid."))
+                        .build();
+            }
+            message.visibleAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Objects.requireNonNullElse(visibilityTimeout, 0));
+            queue.notifyAll();
+        }
+    }
+
+    private Queue queue(String queueUrl) {
+        Queue queue = queuesByUrl.get(queueUrl);
+        if (queue == null) {
+            throw queueDoesNotExist();
+        }
+        return queue;
+    }
+
+    private static <T> void checkBatch(List<T> entries, Function<T, String> id) {
+        if (entries.isEmpty()) {
+            throw EmptyBatchRequestException.builder().statusCode(400)
+                    .awsErrorDetails(details("EmptyBatchRequest", "There should be at least one entry in the request."))
+                    .build();
+        }
+        if (entries.size() > MAX_BATCH_ENTRIES) {
+            throw TooManyEntriesInBatchRequestException.builder().statusCode(400)
+                    .awsErrorDetails(details("TooManyEntriesInBatchRequest", "Maximum number of entries per request are " + MAX_BATCH_ENTRIES + "."))
+                    .build();
+        }
+        if (new HashSet<>(entries.stream().map(id).toList()).size() != entries.size()) {
+            throw BatchEntryIdsNotDistinctException.builder().statusCode(400)
+                    .awsErrorDetails(details("BatchEntryIdsNotDistinct", "Two or more batch entries in the request have the same Id."))
+                    .build();
+        }
+    }
+
+    private static void checkSize(String body, Map<String, MessageAttributeValue> messageAttributes) {
+        if (size(body, messageAttributes) > MAX_MESSAGE_BYTES) {
+            throw error(400, "InvalidParameterValue", "One or more parameters are invalid. Reason: Message must be shorter than " + MAX_MESSAGE_BYTES + " bytes.");
+        }
+    }
+
+    /**
+     * The size SQS counts against the message limit: the body plus the names, types and values of the attributes.
+     */
+    private static int size(String body, Map<String, MessageAttributeValue> messageAttributes) {
+        int size = body.getBytes(StandardCharsets.UTF_8).length;
+        for (Map.Entry<String, MessageAttributeValue> attribute : messageAttributes.entrySet()) {
+            MessageAttributeValue value = attribute.getValue();
+            size += attribute.getKey().getBytes(StandardCharsets.UTF_8).length + value.dataType().getBytes(StandardCharsets.UTF_8).length;
+            size += value.stringValue() != null ? value.stringValue().getBytes(StandardCharsets.UTF_8).length : 0;
+            size += value.binaryValue() != null ? value.binaryValue().asByteArrayUnsafe().length : 0;
+        }
+        return size;
+    }
+
+    private static String md5(String body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static QueueDoesNotExistException queueDoesNotExist() {
+        return QueueDoesNotExistException.builder().statusCode(400)
+                .awsErrorDetails(details("AWS.SimpleQueueService.NonExistentQueue", "The specified queue does not exist."))
+                .build();
+    }
+
+    private static SqsException error(int statusCode, String errorCode, String message) {
+        return (SqsException) SqsException.builder().statusCode(statusCode).awsErrorDetails(details(errorCode, message)).message(message).build();
+    }
+
+    private static AwsErrorDetails details(String errorCode, String message) {
+        return AwsErrorDetails.builder().serviceName("Sqs").errorCode(errorCode).errorMessage(message).build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.localstack.inmemory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Network conditions simulated by an in-memory service: request latency, throttling and injected errors. Every
+ * request first waits for its latency, then fails with the service's throttling error if the request rate is
+ * above {@link #maxRequestsPerSecond()}, then fails with the service's internal error at {@link #errorRate()}.
+ *
+ * <p>Latency follows a log-normal distribution fitted to the median and the 99th percentile, the usual shape of
+ * cloud service latencies; a p99 at or below the median gives a fixed latency.
+ *
+ * @param medianLatency        Median latency of a request, zero for none.
+ * @param p99Latency           99th percentile latency of a request.
+ * @param maxRequestsPerSecond Sustained request rate above which requests are throttled, zero for unlimited.
+ *                             Bursts of up to one second's worth of requests are accepted.
+ * @param errorRate            Share of requests failing with an internal error, from 0 to 1.
+ */
+public record SimulatedConditions(Duration medianLatency, Duration p99Latency, double maxRequestsPerSecond, double errorRate) {
+    /** The z-score of the 99th percentile of the standard normal distribution. */
+    private static final double Z_99 = 2.3263;
+
+    public static SimulatedConditions none() {
+        return new SimulatedConditions(Duration.ZERO, Duration.ZERO, 0, 0);
+    }
+
+    public static SimulatedConditions latency(Duration median, Duration p99) {
+        return new SimulatedConditions(median, p99, 0, 0);
+    }
+
+    public SimulatedConditions withMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        return new SimulatedConditions(medianLatency, p99Latency, maxRequestsPerSecond, errorRate);
+    }
+
+    public SimulatedConditions withErrorRate(double errorRate) {
+        return new SimulatedConditions(medianLatency, p99Latency, maxRequestsPerSecond, errorRate);
+    }
+
+    /**
+     * Applies conditions to the requests of one service, counting requests by operation.
+     */
+    public static class Simulator {
+        private static final Executor VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+        private final SimulatedConditions conditions;
+        private final Supplier<? extends RuntimeException> throttled;
+        private final Supplier<? extends RuntimeException> failed;
+        private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+        private final double sigma;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        /**
+         * @param conditions The conditions to simulate.
+         * @param throttled  Creates the error the service answers throttled requests with.
+         * @param failed     Creates the error the service answers failed requests with.
+         */
+        public Simulator(SimulatedConditions conditions, Supplier<? extends RuntimeException> throttled, Supplier<? extends RuntimeException> failed) {
+            this.conditions = conditions;
+            this.throttled = throttled;
+            this.failed = failed;
+            long median = conditions.medianLatency().toNanos();
+            long p99 = conditions.p99Latency().toNanos();
+            this.sigma = median > 0 && p99 > median ? Math.log((double) p99 / median) / Z_99 : 0;
+            this.tokens = Math.max(1, conditions.maxRequestsPerSecond());
+        }
+
+        /**
+         * Runs a request on the calling thread, blocking it for the request latency.
+         */
+        public <T> T call(String operation, Supplier<T> request) {
+            long latency = sampleLatencyNanos();
+            if (latency > 0) {
+                LockSupport.parkNanos(latency);
+            }
+            checkFaults(operation);
+            return request.get();
+        }
+
+        /**
+         * Runs a request once its latency has passed, without blocking the calling thread. Like the SDK's async
+         * clients, the returned future completes with the service error itself rather than a wrapper.
+         */
+        public <T> CompletableFuture<T> callAsync(String operation, Supplier<T> request) {
+            long latency = sampleLatencyNanos();
+            Executor executor = latency > 0 ? CompletableFuture.delayedExecutor(latency, TimeUnit.NANOSECONDS, VIRTUAL_THREADS) : VIRTUAL_THREADS;
+            return supply(() -> {
+                checkFaults(operation);
+                return request.get();
+            }, executor);
+        }
+
+        /**
+         * Returns the number of requests made for an operation, including throttled and failed ones.
+         */
+        public long requestCount(String operation) {
+            LongAdder count = requests.get(operation);
+            return count == null ? 0 : count.sum();
+        }
+
+        /**
+         * Runs a blocking call on a virtual thread, completing the returned future with its result or its error.
+         */
+        static <T> CompletableFuture<T> supplyOnVirtualThread(Supplier<T> call) {
+            return supply(call, VIRTUAL_THREADS);
+        }
+
+        private static <T> CompletableFuture<T> supply(Supplier<T> call, Executor executor) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    result.complete(call.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+
+        private void checkFaults(String operation) {
+            requests.computeIfAbsent(operation, key -> new LongAdder()).increment();
+            if (conditions.maxRequestsPerSecond() > 0 && !tryAcquirePermit()) {
+                throw throttled.get();
+            }
+            if (conditions.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < conditions.errorRate()) {
+                throw failed.get();
+            }
+        }
+
+        private synchronized boolean tryAcquirePermit() {
+            long now = System.nanoTime();
+            double rate = conditions.maxRequestsPerSecond();
+            tokens = Math.min(Math.max(1, rate), tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        private long sampleLatencyNanos() {
+            long median = conditions.medianLatency().toNanos();
+            if (median <= 0) {
+                return 0;
+            }
+            return sigma == 0 ? median : (long) (median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+}